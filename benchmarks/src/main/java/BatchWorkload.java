@@ -0,0 +1,48 @@
+import java.util.function.IntSupplier;
+
+/**
+ * Нагрузка для бенчмарка обработки пачек заявок. Поток {@link OrderFlowGenerator} по 8 акциям с горячей акцией
+ * приходит пачками по burst заявок. Операция ONE_BY_ONE - заявки пачки передаются {@link Exchange#processOrder(Order)}
+ * по одной, BATCH - пачка передается {@link Exchange#processOrders(Order...)}.
+ * Одна операция - создание и обработка одной пачки, создание заявок одинаково в обоих режимах.
+ */
+public class BatchWorkload implements IntSupplier {
+  private static final int WARM_UP_ORDERS = 100000;
+
+  private final boolean batch;
+  private final OrderFlowGenerator generator;
+  private final Exchange exchange;
+  private final Order[] burst;
+
+  /**
+   * @param args режим (ONE_BY_ONE, BATCH) и размер пачки
+   */
+  public BatchWorkload(String... args) {
+    batch = "BATCH".equals(args[0]);
+    burst = new Order[Integer.parseInt(args[1])];
+    generator = OrderFlowGenerator.newBuilder()
+        .seed(42)
+        .clients(1000)
+        .symbols(8)
+        .hotSymbolSkew(1)
+        .crossProbability(0.5)
+        .build();
+    exchange = new Exchange(generator.clientBase());
+    generator.feed(exchange, WARM_UP_ORDERS);
+  }
+
+  @Override
+  public int getAsInt() {
+    for (int i = 0; i < burst.length; i++) {
+      burst[i] = generator.nextOrder();
+    }
+    if (batch) {
+      exchange.processOrders(burst);
+    } else {
+      for (Order order : burst) {
+        exchange.processOrder(order);
+      }
+    }
+    return burst[burst.length - 1].getCount();
+  }
+}
@@ -0,0 +1,93 @@
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.function.IntSupplier;
+
+/**
+ * Нагрузка для бенчмарка команд над заявками в стакане. В стакане resting заявок на продажу с номерами,
+ * распределенных по {@link #LEVELS} ценовым уровням. Операция выполняет команду над случайной заявкой:
+ * <ul>
+ *   <li>CANCEL - снятие по номеру и выставление новой заявки взамен;</li>
+ *   <li>SCAN_CANCEL - то же, но заявка ищется перебором стакана, как без индекса номеров;</li>
+ *   <li>REDUCE - уменьшение остатка на единицу;</li>
+ *   <li>AMEND - перестановка на случайную цену.</li>
+ * </ul>
+ * Количество заявок в стакане не меняется, заявки берутся из {@link OrderPool}.
+ */
+public class CancelWorkload implements IntSupplier {
+  static final int LEVELS = 1000;
+
+  private final ClientBase clientBase = new ClientBase();
+  private final StockOrdersQueue book = new StockOrdersQueue(clientBase);
+  private final OrderPool pool = new OrderPool();
+  private final Random random = new Random(1);
+  private final String operation;
+  private final int clientId;
+  private final int[] ids;
+  private int lastId;
+
+  /**
+   * @param args операция и количество заявок в стакане
+   */
+  public CancelWorkload(String... args) {
+    operation = args[0];
+    ids = new int[Integer.parseInt(args[1])];
+    clientBase.addClientBalance(ClientBalance.newBuilder()
+        .name("M")
+        .amount(BigDecimal.ZERO)
+        .stock("A", Integer.MAX_VALUE)
+        .build());
+    clientId = clientBase.getClientDictionary().find("M");
+    book.setOrderPool(pool);
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = submit();
+    }
+  }
+
+  @Override
+  public int getAsInt() {
+    int slot = random.nextInt(ids.length);
+    int id = ids[slot];
+    switch (operation) {
+      case "CANCEL":
+        book.cancel(clientId, id);
+        ids[slot] = submit();
+        break;
+      case "SCAN_CANCEL":
+        for (Order order : book.sell) {
+          if (order.getId() == id) {
+            book.cancel(clientId, id);
+            break;
+          }
+        }
+        ids[slot] = submit();
+        break;
+      case "REDUCE":
+        Order target = book.find(clientId, id);
+        if (target.getCount() > 1) {
+          book.reduce(clientId, id, target.getCount() - 1);
+        } else {
+          book.cancel(clientId, id);
+          ids[slot] = submit();
+        }
+        break;
+      case "AMEND":
+        book.amend(clientId, id, price(), 0, 1000000);
+        break;
+      default:
+        throw new IllegalArgumentException("Неизвестная операция " + operation);
+    }
+    return ids[slot];
+  }
+
+  private int submit() {
+    Order order = pool.acquire().init(clientId, "M", Order.Type.SELL, 0, "A", price(), 0, 1000000)
+        .command(Order.Action.NEW, ++lastId);
+    order.sequence();
+    book.addAndProcess(order);
+    return lastId;
+  }
+
+  private long price() {
+    return FixedPoint.valueOf(1000 + random.nextInt(LEVELS));
+  }
+}
@@ -0,0 +1,56 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.function.IntSupplier;
+
+/**
+ * Нагрузка для бенчмарка загрузки и выгрузки базы клиентов. Файл из records клиентов создается один раз.
+ * Операция LOAD - разбор файла в новую {@link ClientBase}, DUMP - запись загруженной базы в файл.
+ */
+public class ClientBaseWorkload implements IntSupplier {
+  private final File clients;
+  private final File result;
+  private final boolean load;
+  private final ClientBase clientBase = new ClientBase();
+
+  /**
+   * @param args операция (LOAD, DUMP) и количество клиентов
+   */
+  public ClientBaseWorkload(String... args) {
+    load = "LOAD".equals(args[0]);
+    int records = Integer.parseInt(args[1]);
+    try {
+      clients = File.createTempFile("clients", ".txt");
+      clients.deleteOnExit();
+      result = File.createTempFile("result", ".txt");
+      result.deleteOnExit();
+      Random random = new Random(42);
+      try (BufferedWriter writer = Files.newBufferedWriter(clients.toPath(), StandardCharsets.UTF_8)) {
+        for (int i = 0; i < records; i++) {
+          writer.write("C" + i + "\t" + random.nextInt(100000) + (i % 3 == 0 ? "" : "." + random.nextInt(100))
+              + "\t" + random.nextInt(1000) + "\t" + random.nextInt(1000) + "\t" + random.nextInt(1000)
+              + "\t" + random.nextInt(1000));
+          writer.newLine();
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    if (!load) {
+      clientBase.initClientBase(clients);
+    }
+  }
+
+  @Override
+  public int getAsInt() {
+    if (load) {
+      return new ClientBase().initClientBase(clients).size();
+    }
+    clientBase.clientToFile(result);
+    return (int) result.length();
+  }
+}
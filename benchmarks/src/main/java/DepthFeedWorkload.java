@@ -0,0 +1,86 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntSupplier;
+
+/**
+ * Нагрузка для бенчмарка публикации глубины стакана. Поток {@link OrderFlowGenerator} по 8 акциям с командами
+ * снятия, стаканы заполняются разогревом из 2 * resting заявок. Операция - обработка одной заявки и публикация глубины:
+ * <ul>
+ *   <li>NONE - без публикации;</li>
+ *   <li>FEED - изменения уровней через {@link MarketDataFeed}, подписчик читает изменения каждые 64 заявки;</li>
+ *   <li>RESCAN - после каждой заявки глубина стакана акции пересчитывается обходом всех его заявок.</li>
+ * </ul>
+ */
+public class DepthFeedWorkload implements IntSupplier {
+  private static final int DRAIN_INTERVAL = 64;
+
+  private final String mode;
+  private final OrderFlowGenerator generator;
+  private final Exchange exchange;
+  private final MarketDataFeed.Subscription subscription;
+  private final List<DepthLevel> updates = new ArrayList<>();
+  private int processed;
+
+  /**
+   * @param args режим (NONE, FEED, RESCAN) и половина количества заявок разогрева
+   */
+  public DepthFeedWorkload(String... args) {
+    mode = args[0];
+    int resting = Integer.parseInt(args[1]);
+    generator = OrderFlowGenerator.newBuilder()
+        .seed(42)
+        .clients(1000)
+        .symbols(8)
+        .depth(Math.max(50, resting / 100))
+        .crossProbability(0.05)
+        .cancelShare(0.45)
+        .build();
+    ClientBase clientBase = generator.clientBase();
+    exchange = new Exchange(clientBase);
+    generator.feed(exchange, resting * 2L);
+    if ("FEED".equals(mode)) {
+      MarketDataFeed feed = new MarketDataFeed(clientBase);
+      exchange.setDepthListener(feed);
+      subscription = feed.subscribe();
+      subscription.poll(updates);
+    } else {
+      subscription = null;
+    }
+  }
+
+  @Override
+  public int getAsInt() {
+    Order order = generator.nextOrder();
+    exchange.processOrder(order);
+    switch (mode) {
+      case "FEED":
+        if (++processed % DRAIN_INTERVAL == 0) {
+          updates.clear();
+          subscription.poll(updates);
+        }
+        return updates.size();
+      case "RESCAN":
+        return rescan(exchange.book(order.getStockId()));
+      default:
+        return order.getCount();
+    }
+  }
+
+  private static int rescan(StockOrdersQueue book) {
+    int levels = 0;
+    for (OrderBookSide side : new OrderBookSide[]{book.sell, book.bay}) {
+      long price = Long.MIN_VALUE;
+      long quantity = 0;
+      for (Order resting : side) {
+        if (resting.getPriceUnits() != price) {
+          levels += quantity > 0 ? 1 : 0;
+          price = resting.getPriceUnits();
+          quantity = 0;
+        }
+        quantity += resting.getCount();
+      }
+      levels += quantity > 0 ? 1 : 0;
+    }
+    return levels;
+  }
+}
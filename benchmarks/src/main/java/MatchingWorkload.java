@@ -0,0 +1,121 @@
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.function.IntSupplier;
+
+/**
+ * Нагрузка для бенчмарка сопоставления заявок в одном стакане {@link StockOrdersQueue}.
+ * Заявки берутся из {@link OrderPool}, поэтому в установившемся режиме память не выделяется.
+ * Глубина стакана остается постоянной: каждая снятая заявка восполняется новой.
+ * <ul>
+ *   <li>DEEP_BOOK - стакан из depth заявок на продажу на 1000 уровнях, покупка снимает одну заявку, продажа выставляет новую;</li>
+ *   <li>CROSSING - половина заявок пересекает стакан и исполняется против нескольких заявок;</li>
+ *   <li>SELF_TRADE - перед лучшими заявками стоят depth заявок того же клиента, которые нужно пропустить.</li>
+ * </ul>
+ * Одна операция - обработка одной заявки.
+ */
+public class MatchingWorkload implements IntSupplier {
+  private static final int LEVELS = 1000;
+  private static final int RANDOM_PRICES = 1 << 16;
+
+  private final String flow;
+  private final ClientBase clientBase = new ClientBase();
+  private final StockOrdersQueue book = new StockOrdersQueue(clientBase);
+  private final OrderPool pool = new OrderPool();
+  private final int[] randomPrices = new int[RANDOM_PRICES];
+  private final int seller;
+  private final int buyer;
+  private final int taker;
+  private long step;
+
+  /**
+   * @param args вид потока заявок (DEEP_BOOK, CROSSING, SELF_TRADE) и глубина стакана
+   */
+  public MatchingWorkload(String... args) {
+    this.flow = args[0];
+    int depth = Integer.parseInt(args[1]);
+    seller = client("S");
+    buyer = client("B");
+    taker = client("T");
+    book.setOrderPool(pool);
+    Random random = new Random(42);
+    for (int i = 0; i < randomPrices.length; i++) {
+      randomPrices[i] = random.nextInt(LEVELS);
+    }
+
+    switch (flow) {
+      case "DEEP_BOOK":
+        for (int i = 0; i < depth; i++) {
+          submit(seller, Order.Type.SELL, 1000 + randomPrices[i & (RANDOM_PRICES - 1)], 1);
+        }
+        break;
+      case "CROSSING":
+        for (int i = 0; i < depth / 2; i++) {
+          submit(seller, Order.Type.SELL, 1000 + randomPrices[i & (RANDOM_PRICES - 1)], 3);
+          submit(buyer, Order.Type.BAY, 999 - randomPrices[(i + 1) & (RANDOM_PRICES - 1)], 3);
+        }
+        break;
+      case "SELF_TRADE":
+        for (int i = 0; i < depth; i++) {
+          submit(taker, Order.Type.SELL, 1000, 1);
+        }
+        break;
+      default:
+        throw new IllegalArgumentException("Неизвестный поток заявок " + flow);
+    }
+  }
+
+  @Override
+  public int getAsInt() {
+    long current = step++;
+    int price = randomPrices[(int) (current & (RANDOM_PRICES - 1))];
+    switch (flow) {
+      case "DEEP_BOOK":
+        if ((current & 1) == 0) {
+          submit(taker, Order.Type.BAY, 2000, 1);
+        } else {
+          submit(seller, Order.Type.SELL, 1000 + price, 1);
+        }
+        break;
+      case "CROSSING":
+        switch ((int) (current & 3)) {
+          case 0:
+            submit(seller, Order.Type.SELL, 1000 + price, 3);
+            break;
+          case 1:
+            submit(taker, Order.Type.BAY, 2000, 3);
+            break;
+          case 2:
+            submit(buyer, Order.Type.BAY, 999 - price, 3);
+            break;
+          default:
+            submit(taker, Order.Type.SELL, 0, 3);
+            break;
+        }
+        break;
+      default:
+        if ((current & 1) == 0) {
+          submit(seller, Order.Type.SELL, 1001, 1);
+        } else {
+          submit(taker, Order.Type.BAY, 1001, 1);
+        }
+        break;
+    }
+    return book.sell.size();
+  }
+
+  private void submit(int clientId, Order.Type type, long price, int count) {
+    Order order = pool.acquire().init(clientId, clientBase.getClientDictionary().name(clientId), type,
+        0, "A", FixedPoint.valueOf(price), 0, count);
+    order.sequence();
+    book.addAndProcess(order);
+  }
+
+  private int client(String name) {
+    clientBase.addClientBalance(ClientBalance.newBuilder()
+        .name(name)
+        .amount(BigDecimal.valueOf(1000000000000L))
+        .stock("A", 1000000000)
+        .build());
+    return clientBase.getClientDictionary().find(name);
+  }
+}
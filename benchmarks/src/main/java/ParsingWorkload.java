@@ -0,0 +1,55 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.function.IntSupplier;
+
+/**
+ * Нагрузка для бенчмарка разбора файла заявок. Файл из records строк создается один раз,
+ * одна операция - разбор всего файла без сопоставления заявок.
+ */
+public class ParsingWorkload implements IntSupplier {
+  private final File orders;
+  private final int threads;
+
+  /**
+   * @param args количество строк в файле и количество потоков разбора
+   */
+  public ParsingWorkload(String... args) {
+    int records = Integer.parseInt(args[0]);
+    threads = Integer.parseInt(args[1]);
+    try {
+      orders = File.createTempFile("orders", ".txt");
+      orders.deleteOnExit();
+      Random random = new Random(42);
+      try (BufferedWriter writer = Files.newBufferedWriter(orders.toPath(), StandardCharsets.UTF_8)) {
+        for (int i = 0; i < records; i++) {
+          writer.write("C" + random.nextInt(100) + (random.nextBoolean() ? "\tb\tS" : "\ts\tS") + random.nextInt(10)
+              + "\t" + (1000 + random.nextInt(1000)) + "." + random.nextInt(10) + "\t" + (1 + random.nextInt(100)));
+          writer.newLine();
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public int getAsInt() {
+    int[] count = new int[1];
+    ClientBase clientBase = new ClientBase();
+    try {
+      if (threads > 1) {
+        new ParallelOrderFileParser(clientBase, threads).parse(orders, order -> count[0]++);
+      } else {
+        new OrderFileParser(clientBase).parse(orders, order -> count[0]++);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return count[0];
+  }
+}
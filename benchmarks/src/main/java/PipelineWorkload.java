@@ -0,0 +1,45 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.IntSupplier;
+
+/**
+ * Нагрузка для сравнения обработки файла заявок в одном потоке и конвейером {@link OrderPipeline}.
+ * Файл заявок и база клиентов создаются генератором один раз, одна операция - обработка всего файла
+ * на новой базе клиентов. Режим INLINE обрабатывает файл в вызывающем потоке, остальные режимы -
+ * конвейером с указанным способом ожидания {@link WaitStrategy}.
+ */
+public class PipelineWorkload implements IntSupplier {
+  private final File clients;
+  private final File orders;
+  private final WaitStrategy waitStrategy;
+
+  /**
+   * @param args режим (INLINE, BUSY_SPIN, YIELD, PARK) и количество заявок в файле
+   */
+  public PipelineWorkload(String... args) {
+    waitStrategy = "INLINE".equals(args[0]) ? null : WaitStrategy.valueOf(args[0]);
+    OrderFlowGenerator generator = OrderFlowGenerator.newBuilder().seed(42).clients(1000)
+        .cancelShare(0.2).build();
+    try {
+      clients = File.createTempFile("clients", ".txt");
+      clients.deleteOnExit();
+      orders = File.createTempFile("orders", ".txt");
+      orders.deleteOnExit();
+      generator.writeClients(clients);
+      generator.write(orders, Long.parseLong(args[1]));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public int getAsInt() {
+    ClientBase clientBase = new ClientBase();
+    clientBase.initClientBase(clients);
+    Exchange exchange = new Exchange(clientBase);
+    exchange.setPipeline(waitStrategy);
+    exchange.processOrderList(orders);
+    return exchange.bookDepth().values().stream().mapToInt(Integer::intValue).sum();
+  }
+}
@@ -0,0 +1,55 @@
+import java.math.BigDecimal;
+import java.util.function.IntSupplier;
+
+/**
+ * Нагрузка для бенчмарка пропуска собственных заявок. Маркет-мейкер держит selfOrders заявок на продажу,
+ * равномерно распределенных по levels ценовым уровням лучше цены остальных продавцов.
+ * Операция: другой продавец выставляет заявку за заявками маркет-мейкера, маркет-мейкер покупает по этой цене,
+ * пропуская все свои заявки, и исполняется против нее. Заявки берутся из {@link OrderPool}, стакан не меняется.
+ */
+public class SelfTradeWorkload implements IntSupplier {
+  private final ClientBase clientBase = new ClientBase();
+  private final StockOrdersQueue book = new StockOrdersQueue(clientBase);
+  private final OrderPool pool = new OrderPool();
+  private final int maker;
+  private final int seller;
+  private final long price;
+
+  /**
+   * @param args количество заявок маркет-мейкера и количество их ценовых уровней
+   */
+  public SelfTradeWorkload(String... args) {
+    int selfOrders = Integer.parseInt(args[0]);
+    int levels = Integer.parseInt(args[1]);
+    maker = client("M");
+    seller = client("S");
+    book.setOrderPool(pool);
+    for (int i = 0; i < selfOrders; i++) {
+      submit(maker, Order.Type.SELL, 1000 + i % levels);
+    }
+    price = 1000 + levels;
+  }
+
+  @Override
+  public int getAsInt() {
+    submit(seller, Order.Type.SELL, price);
+    submit(maker, Order.Type.BAY, price);
+    return book.sell.size();
+  }
+
+  private void submit(int clientId, Order.Type type, long price) {
+    Order order = pool.acquire().init(clientId, clientBase.getClientDictionary().name(clientId), type,
+        0, "A", FixedPoint.valueOf(price), 0, 1);
+    order.sequence();
+    book.addAndProcess(order);
+  }
+
+  private int client(String name) {
+    clientBase.addClientBalance(ClientBalance.newBuilder()
+        .name(name)
+        .amount(BigDecimal.valueOf(1000000000000L))
+        .stock("A", 1000000000)
+        .build());
+    return clientBase.getClientDictionary().find(name);
+  }
+}
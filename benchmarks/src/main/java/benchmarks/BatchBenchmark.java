@@ -0,0 +1,44 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Обработка пачек заявок по одной и через пакетный вызов, см. BatchWorkload
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchBenchmark {
+  @Param({"ONE_BY_ONE", "BATCH"})
+  String mode;
+  @Param({"16", "256", "4096"})
+  int burst;
+
+  private IntSupplier workload;
+
+  @Setup
+  public void setUp() {
+    workload = Workloads.create("BatchWorkload", mode, String.valueOf(burst));
+  }
+
+  @Benchmark
+  public int processBurst() {
+    return workload.getAsInt();
+  }
+}
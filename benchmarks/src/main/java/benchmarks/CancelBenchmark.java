@@ -0,0 +1,45 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Снятие, уменьшение и перестановка заявки по номеру в большом стакане, см. CancelWorkload.
+ * SCAN_CANCEL показывает стоимость поиска заявки перебором стакана без индекса номеров.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CancelBenchmark {
+  @Param({"CANCEL", "REDUCE", "AMEND", "SCAN_CANCEL"})
+  String operation;
+  @Param({"100000", "1000000"})
+  int resting;
+
+  private IntSupplier workload;
+
+  @Setup
+  public void setUp() {
+    workload = Workloads.create("CancelWorkload", operation, String.valueOf(resting));
+  }
+
+  @Benchmark
+  public int modifyRestingOrder() {
+    return workload.getAsInt();
+  }
+}
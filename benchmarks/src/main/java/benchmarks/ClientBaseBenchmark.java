@@ -0,0 +1,45 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Загрузка и выгрузка базы клиентов, см. ClientBaseWorkload.
+ * Для 10 млн клиентов нужна куча в несколько гигабайт: -jvmArgsAppend -Xmx8g
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ClientBaseBenchmark {
+  @Param({"LOAD", "DUMP"})
+  String operation;
+  @Param({"10000", "1000000", "10000000"})
+  int records;
+
+  private IntSupplier workload;
+
+  @Setup
+  public void setUp() {
+    workload = Workloads.create("ClientBaseWorkload", operation, String.valueOf(records));
+  }
+
+  @Benchmark
+  public int clientBase() {
+    return workload.getAsInt();
+  }
+}
@@ -0,0 +1,44 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Стоимость публикации глубины стакана на заявку: изменения уровней против пересчета стакана, см. DepthFeedWorkload
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DepthFeedBenchmark {
+  @Param({"NONE", "FEED", "RESCAN"})
+  String mode;
+  @Param({"1000", "100000"})
+  int resting;
+
+  private IntSupplier workload;
+
+  @Setup
+  public void setUp() {
+    workload = Workloads.create("DepthFeedWorkload", mode, String.valueOf(resting));
+  }
+
+  @Benchmark
+  public int processAndPublish() {
+    return workload.getAsInt();
+  }
+}
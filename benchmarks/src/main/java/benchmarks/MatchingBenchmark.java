@@ -0,0 +1,44 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Сопоставление заявок в стакане одной акции, см. MatchingWorkload
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MatchingBenchmark {
+  @Param({"DEEP_BOOK", "CROSSING", "SELF_TRADE"})
+  String flow;
+  @Param({"10000", "1000000"})
+  int depth;
+
+  private IntSupplier workload;
+
+  @Setup
+  public void setUp() {
+    workload = Workloads.create("MatchingWorkload", flow, String.valueOf(depth));
+  }
+
+  @Benchmark
+  public int addAndProcess() {
+    return workload.getAsInt();
+  }
+}
@@ -0,0 +1,45 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Пропуск собственных заявок при сопоставлении в зависимости от их количества, см. SelfTradeWorkload.
+ * Стоимость операции зависит от количества уровней с заявками маркет-мейкера, но не от количества заявок на них.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SelfTradeBenchmark {
+  @Param({"1", "100", "10000", "1000000"})
+  int selfOrders;
+  @Param({"1", "10"})
+  int levels;
+
+  private IntSupplier workload;
+
+  @Setup
+  public void setUp() {
+    workload = Workloads.create("SelfTradeWorkload", String.valueOf(selfOrders), String.valueOf(levels));
+  }
+
+  @Benchmark
+  public int skipSelfOrders() {
+    return workload.getAsInt();
+  }
+}
@@ -0,0 +1,26 @@
+package benchmarks;
+
+import java.util.function.IntSupplier;
+
+/**
+ * Создание нагрузок. Классы эмулятора находятся в пакете по умолчанию, а JMH требует именованный пакет
+ * для бенчмарков, поэтому нагрузки лежат в пакете по умолчанию и создаются по имени класса.
+ */
+final class Workloads {
+  private Workloads() {
+  }
+
+  /**
+   * Создает нагрузку
+   * @param className имя класса нагрузки в пакете по умолчанию
+   * @param args параметры нагрузки
+   * @return операция нагрузки
+   */
+  static IntSupplier create(String className, String... args) {
+    try {
+      return (IntSupplier) Class.forName(className).getConstructor(String[].class).newInstance((Object) args);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Не удалось создать нагрузку " + className, e);
+    }
+  }
+}
@@ -0,0 +1,158 @@
+import java.util.Arrays;
+
+/**
+ * Колоночное хранилище счетов: баланс, масштаб баланса и количество каждой акции лежат в отдельных
+ * массивах примитивов, индексированных номером клиента. Колонка акции создается при первой позиции по акции.
+ * Счет занимает несколько десятков байт без отдельных объектов, расчет сделки обращается к соседним
+ * элементам массивов, а просмотр всей базы идет последовательно по колонкам.
+ */
+public class AccountColumns extends AccountStore {
+  /**
+   * Признак отсутствия счета в колонке масштабов
+   */
+  private static final byte NO_ACCOUNT = -1;
+
+  private long[] amounts;
+  private byte[] scales;
+  private boolean[] dirty;
+  private volatile int[][] stockColumns;
+  private int size;
+
+  /**
+   * @param capacity ожидаемое количество клиентов
+   */
+  public AccountColumns(int capacity) {
+    allocate(capacity);
+  }
+
+  private void allocate(int capacity) {
+    capacity = Math.max(16, capacity);
+    amounts = new long[capacity];
+    scales = new byte[capacity];
+    Arrays.fill(scales, NO_ACCOUNT);
+    dirty = new boolean[capacity];
+    stockColumns = new int[0][];
+    size = 0;
+  }
+
+  @Override
+  synchronized void clear(int expectedClients) {
+    allocate(expectedClients);
+    clearDirty();
+  }
+
+  @Override
+  void store(int clientId, long amount, int scale, int[] stocks) {
+    if (clientId >= amounts.length) {
+      grow(clientId);
+    }
+    if (scales[clientId] == NO_ACCOUNT) {
+      size++;
+    }
+    amounts[clientId] = amount;
+    scales[clientId] = (byte) scale;
+    int[][] columns = stockColumns;
+    for (int stockId = 0; stockId < Math.max(columns.length, stocks.length); stockId++) {
+      int count = stockId < stocks.length ? stocks[stockId] : ClientBalance.ABSENT;
+      if (stockId < columns.length && columns[stockId] != null) {
+        columns[stockId][clientId] = count;
+      } else if (count != ClientBalance.ABSENT) {
+        column(stockId)[clientId] = count;
+      }
+    }
+  }
+
+  private void grow(int clientId) {
+    int length = amounts.length;
+    int capacity = Math.max(length * 2, clientId + 1);
+    amounts = Arrays.copyOf(amounts, capacity);
+    scales = Arrays.copyOf(scales, capacity);
+    Arrays.fill(scales, length, capacity, NO_ACCOUNT);
+    dirty = Arrays.copyOf(dirty, capacity);
+    int[][] columns = stockColumns.clone();
+    for (int stockId = 0; stockId < columns.length; stockId++) {
+      if (columns[stockId] != null) {
+        columns[stockId] = Arrays.copyOf(columns[stockId], capacity);
+        Arrays.fill(columns[stockId], length, capacity, ClientBalance.ABSENT);
+      }
+    }
+    stockColumns = columns;
+  }
+
+  /**
+   * Колонка акции, при отсутствии создается
+   */
+  private int[] column(int stockId) {
+    int[][] columns = stockColumns;
+    if (stockId < columns.length && columns[stockId] != null) {
+      return columns[stockId];
+    }
+    synchronized (this) {
+      columns = stockColumns;
+      if (stockId < columns.length && columns[stockId] != null) {
+        return columns[stockId];
+      }
+      int[] column = new int[amounts.length];
+      Arrays.fill(column, ClientBalance.ABSENT);
+      columns = Arrays.copyOf(columns, Math.max(columns.length, stockId + 1));
+      columns[stockId] = column;
+      stockColumns = columns;
+      return column;
+    }
+  }
+
+  @Override
+  public boolean contains(int clientId) {
+    return clientId >= 0 && clientId < scales.length && scales[clientId] != NO_ACCOUNT;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  int capacity() {
+    return amounts.length;
+  }
+
+  @Override
+  public long amount(int clientId) {
+    return amounts[clientId];
+  }
+
+  @Override
+  public int scale(int clientId) {
+    return scales[clientId];
+  }
+
+  @Override
+  public int stockCount(int clientId, int stockId) {
+    int[][] columns = stockColumns;
+    if (stockId < 0 || stockId >= columns.length || columns[stockId] == null) {
+      return ClientBalance.ABSENT;
+    }
+    return columns[stockId][clientId];
+  }
+
+  @Override
+  void setAmount(int clientId, long amount, int scale) {
+    amounts[clientId] = amount;
+    scales[clientId] = (byte) scale;
+  }
+
+  @Override
+  void setStockCount(int clientId, int stockId, int count) {
+    column(stockId)[clientId] = count;
+  }
+
+  @Override
+  boolean isDirty(int clientId) {
+    return dirty[clientId];
+  }
+
+  @Override
+  void setDirty(int clientId, boolean dirty) {
+    this.dirty[clientId] = dirty;
+  }
+}
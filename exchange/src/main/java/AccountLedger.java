@@ -0,0 +1,354 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Хранилище счетов вне кучи: у каждого клиента запись фиксированной длины по номеру клиента в прямых буферах
+ * или в файле, отображенном в память. Память кучи не зависит от количества счетов, кроме словаря имен клиентов.
+ *
+ * Записи разбиты на сегменты по {@link #SEGMENT_RECORDS} записей, сегменты добавляются по мере роста номеров.
+ * Структура записи (порядок байтов little-endian):
+ * <ol>
+ *   <li>баланс в единицах {@link FixedPoint}, 8 байт;</li>
+ *   <li>признак наличия счета, масштаб баланса, признак изменения после контрольной точки, по байту;</li>
+ *   <li>количество акций по номерам акций, 4 байта на акцию, хранится количество + 1,
+ *   поэтому нулевая запись означает отсутствие счета и позиций.</li>
+ * </ol>
+ * Количество акций в записи задается при создании хранилища и не меняется.
+ *
+ * Файловое хранилище переживает перезапуск без повторной загрузки базы: рядом с файлом записей хранится
+ * файл имен акций и клиентов в порядке номеров, по нему восстанавливаются словари {@link ClientBase}.
+ * Открытые счета считаются измененными, поэтому первая контрольная точка {@link ClientBaseCheckpoint}
+ * содержит всю базу.
+ * Имена и записи сбрасываются на диск вызовом {@link #force()} и при закрытии. Изменения после последнего
+ * сброса при сбое восстанавливаются журналом {@link OrderJournal}.
+ */
+public class AccountLedger extends AccountStore implements AutoCloseable {
+  static final int MAGIC = 0x4c444731;
+  static final int VERSION = 1;
+  static final int HEADER_SIZE = 64;
+  /**
+   * Количество акций в записи по умолчанию
+   */
+  public static final int DEFAULT_STOCK_SLOTS = 8;
+  /**
+   * Количество записей в сегменте
+   */
+  static final int SEGMENT_RECORDS = 1 << 16;
+  private static final byte STOCK_NAME = 1;
+  private static final byte CLIENT_NAME = 2;
+  private static final int PRESENT = 8;
+  private static final int SCALE = 9;
+  private static final int DIRTY = 10;
+  private static final int STOCKS = 12;
+
+  private final ClientBase clientBase;
+  private final int stockSlots;
+  private final int recordSize;
+  private final FileChannel channel;
+  private final FileChannel names;
+  private volatile ByteBuffer[] segments = new ByteBuffer[0];
+  private int size;
+  private int capacity;
+  private int persistedStocks;
+  private int persistedClients;
+
+  /**
+   * Хранилище в прямых буферах без файла
+   * @param clientBase база, номера клиентов и акций которой используются
+   * @param stockSlots количество акций в записи
+   */
+  AccountLedger(ClientBase clientBase, int stockSlots) {
+    this.clientBase = clientBase;
+    this.stockSlots = stockSlots;
+    this.recordSize = recordSize(stockSlots);
+    this.channel = null;
+    this.names = null;
+  }
+
+  /**
+   * Открытие файлового хранилища. Если файл уже содержит записи, словари базы восстанавливаются из файла имен.
+   * @param clientBase база с пустым словарем клиентов
+   * @param file файл записей, файл имен имеет то же имя с расширением .names
+   * @param stockSlots количество акций в записи для нового файла
+   * @throws IOException ошибка чтения или записи файла
+   * @throws IllegalArgumentException файл не является хранилищем счетов или записан с другим масштабом
+   */
+  AccountLedger(ClientBase clientBase, File file, int stockSlots) throws IOException {
+    this.clientBase = clientBase;
+    this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+    this.names = FileChannel.open(namesFile(file).toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    if (channel.size() == 0) {
+      header.putInt(MAGIC).putInt(VERSION).putInt(FixedPoint.SCALE).putInt(stockSlots).clear();
+      channel.write(header, 0);
+      names.truncate(0);
+    } else {
+      while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+      }
+      if (header.hasRemaining() || header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+        throw new IllegalArgumentException("Файл не является хранилищем счетов: " + file);
+      }
+      if (header.getInt(8) != FixedPoint.SCALE) {
+        throw new IllegalArgumentException("Хранилище записано с масштабом цен " + header.getInt(8)
+            + ", текущий масштаб " + FixedPoint.SCALE);
+      }
+      stockSlots = header.getInt(12);
+    }
+    this.stockSlots = stockSlots;
+    this.recordSize = recordSize(stockSlots);
+    readNames();
+    long records = (channel.size() - HEADER_SIZE) / recordSize;
+    int known = clientBase.getClientDictionary().size();
+    if (records > 0) {
+      segment((int) records - 1);
+    }
+    for (int clientId = 0; clientId < capacity; clientId++) {
+      if (contains(clientId)) {
+        setDirty(clientId, false);
+        if (clientId >= known) {
+          record(clientId).put(offset(clientId) + PRESENT, (byte) 0);
+        } else {
+          size++;
+          markDirty(clientId);
+        }
+      }
+    }
+  }
+
+  static File namesFile(File file) {
+    return new File(file.getPath() + ".names");
+  }
+
+  private static int recordSize(int stockSlots) {
+    if (stockSlots < 1) {
+      throw new IllegalArgumentException("Количество акций в записи должно быть положительным");
+    }
+    return (STOCKS + 4 * stockSlots + 7) / 8 * 8;
+  }
+
+  /**
+   * Восстановление словарей базы из файла имен. Неполная запись в конце файла, оставшаяся после сбоя, отбрасывается.
+   */
+  private void readNames() throws IOException {
+    NameDictionary stocks = clientBase.getStockDictionary();
+    NameDictionary clients = clientBase.getClientDictionary();
+    ByteBuffer buffer = names.map(FileChannel.MapMode.READ_ONLY, 0, names.size()).order(ByteOrder.LITTLE_ENDIAN);
+    while (buffer.remaining() >= 5) {
+      int start = buffer.position();
+      byte type = buffer.get();
+      int length = buffer.getInt();
+      if (length < 0 || buffer.remaining() < length) {
+        buffer.position(start);
+        break;
+      }
+      byte[] bytes = new byte[length];
+      buffer.get(bytes);
+      String name = new String(bytes, StandardCharsets.UTF_8);
+      NameDictionary dictionary = type == STOCK_NAME ? stocks : clients;
+      int expected = type == STOCK_NAME ? persistedStocks++ : persistedClients++;
+      if (dictionary.id(name) != expected) {
+        throw new IllegalStateException("Номер " + name + " в словаре не совпадает с хранилищем счетов");
+      }
+    }
+    names.truncate(buffer.position());
+    names.position(buffer.position());
+  }
+
+  /**
+   * Дописывание в файл имен акций и клиентов, получивших номера после предыдущего сброса
+   */
+  private void writeNames() throws IOException {
+    NameDictionary stocks = clientBase.getStockDictionary();
+    NameDictionary clients = clientBase.getClientDictionary();
+    while (persistedStocks < stocks.size()) {
+      writeName(STOCK_NAME, stocks.name(persistedStocks++));
+    }
+    while (persistedClients < clients.size()) {
+      writeName(CLIENT_NAME, clients.name(persistedClients++));
+    }
+  }
+
+  private void writeName(byte type, String name) throws IOException {
+    byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+    ByteBuffer buffer = ByteBuffer.allocate(5 + bytes.length).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.put(type).putInt(bytes.length).put(bytes).flip();
+    while (buffer.hasRemaining()) {
+      names.write(buffer);
+    }
+  }
+
+  /**
+   * Сброс имен и записей на диск. Для хранилища без файла ничего не делает.
+   * @throws IOException ошибка записи файла
+   */
+  public synchronized void force() throws IOException {
+    if (channel == null) {
+      return;
+    }
+    writeNames();
+    names.force(false);
+    for (ByteBuffer segment : segments) {
+      ((MappedByteBuffer) segment).force();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (channel == null) {
+      return;
+    }
+    try {
+      force();
+    } finally {
+      channel.close();
+      names.close();
+    }
+  }
+
+  /**
+   * Сегмент с записью клиента, при отсутствии сегменты добавляются
+   */
+  private ByteBuffer segment(int clientId) throws IOException {
+    int index = clientId / SEGMENT_RECORDS;
+    ByteBuffer[] current = segments;
+    if (index < current.length) {
+      return current[index];
+    }
+    synchronized (this) {
+      current = segments;
+      if (index >= current.length) {
+        current = Arrays.copyOf(current, index + 1);
+        for (int i = segments.length; i <= index; i++) {
+          int length = SEGMENT_RECORDS * recordSize;
+          current[i] = channel == null ? ByteBuffer.allocateDirect(length)
+              : channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + (long) i * length, length);
+          current[i].order(ByteOrder.LITTLE_ENDIAN);
+        }
+        segments = current;
+        capacity = current.length * SEGMENT_RECORDS;
+      }
+      return current[index];
+    }
+  }
+
+  private ByteBuffer record(int clientId) {
+    return segments[clientId / SEGMENT_RECORDS];
+  }
+
+  private int offset(int clientId) {
+    return clientId % SEGMENT_RECORDS * recordSize;
+  }
+
+  @Override
+  synchronized void clear(int expectedClients) {
+    segments = new ByteBuffer[0];
+    capacity = 0;
+    size = 0;
+    persistedStocks = 0;
+    persistedClients = 0;
+    clearDirty();
+    if (channel != null) {
+      try {
+        channel.truncate(HEADER_SIZE);
+        names.truncate(0);
+        names.position(0);
+      } catch (IOException e) {
+        throw new IllegalStateException("Ошибка очистки хранилища счетов", e);
+      }
+    }
+  }
+
+  @Override
+  void store(int clientId, long amount, int scale, int[] stocks) {
+    for (int stockId = stockSlots; stockId < stocks.length; stockId++) {
+      if (stocks[stockId] != ClientBalance.ABSENT) {
+        throw new IllegalStateException("В записи хранилища счетов нет места под акцию с номером " + stockId);
+      }
+    }
+    ByteBuffer record;
+    try {
+      record = segment(clientId);
+    } catch (IOException e) {
+      throw new IllegalStateException("Ошибка отображения хранилища счетов", e);
+    }
+    int offset = offset(clientId);
+    if (record.get(offset + PRESENT) == 0) {
+      size++;
+    }
+    record.putLong(offset, amount);
+    record.put(offset + PRESENT, (byte) 1);
+    record.put(offset + SCALE, (byte) scale);
+    for (int stockId = 0; stockId < stockSlots; stockId++) {
+      int count = stockId < stocks.length ? stocks[stockId] : ClientBalance.ABSENT;
+      record.putInt(offset + STOCKS + 4 * stockId, count + 1);
+    }
+  }
+
+  @Override
+  public boolean contains(int clientId) {
+    return clientId >= 0 && clientId < capacity && record(clientId).get(offset(clientId) + PRESENT) != 0;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  int capacity() {
+    return capacity;
+  }
+
+  @Override
+  public long amount(int clientId) {
+    return record(clientId).getLong(offset(clientId));
+  }
+
+  @Override
+  public int scale(int clientId) {
+    return record(clientId).get(offset(clientId) + SCALE);
+  }
+
+  @Override
+  public int stockCount(int clientId, int stockId) {
+    if (stockId < 0 || stockId >= stockSlots) {
+      return ClientBalance.ABSENT;
+    }
+    return record(clientId).getInt(offset(clientId) + STOCKS + 4 * stockId) - 1;
+  }
+
+  @Override
+  void setAmount(int clientId, long amount, int scale) {
+    ByteBuffer record = record(clientId);
+    int offset = offset(clientId);
+    record.putLong(offset, amount);
+    record.put(offset + SCALE, (byte) scale);
+  }
+
+  @Override
+  void setStockCount(int clientId, int stockId, int count) {
+    if (stockId >= stockSlots) {
+      throw new IllegalStateException("В записи хранилища счетов нет места под акцию с номером " + stockId);
+    }
+    record(clientId).putInt(offset(clientId) + STOCKS + 4 * stockId, count + 1);
+  }
+
+  @Override
+  boolean isDirty(int clientId) {
+    return record(clientId).get(offset(clientId) + DIRTY) != 0;
+  }
+
+  @Override
+  void setDirty(int clientId, boolean dirty) {
+    record(clientId).put(offset(clientId) + DIRTY, (byte) (dirty ? 1 : 0));
+  }
+}
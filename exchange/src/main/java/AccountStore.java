@@ -0,0 +1,244 @@
+import java.util.Arrays;
+
+/**
+ * Хранилище счетов с доступом по номеру клиента, без объекта {@link ClientBalance} на клиента.
+ * {@link ClientBalance} в такой базе - легкое представление над строкой хранилища.
+ * Наследники хранят баланс, масштаб баланса, количества акций и признак изменения счета,
+ * расчет сделок, список измененных счетов и просмотр всей базы общие.
+ *
+ * Сделки по одному клиенту синхронизированы блокировкой из набора {@link #LOCK_STRIPES} блокировок
+ * по номеру клиента, так как в {@link ParallelExchange} по клиенту одновременно могут проходить сделки
+ * по разным акциям. Добавление счетов выполняется до начала обработки заявок.
+ */
+public abstract class AccountStore {
+  /**
+   * Количество блокировок для синхронизации сделок
+   */
+  static final int LOCK_STRIPES = 256;
+
+  private final Object[] locks = new Object[LOCK_STRIPES];
+  /**
+   * Номера счетов, измененных после последней контрольной точки, в порядке первого изменения
+   */
+  private int[] dirtyIds = new int[16];
+  private int dirtyCount;
+
+  protected AccountStore() {
+    for (int i = 0; i < locks.length; i++) {
+      locks[i] = new Object();
+    }
+  }
+
+  /**
+   * Проверка наличия счета
+   * @param clientId номер клиента
+   * @return true, если у клиента есть счет
+   */
+  public abstract boolean contains(int clientId);
+
+  /**
+   * Возвращает количество счетов
+   * @return количество счетов
+   */
+  public abstract int size();
+
+  /**
+   * Возвращает баланс клиента
+   * @param clientId номер клиента
+   * @return баланс в единицах {@link FixedPoint}
+   */
+  public abstract long amount(int clientId);
+
+  /**
+   * Возвращает масштаб баланса для вывода
+   * @param clientId номер клиента
+   * @return количество знаков после запятой
+   */
+  public abstract int scale(int clientId);
+
+  /**
+   * Возвращает количество акций у клиента
+   * @param clientId номер клиента
+   * @param stockId номер акции
+   * @return количество акций или {@link ClientBalance#ABSENT}, если позиции по акции нет
+   */
+  public abstract int stockCount(int clientId, int stockId);
+
+  /**
+   * Граница номеров клиентов, среди которых есть счета
+   */
+  abstract int capacity();
+
+  /**
+   * Запись баланса и масштаба существующего счета
+   */
+  abstract void setAmount(int clientId, long amount, int scale);
+
+  /**
+   * Запись количества акций существующего счета
+   */
+  abstract void setStockCount(int clientId, int stockId, int count);
+
+  /**
+   * Создание или замена счета без отметки об изменении
+   */
+  abstract void store(int clientId, long amount, int scale, int[] stocks);
+
+  /**
+   * Признак изменения счета после последней контрольной точки
+   */
+  abstract boolean isDirty(int clientId);
+
+  abstract void setDirty(int clientId, boolean dirty);
+
+  /**
+   * Удаление всех счетов
+   * @param expectedClients ожидаемое количество клиентов
+   */
+  abstract void clear(int expectedClients);
+
+  /**
+   * Запись счета, прежний счет клиента с тем же номером заменяется. Новый счет считается измененным.
+   * @param clientId номер клиента
+   * @param amount баланс в единицах {@link FixedPoint}
+   * @param scale масштаб баланса для вывода
+   * @param stocks количество акций по номеру акции, {@link ClientBalance#ABSENT} при отсутствии позиции
+   */
+  synchronized void put(int clientId, long amount, int scale, int[] stocks) {
+    if (scale < 0 || scale > Byte.MAX_VALUE) {
+      throw new IllegalArgumentException("Некорректный масштаб баланса " + scale);
+    }
+    store(clientId, amount, scale, stocks);
+    markDirty(clientId);
+  }
+
+  /**
+   * Номера клиентов со счетами по возрастанию
+   * @return номера клиентов
+   */
+  int[] ids() {
+    int[] ids = new int[size()];
+    int count = 0;
+    for (int clientId = 0; clientId < capacity() && count < ids.length; clientId++) {
+      if (contains(clientId)) {
+        ids[count++] = clientId;
+      }
+    }
+    return ids;
+  }
+
+  /**
+   * Покупка акции клиентом
+   * @param clientId номер клиента
+   * @param stockId номер акции
+   * @param price цена за одну акцию в единицах {@link FixedPoint}
+   * @param priceScale масштаб цены для вывода
+   * @param count количество акций на покупку
+   */
+  void bay(int clientId, int stockId, long price, int priceScale, int count) {
+    long fullPrice = FixedPoint.multiply(price, count);
+    synchronized (lock(clientId)) {
+      int stockCountCurrent = Math.max(stockCount(clientId, stockId), 0) + count;
+      long amount = Math.subtractExact(amount(clientId), fullPrice);
+      setStockCount(clientId, stockId, stockCountCurrent);
+      setAmount(clientId, amount, Math.max(scale(clientId), priceScale));
+    }
+    markDirty(clientId);
+  }
+
+  /**
+   * Продажа акций клиентом
+   * @param clientId номер клиента
+   * @param stockId номер акции
+   * @param price цена в единицах {@link FixedPoint}
+   * @param priceScale масштаб цены для вывода
+   * @param count количество акций
+   */
+  void sell(int clientId, int stockId, long price, int priceScale, int count) {
+    synchronized (lock(clientId)) {
+      int stockCountCurrent = stockCount(clientId, stockId);
+      if (stockCountCurrent == ClientBalance.ABSENT) {
+        throw new IllegalArgumentException("У клиента нет заявленных акций");
+      }
+      if (stockCountCurrent < count) {
+        throw new IllegalArgumentException("У клиента меньше акций, чем заявлено на продажу");
+      }
+      long amount = Math.addExact(amount(clientId), FixedPoint.multiply(price, count));
+      setStockCount(clientId, stockId, stockCountCurrent - count);
+      setAmount(clientId, amount, Math.max(scale(clientId), priceScale));
+    }
+    markDirty(clientId);
+  }
+
+  private Object lock(int clientId) {
+    return locks[clientId & (LOCK_STRIPES - 1)];
+  }
+
+  /**
+   * Сумма балансов всех счетов
+   * @return сумма в единицах {@link FixedPoint}
+   */
+  public long totalAmount() {
+    long total = 0;
+    for (int clientId = 0; clientId < capacity(); clientId++) {
+      if (contains(clientId)) {
+        total = Math.addExact(total, amount(clientId));
+      }
+    }
+    return total;
+  }
+
+  /**
+   * Общее количество акции на всех счетах
+   * @param stockId номер акции
+   * @return количество акций
+   */
+  public long totalStock(int stockId) {
+    long total = 0;
+    for (int clientId = 0; clientId < capacity(); clientId++) {
+      int count = stockCount(clientId, stockId);
+      if (count > 0) {
+        total += count;
+      }
+    }
+    return total;
+  }
+
+  /**
+   * Отмечает счет измененным, номер попадает в список один раз до очередной контрольной точки
+   */
+  void markDirty(int clientId) {
+    if (!isDirty(clientId)) {
+      synchronized (this) {
+        if (!isDirty(clientId)) {
+          setDirty(clientId, true);
+          if (dirtyCount == dirtyIds.length) {
+            dirtyIds = Arrays.copyOf(dirtyIds, dirtyCount * 2);
+          }
+          dirtyIds[dirtyCount++] = clientId;
+        }
+      }
+    }
+  }
+
+  /**
+   * Забирает номера счетов, измененных после последней контрольной точки
+   * @return номера клиентов в порядке первого изменения
+   */
+  synchronized int[] drainDirty() {
+    int[] drained = Arrays.copyOf(dirtyIds, dirtyCount);
+    for (int clientId : drained) {
+      setDirty(clientId, false);
+    }
+    dirtyCount = 0;
+    return drained;
+  }
+
+  /**
+   * Сбрасывает список измененных счетов вместе с удалением счетов
+   */
+  synchronized void clearDirty() {
+    dirtyIds = new int[16];
+    dirtyCount = 0;
+  }
+}
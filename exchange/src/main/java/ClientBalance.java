@@ -0,0 +1,541 @@
+import java.math.BigDecimal;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Инфомация по клиету, баланс в долларах и список акций.
+ * Операции покупки и продажи синхронизированы, так как в {@link ParallelExchange} по одному клиенту
+ * одновременно могут проходить сделки по разным акциям. Остальные методы рассчитаны на вызов
+ * после окончания обработки заявок.
+ * Исходные данные:
+ * <ol>
+ *    <li> Количество денег на счете может быть дробным числом</li>
+ *    <li> Цена акции может быть дробным числом</li>
+ *    <li> Количство акций только целое (дробные акции не рассматриваются)</li>
+ * </ol>
+ * Суммы и цены хранятся в формате с фиксированной точкой {@link FixedPoint}, вместе с суммой хранится
+ * масштаб для вывода: наибольшее количество знаков после запятой среди исходной суммы и цен сделок.
+ *
+ * Количество акций хранится в массиве, индексированном номером акции в словаре {@link NameDictionary}.
+ * Отсутствие позиции по акции отличается от нулевой позиции и обозначается {@link #ABSENT}.
+ *
+ * В базе с хранилищем счетов {@link ClientBase#getAccountStore()} счет является представлением строки
+ * {@link AccountStore}: собственных данных у него нет, операции читают и изменяют хранилище.
+ */
+public class ClientBalance {
+  /**
+   * Признак отсутствия позиции по акции
+   */
+  static final int ABSENT = -1;
+
+  private long amount;
+  private int scale;
+  private String name;
+  private NameDictionary stockDictionary;
+  private int[] stocks;
+  private Map<String, Integer> stocksView;
+  /**
+   * База, которой сообщается об изменении счета, и признак изменения после последней контрольной точки
+   */
+  private ClientBase owner;
+  private boolean dirty;
+  /**
+   * Хранилище и номер клиента для представления строки колоночной базы
+   */
+  private AccountStore store;
+  private int clientId;
+
+  private ClientBalance(long amount, int scale) {
+    this.amount = amount;
+    this.scale = scale;
+  }
+
+  /**
+   * Возвращает имя клиента
+   * @return имя клиента
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Покупка акции клиентом
+   * @param stockName имя акции
+   * @param price цена за одну акцию
+   * @param count количество акций на покупку
+   * @throws IllegalArgumentException ошибка в случае нехватка денег на счету у клиента для покупки новой позиции
+   */
+  public void bay(String stockName, Integer price, Integer count) {
+    bay(stockName, FixedPoint.valueOf(price), 0, count);
+  }
+
+  /**
+   * Покупка акции клиентом
+   * @param stockName имя акции
+   * @param price цена за одну акцию
+   * @param count количество акций на покупку
+   * @throws IllegalArgumentException ошибка в случае нехватка денег на счету у клиента для покупки новой позиции
+   */
+  public void bay(String stockName, BigDecimal price, Integer count) {
+    bay(stockName, FixedPoint.valueOf(price), FixedPoint.scaleOf(price), count);
+  }
+
+  /**
+   * Покупка акции клиентом
+   * @param stockName имя акции
+   * @param price цена за одну акцию в единицах {@link FixedPoint}
+   * @param priceScale масштаб цены для вывода
+   * @param count количество акций на покупку
+   */
+  public void bay(String stockName, long price, int priceScale, int count) {
+    bay(stockDictionary.id(stockName), price, priceScale, count);
+  }
+
+  /**
+   * Покупка акции клиентом
+   * @param stockId номер акции в словаре акций клиента
+   * @param price цена за одну акцию в единицах {@link FixedPoint}
+   * @param priceScale масштаб цены для вывода
+   * @param count количество акций на покупку
+   */
+  public void bay(int stockId, long price, int priceScale, int count) {
+    if (store != null) {
+      store.bay(clientId, stockId, price, priceScale, count);
+      return;
+    }
+    bayOwn(stockId, price, priceScale, count);
+  }
+
+  private synchronized void bayOwn(int stockId, long price, int priceScale, int count) {
+    long fullPrice = FixedPoint.multiply(price, count);
+
+    if (stockId >= stocks.length) {
+      grow(stockId);
+    }
+    int stockCountCurrent = Math.max(stocks[stockId], 0) + count;
+
+    amount = Math.subtractExact(amount, fullPrice);
+    scale = Math.max(scale, priceScale);
+    stocks[stockId] = stockCountCurrent;
+    markDirty();
+  }
+
+  /**
+   * Продажа акций клиентом
+   * @param stockName имя акции
+   * @param price цена
+   * @param count количество акций
+   */
+  public void sell(String stockName, Integer price, Integer count) {
+    sell(stockName, FixedPoint.valueOf(price), 0, count);
+  }
+
+  /**
+   * Продажа акций клиентом
+   * @param stockName имя акции
+   * @param price цена
+   * @param count количество акций
+   */
+  public void sell(String stockName, BigDecimal price, Integer count) {
+    sell(stockName, FixedPoint.valueOf(price), FixedPoint.scaleOf(price), count);
+  }
+
+  /**
+   * Продажа акций клиентом
+   * @param stockName имя акции
+   * @param price цена в единицах {@link FixedPoint}
+   * @param priceScale масштаб цены для вывода
+   * @param count количество акций
+   */
+  public void sell(String stockName, long price, int priceScale, int count) {
+    sell(stockDictionary.find(stockName), price, priceScale, count);
+  }
+
+  /**
+   * Продажа акций клиентом
+   * @param stockId номер акции в словаре акций клиента
+   * @param price цена в единицах {@link FixedPoint}
+   * @param priceScale масштаб цены для вывода
+   * @param count количество акций
+   */
+  public void sell(int stockId, long price, int priceScale, int count) {
+    if (store != null) {
+      store.sell(clientId, stockId, price, priceScale, count);
+      return;
+    }
+    sellOwn(stockId, price, priceScale, count);
+  }
+
+  private synchronized void sellOwn(int stockId, long price, int priceScale, int count) {
+    int stockCountCurrent = getStockCount(stockId);
+    if (stockCountCurrent == ABSENT) {
+      throw new IllegalArgumentException("У клиента нет заявленных акций");
+    }
+    if (stockCountCurrent < count) {
+      throw new IllegalArgumentException("У клиента меньше акций, чем заявлено на продажу");
+    }
+    stockCountCurrent -= count;
+    long fullPrice = FixedPoint.multiply(price, count);
+
+    amount = Math.addExact(amount, fullPrice);
+    scale = Math.max(scale, priceScale);
+    stocks[stockId] = stockCountCurrent;
+    markDirty();
+  }
+
+  /**
+   * Отмечает счет измененным. База получает счет один раз до очередной контрольной точки.
+   */
+  private void markDirty() {
+    if (!dirty && owner != null) {
+      dirty = true;
+      owner.markDirty(this);
+    }
+  }
+
+  /**
+   * Привязка счета к базе клиентов, новый счет считается измененным
+   * @param clientBase база клиентов
+   */
+  synchronized void track(ClientBase clientBase) {
+    owner = clientBase;
+    dirty = false;
+    markDirty();
+  }
+
+  /**
+   * Снимает признак изменения счета при записи контрольной точки.
+   * Вызывается под блокировкой счета вместе с чтением его состояния.
+   */
+  void clean() {
+    dirty = false;
+  }
+
+  /**
+   * Возвращает количество акций у клиента
+   * @param stockId номер акции в словаре акций клиента
+   * @return количество акций или {@link #ABSENT}, если позиции по акции нет
+   */
+  public int getStockCount(int stockId) {
+    if (store != null) {
+      return store.stockCount(clientId, stockId);
+    }
+    return stockId >= 0 && stockId < stocks.length ? stocks[stockId] : ABSENT;
+  }
+
+  private void grow(int stockId) {
+    int length = stocks.length;
+    stocks = Arrays.copyOf(stocks, Math.max(length * 2, stockId + 1));
+    Arrays.fill(stocks, length, stocks.length, ABSENT);
+  }
+
+  /**
+   * Перевод позиций на другой словарь акций, например при добавлении клиента в {@link ClientBase}
+   * @param dictionary новый словарь акций
+   */
+  synchronized void rebind(NameDictionary dictionary) {
+    if (dictionary == stockDictionary || store != null) {
+      return;
+    }
+    int[] current = stocks;
+    NameDictionary currentDictionary = stockDictionary;
+    stocks = new int[0];
+    stockDictionary = dictionary;
+    for (int id = 0; id < current.length; id++) {
+      if (current[id] != ABSENT) {
+        int newId = dictionary.id(currentDictionary.name(id));
+        if (newId >= stocks.length) {
+          grow(newId);
+        }
+        stocks[newId] = current[id];
+      }
+    }
+    stocksView = null;
+  }
+
+  /**
+   * Перенос счета в хранилище, после переноса счет становится представлением строки хранилища
+   * @param store хранилище
+   * @param clientId номер клиента
+   * @param dictionary словарь акций базы
+   */
+  synchronized void attach(AccountStore store, int clientId, NameDictionary dictionary) {
+    if (this.store != null) {
+      if (this.store != store || this.clientId != clientId) {
+        throw new IllegalStateException("Счет " + name + " уже принадлежит другой базе");
+      }
+      return;
+    }
+    rebind(dictionary);
+    store.put(clientId, amount, scale, stocks);
+    this.store = store;
+    this.clientId = clientId;
+    stocks = null;
+    stocksView = null;
+  }
+
+  /**
+   * Представление строки хранилища счетов
+   * @param store хранилище
+   * @param clientId номер клиента
+   * @param name имя клиента
+   * @param dictionary словарь акций базы
+   * @return {@link ClientBalance}
+   */
+  static ClientBalance view(AccountStore store, int clientId, String name, NameDictionary dictionary) {
+    ClientBalance clientBalance = new ClientBalance(0, 0);
+    clientBalance.store = store;
+    clientBalance.clientId = clientId;
+    clientBalance.name = name;
+    clientBalance.stockDictionary = dictionary;
+    return clientBalance;
+  }
+
+  /**
+   * Возвращает баланс клиента
+   * @return баланс клиента
+   */
+  public BigDecimal getAmount() {
+    return FixedPoint.toBigDecimal(getAmountUnits(), getAmountScale());
+  }
+
+  /**
+   * Возвращает баланс клиента во внутреннем представлении
+   * @return баланс в единицах {@link FixedPoint}
+   */
+  public long getAmountUnits() {
+    if (store != null) {
+      return store.amount(clientId);
+    }
+    return amount;
+  }
+
+  /**
+   * Возвращает масштаб баланса для вывода
+   * @return количество знаков после запятой
+   */
+  public int getAmountScale() {
+    if (store != null) {
+      return store.scale(clientId);
+    }
+    return scale;
+  }
+
+  /**
+   * Возвращает список акций. Список является представлением позиций клиента только для чтения
+   * и отражает последующие изменения.
+   * @return список акций с количеством, по каждой акции
+   */
+  public Map<String, Integer> getStocks() {
+    if (stocksView == null) {
+      stocksView = new StocksView();
+    }
+    return stocksView;
+  }
+
+  /**
+   * Количество номеров акций, по которым может быть позиция
+   */
+  private int stockSlots() {
+    return store != null ? stockDictionary.size() : stocks.length;
+  }
+
+  /**
+   * Представление позиций клиента в виде {@link Map} с именами акций
+   */
+  private class StocksView extends AbstractMap<String, Integer> {
+    @Override
+    public Integer get(Object key) {
+      if (!(key instanceof String)) {
+        return null;
+      }
+      int count = getStockCount(stockDictionary.find((String) key));
+      return count == ABSENT ? null : count;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return get(key) != null;
+    }
+
+    @Override
+    public Set<Entry<String, Integer>> entrySet() {
+      return new AbstractSet<Entry<String, Integer>>() {
+        @Override
+        public Iterator<Entry<String, Integer>> iterator() {
+          return new Iterator<Entry<String, Integer>>() {
+            private int next = advance(0);
+
+            private int advance(int from) {
+              while (from < stockSlots() && getStockCount(from) == ABSENT) {
+                from++;
+              }
+              return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+              return next < stockSlots();
+            }
+
+            @Override
+            public Entry<String, Integer> next() {
+              if (!hasNext()) {
+                throw new NoSuchElementException();
+              }
+              Entry<String, Integer> entry = new SimpleImmutableEntry<>(stockDictionary.name(next),
+                  getStockCount(next));
+              next = advance(next + 1);
+              return entry;
+            }
+          };
+        }
+
+        @Override
+        public int size() {
+          int size = 0;
+          for (int stockId = 0; stockId < stockSlots(); stockId++) {
+            if (getStockCount(stockId) != ABSENT) {
+              size++;
+            }
+          }
+          return size;
+        }
+      };
+    }
+  }
+
+
+  /**
+   * Восстановление счета из снимка без проверок {@link Builder}: баланс после сделок может быть отрицательным
+   * @param name имя клиента
+   * @param amount баланс в единицах {@link FixedPoint}
+   * @param scale масштаб баланса для вывода
+   * @param stockDictionary словарь акций
+   * @param stocks количество акций по номеру акции, {@link #ABSENT} при отсутствии позиции
+   * @return {@link ClientBalance}
+   */
+  static ClientBalance restore(String name, long amount, int scale, NameDictionary stockDictionary, int[] stocks) {
+    ClientBalance clientBalance = new ClientBalance(amount, scale);
+    clientBalance.name = name;
+    clientBalance.stockDictionary = stockDictionary;
+    clientBalance.stocks = stocks;
+    return clientBalance;
+  }
+
+  /**
+   * Создает экземляр {@link Builder} для инициализации начальных данных по балансу клиента
+   * @return {@link Builder}
+   */
+  public static Builder newBuilder() {
+    return new ClientBalance.Builder();
+  }
+
+  /**
+   * Создает экземпляр {@link ClientBalance}
+   */
+  public static class Builder {
+    private long amount;
+    private int scale;
+    private String name = "";
+    private NameDictionary stockDictionary;
+    private int[] stocks = new int[0];
+
+    /**
+     * Указывает баланс в долларах по клиенту
+     * @param amount
+     * @return {@link Builder}
+     */
+    public Builder amount(BigDecimal amount) {
+      return amount(FixedPoint.valueOf(amount), FixedPoint.scaleOf(amount));
+    }
+
+    /**
+     * Указывает баланс в долларах по клиенту
+     * @param amount баланс в единицах {@link FixedPoint}
+     * @param scale масштаб баланса для вывода
+     * @return {@link Builder}
+     */
+    public Builder amount(long amount, int scale) {
+      if (amount < 0) {
+        throw new IllegalArgumentException("Не допускается указывать отрицательный баланс");
+      }
+      this.amount = amount;
+      this.scale = scale;
+      return this;
+    }
+
+    /**
+     * Указывает имя клиента
+     * @param name имя клиента
+     * @return {@link Builder}
+     */
+    public Builder name(String name) {
+      this.name = name;
+      return this;
+    }
+
+    /**
+     * Указывает словарь акций, по номерам которого хранятся позиции.
+     * По умолчанию у клиента собственный словарь, при добавлении в {@link ClientBase} позиции переводятся на словарь базы.
+     * @param stockDictionary словарь акций
+     * @return {@link Builder}
+     */
+    public Builder stockDictionary(NameDictionary stockDictionary) {
+      if (this.stockDictionary != null && this.stockDictionary != stockDictionary) {
+        throw new IllegalStateException("Словарь акций указывается до позиций по акциям");
+      }
+      this.stockDictionary = stockDictionary;
+      return this;
+    }
+
+    /**
+     * Инициализирует данные по акциям
+     * @param stockName имя акции
+     * @param count количество начальный акций
+     * @return {@link Builder}
+     */
+    public Builder stock(String stockName, Integer count) {
+      if (stockDictionary == null) {
+        stockDictionary = new NameDictionary();
+      }
+      return stock(stockDictionary.id(stockName), count);
+    }
+
+    /**
+     * Инициализирует данные по акциям
+     * @param stockId номер акции в словаре {@link #stockDictionary(NameDictionary)}
+     * @param count количество начальный акций
+     * @return {@link Builder}
+     */
+    public Builder stock(int stockId, int count) {
+      if (count < 0) {
+        throw new IllegalArgumentException("Не допускается указывать отрицательное количество акций");
+      }
+      if (stockId >= stocks.length) {
+        int length = stocks.length;
+        stocks = Arrays.copyOf(stocks, Math.max(length * 2, stockId + 1));
+        Arrays.fill(stocks, length, stocks.length, ABSENT);
+      }
+      stocks[stockId] = count;
+      return this;
+    }
+
+    /**
+     * Создает новый экземпляр {@link ClientBalance}
+     * @return {@link ClientBalance}
+     */
+    public ClientBalance build() {
+      ClientBalance clientBalance = new ClientBalance(amount, scale);
+      clientBalance.stockDictionary = stockDictionary == null ? new NameDictionary() : stockDictionary;
+      clientBalance.stocks = stocks.clone();
+      clientBalance.name = name;
+      return clientBalance;
+    }
+  }
+}
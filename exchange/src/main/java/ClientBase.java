@@ -0,0 +1,339 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * База с информацией по клиентам.
+ * Клиенты и акции получают номера в словарях {@link NameDictionary}, счета доступны по номеру клиента
+ * из массива, по имени - из индекса в порядке добавления.
+ *
+ * Колоночная база {@link #columnar()} и база вне кучи {@link #offHeap(File)} хранят счета в {@link AccountStore}
+ * без объекта на клиента: {@link ClientBalance} создается при обращении как представление строки хранилища,
+ * счета перечисляются в порядке номеров клиентов.
+ */
+public class ClientBase {
+  /**
+   * Акции, по которым хранятся позиции в файле с базой клиентов, в порядке следования колонок
+   */
+  static final String[] FILE_STOCKS = {"A", "B", "C", "D"};
+
+  private Map<String, ClientBalance> clientInfo = new LinkedHashMap<>();
+  private NameDictionary clients = new NameDictionary();
+  private final NameDictionary stocks = new NameDictionary();
+  private ClientBalance[] accounts = new ClientBalance[16];
+  /**
+   * Счета, измененные после последней контрольной точки {@link ClientBaseCheckpoint}
+   */
+  private List<ClientBalance> dirty = new ArrayList<>();
+  /**
+   * Хранилище счетов или null, если счета хранятся объектами
+   */
+  private AccountStore store;
+
+  public ClientBase() {
+    for (String stockName : FILE_STOCKS) {
+      stocks.id(stockName);
+    }
+  }
+
+  /**
+   * Создает базу с колоночным хранилищем счетов {@link AccountColumns}
+   * @return {@link ClientBase}
+   */
+  public static ClientBase columnar() {
+    ClientBase clientBase = new ClientBase();
+    clientBase.setStore(new AccountColumns(16));
+    return clientBase;
+  }
+
+  /**
+   * Создает базу со счетами вне кучи в прямых буферах {@link AccountLedger}
+   * @param stockSlots количество акций в записи счета
+   * @return {@link ClientBase}
+   */
+  public static ClientBase offHeap(int stockSlots) {
+    ClientBase clientBase = new ClientBase();
+    clientBase.setStore(new AccountLedger(clientBase, stockSlots));
+    return clientBase;
+  }
+
+  /**
+   * Открывает базу со счетами в файле {@link AccountLedger}, отображенном в память.
+   * Счета и словари имен, сохраненные в файле, доступны без загрузки базы.
+   * @param ledger файл хранилища счетов
+   * @param stockSlots количество акций в записи счета для нового файла, существующий файл хранит свое
+   * @return {@link ClientBase}
+   * @throws IOException ошибка чтения или записи файла
+   */
+  public static ClientBase offHeap(File ledger, int stockSlots) throws IOException {
+    ClientBase clientBase = new ClientBase();
+    clientBase.setStore(new AccountLedger(clientBase, ledger, stockSlots));
+    return clientBase;
+  }
+
+  private void setStore(AccountStore store) {
+    this.store = store;
+    clientInfo = new StoreView();
+  }
+  /**
+   * Разбор базы клиентов из файла, возвращает список клиентов с данными
+   * @param clientsInfo база клиентов из файла
+   * @return разобранная база клиентов в памяти
+   */
+  public Map<String, ClientBalance> initClientBase(File clientsInfo) {
+    return initClientBase(clientsInfo, 1);
+  }
+
+  /**
+   * Разбор базы клиентов из файла несколькими потоками, порядок клиентов совпадает с порядком строк файла
+   * @param clientsInfo база клиентов из файла
+   * @param threads количество потоков разбора
+   * @return разобранная база клиентов в памяти
+   */
+  public Map<String, ClientBalance> initClientBase(File clientsInfo, int threads) {
+    try {
+      new ClientBaseLoader(this, threads).load(clientsInfo);
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+    return clientInfo;
+  }
+
+  /**
+   * Очистка базы перед загрузкой с заранее выделенным местом под клиентов
+   * @param expectedClients ожидаемое количество клиентов
+   */
+  void reset(int expectedClients) {
+    clients = new NameDictionary(expectedClients);
+    if (store != null) {
+      store.clear(expectedClients);
+      return;
+    }
+    clientInfo = new LinkedHashMap<>(Math.max(16, (int) (expectedClients / 0.75f) + 1));
+    accounts = new ClientBalance[Math.max(16, expectedClients)];
+    drainDirty();
+    synchronized (this) {
+      dirty = new ArrayList<>(expectedClients);
+    }
+  }
+
+  /**
+   * Запись информации по клиентам в файл
+   * @param clientsBase результирующий файл с базой по счетам клиентов
+   */
+  public void clientToFile(File clientsBase) {
+    if (clientsBase.exists()) {
+      clientsBase.delete();
+    }
+    try {
+      new ClientBaseWriter().write(this, clientsBase);
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Строка файла с базой клиентов по счету клиента
+   * @param clientBalance счет клиента
+   * @return строка без перевода строки
+   */
+  static String clientLine(ClientBalance clientBalance) {
+    return String.format("%s\t%s\t%d\t%d\t%d\t%d",
+        clientBalance.getName(),
+        clientBalance.getAmount().toPlainString(),
+        fileStockCount(clientBalance, 0),
+        fileStockCount(clientBalance, 1),
+        fileStockCount(clientBalance, 2),
+        fileStockCount(clientBalance, 3));
+  }
+
+  /**
+   * Количество акций из колонки файла с базой клиентов, номера акций файла совпадают с номерами колонок
+   */
+  private static int fileStockCount(ClientBalance clientBalance, int stockId) {
+    return Math.max(clientBalance.getStockCount(stockId), 0);
+  }
+
+  /**
+   * Возвращает {@link ClientBalance} по имени клиента
+   * @param client имя клиента
+   * @return {@link ClientBalance}
+   */
+  public ClientBalance getClientBalance(String client) {
+    return clientInfo.get(client);
+  }
+
+  /**
+   * Возвращает {@link ClientBalance} по номеру клиента
+   * @param clientId номер клиента в словаре {@link #getClientDictionary()}
+   * @return {@link ClientBalance} или null, если клиента нет в базе
+   */
+  public ClientBalance getClientBalance(int clientId) {
+    if (store != null) {
+      return store.contains(clientId) ? ClientBalance.view(store, clientId, clients.name(clientId), stocks) : null;
+    }
+    return clientId < accounts.length ? accounts[clientId] : null;
+  }
+
+  /**
+   * Добавление данных по клиенту
+   * @param clientBalance {@link ClientBalance}
+   */
+  public void addClientBalance(ClientBalance clientBalance) {
+    clientBalance.rebind(stocks);
+    int id = clients.id(clientBalance.getName());
+    if (store != null) {
+      clientBalance.attach(store, id, stocks);
+      return;
+    }
+    if (id >= accounts.length) {
+      accounts = Arrays.copyOf(accounts, Math.max(accounts.length * 2, id + 1));
+    }
+    accounts[id] = clientBalance;
+    clientInfo.put(clientBalance.getName(), clientBalance);
+    clientBalance.track(this);
+  }
+
+  /**
+   * Добавляет счет в список измененных, вызывается счетом при первом изменении после контрольной точки
+   * @param clientBalance измененный счет
+   */
+  synchronized void markDirty(ClientBalance clientBalance) {
+    dirty.add(clientBalance);
+  }
+
+  /**
+   * Забирает список счетов, измененных после последней контрольной точки
+   * @return измененные счета в порядке первого изменения
+   */
+  synchronized List<ClientBalance> drainDirty() {
+    if (store != null) {
+      return views(store.drainDirty());
+    }
+    List<ClientBalance> drained = dirty;
+    dirty = new ArrayList<>();
+    return drained;
+  }
+
+  /**
+   * Возвращает счета клиентов в порядке добавления
+   * @return счета клиентов
+   */
+  Collection<ClientBalance> getClientBalances() {
+    return store != null ? views(store.ids()) : clientInfo.values();
+  }
+
+  /**
+   * Возвращает хранилище счетов
+   * @return {@link AccountStore} или null, если счета хранятся объектами
+   */
+  public AccountStore getAccountStore() {
+    return store;
+  }
+
+  /**
+   * Список представлений счетов хранилища по номерам клиентов
+   */
+  private List<ClientBalance> views(int[] ids) {
+    return new ViewList(ids, store, clients);
+  }
+
+  /**
+   * Возвращает словарь номеров клиентов
+   * @return {@link NameDictionary}
+   */
+  public NameDictionary getClientDictionary() {
+    return clients;
+  }
+
+  /**
+   * Возвращает словарь номеров акций
+   * @return {@link NameDictionary}
+   */
+  public NameDictionary getStockDictionary() {
+    return stocks;
+  }
+
+  /**
+   * Список представлений счетов с доступом по индексу, представления создаются при обращении
+   */
+  private class ViewList extends AbstractList<ClientBalance> implements RandomAccess {
+    private final int[] ids;
+    private final AccountStore store;
+    private final NameDictionary names;
+
+    ViewList(int[] ids, AccountStore store, NameDictionary names) {
+      this.ids = ids;
+      this.store = store;
+      this.names = names;
+    }
+
+    @Override
+    public ClientBalance get(int index) {
+      return ClientBalance.view(store, ids[index], names.name(ids[index]), stocks);
+    }
+
+    @Override
+    public int size() {
+      return ids.length;
+    }
+  }
+
+  /**
+   * Счета хранилища по имени клиента в порядке номеров клиентов
+   */
+  private class StoreView extends AbstractMap<String, ClientBalance> {
+    @Override
+    public ClientBalance get(Object key) {
+      return key instanceof String ? getClientBalance(clients.find((String) key)) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+      return store.size();
+    }
+
+    @Override
+    public Set<Entry<String, ClientBalance>> entrySet() {
+      return new AbstractSet<Entry<String, ClientBalance>>() {
+        @Override
+        public Iterator<Entry<String, ClientBalance>> iterator() {
+          Iterator<ClientBalance> balances = getClientBalances().iterator();
+          return new Iterator<Entry<String, ClientBalance>>() {
+            @Override
+            public boolean hasNext() {
+              return balances.hasNext();
+            }
+
+            @Override
+            public Entry<String, ClientBalance> next() {
+              ClientBalance balance = balances.next();
+              return new SimpleImmutableEntry<>(balance.getName(), balance);
+            }
+          };
+        }
+
+        @Override
+        public int size() {
+          return store.size();
+        }
+      };
+    }
+  }
+}
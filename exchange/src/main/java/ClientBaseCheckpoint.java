@@ -0,0 +1,260 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Контрольные точки базы клиентов. В каталоге хранится полный образ базы в формате
+ * {@link ClientBase#clientToFile(File)} и дельты: каждая контрольная точка записывает только счета,
+ * измененные после предыдущей. Уплотнение в фоновом потоке накладывает дельты на образ и удаляет их.
+ *
+ * Строки дельты имеют формат строк образа, более поздняя строка клиента заменяет прежнюю.
+ * Новые клиенты добавляются в конец образа в порядке появления, поэтому образ совпадает с результатом
+ * {@link ClientBase#clientToFile(File)}.
+ *
+ * Для согласованного образа контрольная точка делается между заявками, когда все переданные заявки обработаны.
+ */
+public class ClientBaseCheckpoint implements AutoCloseable {
+  /**
+   * Количество дельт, после которого запускается фоновое уплотнение
+   */
+  public static final int DEFAULT_COMPACTION_THRESHOLD = 8;
+  private static final String IMAGE = "image-";
+  private static final String DELTA = "delta-";
+  private static final String SUFFIX = ".txt";
+
+  private final ClientBase clientBase;
+  private final File directory;
+  private final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "client-base-compactor");
+    thread.setDaemon(true);
+    return thread;
+  });
+  private int compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+  private long sequence;
+  private int deltasSinceCompaction;
+
+  /**
+   * Открытие каталога контрольных точек, нумерация дельт продолжается после существующих файлов
+   * @param clientBase база клиентов
+   * @param directory каталог контрольных точек
+   */
+  public ClientBaseCheckpoint(ClientBase clientBase, File directory) {
+    this.clientBase = clientBase;
+    this.directory = directory;
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IllegalArgumentException("Не удалось создать каталог контрольных точек " + directory);
+    }
+    for (File file : files(IMAGE)) {
+      sequence = Math.max(sequence, sequenceOf(file, IMAGE));
+    }
+    for (File file : files(DELTA)) {
+      sequence = Math.max(sequence, sequenceOf(file, DELTA));
+      deltasSinceCompaction++;
+    }
+  }
+
+  /**
+   * Указывает количество дельт, после которого запускается фоновое уплотнение
+   * @param compactionThreshold количество дельт, 0 - уплотнение только по вызову {@link #compact()}
+   */
+  public void setCompactionThreshold(int compactionThreshold) {
+    if (compactionThreshold < 0) {
+      throw new IllegalArgumentException("Порог уплотнения не может быть отрицательным");
+    }
+    this.compactionThreshold = compactionThreshold;
+  }
+
+  /**
+   * Запись дельты со счетами, измененными после предыдущей контрольной точки
+   * @return файл дельты или null, если счета не менялись
+   * @throws IOException ошибка записи файла
+   */
+  public File checkpoint() throws IOException {
+    List<ClientBalance> changed = clientBase.drainDirty();
+    if (changed.isEmpty()) {
+      return null;
+    }
+    File delta = file(DELTA, ++sequence);
+    File temp = new File(delta.getPath() + ".tmp");
+    try (FileOutputStream stream = new FileOutputStream(temp);
+         BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(stream, Charset.defaultCharset()))) {
+      for (ClientBalance clientBalance : changed) {
+        String line;
+        synchronized (clientBalance) {
+          clientBalance.clean();
+          line = ClientBase.clientLine(clientBalance);
+        }
+        writer.write(line);
+        writer.newLine();
+      }
+      writer.flush();
+      stream.getFD().sync();
+    }
+    Files.move(temp.toPath(), delta.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    if (compactionThreshold > 0 && ++deltasSinceCompaction >= compactionThreshold) {
+      compactInBackground();
+    }
+    return delta;
+  }
+
+  /**
+   * Запуск уплотнения в фоновом потоке. Уплотнения выполняются по очереди.
+   * @return образ после уплотнения или null, если дельт не было
+   */
+  public Future<File> compactInBackground() {
+    deltasSinceCompaction = 0;
+    return compactor.submit(this::fold);
+  }
+
+  /**
+   * Уплотнение с ожиданием окончания
+   * @return образ после уплотнения или null, если образа и дельт нет
+   * @throws IOException ошибка чтения или записи файлов
+   */
+  public File compact() throws IOException {
+    try {
+      File image = compactInBackground().get();
+      return image != null ? image : latest(IMAGE);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Ожидание уплотнения прервано", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IllegalStateException("Ошибка уплотнения контрольных точек", e.getCause());
+    }
+  }
+
+  /**
+   * Запись текущего состояния базы в формате {@link ClientBase#clientToFile(File)}:
+   * контрольная точка, уплотнение и копирование образа
+   * @param clientsBase результирующий файл с базой по счетам клиентов
+   * @throws IOException ошибка чтения или записи файлов
+   */
+  public void writeResult(File clientsBase) throws IOException {
+    checkpoint();
+    File image = compact();
+    if (image == null) {
+      Files.write(clientsBase.toPath(), new byte[0]);
+    } else {
+      Files.copy(image.toPath(), clientsBase.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /**
+   * Наложение записанных дельт на последний образ. Дельты, записанные во время уплотнения,
+   * остаются до следующего уплотнения.
+   */
+  private File fold() throws IOException {
+    File image = latest(IMAGE);
+    long imageSequence = image == null ? 0 : sequenceOf(image, IMAGE);
+    List<File> deltas = new ArrayList<>();
+    for (File delta : files(DELTA)) {
+      if (sequenceOf(delta, DELTA) > imageSequence) {
+        deltas.add(delta);
+      }
+    }
+    if (deltas.isEmpty()) {
+      return null;
+    }
+
+    Map<String, String> changes = new LinkedHashMap<>();
+    for (File delta : deltas) {
+      try (BufferedReader reader = Files.newBufferedReader(delta.toPath(), Charset.defaultCharset())) {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          changes.put(nameOf(line), line);
+        }
+      }
+    }
+
+    File folded = file(IMAGE, sequenceOf(deltas.get(deltas.size() - 1), DELTA));
+    File temp = new File(folded.getPath() + ".tmp");
+    try (FileOutputStream stream = new FileOutputStream(temp);
+         BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(stream, Charset.defaultCharset()))) {
+      if (image != null) {
+        try (BufferedReader reader = Files.newBufferedReader(image.toPath(), Charset.defaultCharset())) {
+          String line;
+          while ((line = reader.readLine()) != null) {
+            String changed = changes.remove(nameOf(line));
+            writer.write(changed != null ? changed : line);
+            writer.newLine();
+          }
+        }
+      }
+      for (String line : changes.values()) {
+        writer.write(line);
+        writer.newLine();
+      }
+      writer.flush();
+      stream.getFD().sync();
+    }
+    Files.move(temp.toPath(), folded.toPath(), StandardCopyOption.ATOMIC_MOVE);
+
+    if (image != null) {
+      Files.delete(image.toPath());
+    }
+    for (File delta : deltas) {
+      Files.delete(delta.toPath());
+    }
+    return folded;
+  }
+
+  /**
+   * Ожидание фонового уплотнения и остановка потока
+   */
+  @Override
+  public void close() {
+    compactor.shutdown();
+    try {
+      compactor.awaitTermination(1, TimeUnit.HOURS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static String nameOf(String line) {
+    int tab = line.indexOf('\t');
+    return tab < 0 ? line : line.substring(0, tab);
+  }
+
+  private File file(String prefix, long sequence) {
+    return new File(directory, String.format("%s%020d%s", prefix, sequence, SUFFIX));
+  }
+
+  private static long sequenceOf(File file, String prefix) {
+    String name = file.getName();
+    return Long.parseLong(name.substring(prefix.length(), name.length() - SUFFIX.length()));
+  }
+
+  private File latest(String prefix) {
+    File[] files = files(prefix);
+    return files.length == 0 ? null : files[files.length - 1];
+  }
+
+  private File[] files(String prefix) {
+    File[] files = directory.listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(SUFFIX));
+    if (files == null) {
+      return new File[0];
+    }
+    Arrays.sort(files);
+    return files;
+  }
+}
@@ -0,0 +1,305 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Загрузка базы клиентов из файла, отображенного в память. Файл делится на участки, выровненные по концу строки,
+ * участки разбираются в счета несколькими потоками. Счета добавляются в базу строго в порядке строк файла,
+ * поэтому номера клиентов и порядок записи {@link ClientBase#clientToFile(File)} совпадают с последовательной загрузкой.
+ * Перед загрузкой база очищается и получает место под ожидаемое количество клиентов, оцененное по первому участку.
+ *
+ * Формат строки: клиент, баланс, количества акций {@link ClientBase#FILE_STOCKS}, разделенные табуляцией.
+ * Имена читаются в кодировке по умолчанию, как и записываются {@link ClientBaseWriter}.
+ */
+class ClientBaseLoader {
+  private static final int FIELDS = 6;
+  private static final Charset CHARSET = Charset.defaultCharset();
+
+  private final ClientBase clientBase;
+  private final int threads;
+  private final int chunkSize;
+  private final int regionSize;
+
+  /**
+   * @param clientBase загружаемая база клиентов
+   * @param threads количество потоков разбора
+   */
+  ClientBaseLoader(ClientBase clientBase, int threads) {
+    this(clientBase, threads, ParallelOrderFileParser.DEFAULT_CHUNK_SIZE, OrderFileParser.DEFAULT_REGION_SIZE);
+  }
+
+  /**
+   * @param clientBase загружаемая база клиентов
+   * @param threads количество потоков разбора
+   * @param chunkSize размер участка для разбора одним потоком
+   * @param regionSize размер участка файла, отображаемого в память за один раз
+   */
+  ClientBaseLoader(ClientBase clientBase, int threads, int chunkSize, int regionSize) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Количество потоков должно быть положительным");
+    }
+    this.clientBase = clientBase;
+    this.threads = threads;
+    this.chunkSize = chunkSize;
+    this.regionSize = regionSize;
+  }
+
+  /**
+   * Загрузка базы клиентов, прежнее содержимое базы удаляется
+   * @param file файл с базой клиентов
+   * @throws IOException ошибка чтения файла
+   * @throws IllegalArgumentException ошибка формата с номером и текстом строки, счета до ошибки добавляются в базу
+   */
+  void load(File file) throws IOException {
+    ExecutorService executor = threads == 1 ? null : Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable, "client-base-loader");
+      thread.setDaemon(true);
+      return thread;
+    });
+    NameDictionary stocks = clientBase.getStockDictionary();
+    Deque<Chunk> inFlight = new ArrayDeque<>();
+    long lines = 0;
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long size = channel.size();
+      long position = 0;
+      boolean presized = false;
+      if (size == 0) {
+        clientBase.reset(0);
+      }
+      while (position < size) {
+        int length = (int) Math.min(regionSize, size - position);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        int end = length;
+        if (position + length < size) {
+          end = OrderFileParser.lineEndBefore(buffer, 0, length);
+        }
+        int start = 0;
+        while (start < end) {
+          Chunk chunk = new Chunk(buffer, start, chunkEnd(buffer, start, end));
+          if (!presized) {
+            clientBase.reset(expectedClients(chunk, size));
+            presized = true;
+          }
+          if (executor == null) {
+            lines = parse(chunk, lines, clientBase::addClientBalance);
+          } else {
+            chunk.balances = executor.submit(() -> parseChunk(new Parser(stocks), chunk));
+            inFlight.add(chunk);
+            if (inFlight.size() >= threads * 2) {
+              lines = release(inFlight.poll(), lines);
+            }
+          }
+          start = chunk.end;
+        }
+        position += end;
+      }
+      while (!inFlight.isEmpty()) {
+        lines = release(inFlight.poll(), lines);
+      }
+    } finally {
+      if (executor != null) {
+        executor.shutdownNow();
+      }
+    }
+  }
+
+  /**
+   * Оценка количества клиентов по количеству строк в первом участке
+   */
+  private static int expectedClients(Chunk chunk, long fileSize) {
+    long lines = 0;
+    for (int i = chunk.start; i < chunk.end; i++) {
+      if (chunk.buffer.get(i) == '\n') {
+        lines++;
+      }
+    }
+    long expected = Math.max(lines, 1) * fileSize / (chunk.end - chunk.start);
+    return (int) Math.min(expected, Integer.MAX_VALUE - 8);
+  }
+
+  /**
+   * Разбор участка в потоке разбора
+   * @return счета участка или null, если в участке есть ошибка формата
+   */
+  private static List<ClientBalance> parseChunk(Parser parser, Chunk chunk) {
+    List<ClientBalance> balances = new ArrayList<>();
+    try {
+      parser.parse(chunk.buffer, chunk.start, chunk.end, balances::add);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+    return balances;
+  }
+
+  /**
+   * Добавление счетов участка в базу. Участок с ошибкой разбирается повторно последовательно
+   * с правильной нумерацией строк: счета до ошибки добавляются в базу, затем выбрасывается ошибка.
+   * @param chunk участок
+   * @param linesBefore количество строк в предыдущих участках
+   * @return количество строк с учетом участка
+   */
+  private long release(Chunk chunk, long linesBefore) {
+    List<ClientBalance> balances;
+    try {
+      balances = chunk.balances.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Загрузка базы клиентов прервана", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    }
+    if (balances == null) {
+      return parse(chunk, linesBefore, clientBase::addClientBalance);
+    }
+    for (ClientBalance balance : balances) {
+      clientBase.addClientBalance(balance);
+    }
+    return linesBefore + balances.size();
+  }
+
+  private long parse(Chunk chunk, long linesBefore, Consumer<ClientBalance> consumer) {
+    Parser parser = new Parser(clientBase.getStockDictionary());
+    parser.lineNumber = linesBefore;
+    parser.parse(chunk.buffer, chunk.start, chunk.end, consumer);
+    return parser.lineNumber;
+  }
+
+  /**
+   * Конец участка: первый перевод строки после набора {@link #chunkSize} байт
+   */
+  private int chunkEnd(ByteBuffer buffer, int start, int end) {
+    for (int i = start + chunkSize - 1; i < end; i++) {
+      if (buffer.get(i) == '\n') {
+        return i + 1;
+      }
+    }
+    return end;
+  }
+
+  /**
+   * Разбор строк с базой клиентов. Класс не является потокобезопасным.
+   */
+  static class Parser {
+    private final NameDictionary stocks;
+    private final int[] tabs = new int[FIELDS - 1];
+    private byte[] name = new byte[64];
+    long lineNumber;
+
+    /**
+     * @param stocks словарь акций базы, номера акций файла совпадают с номерами колонок
+     */
+    Parser(NameDictionary stocks) {
+      this.stocks = stocks;
+    }
+
+    /**
+     * Разбор участка буфера, содержащего целые строки. Последняя строка участка может не заканчиваться переводом строки.
+     * @param buffer буфер
+     * @param start начало участка
+     * @param end конец участка
+     * @param consumer обработчик разобранных счетов
+     */
+    void parse(ByteBuffer buffer, int start, int end, Consumer<ClientBalance> consumer) {
+      int lineStart = start;
+      while (lineStart < end) {
+        int lineEnd = lineStart;
+        while (lineEnd < end && buffer.get(lineEnd) != '\n') {
+          lineEnd++;
+        }
+        lineNumber++;
+        consumer.accept(parseLine(buffer, lineStart, lineEnd));
+        lineStart = lineEnd + 1;
+      }
+    }
+
+    /**
+     * Разбор одной строки со счетом клиента. Пустые поля в конце строки не учитываются.
+     * @param buffer буфер
+     * @param start начало строки
+     * @param end конец строки без перевода строки
+     * @return {@link ClientBalance}
+     */
+    ClientBalance parseLine(ByteBuffer buffer, int start, int end) {
+      if (end > start && buffer.get(end - 1) == '\r') {
+        end--;
+      }
+      int lineEnd = end;
+      try {
+        while (end > start && buffer.get(end - 1) == '\t') {
+          end--;
+        }
+        int tabCount = 0;
+        for (int i = start; i < end; i++) {
+          if (buffer.get(i) == '\t') {
+            if (tabCount == tabs.length) {
+              throw new IllegalArgumentException("В файле с информацией по клиенту ожидается 6 полей");
+            }
+            tabs[tabCount++] = i;
+          }
+        }
+        if (tabCount != tabs.length) {
+          throw new IllegalArgumentException("В файле с информацией по клиенту ожидается 6 полей");
+        }
+        ClientBalance.Builder builder = new ClientBalance.Builder()
+            .name(name(buffer, start, tabs[0]))
+            .amount(FixedPoint.parse(buffer, tabs[0] + 1, tabs[1]), FixedPoint.scaleOf(buffer, tabs[0] + 1, tabs[1]))
+            .stockDictionary(stocks);
+        for (int i = 0; i < ClientBase.FILE_STOCKS.length; i++) {
+          int fieldEnd = i + 2 < tabs.length ? tabs[i + 2] : end;
+          builder.stock(i, OrderFileParser.parseCount(buffer, tabs[i + 1] + 1, fieldEnd));
+        }
+        return builder.build();
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException(e.getMessage() + " (строка " + lineNumber + ": "
+            + OrderFileParser.text(buffer, start, lineEnd) + ")", e);
+      }
+    }
+
+    private String name(ByteBuffer buffer, int start, int end) {
+      int length = end - start;
+      if (length > name.length) {
+        name = new byte[Math.max(name.length * 2, length)];
+      }
+      boolean ascii = true;
+      for (int i = 0; i < length; i++) {
+        byte b = buffer.get(start + i);
+        name[i] = b;
+        ascii &= b >= 0;
+      }
+      return ascii ? new String(name, 0, length, StandardCharsets.ISO_8859_1) : new String(name, 0, length, CHARSET);
+    }
+  }
+
+  /**
+   * Участок файла, разбираемый одним потоком
+   */
+  private static class Chunk {
+    final ByteBuffer buffer;
+    final int start;
+    final int end;
+    Future<List<ClientBalance>> balances;
+
+    Chunk(ByteBuffer buffer, int start, int end) {
+      this.buffer = buffer;
+      this.start = start;
+      this.end = end;
+    }
+  }
+}
@@ -0,0 +1,252 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Запись базы клиентов в формате {@link ClientBase#clientToFile(File)} без промежуточных строк:
+ * имя, баланс и количества акций кодируются сразу в байты буфера, буфер записывается через {@link FileChannel}.
+ * Результат побайтно совпадает с записью через {@link ClientBase#clientLine(ClientBalance)}
+ * в кодировке по умолчанию с системным переводом строки.
+ *
+ * При нескольких потоках список клиентов делится на участки по {@link #DEFAULT_SEGMENT_SIZE} клиентов,
+ * участки кодируются параллельно и записываются в исходном порядке.
+ */
+public class ClientBaseWriter {
+  /**
+   * Размер буфера записи
+   */
+  static final int BUFFER_SIZE = 1 << 20;
+  /**
+   * Количество клиентов в участке при многопоточной записи
+   */
+  static final int DEFAULT_SEGMENT_SIZE = 1 << 16;
+  static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(Charset.defaultCharset());
+  /**
+   * Наибольшая длина строки без имени: баланс со знаком и точкой, четыре количества акций и разделители
+   */
+  private static final int MAX_LINE_TAIL = 22 + 4 * 12 + LINE_SEPARATOR.length;
+  private static final long[] POWERS_OF_TEN = new long[FixedPoint.SCALE + 1];
+
+  static {
+    POWERS_OF_TEN[0] = 1;
+    for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+      POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+  }
+
+  private final int threads;
+  private final int segmentSize;
+  private final Queue<ByteBuffer> freeBuffers = new ConcurrentLinkedQueue<>();
+
+  /**
+   * Однопоточная запись
+   */
+  public ClientBaseWriter() {
+    this(1);
+  }
+
+  /**
+   * @param threads количество потоков кодирования
+   */
+  public ClientBaseWriter(int threads) {
+    this(threads, DEFAULT_SEGMENT_SIZE);
+  }
+
+  /**
+   * @param threads количество потоков кодирования
+   * @param segmentSize количество клиентов в участке
+   */
+  public ClientBaseWriter(int threads, int segmentSize) {
+    if (threads < 1 || segmentSize < 1) {
+      throw new IllegalArgumentException("Количество потоков и размер участка должны быть положительными");
+    }
+    this.threads = threads;
+    this.segmentSize = segmentSize;
+  }
+
+  /**
+   * Запись базы клиентов, существующий файл перезаписывается
+   * @param clientBase база клиентов
+   * @param clientsBase результирующий файл
+   * @throws IOException ошибка записи файла
+   */
+  public void write(ClientBase clientBase, File clientsBase) throws IOException {
+    Collection<ClientBalance> clientBalances = clientBase.getClientBalances();
+    List<ClientBalance> balances = clientBalances instanceof RandomAccess
+        ? (List<ClientBalance>) clientBalances : new ArrayList<>(clientBalances);
+    try (FileChannel channel = FileChannel.open(clientsBase.toPath(), StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      if (threads == 1 || balances.size() <= segmentSize) {
+        List<ByteBuffer> buffers = encode(balances, 0, balances.size(), channel);
+        flush(channel, buffers);
+      } else {
+        writeParallel(balances, channel);
+      }
+    }
+  }
+
+  private void writeParallel(List<ClientBalance> balances, FileChannel channel) throws IOException {
+    ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable, "client-base-writer");
+      thread.setDaemon(true);
+      return thread;
+    });
+    try {
+      Queue<Future<List<ByteBuffer>>> inFlight = new ArrayDeque<>();
+      for (int start = 0; start < balances.size(); start += segmentSize) {
+        int from = start;
+        int to = Math.min(start + segmentSize, balances.size());
+        inFlight.add(executor.submit(() -> encode(balances, from, to, null)));
+        if (inFlight.size() >= threads * 2) {
+          flush(channel, await(inFlight.poll()));
+        }
+      }
+      while (!inFlight.isEmpty()) {
+        flush(channel, await(inFlight.poll()));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static List<ByteBuffer> await(Future<List<ByteBuffer>> segment) throws IOException {
+    try {
+      return segment.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Запись базы клиентов прервана", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException("Ошибка кодирования базы клиентов", e.getCause());
+    }
+  }
+
+  /**
+   * Кодирование клиентов участка. При переданном канале заполненные буферы сразу записываются,
+   * иначе возвращаются для записи по порядку.
+   */
+  private List<ByteBuffer> encode(List<ClientBalance> balances, int from, int to, FileChannel channel)
+      throws IOException {
+    List<ByteBuffer> buffers = new ArrayList<>();
+    ByteBuffer buffer = acquire();
+    for (int i = from; i < to; i++) {
+      ClientBalance balance = balances.get(i);
+      byte[] name = encodeName(balance.getName());
+      if (buffer.remaining() < name.length + MAX_LINE_TAIL) {
+        buffers.add(buffer);
+        if (channel != null) {
+          flush(channel, buffers);
+        }
+        buffer = acquire();
+        if (buffer.capacity() < name.length + MAX_LINE_TAIL) {
+          buffer = ByteBuffer.allocateDirect(name.length + MAX_LINE_TAIL);
+        }
+      }
+      buffer.put(name);
+      buffer.put((byte) '\t');
+      putAmount(buffer, balance.getAmountUnits(), balance.getAmountScale());
+      for (int stockId = 0; stockId < ClientBase.FILE_STOCKS.length; stockId++) {
+        buffer.put((byte) '\t');
+        putLong(buffer, Math.max(balance.getStockCount(stockId), 0));
+      }
+      buffer.put(LINE_SEPARATOR);
+    }
+    buffers.add(buffer);
+    return buffers;
+  }
+
+  private ByteBuffer acquire() {
+    ByteBuffer buffer = freeBuffers.poll();
+    return buffer != null ? buffer : ByteBuffer.allocateDirect(BUFFER_SIZE);
+  }
+
+  private void flush(FileChannel channel, List<ByteBuffer> buffers) throws IOException {
+    for (ByteBuffer buffer : buffers) {
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      buffer.clear();
+      if (buffer.capacity() == BUFFER_SIZE) {
+        freeBuffers.add(buffer);
+      }
+    }
+    buffers.clear();
+  }
+
+  private static byte[] encodeName(String name) {
+    int length = name.length();
+    byte[] bytes = new byte[length];
+    for (int i = 0; i < length; i++) {
+      char c = name.charAt(i);
+      if (c >= 0x80) {
+        return name.getBytes(Charset.defaultCharset());
+      }
+      bytes[i] = (byte) c;
+    }
+    return bytes;
+  }
+
+  /**
+   * Баланс в виде {@link java.math.BigDecimal#toPlainString()} числа {@link FixedPoint#toBigDecimal(long, int)}
+   */
+  static void putAmount(ByteBuffer buffer, long value, int scale) {
+    if (scale < 0 || scale > FixedPoint.SCALE || value % POWERS_OF_TEN[FixedPoint.SCALE - scale] != 0
+        || value == Long.MIN_VALUE) {
+      buffer.put(FixedPoint.toBigDecimal(value, scale).toPlainString().getBytes(Charset.defaultCharset()));
+      return;
+    }
+    long unscaled = value / POWERS_OF_TEN[FixedPoint.SCALE - scale];
+    if (unscaled < 0) {
+      buffer.put((byte) '-');
+      unscaled = -unscaled;
+    }
+    int digits = Math.max(digits(unscaled), scale + 1);
+    int length = scale > 0 ? digits + 1 : digits;
+    int end = buffer.position() + length;
+    int position = end;
+    for (int i = 0; i < digits; i++) {
+      if (scale > 0 && i == scale) {
+        buffer.put(--position, (byte) '.');
+      }
+      buffer.put(--position, (byte) ('0' + unscaled % 10));
+      unscaled /= 10;
+    }
+    buffer.position(end);
+  }
+
+  static void putLong(ByteBuffer buffer, long value) {
+    int end = buffer.position() + digits(value);
+    int position = end;
+    do {
+      buffer.put(--position, (byte) ('0' + value % 10));
+      value /= 10;
+    } while (value > 0);
+    buffer.position(end);
+  }
+
+  private static int digits(long value) {
+    int digits = 1;
+    while (value >= 10) {
+      value /= 10;
+      digits++;
+    }
+    return digits;
+  }
+}
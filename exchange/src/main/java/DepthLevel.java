@@ -0,0 +1,87 @@
+import java.math.BigDecimal;
+
+/**
+ * Состояние ценового уровня стакана в ленте {@link MarketDataFeed}: суммарный остаток и количество заявок по цене
+ */
+public class DepthLevel {
+  private final int stockId;
+  private final String stockName;
+  private final Order.Type type;
+  private final long price;
+  int priceScale;
+  long quantity;
+  int orders;
+
+  DepthLevel(int stockId, String stockName, Order.Type type, long price) {
+    this.stockId = stockId;
+    this.stockName = stockName;
+    this.type = type;
+    this.price = price;
+  }
+
+  /**
+   * Копия текущего состояния уровня
+   * @return уровень
+   */
+  DepthLevel copy() {
+    DepthLevel copy = new DepthLevel(stockId, stockName, type, price);
+    copy.priceScale = priceScale;
+    copy.quantity = quantity;
+    copy.orders = orders;
+    return copy;
+  }
+
+  /**
+   * Номер акции в словаре {@link ClientBase#getStockDictionary()}
+   * @return номер акции
+   */
+  public int getStockId() {
+    return stockId;
+  }
+
+  public String getStockName() {
+    return stockName;
+  }
+
+  /**
+   * Сторона стакана
+   * @return тип заявок уровня
+   */
+  public Order.Type getType() {
+    return type;
+  }
+
+  public BigDecimal getPrice() {
+    return FixedPoint.toBigDecimal(price, priceScale);
+  }
+
+  /**
+   * Цена уровня во внутреннем представлении
+   * @return цена в единицах {@link FixedPoint}
+   */
+  public long getPriceUnits() {
+    return price;
+  }
+
+  /**
+   * Суммарный остаток заявок на уровне
+   * @return количество акций, 0 - уровень удален
+   */
+  public long getQuantity() {
+    return quantity;
+  }
+
+  /**
+   * Количество заявок на уровне
+   * @return количество заявок
+   */
+  public int getOrders() {
+    return orders;
+  }
+
+  @Override
+  public String toString() {
+    return stockName + " " + (type == Order.Type.SELL ? "s" : "b") + " " + getPrice().toPlainString()
+        + " " + quantity + " " + orders;
+  }
+}
@@ -0,0 +1,17 @@
+/**
+ * Получатель изменений глубины стакана по ценовым уровням. Вызывается в потоке, обрабатывающем стакан акции,
+ * после каждого изменения уровня: выставления, исполнения, снятия или изменения заявки.
+ * За одну заявку вызывается не больше одного раза на каждый затронутый уровень.
+ */
+public interface DepthListener {
+  /**
+   * Новое состояние ценового уровня
+   * @param stockId номер акции в словаре {@link ClientBase#getStockDictionary()}
+   * @param type сторона стакана
+   * @param price цена уровня в единицах {@link FixedPoint}
+   * @param priceScale масштаб цены для вывода
+   * @param quantity суммарный остаток заявок на уровне, 0 - уровень удален
+   * @param orders количество заявок на уровне
+   */
+  void onLevel(int stockId, Order.Type type, long price, int priceScale, long quantity, int orders);
+}
@@ -0,0 +1,483 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Эмулятор работы биржи. На вход получает базу с клиентами и набор заявок.
+ * В результате обработки всех заявок, обновляет инофрмацию по балансу на клиентских счетах.
+ */
+public class Exchange {
+  ClientBase clientBase;
+  /**
+   * Очереди заявок по номеру акции
+   */
+  private StockOrdersQueue[] books = new StockOrdersQueue[16];
+  private int parserThreads = 1;
+  private OrderPool orderPool;
+  private ExchangeMetrics metrics;
+  /**
+   * Получатели сделок в порядке подключения и получатель, переданный стаканам: единственный получатель
+   * или рассылка всем получателям
+   */
+  private final List<FillListener> fillListeners = new ArrayList<>();
+  private FillListener fillListener;
+  private DepthListener depthListener;
+  private OrderJournal journal;
+  private File snapshotDirectory;
+  private long snapshotInterval;
+  private long sinceSnapshot;
+  private OrderPipeline pipeline;
+
+  /**
+   * Инициализации биржи, заполнение информации по клиентам
+   * @param clientBase база клиентов
+   */
+  public Exchange(ClientBase clientBase) {
+    this.clientBase = clientBase;
+  }
+
+  /**
+   * Указывает количество потоков для разбора файла заявок. При нескольких потоках файл разбирается
+   * параллельно по участкам, а заявки передаются на обработку в исходном порядке.
+   * @param parserThreads количество потоков разбора
+   */
+  public void setParserThreads(int parserThreads) {
+    if (parserThreads < 1) {
+      throw new IllegalArgumentException("Количество потоков должно быть положительным");
+    }
+    this.parserThreads = parserThreads;
+  }
+
+  /**
+   * Включает обработку файла заявок конвейером {@link OrderPipeline} с кольцом на
+   * {@value OrderPipeline#DEFAULT_RING_SIZE} заявок и пачками до {@value OrderPipeline#DEFAULT_BATCH_SIZE} заявок,
+   * см. {@link #setPipeline(WaitStrategy, int, int)}
+   * @param waitStrategy способ ожидания стадий или null, чтобы обрабатывать заявки в одном потоке
+   */
+  public void setPipeline(WaitStrategy waitStrategy) {
+    setPipeline(waitStrategy, OrderPipeline.DEFAULT_RING_SIZE, OrderPipeline.DEFAULT_BATCH_SIZE);
+  }
+
+  /**
+   * Включает обработку файла заявок конвейером {@link OrderPipeline}: вызывающий поток читает и разбирает файл,
+   * отдельные потоки присваивают заявкам время поступления и сопоставляют их в стаканах с расчетами по счетам.
+   * Стадия сопоставления обрабатывает заявки по одной в порядке кольца, как при обработке в одном потоке,
+   * поэтому сделки, журнал и состояние после ошибки не отличаются от обработки без конвейера.
+   * Файл разбирается одним потоком независимо от {@link #setParserThreads(int)}, пул заявок при разборе
+   * не используется.
+   * @param waitStrategy способ ожидания стадий или null, чтобы обрабатывать заявки в одном потоке
+   * @param ringSize емкость кольца, степень двойки
+   * @param batchSize наибольшее количество заявок, выбираемых стадией из кольца за одно чтение курсора
+   */
+  public void setPipeline(WaitStrategy waitStrategy, int ringSize, int batchSize) {
+    pipeline = waitStrategy != null ? new OrderPipeline(ringSize, batchSize, waitStrategy) : null;
+  }
+
+  /**
+   * Включает переиспользование заявок: заявки при разборе берутся из пула, а после полного исполнения
+   * возвращаются в него. Пул работает только при последовательном разборе файла без конвейера.
+   * @param orderPool пул заявок или null, чтобы отключить переиспользование
+   */
+  public void setOrderPool(OrderPool orderPool) {
+    this.orderPool = orderPool;
+    for (StockOrdersQueue book : books) {
+      if (book != null) {
+        book.setOrderPool(orderPool);
+      }
+    }
+  }
+
+  /**
+   * Указывает единственного получателя сделок по всем стаканам, ранее подключенные получатели отключаются
+   * @param fillListener получатель сделок или null
+   */
+  public void setFillListener(FillListener fillListener) {
+    fillListeners.clear();
+    if (fillListener != null) {
+      fillListeners.add(fillListener);
+    }
+    updateFillListener();
+  }
+
+  /**
+   * Подключает еще одного получателя сделок по всем стаканам. Получатели вызываются в порядке подключения.
+   * Подключать и отключать получателей можно только пока биржа не обрабатывает заявки.
+   * @param fillListener получатель сделок
+   */
+  public void addFillListener(FillListener fillListener) {
+    if (fillListener == null) {
+      throw new IllegalArgumentException("Не указан получатель сделок");
+    }
+    fillListeners.add(fillListener);
+    updateFillListener();
+  }
+
+  /**
+   * Отключает получателя сделок, остальные получатели продолжают получать сделки
+   * @param fillListener получатель сделок, подключенный {@link #addFillListener(FillListener)}
+   *                     или {@link #setFillListener(FillListener)}
+   */
+  public void removeFillListener(FillListener fillListener) {
+    if (fillListeners.remove(fillListener)) {
+      updateFillListener();
+    }
+  }
+
+  /**
+   * Передает стаканам получателя сделок по текущему списку получателей
+   */
+  private void updateFillListener() {
+    FillListener[] listeners = fillListeners.toArray(new FillListener[0]);
+    if (listeners.length == 0) {
+      fillListener = null;
+    } else if (listeners.length == 1) {
+      fillListener = listeners[0];
+    } else {
+      fillListener = (incoming, resting, price, priceScale, count) -> {
+        for (FillListener listener : listeners) {
+          listener.onFill(incoming, resting, price, priceScale, count);
+        }
+      };
+    }
+    for (StockOrdersQueue book : books) {
+      if (book != null) {
+        book.setFillListener(fillListener);
+      }
+    }
+  }
+
+  /**
+   * Указывает получателя изменений глубины по всем стаканам. При параллельной обработке стаканов
+   * получатель вызывается из нескольких потоков.
+   * @param depthListener получатель изменений или null
+   */
+  public void setDepthListener(DepthListener depthListener) {
+    this.depthListener = depthListener;
+    for (StockOrdersQueue book : books) {
+      if (book != null) {
+        book.setDepthListener(depthListener);
+      }
+    }
+  }
+
+  /**
+   * Включает сбор показателей работы биржи. Без показателей обработка заявок не замеряется.
+   * @param metrics показатели или null, чтобы отключить сбор
+   */
+  public void setMetrics(ExchangeMetrics metrics) {
+    this.metrics = metrics;
+    for (StockOrdersQueue book : books) {
+      if (book != null) {
+        book.setMetrics(metrics);
+      }
+    }
+    if (metrics != null) {
+      metrics.setBookDepth(this::bookDepth);
+    }
+  }
+
+  /**
+   * Включает журнал принятых заявок и периодические снимки состояния. Сразу делается начальный снимок,
+   * от которого начинается восстановление {@link #recover(File, File)}.
+   * Заявки записываются в журнал до обработки, заявка, обработка которой завершилась ошибкой,
+   * отмечается в журнале отклоненной {@link OrderJournal#reject(Order)}.
+   * @param journal журнал заявок
+   * @param snapshotDirectory каталог снимков
+   * @param snapshotInterval количество заявок между снимками, 0 - снимки только по вызову {@link #takeSnapshot()}
+   * @throws IOException ошибка записи снимка
+   */
+  public void setJournal(OrderJournal journal, File snapshotDirectory, long snapshotInterval) throws IOException {
+    if (snapshotInterval < 0) {
+      throw new IllegalArgumentException("Интервал снимков не может быть отрицательным");
+    }
+    this.journal = journal;
+    this.snapshotDirectory = snapshotDirectory;
+    this.snapshotInterval = snapshotInterval;
+    takeSnapshot();
+  }
+
+  /**
+   * Снимок состояния биржи после обработки всех переданных заявок. Остаются два последних снимка.
+   * @throws IOException ошибка записи снимка
+   */
+  public void takeSnapshot() throws IOException {
+    if (journal == null) {
+      throw new IllegalStateException("Снимки делаются только при включенном журнале заявок");
+    }
+    awaitProcessed();
+    long position = journal.position();
+    ExchangeSnapshot.write(ExchangeSnapshot.file(snapshotDirectory, position), this, position);
+    ExchangeSnapshot.prune(snapshotDirectory, 2);
+    sinceSnapshot = 0;
+  }
+
+  /**
+   * Восстановление состояния после перезапуска: загружается последний снимок и воспроизводятся заявки
+   * журнала, записанные после него. Отклоненные заявки воспроизводятся с той же ошибкой, что и при записи,
+   * и не прерывают восстановление. Неполная запись в конце журнала отбрасывается, после чего журнал
+   * можно открыть для дописывания и передать в {@link #setJournal(OrderJournal, File, long)}.
+   * @param snapshotDirectory каталог снимков
+   * @param journalFile файл журнала
+   * @return количество воспроизведенных заявок
+   * @throws IOException ошибка чтения снимка или журнала
+   * @throws IllegalStateException нет ни одного снимка или журнал не совпадает с обработкой заявок
+   */
+  public long recover(File snapshotDirectory, File journalFile) throws IOException {
+    File snapshot = ExchangeSnapshot.latest(snapshotDirectory);
+    if (snapshot == null) {
+      throw new IllegalStateException("Нет снимка для восстановления в " + snapshotDirectory);
+    }
+    long position = ExchangeSnapshot.read(snapshot, this);
+    long[] replayed = new long[1];
+    long end = OrderJournal.replay(journalFile, position, clientBase, order -> {
+      replayed[0]++;
+      processOrder(order);
+    });
+    awaitProcessed();
+    try (FileChannel channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.WRITE)) {
+      if (channel.size() > end) {
+        channel.truncate(end);
+      }
+    }
+    return replayed[0];
+  }
+
+  /**
+   * Обработка заявок на бирже
+   * @param stockOrder файл со списоком заявок
+   * @return обновленная база клиентов
+   */
+  public void processOrderList(File stockOrder) {
+    try {
+      if (pipeline != null) {
+        processPipelined(stockOrder);
+      } else if (parserThreads > 1) {
+        new ParallelOrderFileParser(clientBase, parserThreads).parse(stockOrder, orderConsumer());
+      } else {
+        OrderFileParser parser = new OrderFileParser(clientBase);
+        parser.setOrderPool(orderPool);
+        parser.parse(stockOrder, orderConsumer());
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+    awaitProcessed();
+  }
+
+  /**
+   * Обработка файла заявок конвейером: разбор, присвоение времени поступления, сопоставление по одной
+   * заявке в порядке кольца. После ошибки сопоставления остальные заявки не обрабатываются.
+   * @param stockOrder файл со списоком заявок
+   * @throws IOException ошибка чтения файла
+   */
+  private void processPipelined(File stockOrder) throws IOException {
+    OrderFileParser parser = new OrderFileParser(clientBase);
+    parser.setSequenced(false);
+    pipeline.run(consumer -> parser.parse(stockOrder, orderConsumer(consumer)),
+        (order, endOfBatch) -> order.sequence(),
+        (order, endOfBatch) -> submit(order));
+  }
+
+  /**
+   * Обработка заявок из двоичного журнала {@link OrderLog}
+   * @param orderLog двоичный журнал заявок
+   */
+  public void replayOrderLog(File orderLog) {
+    try {
+      OrderLog.replay(orderLog, clientBase, orderConsumer());
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+    awaitProcessed();
+  }
+
+  /**
+   * Обработчик разобранных заявок. При сборе показателей замеряется время между заявками без учета их обработки,
+   * то есть время разбора очередной заявки.
+   * @return обработчик заявок
+   */
+  private Consumer<Order> orderConsumer() {
+    return orderConsumer(this::submit);
+  }
+
+  /**
+   * Обработчик разобранных заявок с замером времени разбора при сборе показателей
+   * @param consumer получатель заявок
+   * @return обработчик заявок
+   */
+  private Consumer<Order> orderConsumer(Consumer<Order> consumer) {
+    ExchangeMetrics metrics = this.metrics;
+    if (metrics == null) {
+      return consumer;
+    }
+    long[] parsed = {System.nanoTime()};
+    return order -> {
+      metrics.parse.record(System.nanoTime() - parsed[0]);
+      consumer.accept(order);
+      parsed[0] = System.nanoTime();
+    };
+  }
+
+  /**
+   * Прием заявки: при включенном журнале заявка записывается в журнал до обработки
+   * @param order заявка
+   */
+  void submit(Order order) {
+    if (journal != null) {
+      processJournaled(order);
+    } else {
+      processOrder(order);
+    }
+  }
+
+  /**
+   * Обработка пачки заявок. Заявки обрабатываются в порядке поступления, стакан находится один раз на серию
+   * подряд идущих заявок одной акции. Результат, порядок вызовов получателей сделок и изменений глубины
+   * и состояние после ошибки совпадают с обработкой заявок по одной: ошибка прекращает обработку пачки,
+   * заявки после ошибочной не обрабатываются.
+   * @param orders заявки в порядке поступления
+   * @throws RuntimeException ошибка обработки заявки
+   */
+  public void processOrders(Order... orders) {
+    submit(orders, orders.length);
+    awaitProcessed();
+  }
+
+  /**
+   * Обработка пачки заявок, см. {@link #processOrders(Order...)}
+   * @param orders заявки в порядке поступления
+   */
+  public void processOrders(List<Order> orders) {
+    processOrders(orders.toArray(new Order[0]));
+  }
+
+  /**
+   * Прием пачки заявок. При включенном журнале заявки принимаются по одной {@link #submit(Order)}:
+   * заявки после ошибочной не обрабатываются и не должны попасть в журнал.
+   * @param orders заявки
+   * @param count количество заявок в начале массива
+   */
+  void submit(Order[] orders, int count) {
+    if (journal == null) {
+      processBatch(orders, count);
+      return;
+    }
+    for (int i = 0; i < count; i++) {
+      processJournaled(orders[i]);
+    }
+  }
+
+  /**
+   * Обработка пачки заявок в порядке поступления. Стакан находится заново, только когда акция заявки
+   * отличается от акции предыдущей, поэтому серия заявок одной акции обрабатывается одним стаканом.
+   * Ошибка прекращает обработку пачки, заявки после ошибочной не обрабатываются.
+   * @param orders заявки
+   * @param count количество заявок в начале массива
+   */
+  void processBatch(Order[] orders, int count) {
+    StockOrdersQueue book = null;
+    int bookStockId = -1;
+    for (int i = 0; i < count; i++) {
+      Order order = orders[i];
+      order.resolve(clientBase);
+      if (order.getStockId() != bookStockId) {
+        bookStockId = order.getStockId();
+        book = ordersQueue(bookStockId);
+      }
+      book.addAndProcess(order);
+    }
+  }
+
+  /**
+   * Запись заявки в журнал, обработка и при необходимости снимок состояния. Ошибка обработки
+   * отмечается в журнале до того, как выбрасывается дальше.
+   * @param order заявка
+   */
+  private void processJournaled(Order order) {
+    journal.append(order);
+    try {
+      processOrder(order);
+    } catch (RuntimeException e) {
+      journal.reject(order);
+      throw e;
+    }
+    if (snapshotInterval > 0 && ++sinceSnapshot >= snapshotInterval) {
+      try {
+        takeSnapshot();
+      } catch (IOException e) {
+        throw new IllegalStateException("Ошибка записи снимка биржи", e);
+      }
+    }
+  }
+
+  /**
+   * Обработка одной заявки
+   * @param order заявка
+   */
+  void processOrder(Order order) {
+    order.resolve(clientBase);
+    ordersQueue(order.getStockId()).addAndProcess(order);
+  }
+
+  /**
+   * Ожидание окончания обработки всех переданных заявок.
+   * Однопоточная биржа обрабатывает заявки сразу, поэтому ожидать нечего.
+   */
+  void awaitProcessed() {
+  }
+
+  /**
+   * Возвращает очередь заявок по акции, при отсутствии очередь создается
+   * @param stockId номер акции
+   * @return {@link StockOrdersQueue}
+   */
+  StockOrdersQueue ordersQueue(int stockId) {
+    if (stockId >= books.length) {
+      books = Arrays.copyOf(books, Math.max(books.length * 2, stockId + 1));
+    }
+    StockOrdersQueue ordersQueue = books[stockId];
+    if (ordersQueue == null) {
+      ordersQueue = new StockOrdersQueue(clientBase);
+      ordersQueue.setOrderPool(orderPool);
+      ordersQueue.setMetrics(metrics);
+      ordersQueue.setFillListener(fillListener);
+      ordersQueue.setDepthListener(depthListener);
+      books[stockId] = ordersQueue;
+    }
+    return ordersQueue;
+  }
+
+  /**
+   * Возвращает очередь заявок по акции без создания
+   * @param stockId номер акции
+   * @return {@link StockOrdersQueue} или null, если заявок по акции не было
+   */
+  StockOrdersQueue book(int stockId) {
+    return stockId < books.length ? books[stockId] : null;
+  }
+
+  /**
+   * Количество заявок в стаканах по акциям. Может вызываться во время обработки заявок из другого потока,
+   * в этом случае значения приблизительные.
+   * @return количество заявок в стакане по имени акции
+   */
+  Map<String, Integer> bookDepth() {
+    StockOrdersQueue[] current = books;
+    NameDictionary stocks = clientBase.getStockDictionary();
+    Map<String, Integer> depth = new TreeMap<>();
+    for (int stockId = 0; stockId < current.length; stockId++) {
+      StockOrdersQueue book = current[stockId];
+      if (book != null) {
+        depth.put(stocks.name(stockId), book.sell.size() + book.bay.size());
+      }
+    }
+    return depth;
+  }
+}
@@ -0,0 +1,76 @@
+import java.io.File;
+import java.nio.file.Paths;
+import java.util.Map;
+
+public class ExchangeEmulator {
+  public static void main(String[] args) throws Exception {
+    File clientsInitFile = Paths.get(ExchangeEmulator.class.getClassLoader().getResource("clients.txt").toURI()).toFile();
+    File clientsResultFile = Paths.get(ExchangeEmulator.class.getClassLoader().getResource("result.txt").toURI()).toFile();
+    File orders = Paths.get(ExchangeEmulator.class.getClassLoader().getResource("orders.txt").toURI()).toFile();
+
+    ClientBase clientBase;
+    String ledger = System.getProperty("exchange.ledger");
+    int stockSlots = Integer.getInteger("exchange.stockSlots", AccountLedger.DEFAULT_STOCK_SLOTS);
+    if (ledger != null) {
+      clientBase = ClientBase.offHeap(new File(ledger), stockSlots);
+    } else if (Boolean.getBoolean("exchange.offHeap")) {
+      clientBase = ClientBase.offHeap(stockSlots);
+    } else {
+      clientBase = Boolean.getBoolean("exchange.columnar") ? ClientBase.columnar() : new ClientBase();
+    }
+    try {
+      // файловое хранилище со счетами продолжает работу без повторной загрузки базы
+      if (ledger == null || clientBase.getAccountStore().size() == 0) {
+        clientBase.initClientBase(clientsInitFile, Integer.getInteger("exchange.loadThreads", 1));
+      }
+      run(clientBase, orders);
+
+      int dumpThreads = Integer.getInteger("exchange.dumpThreads", 1);
+      if (dumpThreads > 1) {
+        new ClientBaseWriter(dumpThreads).write(clientBase, clientsResultFile);
+      } else {
+        clientBase.clientToFile(clientsResultFile);
+      }
+    } finally {
+      if (clientBase.getAccountStore() instanceof AccountLedger) {
+        ((AccountLedger) clientBase.getAccountStore()).close();
+      }
+    }
+  }
+
+  private static void run(ClientBase clientBase, File orders) throws Exception {
+    int threads = Integer.getInteger("exchange.threads", 1);
+    int parserThreads = Integer.getInteger("exchange.parserThreads", 1);
+    ExchangeMetrics metrics = null;
+    if (Boolean.getBoolean("exchange.metrics")) {
+      metrics = new ExchangeMetrics();
+      metrics.register("emulator");
+    }
+    String pipeline = System.getProperty("exchange.pipeline");
+    WaitStrategy waitStrategy = pipeline != null ? WaitStrategy.valueOf(pipeline) : null;
+    String executions = System.getProperty("exchange.executions");
+    ExecutionReportWriter reports = executions != null ? new ExecutionReportWriter(new File(executions), clientBase) : null;
+    if (threads > 1) {
+      try (ParallelExchange exchange = new ParallelExchange(clientBase, threads)) {
+        exchange.setParserThreads(parserThreads);
+        exchange.setPipeline(waitStrategy);
+        exchange.setMetrics(metrics);
+        exchange.setFillListener(reports);
+        exchange.processOrderList(orders);
+      }
+    } else {
+      Exchange exchange = new Exchange(clientBase);
+      exchange.setParserThreads(parserThreads);
+      exchange.setPipeline(waitStrategy);
+      exchange.setMetrics(metrics);
+      exchange.setFillListener(reports);
+      if (Boolean.getBoolean("exchange.pooledOrders")) {
+        exchange.setOrderPool(new OrderPool());
+      }
+      exchange.processOrderList(orders);
+    }
+    if (reports != null) {
+      reports.close();
+    }
+  }
+}
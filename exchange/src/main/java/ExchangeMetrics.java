@@ -0,0 +1,158 @@
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Показатели работы биржи. Подключаются через {@link Exchange#setMetrics(ExchangeMetrics)}, без них биржа
+ * выполняет только проверку на null. Счетчики {@link LongAdder} и гистограммы {@link LatencyHistogram}
+ * пишутся без блокировок, чтение через JMX не останавливает потоки обработки заявок.
+ */
+public class ExchangeMetrics implements ExchangeMetricsMXBean {
+  final LongAdder orders = new LongAdder();
+  final LongAdder fills = new LongAdder();
+  final LongAdder crossedOrders = new LongAdder();
+  final LongAdder restedOrders = new LongAdder();
+  final LongAdder selfTradeSkips = new LongAdder();
+  final LatencyHistogram parse = new LatencyHistogram();
+  final LatencyHistogram match = new LatencyHistogram();
+  final LatencyHistogram settle = new LatencyHistogram();
+
+  private volatile Supplier<Map<String, Integer>> bookDepth = Collections::emptyMap;
+  private long lastFills;
+  private long lastFillsTime = System.nanoTime();
+
+  /**
+   * Учет обработки заявки в стакане
+   * @param nanos время обработки
+   * @param orderFills количество сделок по заявке
+   * @param rested остаток заявки выставлен в очередь
+   * @param selfSkips количество пропущенных заявок того же клиента
+   */
+  void orderProcessed(long nanos, int orderFills, boolean rested, int selfSkips) {
+    orders.increment();
+    match.record(nanos);
+    if (orderFills > 0) {
+      fills.add(orderFills);
+      crossedOrders.increment();
+    }
+    if (rested) {
+      restedOrders.increment();
+    }
+    if (selfSkips > 0) {
+      selfTradeSkips.add(selfSkips);
+    }
+  }
+
+  /**
+   * Указывает источник глубины стаканов
+   * @param bookDepth количество заявок в стакане по акциям
+   */
+  void setBookDepth(Supplier<Map<String, Integer>> bookDepth) {
+    this.bookDepth = bookDepth;
+  }
+
+  /**
+   * Регистрация в сервере MBean платформы
+   * @param name имя экземпляра биржи
+   * @return имя зарегистрированного MBean
+   * @throws IllegalStateException ошибка регистрации
+   */
+  public ObjectName register(String name) {
+    try {
+      ObjectName objectName = new ObjectName("problem2:type=ExchangeMetrics,name=" + ObjectName.quote(name));
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+      return objectName;
+    } catch (JMException e) {
+      throw new IllegalStateException("Не удалось зарегистрировать показатели биржи " + name, e);
+    }
+  }
+
+  /**
+   * Отмена регистрации в сервере MBean платформы
+   * @param objectName имя, полученное при регистрации
+   */
+  public static void unregister(ObjectName objectName) {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      if (server.isRegistered(objectName)) {
+        server.unregisterMBean(objectName);
+      }
+    } catch (JMException e) {
+      throw new IllegalStateException("Не удалось отменить регистрацию " + objectName, e);
+    }
+  }
+
+  @Override
+  public long getOrders() {
+    return orders.sum();
+  }
+
+  @Override
+  public long getFills() {
+    return fills.sum();
+  }
+
+  @Override
+  public long getCrossedOrders() {
+    return crossedOrders.sum();
+  }
+
+  @Override
+  public long getRestedOrders() {
+    return restedOrders.sum();
+  }
+
+  @Override
+  public long getSelfTradeSkips() {
+    return selfTradeSkips.sum();
+  }
+
+  @Override
+  public synchronized double getFillsPerSecond() {
+    long now = System.nanoTime();
+    long currentFills = fills.sum();
+    double rate = now == lastFillsTime ? 0 : (currentFills - lastFills) * 1e9 / (now - lastFillsTime);
+    lastFills = currentFills;
+    lastFillsTime = now;
+    return rate;
+  }
+
+  @Override
+  public Map<String, Integer> getBookDepth() {
+    return bookDepth.get();
+  }
+
+  @Override
+  public LatencyHistogram.Summary getParseLatency() {
+    return parse.summary();
+  }
+
+  @Override
+  public LatencyHistogram.Summary getMatchLatency() {
+    return match.summary();
+  }
+
+  @Override
+  public LatencyHistogram.Summary getSettleLatency() {
+    return settle.summary();
+  }
+
+  @Override
+  public synchronized void reset() {
+    orders.reset();
+    fills.reset();
+    crossedOrders.reset();
+    restedOrders.reset();
+    selfTradeSkips.reset();
+    parse.reset();
+    match.reset();
+    settle.reset();
+    lastFills = 0;
+    lastFillsTime = System.nanoTime();
+  }
+}
@@ -0,0 +1,61 @@
+import java.util.Map;
+
+/**
+ * Показатели работы биржи, доступные через JMX. Задержки указываются в наносекундах.
+ */
+public interface ExchangeMetricsMXBean {
+  /**
+   * @return количество обработанных заявок
+   */
+  long getOrders();
+
+  /**
+   * @return количество сделок
+   */
+  long getFills();
+
+  /**
+   * @return количество заявок, исполненных хотя бы частично при поступлении
+   */
+  long getCrossedOrders();
+
+  /**
+   * @return количество заявок, остаток которых выставлен в очередь
+   */
+  long getRestedOrders();
+
+  /**
+   * @return количество пропусков заявок того же клиента при сопоставлении
+   */
+  long getSelfTradeSkips();
+
+  /**
+   * @return количество сделок в секунду с предыдущего запроса этого показателя
+   */
+  double getFillsPerSecond();
+
+  /**
+   * @return количество заявок в стакане по акциям
+   */
+  Map<String, Integer> getBookDepth();
+
+  /**
+   * @return время получения заявки от разбора файла
+   */
+  LatencyHistogram.Summary getParseLatency();
+
+  /**
+   * @return время обработки заявки в стакане
+   */
+  LatencyHistogram.Summary getMatchLatency();
+
+  /**
+   * @return время расчетов по счетам клиентов за одну сделку
+   */
+  LatencyHistogram.Summary getSettleLatency();
+
+  /**
+   * Сброс счетчиков и гистограмм
+   */
+  void reset();
+}
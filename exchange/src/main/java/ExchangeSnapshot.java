@@ -0,0 +1,235 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Снимок состояния биржи: словари клиентов и акций, счета клиентов, заявки в стаканах, счетчик времени
+ * поступления заявок и позиция журнала {@link OrderJournal}, до которой заявки учтены в снимке.
+ * Снимок делается между заявками, когда все переданные заявки обработаны.
+ *
+ * Структура файла (порядок байтов big-endian):
+ * <ol>
+ *   <li>сигнатура, версия, масштаб {@link FixedPoint}, счетчик времени, позиция журнала;</li>
+ *   <li>имена акций и имена клиентов в порядке номеров;</li>
+ *   <li>счета: номер клиента, баланс в единицах {@link FixedPoint}, масштаб, количество акций по номерам акций;</li>
+ *   <li>стаканы: номер акции, заявки на продажу и на покупку от лучшей цены к худшей, внутри цены по времени,
+ *   у каждой заявки время поступления и номер заявки.</li>
+ * </ol>
+ */
+public final class ExchangeSnapshot {
+  static final int MAGIC = 0x4f534e31;
+  static final int VERSION = 2;
+  private static final String PREFIX = "snapshot-";
+  private static final String SUFFIX = ".bin";
+
+  private ExchangeSnapshot() {
+  }
+
+  /**
+   * Запись снимка. Файл сначала записывается во временный и затем переименовывается,
+   * поэтому при сбое остается прежний снимок.
+   * @param file файл снимка
+   * @param exchange биржа без необработанных заявок
+   * @param journalPosition позиция журнала, до которой заявки учтены в снимке
+   * @throws IOException ошибка записи файла
+   */
+  public static void write(File file, Exchange exchange, long journalPosition) throws IOException {
+    File temp = new File(file.getPath() + ".tmp");
+    ClientBase clientBase = exchange.clientBase;
+    NameDictionary stocks = clientBase.getStockDictionary();
+    NameDictionary clients = clientBase.getClientDictionary();
+    try (FileOutputStream stream = new FileOutputStream(temp)) {
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(FixedPoint.SCALE);
+      out.writeInt(Order.currentTime());
+      out.writeLong(journalPosition);
+      int stockCount = stocks.size();
+      writeNames(out, stocks, stockCount);
+      writeNames(out, clients, clients.size());
+
+      Collection<ClientBalance> balances = clientBase.getClientBalances();
+      out.writeInt(balances.size());
+      for (ClientBalance balance : balances) {
+        out.writeInt(clients.find(balance.getName()));
+        out.writeLong(balance.getAmountUnits());
+        out.writeInt(balance.getAmountScale());
+        out.writeInt(stockCount);
+        for (int stockId = 0; stockId < stockCount; stockId++) {
+          out.writeInt(balance.getStockCount(stockId));
+        }
+      }
+
+      int bookCount = 0;
+      for (int stockId = 0; stockId < stockCount; stockId++) {
+        if (exchange.book(stockId) != null) {
+          bookCount++;
+        }
+      }
+      out.writeInt(bookCount);
+      for (int stockId = 0; stockId < stockCount; stockId++) {
+        StockOrdersQueue book = exchange.book(stockId);
+        if (book != null) {
+          out.writeInt(stockId);
+          writeOrders(out, book.sell);
+          writeOrders(out, book.bay);
+        }
+      }
+      out.flush();
+      stream.getFD().sync();
+    }
+    Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private static void writeNames(DataOutputStream out, NameDictionary names, int count) throws IOException {
+    out.writeInt(count);
+    for (int id = 0; id < count; id++) {
+      out.writeUTF(names.name(id));
+    }
+  }
+
+  private static void writeOrders(DataOutputStream out, OrderBookSide side) throws IOException {
+    out.writeInt(side.size());
+    for (Order order : side) {
+      out.writeInt(order.getTime());
+      out.writeInt(order.getId());
+      out.writeInt(order.getClientId());
+      out.writeLong(order.getPriceUnits());
+      out.writeByte(order.getPriceScale());
+      out.writeInt(order.getCount());
+    }
+  }
+
+  /**
+   * Восстановление биржи из снимка. Счетчик времени поступления продвигается до значения из снимка.
+   * @param file файл снимка
+   * @param exchange биржа с пустой базой клиентов и без заявок
+   * @return позиция журнала, с которой нужно воспроизвести заявки после снимка
+   * @throws IOException ошибка чтения файла
+   * @throws IllegalArgumentException файл не является снимком или записан с другим масштабом цен
+   * @throws IllegalStateException база клиентов биржи не пустая
+   */
+  public static long read(File file, Exchange exchange) throws IOException {
+    ClientBase clientBase = exchange.clientBase;
+    if (clientBase.getClientDictionary().size() > 0) {
+      throw new IllegalStateException("Снимок восстанавливается в пустую базу клиентов");
+    }
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        throw new IllegalArgumentException("Файл не является снимком биржи: " + file);
+      }
+      int scale = in.readInt();
+      if (scale != FixedPoint.SCALE) {
+        throw new IllegalArgumentException("Снимок записан с масштабом цен " + scale
+            + ", текущий масштаб " + FixedPoint.SCALE);
+      }
+      int time = in.readInt();
+      long journalPosition = in.readLong();
+      NameDictionary stocks = clientBase.getStockDictionary();
+      NameDictionary clients = clientBase.getClientDictionary();
+      String[] stockNames = readNames(in, stocks);
+      String[] clientNames = readNames(in, clients);
+
+      int balances = in.readInt();
+      for (int i = 0; i < balances; i++) {
+        int clientId = in.readInt();
+        long amount = in.readLong();
+        int amountScale = in.readInt();
+        int[] stockCounts = new int[in.readInt()];
+        for (int stockId = 0; stockId < stockCounts.length; stockId++) {
+          stockCounts[stockId] = in.readInt();
+        }
+        clientBase.addClientBalance(ClientBalance.restore(clientNames[clientId], amount, amountScale, stocks,
+            stockCounts));
+      }
+
+      int books = in.readInt();
+      for (int i = 0; i < books; i++) {
+        int stockId = in.readInt();
+        StockOrdersQueue book = exchange.ordersQueue(stockId);
+        readOrders(in, book, Order.Type.SELL, stockId, stockNames[stockId], clientNames);
+        readOrders(in, book, Order.Type.BAY, stockId, stockNames[stockId], clientNames);
+      }
+      Order.restoreTimeCounter(time);
+      return journalPosition;
+    }
+  }
+
+  private static String[] readNames(DataInputStream in, NameDictionary dictionary) throws IOException {
+    String[] names = new String[in.readInt()];
+    for (int id = 0; id < names.length; id++) {
+      names[id] = in.readUTF();
+      if (dictionary.id(names[id]) != id) {
+        throw new IllegalStateException("Номер " + names[id] + " в словаре не совпадает со снимком");
+      }
+    }
+    return names;
+  }
+
+  private static void readOrders(DataInputStream in, StockOrdersQueue book, Order.Type type, int stockId,
+                                 String stockName, String[] clientNames) throws IOException {
+    int count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      int time = in.readInt();
+      int id = in.readInt();
+      int clientId = in.readInt();
+      long price = in.readLong();
+      int priceScale = in.readByte();
+      Order order = Order.allocate().init(clientId, clientNames[clientId], type, stockId, stockName, price,
+          priceScale, in.readInt()).command(Order.Action.NEW, id);
+      order.restoreTime(time);
+      book.restore(order);
+    }
+  }
+
+  /**
+   * Имя файла снимка: позиция журнала дополнена нулями, поэтому имена упорядочены по позиции
+   * @param directory каталог снимков
+   * @param journalPosition позиция журнала
+   * @return файл снимка
+   */
+  static File file(File directory, long journalPosition) {
+    return new File(directory, String.format("%s%020d%s", PREFIX, journalPosition, SUFFIX));
+  }
+
+  /**
+   * Поиск последнего снимка
+   * @param directory каталог снимков
+   * @return последний снимок или null, если снимков нет
+   */
+  public static File latest(File directory) {
+    File[] snapshots = snapshots(directory);
+    return snapshots.length == 0 ? null : snapshots[snapshots.length - 1];
+  }
+
+  /**
+   * Удаление снимков, кроме последних
+   * @param directory каталог снимков
+   * @param keep количество оставляемых снимков
+   */
+  static void prune(File directory, int keep) {
+    File[] snapshots = snapshots(directory);
+    for (int i = 0; i < snapshots.length - keep; i++) {
+      snapshots[i].delete();
+    }
+  }
+
+  private static File[] snapshots(File directory) {
+    File[] snapshots = directory.listFiles((dir, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+    if (snapshots == null) {
+      return new File[0];
+    }
+    Arrays.sort(snapshots);
+    return snapshots;
+  }
+}
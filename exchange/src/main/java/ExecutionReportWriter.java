@@ -0,0 +1,240 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Поток отчетов об исполнении сделок. Подключается к бирже как {@link FillListener}: каждая сделка записывается
+ * в заранее выделенное кольцо и не создает объектов, отдельный поток пишет отчеты из кольца в файл пачками.
+ * Поток сопоставления не выполняет операций с диском и ждет только при заполнении кольца,
+ * такие ожидания учитываются в {@link #getStalls()}.
+ *
+ * Строка отчета, поля разделены табуляцией: порядковый номер сделки, покупатель, продавец, акция, цена, количество.
+ * Порядковые номера начинаются с 1 и идут в порядке сделок. Файл записывается в UTF-8 независимо
+ * от кодировки платформы, поэтому имена клиентов и акций не теряются при чтении на другой платформе.
+ *
+ * Сделки могут поступать из нескольких потоков, например от {@link ParallelExchange}, запись в кольцо
+ * синхронизирована. Если запись в файл не удалась, отчеты дальше выбираются из кольца без записи,
+ * а ошибка выбрасывается из {@link #close()}.
+ */
+public class ExecutionReportWriter implements FillListener, AutoCloseable {
+  /**
+   * Емкость кольца по умолчанию
+   */
+  public static final int DEFAULT_CAPACITY = 1 << 16;
+  private static final int BUFFER_SIZE = 1 << 16;
+  /**
+   * Наибольшая длина строки без имен: номер, цена со знаком и точкой, количество и разделители
+   */
+  private static final int MAX_LINE_WITHOUT_NAMES = 80;
+  private static final long IDLE_PARK_NANOS = 1_000_000;
+  private static final long STALL_PARK_NANOS = 10_000;
+
+  private final ClientBase clientBase;
+  private final FileChannel channel;
+  private final int mask;
+  private final int[] buyers;
+  private final int[] sellers;
+  private final int[] stocks;
+  private final long[] prices;
+  private final int[] priceScales;
+  private final int[] counts;
+  /**
+   * Количество записанных в кольцо отчетов, номер последней сделки
+   */
+  private final AtomicLong published = new AtomicLong();
+  /**
+   * Количество отчетов, выбранных из кольца потоком записи
+   */
+  private final AtomicLong consumed = new AtomicLong();
+  private final Thread writer;
+  private volatile boolean stopped;
+  private volatile IOException failure;
+  private long stalls;
+  private byte[][] clientNames = new byte[16][];
+  private byte[][] stockNames = new byte[16][];
+
+  /**
+   * Открытие файла отчетов с емкостью кольца по умолчанию, существующий файл перезаписывается
+   * @param file файл отчетов
+   * @param clientBase база клиентов, по словарям которой записываются имена
+   * @throws IOException ошибка открытия файла
+   */
+  public ExecutionReportWriter(File file, ClientBase clientBase) throws IOException {
+    this(file, clientBase, DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Открытие файла отчетов, существующий файл перезаписывается
+   * @param file файл отчетов
+   * @param clientBase база клиентов, по словарям которой записываются имена
+   * @param capacity емкость кольца, степень двойки
+   * @throws IOException ошибка открытия файла
+   */
+  public ExecutionReportWriter(File file, ClientBase clientBase, int capacity) throws IOException {
+    if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("Емкость кольца должна быть степенью двойки");
+    }
+    this.clientBase = clientBase;
+    this.mask = capacity - 1;
+    this.buyers = new int[capacity];
+    this.sellers = new int[capacity];
+    this.stocks = new int[capacity];
+    this.prices = new long[capacity];
+    this.priceScales = new int[capacity];
+    this.counts = new int[capacity];
+    this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING);
+    this.writer = new Thread(this::drain, "execution-reports");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  @Override
+  public synchronized void onFill(Order incoming, Order resting, long price, int priceScale, int count) {
+    long sequence = published.get();
+    if (sequence - consumed.get() > mask) {
+      stalls++;
+      do {
+        LockSupport.parkNanos(STALL_PARK_NANOS);
+      } while (sequence - consumed.get() > mask);
+    }
+    int slot = (int) sequence & mask;
+    boolean incomingBuys = incoming.getType() == Order.Type.BAY;
+    buyers[slot] = incomingBuys ? incoming.getClientId() : resting.getClientId();
+    sellers[slot] = incomingBuys ? resting.getClientId() : incoming.getClientId();
+    stocks[slot] = incoming.getStockId();
+    prices[slot] = price;
+    priceScales[slot] = priceScale;
+    counts[slot] = count;
+    published.lazySet(sequence + 1);
+  }
+
+  /**
+   * Ожидание записи в файл всех отчетов, поступивших до вызова
+   */
+  public void flush() {
+    long target = published.get();
+    while (consumed.get() < target && writer.isAlive()) {
+      LockSupport.parkNanos(IDLE_PARK_NANOS);
+    }
+  }
+
+  /**
+   * Количество отчетов о сделках
+   * @return номер последней сделки
+   */
+  public long getReports() {
+    return published.get();
+  }
+
+  /**
+   * Количество ожиданий потока сделок из-за заполненного кольца
+   * @return количество ожиданий
+   */
+  public synchronized long getStalls() {
+    return stalls;
+  }
+
+  /**
+   * Запись оставшихся отчетов и закрытие файла
+   * @throws IOException ошибка записи файла
+   */
+  @Override
+  public void close() throws IOException {
+    stopped = true;
+    LockSupport.unpark(writer);
+    try {
+      writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    try {
+      if (failure == null) {
+        channel.force(false);
+      }
+    } finally {
+      channel.close();
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * Поток записи: выбирает из кольца все поступившие отчеты и пишет их пачкой
+   */
+  private void drain() {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    while (true) {
+      long next = consumed.get();
+      long available = published.get();
+      if (next == available) {
+        if (stopped) {
+          if (published.get() == next) {
+            return;
+          }
+          continue;
+        }
+        LockSupport.parkNanos(IDLE_PARK_NANOS);
+        continue;
+      }
+      for (; next < available; next++) {
+        int slot = (int) next & mask;
+        byte[] buyer = clientName(buyers[slot]);
+        byte[] seller = clientName(sellers[slot]);
+        byte[] stock = stockName(stocks[slot]);
+        if (buffer.remaining() < MAX_LINE_WITHOUT_NAMES + buyer.length + seller.length + stock.length) {
+          write(buffer);
+        }
+        ClientBaseWriter.putLong(buffer, next + 1);
+        buffer.put((byte) '\t').put(buyer).put((byte) '\t').put(seller).put((byte) '\t').put(stock).put((byte) '\t');
+        ClientBaseWriter.putAmount(buffer, prices[slot], priceScales[slot]);
+        buffer.put((byte) '\t');
+        ClientBaseWriter.putLong(buffer, counts[slot]);
+        buffer.put(ClientBaseWriter.LINE_SEPARATOR);
+      }
+      write(buffer);
+      consumed.lazySet(available);
+    }
+  }
+
+  private void write(ByteBuffer buffer) {
+    buffer.flip();
+    try {
+      if (failure == null) {
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+      }
+    } catch (IOException e) {
+      failure = e;
+    }
+    buffer.clear();
+  }
+
+  private byte[] clientName(int clientId) {
+    if (clientId >= clientNames.length) {
+      clientNames = Arrays.copyOf(clientNames, Math.max(clientNames.length * 2, clientId + 1));
+    }
+    if (clientNames[clientId] == null) {
+      clientNames[clientId] = clientBase.getClientDictionary().name(clientId).getBytes(StandardCharsets.UTF_8);
+    }
+    return clientNames[clientId];
+  }
+
+  private byte[] stockName(int stockId) {
+    if (stockId >= stockNames.length) {
+      stockNames = Arrays.copyOf(stockNames, Math.max(stockNames.length * 2, stockId + 1));
+    }
+    if (stockNames[stockId] == null) {
+      stockNames[stockId] = clientBase.getStockDictionary().name(stockId).getBytes(StandardCharsets.UTF_8);
+    }
+    return stockNames[stockId];
+  }
+}
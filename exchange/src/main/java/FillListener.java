@@ -0,0 +1,15 @@
+/**
+ * Получатель сделок биржи. Вызывается в потоке, обрабатывающем стакан акции, сразу после расчета сделки,
+ * поэтому количество в заявках уже уменьшено на исполненное.
+ */
+public interface FillListener {
+  /**
+   * Сделка между поступившей заявкой и заявкой из стакана
+   * @param incoming поступившая заявка
+   * @param resting заявка из стакана, по цене которой прошла сделка
+   * @param price цена сделки в единицах {@link FixedPoint}
+   * @param priceScale масштаб цены для вывода
+   * @param count количество акций в сделке
+   */
+  void onFill(Order incoming, Order resting, long price, int priceScale, int count);
+}
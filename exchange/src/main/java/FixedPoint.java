@@ -0,0 +1,212 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+
+/**
+ * Арифметика с фиксированной точкой для цен и денежных сумм.
+ * Значение хранится в long как количество минимальных единиц 10^-{@link #SCALE}.
+ * Масштаб задается системным свойством {@code exchange.scale} (по умолчанию 4 знака после запятой).
+ * Все операции проверяют переполнение и выбрасывают {@link ArithmeticException}.
+ *
+ * Помимо значения для вывода хранится масштаб исходного числа (количество знаков после запятой
+ * в записи), это позволяет выводить результат так же, как при расчетах в {@link BigDecimal}.
+ */
+public final class FixedPoint {
+  /**
+   * Количество знаков после запятой во внутреннем представлении
+   */
+  public static final int SCALE = Integer.getInteger("exchange.scale", 4);
+  /**
+   * Единица во внутреннем представлении
+   */
+  public static final long ONE;
+
+  static {
+    if (SCALE < 0 || SCALE > 18) {
+      throw new IllegalStateException("Масштаб exchange.scale должен быть в диапазоне от 0 до 18: " + SCALE);
+    }
+    long one = 1;
+    for (int i = 0; i < SCALE; i++) {
+      one *= 10;
+    }
+    ONE = one;
+  }
+
+  private FixedPoint() {
+  }
+
+  /**
+   * Перевод целого числа во внутреннее представление
+   * @param value целое число
+   * @return значение в единицах {@link FixedPoint}
+   */
+  public static long valueOf(long value) {
+    return Math.multiplyExact(value, ONE);
+  }
+
+  /**
+   * Перевод {@link BigDecimal} во внутреннее представление
+   * @param value число
+   * @return значение в единицах {@link FixedPoint}
+   * @throws IllegalArgumentException если у числа больше знаков после запятой, чем {@link #SCALE}, или оно не помещается в long
+   */
+  public static long valueOf(BigDecimal value) {
+    try {
+      return value.movePointRight(SCALE).longValueExact();
+    } catch (ArithmeticException e) {
+      throw new IllegalArgumentException("Число не представимо с точностью " + SCALE + " знаков: " + value);
+    }
+  }
+
+  /**
+   * Масштаб числа для вывода
+   * @param value число
+   * @return количество знаков после запятой, не меньше 0
+   */
+  public static int scaleOf(BigDecimal value) {
+    return Math.max(0, value.scale());
+  }
+
+  /**
+   * Разбор десятичной записи числа вида {@code [-]123[.45]} сразу во внутреннее представление
+   * @param text запись числа
+   * @return значение в единицах {@link FixedPoint}
+   * @throws IllegalArgumentException при некорректной записи или потере точности
+   */
+  public static long parse(CharSequence text) {
+    int length = text.length();
+    int pos = 0;
+    boolean negative = false;
+    if (length > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+')) {
+      negative = text.charAt(0) == '-';
+      pos++;
+    }
+    long value = 0;
+    int fraction = -1;
+    boolean digits = false;
+    for (; pos < length; pos++) {
+      char c = text.charAt(pos);
+      if (c == '.' && fraction < 0) {
+        fraction = 0;
+      } else if (c >= '0' && c <= '9') {
+        if (fraction >= 0 && ++fraction > SCALE) {
+          throw new IllegalArgumentException("Число не представимо с точностью " + SCALE + " знаков: " + text);
+        }
+        value = accumulate(value, c - '0', text);
+        digits = true;
+      } else {
+        throw new IllegalArgumentException("Некорректное число: " + text);
+      }
+    }
+    if (!digits) {
+      throw new IllegalArgumentException("Некорректное число: " + text);
+    }
+    for (int i = Math.max(fraction, 0); i < SCALE; i++) {
+      value = accumulate(value, 0, text);
+    }
+    return negative ? -value : value;
+  }
+
+  /**
+   * Разбор десятичной записи числа вида {@code [-]123[.45]}, записанной байтами ASCII
+   * @param buffer буфер с записью числа
+   * @param start позиция первого байта
+   * @param end позиция за последним байтом
+   * @return значение в единицах {@link FixedPoint}
+   * @throws IllegalArgumentException при некорректной записи или потере точности
+   */
+  public static long parse(ByteBuffer buffer, int start, int end) {
+    int pos = start;
+    boolean negative = false;
+    if (pos < end && (buffer.get(pos) == '-' || buffer.get(pos) == '+')) {
+      negative = buffer.get(pos) == '-';
+      pos++;
+    }
+    long value = 0;
+    int fraction = -1;
+    boolean digits = false;
+    try {
+      for (; pos < end; pos++) {
+        byte c = buffer.get(pos);
+        if (c == '.' && fraction < 0) {
+          fraction = 0;
+        } else if (c >= '0' && c <= '9') {
+          if (fraction >= 0 && ++fraction > SCALE) {
+            throw new IllegalArgumentException("Число не представимо с точностью " + SCALE + " знаков");
+          }
+          value = Math.addExact(Math.multiplyExact(value, 10L), c - '0');
+          digits = true;
+        } else {
+          throw new IllegalArgumentException("Некорректное число");
+        }
+      }
+      if (!digits) {
+        throw new IllegalArgumentException("Некорректное число");
+      }
+      for (int i = Math.max(fraction, 0); i < SCALE; i++) {
+        value = Math.multiplyExact(value, 10L);
+      }
+    } catch (ArithmeticException e) {
+      throw new IllegalArgumentException("Число не помещается в диапазон");
+    }
+    return negative ? -value : value;
+  }
+
+  /**
+   * Масштаб десятичной записи числа, записанной байтами ASCII
+   * @param buffer буфер с записью числа
+   * @param start позиция первого байта
+   * @param end позиция за последним байтом
+   * @return количество знаков после запятой
+   */
+  public static int scaleOf(ByteBuffer buffer, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (buffer.get(i) == '.') {
+        return end - i - 1;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Масштаб десятичной записи числа: количество знаков после точки
+   * @param text запись числа
+   * @return количество знаков после запятой
+   */
+  public static int scaleOf(CharSequence text) {
+    for (int i = 0; i < text.length(); i++) {
+      if (text.charAt(i) == '.') {
+        return text.length() - i - 1;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Стоимость нескольких единиц товара
+   * @param price цена в единицах {@link FixedPoint}
+   * @param count количество
+   * @return стоимость в единицах {@link FixedPoint}
+   */
+  public static long multiply(long price, int count) {
+    return Math.multiplyExact(price, (long) count);
+  }
+
+  /**
+   * Перевод во {@link BigDecimal} для вывода
+   * @param value значение в единицах {@link FixedPoint}
+   * @param scale масштаб для вывода
+   * @return число
+   */
+  public static BigDecimal toBigDecimal(long value, int scale) {
+    return BigDecimal.valueOf(value, SCALE).setScale(scale, RoundingMode.UNNECESSARY);
+  }
+
+  private static long accumulate(long value, int digit, CharSequence text) {
+    try {
+      return Math.addExact(Math.multiplyExact(value, 10L), digit);
+    } catch (ArithmeticException e) {
+      throw new IllegalArgumentException("Число не помещается в диапазон: " + text);
+    }
+  }
+}
@@ -0,0 +1,148 @@
+import java.beans.ConstructorProperties;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Гистограмма задержек с фиксированными интервалами. Интервал с номером i содержит значения
+ * от 2<sup>i-1</sup> до 2<sup>i</sup>-1 наносекунд, поэтому запись - одно сложение без блокировок и выделения памяти.
+ * Счетчики интервалов {@link LongAdder} распределены по ячейкам и не мешают друг другу при записи из нескольких потоков.
+ * Процентили оцениваются по верхней границе интервала.
+ */
+public final class LatencyHistogram {
+  private static final int BUCKETS = 64;
+
+  private final LongAdder[] buckets = new LongAdder[BUCKETS];
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+  public LatencyHistogram() {
+    for (int i = 0; i < BUCKETS; i++) {
+      buckets[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * Запись значения
+   * @param nanos задержка в наносекундах, отрицательные значения считаются нулевыми
+   */
+  public void record(long nanos) {
+    if (nanos < 0) {
+      nanos = 0;
+    }
+    buckets[Math.min(BUCKETS - Long.numberOfLeadingZeros(nanos), BUCKETS - 1)].increment();
+    max.accumulate(nanos);
+  }
+
+  /**
+   * Количество записанных значений
+   * @return количество значений
+   */
+  public long count() {
+    long count = 0;
+    for (LongAdder bucket : buckets) {
+      count += bucket.sum();
+    }
+    return count;
+  }
+
+  /**
+   * Оценка процентиля по верхней границе интервала
+   * @param percentile процентиль от 0 до 100
+   * @return задержка в наносекундах, 0 при отсутствии значений
+   */
+  public long percentile(double percentile) {
+    long[] counts = new long[BUCKETS];
+    long total = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] = buckets[i].sum();
+      total += counts[i];
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.min(upperBound(i), max.get());
+      }
+    }
+    return max.get();
+  }
+
+  /**
+   * Наибольшее записанное значение
+   * @return задержка в наносекундах
+   */
+  public long max() {
+    return max.get();
+  }
+
+  /**
+   * Сброс значений. Значения, записанные одновременно со сбросом, могут быть учтены частично.
+   */
+  public void reset() {
+    for (LongAdder bucket : buckets) {
+      bucket.reset();
+    }
+    max.reset();
+  }
+
+  /**
+   * Сводка по гистограмме для JMX
+   * @return {@link Summary}
+   */
+  public Summary summary() {
+    return new Summary(count(), percentile(50), percentile(90), percentile(99), percentile(99.9), max());
+  }
+
+  private static long upperBound(int bucket) {
+    return bucket == 0 ? 0 : bucket >= BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+  }
+
+  /**
+   * Сводка по гистограмме: количество значений и процентили в наносекундах
+   */
+  public static class Summary {
+    private final long count;
+    private final long p50;
+    private final long p90;
+    private final long p99;
+    private final long p999;
+    private final long max;
+
+    @ConstructorProperties({"count", "p50", "p90", "p99", "p999", "max"})
+    public Summary(long count, long p50, long p90, long p99, long p999, long max) {
+      this.count = count;
+      this.p50 = p50;
+      this.p90 = p90;
+      this.p99 = p99;
+      this.p999 = p999;
+      this.max = max;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    public long getP50() {
+      return p50;
+    }
+
+    public long getP90() {
+      return p90;
+    }
+
+    public long getP99() {
+      return p99;
+    }
+
+    public long getP999() {
+      return p999;
+    }
+
+    public long getMax() {
+      return max;
+    }
+  }
+}
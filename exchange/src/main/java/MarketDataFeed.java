@@ -0,0 +1,259 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Лента рыночных данных второго уровня: глубина стаканов по ценовым уровням (цена, суммарный остаток,
+ * количество заявок). Лента подключается к бирже через {@link Exchange#setDepthListener(DepthListener)}
+ * и получает изменения только затронутых уровней, стаканы не обходятся.
+ *
+ * Лента хранит текущее состояние уровней всех акций, а каждая подписка {@link Subscription} - множество
+ * уровней, изменившихся с последнего чтения. Повторное изменение уровня до чтения не добавляет новую запись,
+ * поэтому медленный подписчик получает последнее состояние уровня вместо всех промежуточных (conflation).
+ * Если изменилось больше уровней, чем емкость подписки, изменения сбрасываются и следующее чтение
+ * возвращает полный снимок глубины. Публикация изменения стоит O(количество подписок) и не зависит
+ * от отставания подписчиков.
+ *
+ * Класс потокобезопасен: изменения публикуются потоками стаканов, подписки читаются своими потоками.
+ * Уровни каждой акции защищены своей блокировкой, поэтому стаканы разных акций публикуют изменения
+ * независимо, а полный снимок собирается по одной акции и не останавливает публикацию остальных.
+ */
+public class MarketDataFeed implements DepthListener {
+  /**
+   * Емкость подписки по умолчанию
+   */
+  public static final int DEFAULT_CAPACITY = 4096;
+
+  private final NameDictionary stocks;
+  /**
+   * Уровни по номеру акции, массив заменяется при росте под блокировкой ленты
+   */
+  private volatile Sides[] depth = new Sides[16];
+  private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+  /**
+   * @param clientBase база клиентов биржи, из словаря акций берутся имена акций
+   */
+  public MarketDataFeed(ClientBase clientBase) {
+    this.stocks = clientBase.getStockDictionary();
+  }
+
+  /**
+   * Подписка на изменения глубины с емкостью по умолчанию. Первое чтение возвращает полный снимок.
+   * @return подписка
+   */
+  public Subscription subscribe() {
+    return subscribe(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Подписка на изменения глубины. Первое чтение возвращает полный снимок.
+   * @param capacity наибольшее количество изменившихся уровней между чтениями
+   * @return подписка
+   */
+  public Subscription subscribe(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Емкость подписки должна быть положительной");
+    }
+    Subscription subscription = new Subscription(capacity);
+    subscriptions.add(subscription);
+    return subscription;
+  }
+
+  /**
+   * Отмена подписки
+   * @param subscription подписка
+   */
+  public void unsubscribe(Subscription subscription) {
+    subscriptions.remove(subscription);
+  }
+
+  @Override
+  public void onLevel(int stockId, Order.Type type, long price, int priceScale, long quantity, int orders) {
+    Sides sides = sides(stockId);
+    synchronized (sides) {
+      Map<Long, DepthLevel> levels = sides.levels(type);
+      DepthLevel level = quantity > 0 ? levels.get(price) : levels.remove(price);
+      if (level == null) {
+        if (quantity <= 0) {
+          return;
+        }
+        level = new DepthLevel(stockId, stocks.name(stockId), type, price);
+        levels.put(price, level);
+      }
+      level.priceScale = priceScale;
+      level.quantity = quantity;
+      level.orders = orders;
+      for (Subscription subscription : subscriptions) {
+        subscription.changed(level);
+      }
+    }
+  }
+
+  /**
+   * Текущая глубина стороны стакана
+   * @param stockId номер акции
+   * @param type сторона стакана
+   * @return уровни от лучшей цены к худшей
+   */
+  public List<DepthLevel> depth(int stockId, Order.Type type) {
+    List<DepthLevel> levels = new ArrayList<>();
+    Sides[] current = depth;
+    if (stockId < current.length && current[stockId] != null) {
+      current[stockId].copy(type, levels);
+    }
+    return levels;
+  }
+
+  /**
+   * Уровни акции, при первом обращении создаются
+   */
+  private Sides sides(int stockId) {
+    Sides[] current = depth;
+    if (stockId < current.length && current[stockId] != null) {
+      return current[stockId];
+    }
+    synchronized (this) {
+      current = depth;
+      if (stockId >= current.length) {
+        Sides[] grown = new Sides[Math.max(current.length * 2, stockId + 1)];
+        System.arraycopy(current, 0, grown, 0, current.length);
+        current = grown;
+      }
+      if (current[stockId] == null) {
+        current[stockId] = new Sides();
+      }
+      depth = current;
+      return current[stockId];
+    }
+  }
+
+  /**
+   * Полный снимок глубины, акции копируются по одной под своей блокировкой
+   */
+  private void snapshot(Collection<DepthLevel> updates) {
+    for (Sides sides : depth) {
+      if (sides != null) {
+        for (Order.Type type : Order.Type.values()) {
+          List<DepthLevel> levels = new ArrayList<>();
+          sides.copy(type, levels);
+          updates.addAll(levels);
+        }
+      }
+    }
+  }
+
+  private static Comparator<DepthLevel> bestFirst(Order.Type type) {
+    Comparator<DepthLevel> byPrice = Comparator.comparingLong(DepthLevel::getPriceUnits);
+    return type == Order.Type.SELL ? byPrice : byPrice.reversed();
+  }
+
+  /**
+   * Уровни обеих сторон стакана одной акции. Экземпляр служит блокировкой уровней акции.
+   */
+  private static final class Sides {
+    final HashMap<Long, DepthLevel> sell = new HashMap<>();
+    final HashMap<Long, DepthLevel> bay = new HashMap<>();
+
+    HashMap<Long, DepthLevel> levels(Order.Type type) {
+      return type == Order.Type.SELL ? sell : bay;
+    }
+
+    /**
+     * Копирование уровней стороны от лучшей цены к худшей
+     */
+    synchronized void copy(Order.Type type, List<DepthLevel> to) {
+      for (DepthLevel level : levels(type).values()) {
+        to.add(level.copy());
+      }
+      to.sort(bestFirst(type));
+    }
+  }
+
+  /**
+   * Подписка на изменения глубины. Читается одним потоком подписчика.
+   */
+  public class Subscription {
+    private final int capacity;
+    /**
+     * Изменившиеся уровни в порядке первого изменения. Удаленный и заново созданный уровень
+     * встречается дважды: сначала с нулевым остатком, затем с новым.
+     */
+    private LinkedHashSet<DepthLevel> changed = new LinkedHashSet<>();
+    /**
+     * Множество, в которое поток подписчика забирает изменения для чтения вне блокировки подписки
+     */
+    private LinkedHashSet<DepthLevel> taken = new LinkedHashSet<>();
+    private boolean snapshot = true;
+    private long snapshots;
+
+    private Subscription(int capacity) {
+      this.capacity = capacity;
+    }
+
+    /**
+     * Отметка изменения уровня, вызывается под блокировкой акции уровня
+     */
+    private synchronized void changed(DepthLevel level) {
+      if (snapshot) {
+        return;
+      }
+      changed.add(level);
+      if (changed.size() > capacity) {
+        changed.clear();
+        snapshot = true;
+      }
+    }
+
+    /**
+     * Чтение изменений с прошлого чтения: последнее состояние каждого изменившегося уровня,
+     * уровень с нулевым остатком удален. Если подписчик отстал больше чем на емкость подписки,
+     * вместо изменений возвращается полный снимок глубины всех акций.
+     *
+     * Изменения, опубликованные во время сборки снимка, возвращаются следующим чтением,
+     * даже если уже попали в снимок.
+     * @param updates коллекция, в которую добавляются уровни
+     * @return true, если добавлен полный снимок, который заменяет всю ранее полученную глубину
+     */
+    public boolean poll(Collection<DepthLevel> updates) {
+      boolean full;
+      synchronized (this) {
+        full = snapshot;
+        if (full) {
+          snapshot = false;
+          snapshots++;
+          changed.clear();
+        } else {
+          LinkedHashSet<DepthLevel> levels = changed;
+          changed = taken;
+          taken = levels;
+        }
+      }
+      if (full) {
+        MarketDataFeed.this.snapshot(updates);
+        return true;
+      }
+      for (DepthLevel level : taken) {
+        Sides sides = sides(level.getStockId());
+        synchronized (sides) {
+          updates.add(level.copy());
+        }
+      }
+      taken.clear();
+      return false;
+    }
+
+    /**
+     * Количество полных снимков, полученных подпиской, включая первый
+     * @return количество снимков
+     */
+    public synchronized long getSnapshots() {
+      return snapshots;
+    }
+  }
+}
@@ -0,0 +1,118 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Кэш номеров имен клиентов и акций, разбираемых из байтов.
+ * Поиск идет по хэшу байтов без создания промежуточных строк, при первой встрече имени
+ * строка создается один раз и номер берется из общего {@link NameDictionary}.
+ * Используется открытая адресация с линейным пробированием.
+ * Класс не является потокобезопасным, при параллельном разборе у каждого потока свой кэш над общим словарем.
+ */
+class NameCache {
+  private static final int INITIAL_CAPACITY = 64;
+
+  private final NameDictionary dictionary;
+  private final boolean registering;
+  private byte[][] keys = new byte[INITIAL_CAPACITY][];
+  private int[] values = new int[INITIAL_CAPACITY];
+  private int[] hashes = new int[INITIAL_CAPACITY];
+  private int size;
+
+  /**
+   * @param dictionary словарь, в котором регистрируются новые имена
+   */
+  NameCache(NameDictionary dictionary) {
+    this(dictionary, true);
+  }
+
+  /**
+   * @param dictionary словарь имен
+   * @param registering регистрировать ли новые имена в словаре; без регистрации неизвестное имя
+   *                    получает номер -1 и не запоминается
+   */
+  NameCache(NameDictionary dictionary, boolean registering) {
+    this.dictionary = dictionary;
+    this.registering = registering;
+  }
+
+  /**
+   * Возвращает номер имени, записанного байтами в кодировке по умолчанию
+   * @param buffer буфер с именем
+   * @param start позиция первого байта
+   * @param end позиция за последним байтом
+   * @return номер имени в словаре или -1, если имени нет в словаре, а новые имена не регистрируются
+   */
+  int id(ByteBuffer buffer, int start, int end) {
+    int hash = hash(buffer, start, end);
+    int mask = keys.length - 1;
+    for (int i = hash & mask; ; i = (i + 1) & mask) {
+      byte[] key = keys[i];
+      if (key == null) {
+        return add(i, hash, buffer, start, end);
+      }
+      if (hashes[i] == hash && equals(key, buffer, start, end)) {
+        return values[i];
+      }
+    }
+  }
+
+  private int add(int index, int hash, ByteBuffer buffer, int start, int end) {
+    byte[] key = new byte[end - start];
+    for (int i = 0; i < key.length; i++) {
+      key[i] = buffer.get(start + i);
+    }
+    String name = new String(key, Charset.defaultCharset());
+    int value = registering ? dictionary.id(name) : dictionary.find(name);
+    if (value < 0) {
+      return value;
+    }
+    keys[index] = key;
+    values[index] = value;
+    hashes[index] = hash;
+    if (++size * 2 > keys.length) {
+      rehash();
+    }
+    return value;
+  }
+
+  private void rehash() {
+    byte[][] oldKeys = keys;
+    int[] oldValues = values;
+    int[] oldHashes = hashes;
+    keys = new byte[oldKeys.length * 2][];
+    values = new int[oldKeys.length * 2];
+    hashes = new int[oldKeys.length * 2];
+    int mask = keys.length - 1;
+    for (int j = 0; j < oldKeys.length; j++) {
+      if (oldKeys[j] != null) {
+        int i = oldHashes[j] & mask;
+        while (keys[i] != null) {
+          i = (i + 1) & mask;
+        }
+        keys[i] = oldKeys[j];
+        values[i] = oldValues[j];
+        hashes[i] = oldHashes[j];
+      }
+    }
+  }
+
+  private static int hash(ByteBuffer buffer, int start, int end) {
+    int hash = 1;
+    for (int i = start; i < end; i++) {
+      hash = 31 * hash + buffer.get(i);
+    }
+    return hash ^ (hash >>> 16);
+  }
+
+  private static boolean equals(byte[] key, ByteBuffer buffer, int start, int end) {
+    if (key.length != end - start) {
+      return false;
+    }
+    for (int i = 0; i < key.length; i++) {
+      if (key[i] != buffer.get(start + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
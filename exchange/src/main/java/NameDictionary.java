@@ -0,0 +1,77 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Словарь имен: каждому имени клиента или акции один раз присваивается плотный номер, начиная с 0.
+ * По номерам индексируются массивы стаканов, счетов и позиций, имя нужно только для вывода.
+ * Номера присваиваются в порядке первой встречи имени.
+ *
+ * Словарь потокобезопасен: присвоение номера синхронизировано, получение имени по номеру не блокируется.
+ */
+public class NameDictionary {
+  private final Map<String, Integer> ids;
+  private volatile String[] names;
+  private volatile int size;
+
+  public NameDictionary() {
+    this(16);
+  }
+
+  /**
+   * Словарь с заранее выделенным местом, чтобы не перестраивать его при заполнении
+   * @param expectedSize ожидаемое количество имен
+   */
+  public NameDictionary(int expectedSize) {
+    ids = new HashMap<>(Math.max(16, (int) (expectedSize / 0.75f) + 1));
+    names = new String[Math.max(16, expectedSize)];
+  }
+
+  /**
+   * Возвращает номер имени, при первой встрече имени присваивается новый номер
+   * @param name имя
+   * @return номер имени
+   */
+  public synchronized int id(String name) {
+    Integer id = ids.get(name);
+    if (id == null) {
+      id = size;
+      String[] current = names;
+      if (id == current.length) {
+        current = Arrays.copyOf(current, current.length * 2);
+      }
+      current[id] = name;
+      ids.put(name, id);
+      names = current;
+      size = id + 1;
+    }
+    return id;
+  }
+
+  /**
+   * Возвращает номер имени без добавления в словарь
+   * @param name имя
+   * @return номер имени или -1, если имени нет в словаре
+   */
+  public synchronized int find(String name) {
+    Integer id = ids.get(name);
+    return id == null ? -1 : id;
+  }
+
+  /**
+   * Возвращает имя по номеру
+   * @param id номер имени
+   * @return имя
+   */
+  public String name(int id) {
+    return names[id];
+  }
+
+  /**
+   * Возвращает количество имен в словаре
+   * @return количество имен
+   */
+  public int size() {
+    return size;
+  }
+}
@@ -0,0 +1,497 @@
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Заявка на бирже
+ */
+public class Order implements Comparable<Order> {
+  /**
+   * Тип заявки: покупка или продажа
+   */
+  enum Type {
+    SELL("s"),
+    BAY("b");
+
+    private String letter;
+
+    Type(String letter) {
+      this.letter = letter;
+    }
+
+    /**
+     * Выбор типа заявки, в зависимости от буквы
+     * @param letter буква заявки
+     * @return {@link Type}
+     */
+    public static Type parseLetter(String letter) {
+      for (Type pos: Type.values()) {
+        if (letter.equalsIgnoreCase(pos.letter)) {
+          return pos;
+        }
+      }
+      throw new IllegalArgumentException("Некорректный тип заявки " + letter);
+    }
+  }
+
+  /**
+   * Действие заявки: новая заявка или команда над заявкой в стакане, указанной номером {@link #getId()}
+   */
+  enum Action {
+    /**
+     * Новая заявка на покупку или продажу
+     */
+    NEW,
+    /**
+     * Снятие заявки
+     */
+    CANCEL,
+    /**
+     * Уменьшение остатка заявки с сохранением приоритета
+     */
+    REDUCE,
+    /**
+     * Изменение цены и количества с потерей приоритета
+     */
+    AMEND
+  }
+
+  private String clientName;
+  private int clientId = -1;
+  private Type type;
+  private String stockName;
+  private int stockId = -1;
+  private long price;
+  private int priceScale;
+  private int count;
+  private int time;
+  private int id;
+  private Action action = Action.NEW;
+
+  /**
+   * Соседние заявки в очереди ценового уровня {@link PriceLevel}
+   */
+  Order prev;
+  Order next;
+  /**
+   * Серия заявок клиента на ценовом уровне, в которую входит заявка
+   */
+  OrderRun run;
+
+  /**
+   * Иммитация работы с вренем, важен только порядок, в котором создаются заявки.
+   * Если цены заявок будут одинаковые, то должна выбираться заявка, созданная раньше.
+   */
+  private static AtomicInteger timeCounter = new AtomicInteger(0);
+
+  private Order() {
+  }
+
+  /**
+   * Заполнение заявки, взятой из {@link OrderPool}. Время поступления не присваивается.
+   * @return заявка
+   */
+  Order init(int clientId, String clientName, Type type, int stockId, String stockName,
+             long price, int priceScale, int count) {
+    this.clientId = clientId;
+    this.clientName = clientName;
+    this.type = type;
+    this.stockId = stockId;
+    this.stockName = stockName;
+    this.price = price;
+    this.priceScale = priceScale;
+    this.count = count;
+    this.time = 0;
+    this.id = 0;
+    this.action = Action.NEW;
+    return this;
+  }
+
+  /**
+   * Указывает номер заявки и действие, например при разборе строки команды
+   * @param action действие
+   * @param id номер заявки, для команды - номер заявки в стакане
+   * @return заявка
+   */
+  Order command(Action action, int id) {
+    this.action = action;
+    this.id = id;
+    return this;
+  }
+
+  /**
+   * Создает пустую заявку для {@link OrderPool}
+   * @return заявка
+   */
+  static Order allocate() {
+    return new Order();
+  }
+
+  /**
+   * Время поступления заявки
+   * @return порядковый номер заявки
+   */
+  int getTime() {
+    return time;
+  }
+
+  /**
+   * Присваивает заявке очередное время поступления
+   */
+  void sequence() {
+    this.time = timeCounter.incrementAndGet();
+    if (id == 0) {
+      id = -time;
+    }
+  }
+
+  /**
+   * Номер заявки. Номер, указанный при создании, положительный. Заявка без номера получает при первом
+   * присвоении времени поступления отрицательный номер -время, поэтому номера не пересекаются.
+   * Номер не меняется при изменении заявки.
+   * @return номер заявки или 0, если номер еще не присвоен
+   */
+  public int getId() {
+    return id;
+  }
+
+  /**
+   * Действие заявки
+   * @return {@link Action}
+   */
+  Action getAction() {
+    return action;
+  }
+
+  /**
+   * Уменьшение остатка заявки в стакане
+   * @param count новый остаток
+   */
+  void reduce(int count) {
+    this.count = count;
+  }
+
+  /**
+   * Изменение цены и количества заявки, снятой из стакана
+   * @param price цена в единицах {@link FixedPoint}
+   * @param priceScale масштаб цены для вывода
+   * @param count новое количество
+   */
+  void amend(long price, int priceScale, int count) {
+    this.price = price;
+    this.priceScale = priceScale;
+    this.count = count;
+  }
+
+  /**
+   * Восстанавливает время поступления заявки из журнала или снимка. Счетчик времени продвигается так,
+   * чтобы новые заявки поступали позже восстановленных.
+   * @param time время поступления
+   */
+  void restoreTime(int time) {
+    this.time = time;
+    restoreTimeCounter(time);
+  }
+
+  /**
+   * Текущее значение счетчика времени поступления
+   * @return время последней заявки
+   */
+  static int currentTime() {
+    return timeCounter.get();
+  }
+
+  /**
+   * Продвигает счетчик времени поступления не меньше чем до указанного значения
+   * @param time время поступления
+   */
+  static void restoreTimeCounter(int time) {
+    timeCounter.accumulateAndGet(time, Math::max);
+  }
+
+  public String getClientName() {
+    return clientName;
+  }
+
+  /**
+   * Номер клиента в словаре {@link ClientBase#getClientDictionary()}
+   * @return номер клиента или -1, если номер еще не присвоен
+   */
+  public int getClientId() {
+    return clientId;
+  }
+
+  /**
+   * Номер акции в словаре {@link ClientBase#getStockDictionary()}
+   * @return номер акции или -1, если номер еще не присвоен
+   */
+  public int getStockId() {
+    return stockId;
+  }
+
+  /**
+   * Присваивает заявке номера клиента и акции по словарям базы клиентов, если они не были указаны при создании
+   * @param clientBase база клиентов
+   */
+  void resolve(ClientBase clientBase) {
+    if (clientId < 0) {
+      clientId = clientBase.getClientDictionary().id(clientName);
+    }
+    if (stockId < 0) {
+      stockId = clientBase.getStockDictionary().id(stockName);
+    }
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  public String getStockName() {
+    return stockName;
+  }
+
+  public BigDecimal getPrice() {
+    return FixedPoint.toBigDecimal(price, priceScale);
+  }
+
+  /**
+   * Цена заявки во внутреннем представлении
+   * @return цена в единицах {@link FixedPoint}
+   */
+  public long getPriceUnits() {
+    return price;
+  }
+
+  /**
+   * Масштаб цены заявки для вывода
+   * @return количество знаков после запятой в исходной записи цены
+   */
+  public int getPriceScale() {
+    return priceScale;
+  }
+
+  public int getCount() {
+    return count;
+  }
+
+  /**
+   * Обработка заявки на покупку/продажу акции. Списание денег или акций со счета клиента
+   * @param clientBase база клиентов
+   * @param price цена покупки/продажи
+   * @param count количество единиц на прокупку/продажу
+   */
+  public void process(ClientBase clientBase, BigDecimal price, int count) {
+    process(clientBase, FixedPoint.valueOf(price), FixedPoint.scaleOf(price), count);
+  }
+
+  /**
+   * Обработка заявки на покупку/продажу акции. Списание денег или акций со счета клиента
+   * @param clientBase база клиентов
+   * @param price цена покупки/продажи в единицах {@link FixedPoint}
+   * @param priceScale масштаб цены для вывода
+   * @param count количество единиц на прокупку/продажу
+   */
+  public void process(ClientBase clientBase, long price, int priceScale, int count) {
+    if (clientId < 0) {
+      resolve(clientBase);
+    }
+    AccountStore store = clientBase.getAccountStore();
+    if (store != null) {
+      settle(store, price, priceScale, count);
+      return;
+    }
+    ClientBalance clientBalance = clientBase.getClientBalance(clientId);
+    if (clientBalance == null) {
+      throw new IllegalArgumentException("В базе нет клиента " + clientName);
+    }
+    switch (type) {
+      case SELL:
+        clientBalance.sell(stockId, price, priceScale, count);
+        break;
+      case BAY:
+        clientBalance.bay(stockId, price, priceScale, count);
+        break;
+    }
+    this.count -= count;
+  }
+
+  /**
+   * Расчет сделки напрямую по хранилищу счетов, без представления {@link ClientBalance}
+   */
+  private void settle(AccountStore store, long price, int priceScale, int count) {
+    if (!store.contains(clientId)) {
+      throw new IllegalArgumentException("В базе нет клиента " + clientName);
+    }
+    switch (type) {
+      case SELL:
+        store.sell(clientId, stockId, price, priceScale, count);
+        break;
+      case BAY:
+        store.bay(clientId, stockId, price, priceScale, count);
+        break;
+    }
+    this.count -= count;
+  }
+
+  @Override
+  public int compareTo(Order o) {
+    if (this.price != o.price) {
+      switch (type) {
+        case BAY:
+          return Long.compare(o.price, this.price);
+        case SELL:
+          return Long.compare(this.price, o.price);
+      }
+    }
+    return Integer.valueOf(this.time).compareTo(o.time);
+  }
+
+  /**
+   * Создает экземпляр {@link Order}
+   */
+  public static class Builder {
+    private String clientName;
+    private int clientId = -1;
+    private Type type;
+    private String stockName;
+    private int stockId = -1;
+    private long price;
+    private int priceScale;
+    private int count;
+    private int id;
+    private Action action = Action.NEW;
+
+    /**
+     * Указывает имя клиента
+     * @param clientName имя клиента по заявке
+     * @return {@link Order.Builder}
+     */
+    public Order.Builder clientName(String clientName) {
+      this.clientName = clientName;
+      return this;
+    }
+
+    /**
+     * Указывает номер клиента
+     * @param clientId номер клиента в словаре {@link ClientBase#getClientDictionary()}
+     * @return {@link Order.Builder}
+     */
+    public Order.Builder clientId(int clientId) {
+      this.clientId = clientId;
+      return this;
+    }
+
+    /**
+     * Номер акции
+     * @param stockId номер акции в словаре {@link ClientBase#getStockDictionary()}
+     * @return {@link Order.Builder}
+     */
+    public Order.Builder stockId(int stockId) {
+      this.stockId = stockId;
+      return this;
+    }
+
+    /**
+     * Тип заявки
+     * @param type тип заявки
+     * @return {@link Order.Builder}
+     */
+    public Order.Builder type(Type type) {
+      this.type = type;
+      return this;
+    }
+
+    /**
+     * Имя акции
+     * @param stockName имя акции
+     * @return {@link Order.Builder}
+     */
+    public Order.Builder stockName(String stockName) {
+      this.stockName = stockName;
+      return this;
+    }
+
+    /**
+     * Цена акции
+     * @param price цена акции
+     * @return {@link Order.Builder}
+     */
+    public Order.Builder price(BigDecimal price) {
+      return price(FixedPoint.valueOf(price), FixedPoint.scaleOf(price));
+    }
+
+    /**
+     * Цена акции
+     * @param price цена акции в единицах {@link FixedPoint}
+     * @param priceScale масштаб цены для вывода
+     * @return {@link Order.Builder}
+     */
+    public Order.Builder price(long price, int priceScale) {
+      this.price = price;
+      this.priceScale = priceScale;
+      return this;
+    }
+
+    /**
+     * Количество акций
+     * @param count количество акций
+     * @return {@link Order.Builder}
+     */
+    public Order.Builder count(Integer count) {
+      this.count = count;
+      return this;
+    }
+
+    /**
+     * Номер заявки
+     * @param id положительный номер заявки, по которому ее можно снять или изменить
+     * @return {@link Order.Builder}
+     */
+    public Order.Builder id(int id) {
+      this.id = id;
+      return this;
+    }
+
+    /**
+     * Действие заявки, по умолчанию новая заявка
+     * @param action действие
+     * @return {@link Order.Builder}
+     */
+    Order.Builder action(Action action) {
+      this.action = action;
+      return this;
+    }
+
+    /**
+     * Создает новый экземпляр {@link Order}
+     * @return {@link Order}
+     */
+    public Order build() {
+      Order order = buildUnsequenced();
+      order.sequence();
+      return order;
+    }
+
+    /**
+     * Создает новый экземпляр {@link Order} без времени поступления. Время присваивается
+     * вызовом {@link Order#sequence()}, когда становится известен порядок заявки, например
+     * после параллельного разбора файла.
+     * @return {@link Order}
+     */
+    Order buildUnsequenced() {
+      Order order = new Order();
+      order.clientName = clientName;
+      order.clientId = clientId;
+      order.type = type;
+      order.stockName = stockName;
+      order.stockId = stockId;
+      order.price = price;
+      order.priceScale = priceScale;
+      order.count = count;
+      order.id = id;
+      order.action = action;
+
+      return order;
+    }
+  }
+
+}
@@ -0,0 +1,239 @@
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Одна сторона стакана (покупка или продажа) по одной акции.
+ * Заявки сгруппированы по ценовым уровням {@link PriceLevel}, уровни хранятся в массиве,
+ * отсортированном от худшей цены к лучшей, поэтому лучший уровень всегда последний в массиве
+ * и доступен за O(1). Внутри уровня заявки обрабатываются в порядке поступления.
+ *
+ * Обход очереди идет в порядке приоритета исполнения: от лучшей цены к худшей, внутри цены по времени.
+ * Опустевшие уровни сохраняются для повторного использования, поэтому в установившемся режиме
+ * операции со стаканом не создают объектов.
+ */
+class OrderBookSide extends AbstractQueue<Order> {
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final Order.Type type;
+  private PriceLevel[] levels = new PriceLevel[INITIAL_CAPACITY];
+  private int levelCount;
+  private int size;
+  private PriceLevel[] freeLevels = new PriceLevel[INITIAL_CAPACITY];
+  private int freeCount;
+
+  /**
+   * @param type тип заявок, которые хранятся на этой стороне стакана
+   */
+  OrderBookSide(Order.Type type) {
+    this.type = type;
+  }
+
+  /**
+   * Возвращает лучший ценовой уровень
+   * @return лучший уровень или null, если заявок нет
+   */
+  PriceLevel bestLevel() {
+    return levelCount == 0 ? null : levels[levelCount - 1];
+  }
+
+  /**
+   * Возвращает количество ценовых уровней
+   * @return количество уровней
+   */
+  int levelCount() {
+    return levelCount;
+  }
+
+  /**
+   * Возвращает ценовой уровень по индексу, лучший уровень имеет индекс {@link #levelCount()} - 1
+   * @param index индекс уровня
+   * @return ценовой уровень
+   */
+  PriceLevel level(int index) {
+    return levels[index];
+  }
+
+  /**
+   * Удаление заявки с ценового уровня. Опустевший уровень удаляется, индексы уровней лучше него уменьшаются на 1,
+   * индексы уровней хуже него не меняются.
+   * @param index индекс уровня заявки
+   * @param order заявка, находящаяся на этом уровне
+   */
+  void remove(int index, Order order) {
+    PriceLevel level = levels[index];
+    level.remove(order);
+    size--;
+    if (level.isEmpty()) {
+      System.arraycopy(levels, index + 1, levels, index, levelCount - index - 1);
+      levels[--levelCount] = null;
+      freeLevel(level);
+    }
+  }
+
+  /**
+   * Поиск ценового уровня по цене за O(log n)
+   * @param price цена в единицах {@link FixedPoint}
+   * @return уровень или null, если заявок по этой цене нет
+   */
+  PriceLevel findLevel(long price) {
+    int index = levelIndex(price);
+    return index < 0 ? null : levels[index];
+  }
+
+  /**
+   * Уменьшение остатка заявки, находящейся на этой стороне стакана. Заявка остается на своем месте в очереди уровня.
+   * @param order заявка
+   * @param count новый остаток, меньше текущего
+   */
+  void reduce(Order order, int count) {
+    levels[levelIndex(order.getPriceUnits())].quantity -= order.getCount() - count;
+    order.reduce(count);
+  }
+
+  /**
+   * Возвращает заявку в начало ее ценового уровня. Используется для заявок,
+   * временно извлеченных из очереди и имеющих приоритет перед оставшимися на уровне.
+   * @param order заявка
+   */
+  void addFirst(Order order) {
+    levelFor(order.getPriceUnits()).addFirst(order);
+    size++;
+  }
+
+  /**
+   * Удаление заявки, находящейся на этой стороне стакана. Уровень заявки ищется по цене за O(log n).
+   * @param order заявка
+   */
+  void remove(Order order) {
+    remove(levelIndex(order.getPriceUnits()), order);
+  }
+
+  @Override
+  public boolean offer(Order order) {
+    levelFor(order.getPriceUnits()).addLast(order);
+    size++;
+    return true;
+  }
+
+  @Override
+  public Order poll() {
+    if (levelCount == 0) {
+      return null;
+    }
+    Order order = levels[levelCount - 1].head;
+    remove(levelCount - 1, order);
+    return order;
+  }
+
+  @Override
+  public Order peek() {
+    return levelCount == 0 ? null : levels[levelCount - 1].head;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  @Override
+  public Iterator<Order> iterator() {
+    return new Iterator<Order>() {
+      private int level = levelCount - 1;
+      private Order next = level < 0 ? null : levels[level].head;
+
+      @Override
+      public boolean hasNext() {
+        return next != null;
+      }
+
+      @Override
+      public Order next() {
+        if (next == null) {
+          throw new NoSuchElementException();
+        }
+        Order current = next;
+        next = current.next;
+        if (next == null && --level >= 0) {
+          next = levels[level].head;
+        }
+        return current;
+      }
+    };
+  }
+
+  /**
+   * Поиск уровня с указанной ценой, при отсутствии уровень создается
+   * @param price цена
+   * @return ценовой уровень
+   */
+  private PriceLevel levelFor(long price) {
+    int index = levelIndex(price);
+    if (index >= 0) {
+      return levels[index];
+    }
+    int low = -index - 1;
+    if (levelCount == levels.length) {
+      PriceLevel[] grown = new PriceLevel[levels.length * 2];
+      System.arraycopy(levels, 0, grown, 0, levelCount);
+      levels = grown;
+    }
+    System.arraycopy(levels, low, levels, low + 1, levelCount - low);
+    PriceLevel level = freeCount == 0 ? new PriceLevel() : freeLevels[--freeCount];
+    freeLevels[freeCount] = null;
+    level.price = price;
+    levels[low] = level;
+    levelCount++;
+    return level;
+  }
+
+  /**
+   * Двоичный поиск уровня с указанной ценой
+   * @param price цена
+   * @return индекс уровня или (-(точка вставки) - 1), если уровня нет
+   */
+  private int levelIndex(long price) {
+    int low = 0;
+    int high = levelCount - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int cmp = compareToBest(levels[mid].price, price);
+      if (cmp < 0) {
+        low = mid + 1;
+      } else if (cmp > 0) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -(low + 1);
+  }
+
+  private void freeLevel(PriceLevel level) {
+    if (freeCount == freeLevels.length) {
+      PriceLevel[] grown = new PriceLevel[freeLevels.length * 2];
+      System.arraycopy(freeLevels, 0, grown, 0, freeCount);
+      freeLevels = grown;
+    }
+    freeLevels[freeCount++] = level;
+  }
+
+  /**
+   * Сравнение цен по привлекательности: для продажи лучше меньшая цена, для покупки большая
+   * @return отрицательное число, если первая цена хуже второй
+   */
+  private int compareToBest(long first, long second) {
+    switch (type) {
+      case SELL:
+        return Long.compare(second, first);
+      case BAY:
+        return Long.compare(first, second);
+    }
+    throw new IllegalStateException("Неизвестный тип заявки " + type);
+  }
+}
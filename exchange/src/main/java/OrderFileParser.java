@@ -0,0 +1,360 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Разбор файла заявок, отображенного в память. Файл отображается участками, выровненными по концу строки,
+ * байты просматриваются напрямую: поля строки разделяются по табуляции и разбираются без создания
+ * промежуточных строк. Клиенты и акции получают номера по словарям базы клиентов через {@link NameCache},
+ * цена переводится сразу в {@link FixedPoint}.
+ *
+ * Формат строки: клиент, тип заявки (s/b), акция, цена, количество, разделенные табуляцией.
+ * Шестым полем можно указать положительный номер заявки, уникальный среди заявок клиента в стакане акции,
+ * по которому заявку можно снять или изменить командами того же клиента:
+ * <ul>
+ *   <li>снятие: клиент, c, акция, номер;</li>
+ *   <li>уменьшение остатка с сохранением приоритета: клиент, r, акция, новый остаток, номер;</li>
+ *   <li>изменение цены и количества с потерей приоритета: клиент, a, акция, цена, количество, номер.</li>
+ * </ul>
+ * Имена читаются в кодировке по умолчанию, как и база клиентов {@link ClientBaseLoader}, поэтому имена
+ * из файла заявок совпадают с именами базы на любой платформе.
+ * Класс не является потокобезопасным.
+ */
+class OrderFileParser {
+  /**
+   * Размер отображаемого в память участка файла по умолчанию
+   */
+  static final int DEFAULT_REGION_SIZE = 64 * 1024 * 1024;
+  private static final int FIELDS = 5;
+  private static final int MAX_FIELDS = 6;
+
+  private final int regionSize;
+  private final ClientBase clientBase;
+  private final NameDictionary clients;
+  private final NameDictionary stocks;
+  private NameCache clientIds;
+  private final NameCache stockIds;
+  private final int[] tabs = new int[MAX_FIELDS - 1];
+  private long lineNumber;
+  private boolean sequenced = true;
+  private boolean knownClients;
+  private OrderPool orderPool;
+
+  /**
+   * @param clientBase база клиентов, по словарям которой присваиваются номера клиентов и акций
+   */
+  OrderFileParser(ClientBase clientBase) {
+    this(clientBase, DEFAULT_REGION_SIZE);
+  }
+
+  /**
+   * @param clientBase база клиентов, по словарям которой присваиваются номера клиентов и акций
+   * @param regionSize размер участка файла, отображаемого в память за один раз
+   */
+  OrderFileParser(ClientBase clientBase, int regionSize) {
+    this.regionSize = regionSize;
+    this.clientBase = clientBase;
+    this.clients = clientBase.getClientDictionary();
+    this.stocks = clientBase.getStockDictionary();
+    this.clientIds = new NameCache(clients);
+    this.stockIds = new NameCache(stocks);
+  }
+
+  /**
+   * Указывает, присваивать ли заявкам время поступления при разборе.
+   * Без присвоения время задается позже вызовом {@link Order#sequence()}.
+   * @param sequenced присваивать ли время при разборе
+   */
+  void setSequenced(boolean sequenced) {
+    this.sequenced = sequenced;
+  }
+
+  /**
+   * Указывает, принимать ли заявки только клиентов со счетом в базе. Заявка неизвестного клиента
+   * отклоняется при разборе, а его имя не добавляется в словарь клиентов.
+   * @param knownClients принимать ли заявки только клиентов базы
+   */
+  void setKnownClients(boolean knownClients) {
+    this.knownClients = knownClients;
+    this.clientIds = new NameCache(clients, !knownClients);
+  }
+
+  /**
+   * Указывает пул, из которого берутся заявки. Без пула заявки создаются через {@link Order.Builder}.
+   * @param orderPool пул заявок или null
+   */
+  void setOrderPool(OrderPool orderPool) {
+    this.orderPool = orderPool;
+  }
+
+  /**
+   * Возвращает номер последней разобранной строки
+   * @return номер строки, начиная с 1
+   */
+  long getLineNumber() {
+    return lineNumber;
+  }
+
+  /**
+   * Устанавливает номер строки, предшествующей следующей разбираемой
+   * @param lineNumber номер строки
+   */
+  void setLineNumber(long lineNumber) {
+    this.lineNumber = lineNumber;
+  }
+
+  /**
+   * Разбор файла заявок
+   * @param file файл со списком заявок
+   * @param consumer обработчик разобранных заявок, вызывается в порядке следования строк
+   * @throws IOException ошибка чтения файла
+   * @throws IllegalArgumentException ошибка формата с номером и текстом строки
+   */
+  void parse(File file, Consumer<Order> consumer) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long size = channel.size();
+      long position = 0;
+      while (position < size) {
+        int length = (int) Math.min(regionSize, size - position);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        int end = length;
+        if (position + length < size) {
+          end = lineEndBefore(buffer, 0, length);
+        }
+        parse(buffer, 0, end, consumer);
+        position += end;
+      }
+    }
+  }
+
+  /**
+   * Разбор участка буфера, содержащего целые строки. Последняя строка участка может не заканчиваться переводом строки.
+   * @param buffer буфер
+   * @param start начало участка
+   * @param end конец участка
+   * @param consumer обработчик разобранных заявок
+   */
+  void parse(ByteBuffer buffer, int start, int end, Consumer<Order> consumer) {
+    int lineStart = start;
+    while (lineStart < end) {
+      int lineEnd = lineStart;
+      while (lineEnd < end && buffer.get(lineEnd) != '\n') {
+        lineEnd++;
+      }
+      lineNumber++;
+      consumer.accept(parseLine(buffer, lineStart, lineEnd));
+      lineStart = lineEnd + 1;
+    }
+  }
+
+  /**
+   * Разбор одной строки с заявкой
+   * @param buffer буфер
+   * @param start начало строки
+   * @param end конец строки без перевода строки
+   * @return {@link Order}
+   */
+  Order parseLine(ByteBuffer buffer, int start, int end) {
+    if (end > start && buffer.get(end - 1) == '\r') {
+      end--;
+    }
+    try {
+      int tabCount = 0;
+      for (int i = start; i < end; i++) {
+        if (buffer.get(i) == '\t') {
+          if (tabCount == tabs.length) {
+            throw new IllegalArgumentException("В файле с позициями на продажу ожидается 5 полей в строке");
+          }
+          tabs[tabCount++] = i;
+        }
+      }
+      if (tabCount < 1) {
+        throw new IllegalArgumentException("В файле с позициями на продажу ожидается 5 полей в строке");
+      }
+      Order.Action action = parseAction(buffer, tabs[0] + 1, tabs[1 % tabCount]);
+      if (action != Order.Action.NEW) {
+        return parseCommand(buffer, start, end, tabCount, action);
+      }
+      if (tabCount != FIELDS - 1 && tabCount != MAX_FIELDS - 1) {
+        throw new IllegalArgumentException("В файле с позициями на продажу ожидается 5 полей в строке");
+      }
+      int countEnd = tabCount == FIELDS - 1 ? end : tabs[FIELDS - 1];
+      int id = tabCount == FIELDS - 1 ? 0 : parseId(buffer, tabs[FIELDS - 1] + 1, end);
+      int clientId = clientId(buffer, start, tabs[0]);
+      int stockId = stockIds.id(buffer, tabs[1] + 1, tabs[2]);
+      if (orderPool != null) {
+        Order order = orderPool.acquire().init(clientId, clients.name(clientId),
+            parseType(buffer, tabs[0] + 1, tabs[1]), stockId, stocks.name(stockId),
+            FixedPoint.parse(buffer, tabs[2] + 1, tabs[3]), FixedPoint.scaleOf(buffer, tabs[2] + 1, tabs[3]),
+            parseCount(buffer, tabs[3] + 1, countEnd));
+        order.command(Order.Action.NEW, id);
+        if (sequenced) {
+          order.sequence();
+        }
+        return order;
+      }
+      Order.Builder builder = new Order.Builder()
+          .clientName(clients.name(clientId))
+          .clientId(clientId)
+          .type(parseType(buffer, tabs[0] + 1, tabs[1]))
+          .stockName(stocks.name(stockId))
+          .stockId(stockId)
+          .price(FixedPoint.parse(buffer, tabs[2] + 1, tabs[3]), FixedPoint.scaleOf(buffer, tabs[2] + 1, tabs[3]))
+          .count(parseCount(buffer, tabs[3] + 1, countEnd))
+          .id(id);
+      return sequenced ? builder.build() : builder.buildUnsequenced();
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException(e.getMessage() + " (строка " + lineNumber + ": "
+          + text(buffer, start, end) + ")", e);
+    }
+  }
+
+  /**
+   * Разбор строки команды: клиент, буква команды, акция, затем поля команды, последнее поле - номер заявки
+   */
+  private Order parseCommand(ByteBuffer buffer, int start, int end, int tabCount, Order.Action action) {
+    int fields;
+    switch (action) {
+      case CANCEL:
+        fields = 4;
+        break;
+      case REDUCE:
+        fields = 5;
+        break;
+      default:
+        fields = 6;
+        break;
+    }
+    if (tabCount != fields - 1) {
+      throw new IllegalArgumentException("Для команды " + action + " ожидается " + fields + " полей в строке");
+    }
+    int clientId = clientId(buffer, start, tabs[0]);
+    int stockId = stockIds.id(buffer, tabs[1] + 1, tabs[2]);
+    long price = 0;
+    int priceScale = 0;
+    int count = 0;
+    if (action == Order.Action.AMEND) {
+      price = FixedPoint.parse(buffer, tabs[2] + 1, tabs[3]);
+      priceScale = FixedPoint.scaleOf(buffer, tabs[2] + 1, tabs[3]);
+    }
+    if (action != Order.Action.CANCEL) {
+      count = parseCount(buffer, tabs[fields - 3] + 1, tabs[fields - 2]);
+    }
+    int id = parseId(buffer, tabs[fields - 2] + 1, end);
+    Order order = (orderPool != null ? orderPool.acquire() : Order.allocate())
+        .init(clientId, clients.name(clientId), null, stockId, stocks.name(stockId), price, priceScale, count)
+        .command(action, id);
+    if (sequenced) {
+      order.sequence();
+    }
+    return order;
+  }
+
+  private static Order.Action parseAction(ByteBuffer buffer, int start, int end) {
+    if (end - start == 1) {
+      switch (buffer.get(start)) {
+        case 'c':
+        case 'C':
+          return Order.Action.CANCEL;
+        case 'r':
+        case 'R':
+          return Order.Action.REDUCE;
+        case 'a':
+        case 'A':
+          return Order.Action.AMEND;
+      }
+    }
+    return Order.Action.NEW;
+  }
+
+  private static int parseId(ByteBuffer buffer, int start, int end) {
+    int id;
+    try {
+      id = parseCount(buffer, start, end);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Некорректный номер заявки " + text(buffer, start, end));
+    }
+    if (id <= 0) {
+      throw new IllegalArgumentException("Некорректный номер заявки " + text(buffer, start, end));
+    }
+    return id;
+  }
+
+  private static Order.Type parseType(ByteBuffer buffer, int start, int end) {
+    if (end - start == 1) {
+      switch (buffer.get(start)) {
+        case 's':
+        case 'S':
+          return Order.Type.SELL;
+        case 'b':
+        case 'B':
+          return Order.Type.BAY;
+      }
+    }
+    throw new IllegalArgumentException("Некорректный тип заявки " + text(buffer, start, end));
+  }
+
+  static int parseCount(ByteBuffer buffer, int start, int end) {
+    int pos = start;
+    boolean negative = false;
+    if (pos < end && (buffer.get(pos) == '-' || buffer.get(pos) == '+')) {
+      negative = buffer.get(pos) == '-';
+      pos++;
+    }
+    if (pos == end) {
+      throw new IllegalArgumentException("Некорректное количество акций " + text(buffer, start, end));
+    }
+    long value = 0;
+    for (; pos < end; pos++) {
+      byte c = buffer.get(pos);
+      if (c < '0' || c > '9' || (value = value * 10 + (c - '0')) > Integer.MAX_VALUE + 1L) {
+        throw new IllegalArgumentException("Некорректное количество акций " + text(buffer, start, end));
+      }
+    }
+    value = negative ? -value : value;
+    if (value > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Некорректное количество акций " + text(buffer, start, end));
+    }
+    return (int) value;
+  }
+
+  /**
+   * Поиск конца последней целой строки участка буфера
+   * @param buffer буфер
+   * @param start начало участка
+   * @param end конец участка
+   * @return позиция за последним переводом строки участка
+   */
+  static int lineEndBefore(ByteBuffer buffer, int start, int end) {
+    for (int i = end - 1; i >= start; i--) {
+      if (buffer.get(i) == '\n') {
+        return i + 1;
+      }
+    }
+    throw new IllegalArgumentException("Строка файла заявок длиннее " + (end - start) + " байт");
+  }
+
+  /**
+   * Номер клиента по имени. При приеме заявок только клиентов базы неизвестный клиент отклоняется.
+   */
+  private int clientId(ByteBuffer buffer, int start, int end) {
+    int clientId = clientIds.id(buffer, start, end);
+    if (knownClients && (clientId < 0 || clientBase.getClientBalance(clientId) == null)) {
+      throw new IllegalArgumentException("В базе нет клиента " + text(buffer, start, end));
+    }
+    return clientId;
+  }
+
+  static String text(ByteBuffer buffer, int start, int end) {
+    byte[] bytes = new byte[end - start];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = buffer.get(start + i);
+    }
+    return new String(bytes, Charset.defaultCharset());
+  }
+}
@@ -0,0 +1,661 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Генератор потока заявок для нагрузочного тестирования. Заявки создаются по одной и сразу записываются в файл
+ * в формате {@link OrderFileParser} или передаются на биржу, поэтому объем потока не ограничен памятью.
+ * При одинаковых параметрах и начальном значении {@link Builder#seed(long)} поток заявок повторяется.
+ *
+ * Модель потока:
+ * <ol>
+ *   <li>акция выбирается по закону Ципфа с показателем {@link Builder#hotSymbolSkew(double)},
+ *   при нулевом показателе все акции равновероятны;</li>
+ *   <li>средняя цена каждой акции совершает случайное блуждание на величину до {@link Builder#volatility(int)} шагов цены;</li>
+ *   <li>непересекающие заявки выставляются за пределами спреда, пересекающие - на другой стороне спреда;</li>
+ *   <li>доля {@link Builder#selfTradeShare(double)} заявок выставляется от клиента, последним выставившего заявку
+ *   на другой стороне, и пересекает ее;</li>
+ *   <li>при положительной доле {@link Builder#cancelShare(double)} заявки получают номера, и вместо новой заявки
+ *   с этой вероятностью выставляется команда над одной из последних непересекающих заявок: половина команд
+ *   снимает заявку, четверть уменьшает остаток, четверть переставляет заявку на новую цену с меньшим
+ *   или тем же количеством. Заявка к этому времени может быть уже исполнена, тогда команда не выполняется.</li>
+ * </ol>
+ * Продажа выставляется, только если у клиента гарантированно хватает акций без учета покупок,
+ * иначе заявка заменяется покупкой. Поэтому поток обрабатывается на базе {@link #clientBase()} без ошибок.
+ */
+public class OrderFlowGenerator {
+  static final int LINE_SIZE = 256;
+  /**
+   * Количество последних непересекающих заявок, над которыми выполняются команды
+   */
+  private static final int RECENT_ORDERS = 4096;
+
+  private final Random random;
+  private final int clients;
+  private final int symbols;
+  private final double[] symbolDistribution;
+  private final BigDecimal tick;
+  private final long tickUnits;
+  private final int tickScale;
+  private final int volatility;
+  private final int spread;
+  private final int depth;
+  private final double buyRatio;
+  private final double crossProbability;
+  private final double selfTradeShare;
+  private final double cancelShare;
+  private final int maxCount;
+  private final int initialStocks;
+  private final BigDecimal initialAmount;
+  private final String[] clientNames;
+  private final String[] symbolNames;
+  private final byte[][] clientBytes;
+  private final byte[][] symbolBytes;
+  /**
+   * Средняя цена акций в шагах цены
+   */
+  private final long[] mids;
+  /**
+   * Последний клиент, выставивший непересекающую заявку, по акции и типу заявки
+   */
+  private final int[] lastResting;
+  /**
+   * Остаток акций, которые клиент может продать без учета покупок, по клиенту и акции
+   */
+  private final int[] sellable;
+  /**
+   * Последние непересекающие заявки для команд: номер, клиент, акция, количество и тип
+   */
+  private final int[] recentIds = new int[RECENT_ORDERS];
+  private final int[] recentClients = new int[RECENT_ORDERS];
+  private final int[] recentSymbols = new int[RECENT_ORDERS];
+  private final int[] recentCounts = new int[RECENT_ORDERS];
+  private final boolean[] recentBuys = new boolean[RECENT_ORDERS];
+  private int recentSize;
+  private int recentNext;
+  private int lastId;
+
+  private int client;
+  private Order.Type type;
+  private int symbol;
+  private long priceTicks;
+  private int count;
+  private Order.Action action = Order.Action.NEW;
+  private int id;
+
+  private OrderFlowGenerator(Builder builder) {
+    if (builder.clients < 1 || builder.symbols < 1) {
+      throw new IllegalArgumentException("Количество клиентов и акций должно быть положительным");
+    }
+    if (builder.maxCount < 1 || builder.spread < 0 || builder.depth < 0 || builder.volatility < 0) {
+      throw new IllegalArgumentException("Некорректные параметры цены или количества акций");
+    }
+    this.random = new Random(builder.seed);
+    this.clients = builder.clients;
+    this.symbols = builder.symbols;
+    this.tick = builder.tick;
+    this.tickUnits = FixedPoint.valueOf(builder.tick);
+    this.tickScale = builder.tick.scale();
+    if (tickUnits <= 0 || tickScale < 0) {
+      throw new IllegalArgumentException("Шаг цены должен быть положительным");
+    }
+    this.volatility = builder.volatility;
+    this.spread = builder.spread;
+    this.depth = builder.depth;
+    this.buyRatio = builder.buyRatio;
+    this.crossProbability = builder.crossProbability;
+    this.selfTradeShare = builder.selfTradeShare;
+    this.cancelShare = builder.cancelShare;
+    this.maxCount = builder.maxCount;
+    this.initialStocks = builder.initialStocks;
+    this.initialAmount = builder.initialAmount;
+
+    symbolDistribution = new double[symbols];
+    double sum = 0;
+    for (int i = 0; i < symbols; i++) {
+      sum += 1 / Math.pow(i + 1, builder.hotSymbolSkew);
+      symbolDistribution[i] = sum;
+    }
+    for (int i = 0; i < symbols; i++) {
+      symbolDistribution[i] /= sum;
+    }
+
+    clientNames = new String[clients];
+    for (int i = 0; i < clients; i++) {
+      clientNames[i] = "C" + (i + 1);
+    }
+    symbolNames = new String[symbols];
+    for (int i = 0; i < symbols; i++) {
+      symbolNames[i] = i < ClientBase.FILE_STOCKS.length ? ClientBase.FILE_STOCKS[i] : "S" + i;
+    }
+    clientBytes = encode(clientNames);
+    symbolBytes = encode(symbolNames);
+
+    long startTicks = builder.startPrice.divideToIntegralValue(builder.tick).longValueExact();
+    mids = new long[symbols];
+    Arrays.fill(mids, Math.max(startTicks, minMid()));
+    lastResting = new int[symbols * 2];
+    Arrays.fill(lastResting, -1);
+    sellable = new int[Math.multiplyExact(clients, symbols)];
+    Arrays.fill(sellable, initialStocks);
+  }
+
+  /**
+   * Создает экземпляр {@link Builder}
+   * @return {@link Builder}
+   */
+  public static Builder newBuilder() {
+    return new OrderFlowGenerator.Builder();
+  }
+
+  /**
+   * Запись очередных заявок в файл
+   * @param orders файл заявок
+   * @param orderCount количество заявок
+   * @throws IOException ошибка записи файла
+   */
+  public void write(File orders, long orderCount) throws IOException {
+    byte[] line = new byte[LINE_SIZE];
+    try (OutputStream out = new BufferedOutputStream(new FileOutputStream(orders), 1 << 16)) {
+      for (long i = 0; i < orderCount; i++) {
+        out.write(line, 0, nextLine(line));
+      }
+    }
+  }
+
+  /**
+   * Запись очередной заявки в формате строки файла заявок с переводом строки
+   * @param line буфер строки не короче {@value #LINE_SIZE} байт
+   * @return длина строки
+   */
+  int nextLine(byte[] line) {
+    next();
+    int length = put(line, 0, clientBytes[client]);
+    line[length++] = '\t';
+    line[length++] = (byte) letter();
+    line[length++] = '\t';
+    length = put(line, length, symbolBytes[symbol]);
+    if (action == Order.Action.NEW || action == Order.Action.AMEND) {
+      line[length++] = '\t';
+      length = putDecimal(line, length, priceTicks * tick.unscaledValue().longValue(), tickScale);
+    }
+    if (action != Order.Action.CANCEL) {
+      line[length++] = '\t';
+      length = putDecimal(line, length, count, 0);
+    }
+    if (id > 0) {
+      line[length++] = '\t';
+      length = putDecimal(line, length, id, 0);
+    }
+    line[length++] = '\n';
+    return length;
+  }
+
+  /**
+   * Передача очередных заявок на биржу без промежуточного файла
+   * @param exchange биржа
+   * @param orderCount количество заявок
+   */
+  public void feed(Exchange exchange, long orderCount) {
+    for (long i = 0; i < orderCount; i++) {
+      exchange.processOrder(nextOrder());
+    }
+    exchange.awaitProcessed();
+  }
+
+  /**
+   * Создает очередную заявку
+   * @return заявка с временем поступления
+   */
+  Order nextOrder() {
+    next();
+    return new Order.Builder()
+        .clientName(clientNames[client])
+        .type(action == Order.Action.NEW ? type : null)
+        .stockName(symbolNames[symbol])
+        .price(action == Order.Action.CANCEL ? 0 : Math.multiplyExact(priceTicks, tickUnits), tickScale)
+        .count(action == Order.Action.CANCEL ? 0 : count)
+        .id(id)
+        .action(action)
+        .build();
+  }
+
+  private char letter() {
+    switch (action) {
+      case CANCEL:
+        return 'c';
+      case REDUCE:
+        return 'r';
+      case AMEND:
+        return 'a';
+      default:
+        return type == Order.Type.BAY ? 'b' : 's';
+    }
+  }
+
+  /**
+   * Создает базу клиентов, по которой поток заявок обрабатывается без ошибок
+   * @return база клиентов с начальным балансом и акциями по всем акциям потока
+   */
+  public ClientBase clientBase() {
+    ClientBase clientBase = new ClientBase();
+    for (String clientName : clientNames) {
+      ClientBalance.Builder builder = ClientBalance.newBuilder()
+          .name(clientName)
+          .amount(initialAmount);
+      for (String symbolName : symbolNames) {
+        builder.stock(symbolName, initialStocks);
+      }
+      clientBase.addClientBalance(builder.build());
+    }
+    return clientBase;
+  }
+
+  /**
+   * Запись базы клиентов {@link #clientBase()} в формате {@link ClientBase#initClientBase(File)}
+   * @param clientsFile файл базы клиентов
+   * @throws IOException ошибка записи файла
+   * @throws IllegalArgumentException акций больше, чем помещается в файл базы клиентов
+   */
+  public void writeClients(File clientsFile) throws IOException {
+    if (symbols > ClientBase.FILE_STOCKS.length) {
+      throw new IllegalArgumentException("Файл базы клиентов содержит не больше "
+          + ClientBase.FILE_STOCKS.length + " акций");
+    }
+    String stocks = "\t" + initialStocks;
+    try (BufferedWriter writer = Files.newBufferedWriter(clientsFile.toPath(), Charset.defaultCharset())) {
+      for (String clientName : clientNames) {
+        StringBuilder line = new StringBuilder(clientName).append('\t').append(initialAmount.toPlainString());
+        for (int i = 0; i < ClientBase.FILE_STOCKS.length; i++) {
+          line.append(i < symbols ? stocks : "\t0");
+        }
+        writer.write(line.toString());
+        writer.newLine();
+      }
+    }
+  }
+
+  /**
+   * Создает очередную заявку в полях генератора
+   */
+  private void next() {
+    if (cancelShare > 0 && recentSize > 0 && random.nextDouble() < cancelShare) {
+      nextCommand();
+      return;
+    }
+    action = Order.Action.NEW;
+    symbol = nextSymbol();
+    long mid = mids[symbol] + random.nextInt(2 * volatility + 1) - volatility;
+    mid = Math.max(mid, minMid());
+    mids[symbol] = mid;
+
+    boolean cross = random.nextDouble() < crossProbability;
+    boolean buy = random.nextDouble() < buyRatio;
+    client = -1;
+    if (random.nextDouble() < selfTradeShare) {
+      client = lastResting[symbol * 2 + (buy ? 0 : 1)];
+      cross = true;
+    }
+    if (client < 0) {
+      client = random.nextInt(clients);
+    }
+    count = 1 + random.nextInt(maxCount);
+    int stockIndex = client * symbols + symbol;
+    if (!buy && sellable[stockIndex] < count) {
+      buy = true;
+    }
+    if (!buy) {
+      sellable[stockIndex] -= count;
+    }
+
+    int half = spread / 2;
+    if (cross) {
+      int offset = half + random.nextInt(spread + 1);
+      priceTicks = buy ? mid + offset : mid - offset;
+    } else {
+      priceTicks = restingPrice(mid, buy);
+      lastResting[symbol * 2 + (buy ? 1 : 0)] = client;
+    }
+    type = buy ? Order.Type.BAY : Order.Type.SELL;
+    id = 0;
+    if (cancelShare > 0) {
+      id = ++lastId;
+      if (!cross) {
+        remember(buy);
+      }
+    }
+  }
+
+  /**
+   * Создает команду над одной из последних непересекающих заявок в полях генератора.
+   * Количество не увеличивается, поэтому продажа не превышает учтенный остаток акций клиента.
+   */
+  private void nextCommand() {
+    int slot = random.nextInt(recentSize);
+    client = recentClients[slot];
+    symbol = recentSymbols[slot];
+    id = recentIds[slot];
+    double kind = random.nextDouble();
+    if (kind < 0.5) {
+      action = Order.Action.CANCEL;
+      forget(slot);
+    } else if (kind < 0.75) {
+      action = Order.Action.REDUCE;
+      count = random.nextInt(recentCounts[slot]);
+      if (count == 0) {
+        forget(slot);
+      } else {
+        recentCounts[slot] = count;
+      }
+    } else {
+      action = Order.Action.AMEND;
+      count = 1 + random.nextInt(recentCounts[slot]);
+      recentCounts[slot] = count;
+      priceTicks = restingPrice(mids[symbol], recentBuys[slot]);
+    }
+  }
+
+  /**
+   * Цена непересекающей заявки за пределами спреда
+   */
+  private long restingPrice(long mid, boolean buy) {
+    int offset = spread / 2 + 1 + random.nextInt(depth + 1);
+    return buy ? mid - offset : mid + offset;
+  }
+
+  private void remember(boolean buy) {
+    int slot;
+    if (recentSize < RECENT_ORDERS) {
+      slot = recentSize++;
+    } else {
+      slot = recentNext;
+      recentNext = (recentNext + 1) % RECENT_ORDERS;
+    }
+    recentIds[slot] = id;
+    recentClients[slot] = client;
+    recentSymbols[slot] = symbol;
+    recentCounts[slot] = count;
+    recentBuys[slot] = buy;
+  }
+
+  private void forget(int slot) {
+    recentSize--;
+    recentIds[slot] = recentIds[recentSize];
+    recentClients[slot] = recentClients[recentSize];
+    recentSymbols[slot] = recentSymbols[recentSize];
+    recentCounts[slot] = recentCounts[recentSize];
+    recentBuys[slot] = recentBuys[recentSize];
+  }
+
+  private int nextSymbol() {
+    if (symbols == 1) {
+      return 0;
+    }
+    int index = Arrays.binarySearch(symbolDistribution, random.nextDouble());
+    return Math.min(index < 0 ? -index - 1 : index, symbols - 1);
+  }
+
+  /**
+   * Наименьшая средняя цена, при которой цены всех заявок положительны
+   */
+  private long minMid() {
+    return spread / 2 + Math.max(spread, depth) + 2L;
+  }
+
+  private static byte[][] encode(String[] names) {
+    byte[][] bytes = new byte[names.length][];
+    for (int i = 0; i < names.length; i++) {
+      bytes[i] = names[i].getBytes(Charset.defaultCharset());
+    }
+    return bytes;
+  }
+
+  private static int put(byte[] line, int offset, byte[] value) {
+    System.arraycopy(value, 0, line, offset, value.length);
+    return offset + value.length;
+  }
+
+  /**
+   * Запись неотрицательного числа с фиксированным количеством знаков после запятой
+   */
+  private static int putDecimal(byte[] line, int offset, long unscaled, int scale) {
+    int digits = 1;
+    for (long rest = unscaled / 10; rest > 0; rest /= 10) {
+      digits++;
+    }
+    digits = Math.max(digits, scale + 1);
+    int length = scale > 0 ? digits + 1 : digits;
+    int position = offset + length;
+    for (int i = 0; i < digits; i++) {
+      if (scale > 0 && i == scale) {
+        line[--position] = '.';
+      }
+      line[--position] = (byte) ('0' + unscaled % 10);
+      unscaled /= 10;
+    }
+    return offset + length;
+  }
+
+  /**
+   * Создание генератора из командной строки, параметры потока задаются системными свойствами generator.*
+   * @param args файл заявок, количество заявок и необязательный файл базы клиентов
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2 || args.length > 3) {
+      System.err.println("Использование: OrderFlowGenerator <файл заявок> <количество заявок> [файл клиентов]");
+      return;
+    }
+    OrderFlowGenerator generator = newBuilder()
+        .seed(Long.getLong("generator.seed", 1))
+        .clients(Integer.getInteger("generator.clients", 100))
+        .symbols(Integer.getInteger("generator.symbols", ClientBase.FILE_STOCKS.length))
+        .hotSymbolSkew(Double.parseDouble(System.getProperty("generator.skew", "0")))
+        .buyRatio(Double.parseDouble(System.getProperty("generator.buyRatio", "0.5")))
+        .crossProbability(Double.parseDouble(System.getProperty("generator.cross", "0.2")))
+        .selfTradeShare(Double.parseDouble(System.getProperty("generator.selfTrade", "0.01")))
+        .cancelShare(Double.parseDouble(System.getProperty("generator.cancelShare", "0")))
+        .build();
+    if (args.length == 3) {
+      generator.writeClients(new File(args[2]));
+    }
+    generator.write(new File(args[0]), Long.parseLong(args[1]));
+  }
+
+  /**
+   * Создает экземпляр {@link OrderFlowGenerator}
+   */
+  public static class Builder {
+    private long seed = 1;
+    private int clients = 100;
+    private int symbols = ClientBase.FILE_STOCKS.length;
+    private double hotSymbolSkew;
+    private BigDecimal startPrice = BigDecimal.valueOf(100);
+    private BigDecimal tick = new BigDecimal("0.01");
+    private int volatility = 1;
+    private int spread = 10;
+    private int depth = 50;
+    private double buyRatio = 0.5;
+    private double crossProbability = 0.2;
+    private double selfTradeShare = 0.01;
+    private double cancelShare;
+    private int maxCount = 100;
+    private int initialStocks = 100000000;
+    private BigDecimal initialAmount = BigDecimal.valueOf(1000000000);
+
+    /**
+     * Начальное значение генератора случайных чисел
+     * @param seed начальное значение
+     * @return {@link Builder}
+     */
+    public Builder seed(long seed) {
+      this.seed = seed;
+      return this;
+    }
+
+    /**
+     * Количество клиентов, клиенты называются C1, C2, ...
+     * @param clients количество клиентов
+     * @return {@link Builder}
+     */
+    public Builder clients(int clients) {
+      this.clients = clients;
+      return this;
+    }
+
+    /**
+     * Количество акций: первые акции называются как в файле базы клиентов, следующие S4, S5, ...
+     * @param symbols количество акций
+     * @return {@link Builder}
+     */
+    public Builder symbols(int symbols) {
+      this.symbols = symbols;
+      return this;
+    }
+
+    /**
+     * Неравномерность выбора акций: показатель закона Ципфа, 0 - равномерный выбор
+     * @param hotSymbolSkew показатель распределения
+     * @return {@link Builder}
+     */
+    public Builder hotSymbolSkew(double hotSymbolSkew) {
+      this.hotSymbolSkew = hotSymbolSkew;
+      return this;
+    }
+
+    /**
+     * Начальная средняя цена акций
+     * @param startPrice цена
+     * @return {@link Builder}
+     */
+    public Builder startPrice(BigDecimal startPrice) {
+      this.startPrice = startPrice;
+      return this;
+    }
+
+    /**
+     * Шаг цены
+     * @param tick шаг цены
+     * @return {@link Builder}
+     */
+    public Builder tick(BigDecimal tick) {
+      this.tick = tick;
+      return this;
+    }
+
+    /**
+     * Наибольшее изменение средней цены за одну заявку
+     * @param volatility изменение в шагах цены
+     * @return {@link Builder}
+     */
+    public Builder volatility(int volatility) {
+      this.volatility = volatility;
+      return this;
+    }
+
+    /**
+     * Спред между лучшими ценами непересекающих заявок
+     * @param spread спред в шагах цены
+     * @return {@link Builder}
+     */
+    public Builder spread(int spread) {
+      this.spread = spread;
+      return this;
+    }
+
+    /**
+     * Разброс цен непересекающих заявок за пределами спреда
+     * @param depth разброс в шагах цены
+     * @return {@link Builder}
+     */
+    public Builder depth(int depth) {
+      this.depth = depth;
+      return this;
+    }
+
+    /**
+     * Доля заявок на покупку
+     * @param buyRatio доля от 0 до 1
+     * @return {@link Builder}
+     */
+    public Builder buyRatio(double buyRatio) {
+      this.buyRatio = buyRatio;
+      return this;
+    }
+
+    /**
+     * Вероятность того, что заявка пересекает спред
+     * @param crossProbability вероятность от 0 до 1
+     * @return {@link Builder}
+     */
+    public Builder crossProbability(double crossProbability) {
+      this.crossProbability = crossProbability;
+      return this;
+    }
+
+    /**
+     * Доля заявок, пересекающих собственные заявки клиента
+     * @param selfTradeShare доля от 0 до 1
+     * @return {@link Builder}
+     */
+    public Builder selfTradeShare(double selfTradeShare) {
+      this.selfTradeShare = selfTradeShare;
+      return this;
+    }
+
+    /**
+     * Доля команд снятия и изменения заявок в потоке, 0 - поток без команд и без номеров заявок
+     * @param cancelShare доля от 0 до 1
+     * @return {@link Builder}
+     */
+    public Builder cancelShare(double cancelShare) {
+      this.cancelShare = cancelShare;
+      return this;
+    }
+
+    /**
+     * Наибольшее количество акций в заявке
+     * @param maxCount количество акций
+     * @return {@link Builder}
+     */
+    public Builder maxCount(int maxCount) {
+      this.maxCount = maxCount;
+      return this;
+    }
+
+    /**
+     * Начальное количество каждой акции у клиентов
+     * @param initialStocks количество акций
+     * @return {@link Builder}
+     */
+    public Builder initialStocks(int initialStocks) {
+      this.initialStocks = initialStocks;
+      return this;
+    }
+
+    /**
+     * Начальный баланс клиентов
+     * @param initialAmount баланс
+     * @return {@link Builder}
+     */
+    public Builder initialAmount(BigDecimal initialAmount) {
+      this.initialAmount = initialAmount;
+      return this;
+    }
+
+    /**
+     * Создает новый экземпляр {@link OrderFlowGenerator}
+     * @return {@link OrderFlowGenerator}
+     */
+    public OrderFlowGenerator build() {
+      return new OrderFlowGenerator(this);
+    }
+  }
+}
@@ -0,0 +1,497 @@
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Шлюз приема заявок по TCP. Клиент передает строки заявок в формате файла заявок {@link OrderFileParser},
+ * по строке на заявку. Строка разбирается в потоке соединения и передается единственному потоку сопоставления
+ * через ограниченную очередь: при заполнении очереди поток соединения ждет и перестает читать сокет,
+ * так что отправитель упирается в окно TCP. Время поступления присваивается в потоке сопоставления,
+ * приоритет по времени соответствует порядку приема заявок шлюзом.
+ *
+ * Ответы клиенту, по строке на событие. На каждую строку отправляется ровно один ответ ACK или REJECT,
+ * сделки по заявке, в том числе рассчитанные до ошибки ее обработки, отправляются после него:
+ * <ul>
+ *   <li>{@code ACK <время>} - заявка получила время поступления и обработана;</li>
+ *   <li>{@code FILL <время> <акция> <цена> <количество> <остаток>} - сделка по заявке клиента;</li>
+ *   <li>{@code REJECT <время или 0> <причина>} - заявка не разобрана или не обработана.</li>
+ * </ul>
+ * Заявки принимаются только от клиентов, у которых есть счет в базе: строка с неизвестным клиентом
+ * отклоняется при разборе, и его имя не попадает в словарь клиентов.
+ * Ответы отправляются отдельной задачей соединения, поэтому медленный клиент не задерживает сопоставление.
+ * Если у клиента накопилось больше {@link #OUTBOUND_LIMIT} неотправленных ответов, соединение закрывается.
+ * Когда клиент закончил передачу (закрыл свою сторону соединения), шлюз закрывает соединение после ответов
+ * на все принятые от него строки. Заявки закрытого соединения остаются в стаканах.
+ * Шлюз подключает своего получателя сделок к бирже при запуске и отключает при остановке,
+ * получатели, подключенные к бирже до запуска, продолжают получать сделки.
+ *
+ * Команды снятия и изменения заявки также подтверждаются ответом ACK. Сделки по заявке, измененной командой,
+ * отправляются соединению, которое выставило заявку.
+ *
+ * Соединения обслуживаются виртуальными потоками, если их поддерживает среда выполнения,
+ * иначе потоками платформы с уменьшенным стеком.
+ */
+public class OrderGateway implements AutoCloseable {
+  /**
+   * Размер очереди заявок к потоку сопоставления по умолчанию
+   */
+  public static final int DEFAULT_QUEUE_CAPACITY = 1 << 16;
+  /**
+   * Наибольшее количество неотправленных ответов соединения
+   */
+  static final int OUTBOUND_LIMIT = 1 << 14;
+  /**
+   * Наибольшая длина строки заявки
+   */
+  static final int MAX_LINE = 4096;
+  private static final long PLATFORM_STACK_SIZE = 256 * 1024;
+  private static final Request STOP = new Request(null, null);
+
+  private final Exchange exchange;
+  private final InetAddress bindAddress;
+  private final int port;
+  private final BlockingQueue<Request> queue;
+  private final ExecutorService connections = connectionExecutor();
+  private final Set<Connection> open = ConcurrentHashMap.newKeySet();
+  /**
+   * Владельцы заявок в стаканах, используется только потоком сопоставления
+   */
+  private final Map<Order, Connection> owners = new IdentityHashMap<>();
+  private final AtomicLong accepted = new AtomicLong();
+  private final AtomicLong rejected = new AtomicLong();
+  private final AtomicBoolean stopped = new AtomicBoolean();
+  /**
+   * Получатель сделок шлюза, подключается к бирже на время работы шлюза рядом с другими получателями
+   */
+  private final FillListener fillListener = this::onFill;
+  private ServerSocket serverSocket;
+  private Thread acceptor;
+  private Thread matcher;
+  private Order currentOrder;
+  private Connection currentConnection;
+  /**
+   * Ответы соединению текущей заявки, отложенные до ответа ACK или REJECT, используются только потоком сопоставления
+   */
+  private final List<String> deferred = new ArrayList<>();
+
+  /**
+   * Шлюз, принимающий соединения только на локальном адресе (loopback)
+   * @param exchange однопоточная биржа, заявки обрабатываются в потоке сопоставления шлюза
+   * @param port порт, 0 - любой свободный порт
+   */
+  public OrderGateway(Exchange exchange, int port) {
+    this(exchange, null, port, DEFAULT_QUEUE_CAPACITY);
+  }
+
+  /**
+   * @param exchange однопоточная биржа, заявки обрабатываются в потоке сопоставления шлюза
+   * @param bindAddress адрес приема соединений, null - локальный адрес (loopback); шлюз не проверяет,
+   *                    от имени какого клиента передается заявка, поэтому другие адреса указываются явно
+   * @param port порт, 0 - любой свободный порт
+   */
+  public OrderGateway(Exchange exchange, InetAddress bindAddress, int port) {
+    this(exchange, bindAddress, port, DEFAULT_QUEUE_CAPACITY);
+  }
+
+  /**
+   * @param exchange однопоточная биржа, заявки обрабатываются в потоке сопоставления шлюза
+   * @param bindAddress адрес приема соединений, null - локальный адрес (loopback)
+   * @param port порт, 0 - любой свободный порт
+   * @param queueCapacity размер очереди заявок к потоку сопоставления
+   */
+  public OrderGateway(Exchange exchange, InetAddress bindAddress, int port, int queueCapacity) {
+    if (exchange instanceof ParallelExchange) {
+      throw new IllegalArgumentException("Шлюз работает с однопоточной биржей");
+    }
+    if (queueCapacity < 1) {
+      throw new IllegalArgumentException("Размер очереди должен быть положительным");
+    }
+    this.exchange = exchange;
+    this.bindAddress = bindAddress != null ? bindAddress : InetAddress.getLoopbackAddress();
+    this.port = port;
+    this.queue = new ArrayBlockingQueue<>(queueCapacity);
+  }
+
+  /**
+   * Открытие порта и запуск потоков приема соединений и сопоставления
+   * @throws IOException ошибка открытия порта
+   */
+  public void start() throws IOException {
+    serverSocket = new ServerSocket(port, 4096, bindAddress);
+    exchange.addFillListener(fillListener);
+    matcher = new Thread(this::match, "gateway-matcher");
+    matcher.setDaemon(true);
+    matcher.start();
+    acceptor = new Thread(this::acceptConnections, "gateway-acceptor");
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+  /**
+   * Возвращает порт шлюза
+   * @return номер порта
+   */
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  /**
+   * Возвращает количество принятых заявок
+   * @return количество заявок, подтвержденных ответом ACK
+   */
+  public long getAccepted() {
+    return accepted.get();
+  }
+
+  /**
+   * Возвращает количество отклоненных строк
+   * @return количество строк с ошибкой разбора или обработки
+   */
+  public long getRejected() {
+    return rejected.get();
+  }
+
+  /**
+   * Остановка шлюза: прием соединений прекращается, заявки из очереди обрабатываются, соединения закрываются
+   */
+  @Override
+  public void close() throws IOException {
+    if (!stopped.compareAndSet(false, true)) {
+      return;
+    }
+    serverSocket.close();
+    for (Connection connection : open) {
+      connection.closeInput();
+    }
+    try {
+      acceptor.join();
+      queue.put(STOP);
+      matcher.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    for (Connection connection : open) {
+      connection.close();
+    }
+    connections.shutdown();
+    try {
+      connections.awaitTermination(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    exchange.removeFillListener(fillListener);
+  }
+
+  private void acceptConnections() {
+    while (!serverSocket.isClosed()) {
+      try {
+        Socket socket = serverSocket.accept();
+        socket.setTcpNoDelay(true);
+        Connection connection = new Connection(socket);
+        open.add(connection);
+        connections.execute(connection::read);
+      } catch (IOException e) {
+        if (!serverSocket.isClosed()) {
+          e.printStackTrace();
+        }
+      }
+    }
+  }
+
+  /**
+   * Поток сопоставления: заявки обрабатываются по одной в порядке поступления в очередь
+   */
+  private void match() {
+    try {
+      while (true) {
+        Request request = queue.take();
+        if (request == STOP) {
+          return;
+        }
+        Order order = request.order;
+        order.sequence();
+        Connection connection = request.connection;
+        currentOrder = order;
+        currentConnection = request.connection;
+        Order target = null;
+        if (order.getAction() != Order.Action.NEW) {
+          StockOrdersQueue book = exchange.book(order.getStockId());
+          target = book != null ? book.find(order.getClientId(), order.getId()) : null;
+        }
+        try {
+          exchange.submit(order);
+          if (target != null) {
+            StockOrdersQueue book = exchange.book(order.getStockId());
+            if (book.find(target.getClientId(), target.getId()) != target) {
+              owners.remove(target);
+            }
+          } else if (order.getAction() == Order.Action.NEW && order.getCount() > 0) {
+            owners.put(order, request.connection);
+          }
+          accepted.incrementAndGet();
+          connection.send("ACK " + order.getTime());
+        } catch (RuntimeException e) {
+          rejected.incrementAndGet();
+          connection.send("REJECT " + order.getTime() + " " + e.getMessage());
+        } finally {
+          currentOrder = null;
+          currentConnection = null;
+        }
+        for (String message : deferred) {
+          connection.send(message);
+        }
+        deferred.clear();
+        connection.answered();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void onFill(Order incoming, Order resting, long price, int priceScale, int count) {
+    String fill = " " + incoming.getStockName() + " " + FixedPoint.toBigDecimal(price, priceScale).toPlainString()
+        + " " + count + " ";
+    Connection incomingOwner = incoming == currentOrder ? currentConnection : owners.get(incoming);
+    if (incomingOwner != null) {
+      send(incomingOwner, "FILL " + incoming.getTime() + fill + incoming.getCount());
+    }
+    Connection owner = resting.getCount() > 0 ? owners.get(resting) : owners.remove(resting);
+    if (owner != null) {
+      send(owner, "FILL " + resting.getTime() + fill + resting.getCount());
+    }
+  }
+
+  /**
+   * Отправка сделки, ответы соединению текущей заявки откладываются до ответа на заявку
+   */
+  private void send(Connection connection, String message) {
+    if (connection == currentConnection) {
+      deferred.add(message);
+    } else {
+      connection.send(message);
+    }
+  }
+
+  /**
+   * Исполнитель задач соединений: виртуальные потоки при поддержке средой выполнения,
+   * иначе потоки платформы с уменьшенным стеком
+   */
+  static ExecutorService connectionExecutor() {
+    try {
+      Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) method.invoke(null);
+    } catch (ReflectiveOperationException e) {
+      AtomicInteger counter = new AtomicInteger();
+      ThreadFactory factory = runnable -> {
+        Thread thread = new Thread(null, runnable, "gateway-connection-" + counter.incrementAndGet(),
+            PLATFORM_STACK_SIZE);
+        thread.setDaemon(true);
+        return thread;
+      };
+      return Executors.newCachedThreadPool(factory);
+    }
+  }
+
+  /**
+   * Заявка, разобранная потоком соединения
+   */
+  private static class Request {
+    final Order order;
+    final Connection connection;
+
+    Request(Order order, Connection connection) {
+      this.order = order;
+      this.connection = connection;
+    }
+  }
+
+  /**
+   * Соединение клиента: чтение и разбор строк заявок, отправка ответов
+   */
+  private class Connection {
+    private final Socket socket;
+    private final OrderFileParser parser;
+    private final Queue<String> outbound = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicBoolean sending = new AtomicBoolean();
+    /**
+     * Количество строк, переданных потоку сопоставления и еще не получивших все ответы
+     */
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile boolean inputEnded;
+    private volatile boolean closed;
+
+    Connection(Socket socket) {
+      this.socket = socket;
+      this.parser = new OrderFileParser(exchange.clientBase);
+      parser.setSequenced(false);
+      parser.setKnownClients(true);
+    }
+
+    /**
+     * Чтение строк заявок до закрытия соединения
+     */
+    void read() {
+      byte[] line = new byte[MAX_LINE];
+      byte[] chunk = new byte[8192];
+      int length = 0;
+      try {
+        // поток чтения не закрывается: его закрытие закрыло бы сокет вместе с неотправленными ответами
+        InputStream in = socket.getInputStream();
+        int read;
+        while ((read = in.read(chunk)) > 0) {
+          for (int i = 0; i < read; i++) {
+            byte b = chunk[i];
+            if (b == '\n') {
+              submit(line, length);
+              length = 0;
+            } else if (length < line.length) {
+              line[length++] = b;
+            } else {
+              length = line.length + 1;
+            }
+          }
+        }
+        if (length > 0) {
+          submit(line, length);
+        }
+      } catch (SocketException e) {
+        // соединение закрыто клиентом или при остановке шлюза
+      } catch (IOException e) {
+        e.printStackTrace();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        closeInput();
+        inputEnded = true;
+        closeIfAnswered();
+      }
+    }
+
+    private void submit(byte[] line, int length) throws InterruptedException {
+      if (length > line.length) {
+        rejected.incrementAndGet();
+        send("REJECT 0 Строка длиннее " + line.length + " байт");
+        return;
+      }
+      if (length == 0 || (length == 1 && line[0] == '\r')) {
+        return;
+      }
+      Order[] order = new Order[1];
+      try {
+        parser.parse(ByteBuffer.wrap(line, 0, length), 0, length, parsed -> order[0] = parsed);
+      } catch (IllegalArgumentException e) {
+        rejected.incrementAndGet();
+        send("REJECT 0 " + e.getMessage());
+        return;
+      }
+      inFlight.incrementAndGet();
+      try {
+        queue.put(new Request(order[0], this));
+      } catch (InterruptedException e) {
+        inFlight.decrementAndGet();
+        throw e;
+      }
+    }
+
+    /**
+     * Все ответы на строку поставлены в очередь соединения, вызывается потоком сопоставления
+     */
+    void answered() {
+      inFlight.decrementAndGet();
+      closeIfAnswered();
+    }
+
+    /**
+     * Закрытие соединения, если клиент закончил передачу, на все его строки ответы получены и отправлены
+     */
+    private void closeIfAnswered() {
+      if (inputEnded && inFlight.get() == 0 && !sending.get() && outbound.isEmpty()) {
+        close();
+      }
+    }
+
+    /**
+     * Постановка ответа в очередь соединения, отправка запускается, если не выполняется
+     */
+    void send(String message) {
+      if (closed) {
+        return;
+      }
+      if (pending.incrementAndGet() > OUTBOUND_LIMIT) {
+        close();
+        return;
+      }
+      outbound.add(message);
+      if (sending.compareAndSet(false, true)) {
+        connections.execute(this::drain);
+      }
+    }
+
+    private void drain() {
+      try {
+        OutputStream out = new BufferedOutputStream(socket.getOutputStream(), 8192);
+        while (true) {
+          String message;
+          while ((message = outbound.poll()) != null) {
+            pending.decrementAndGet();
+            out.write(message.getBytes(StandardCharsets.UTF_8));
+            out.write('\n');
+          }
+          out.flush();
+          sending.set(false);
+          if (outbound.isEmpty() || !sending.compareAndSet(false, true)) {
+            break;
+          }
+        }
+      } catch (IOException e) {
+        sending.set(false);
+        close();
+      }
+      closeIfAnswered();
+    }
+
+    void closeInput() {
+      try {
+        socket.shutdownInput();
+      } catch (IOException e) {
+        // соединение уже закрыто
+      }
+    }
+
+    void close() {
+      closed = true;
+      open.remove(this);
+      try {
+        socket.close();
+      } catch (IOException e) {
+        // соединение уже закрыто
+      }
+    }
+  }
+}
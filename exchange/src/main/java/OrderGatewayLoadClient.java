@@ -0,0 +1,266 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Нагрузочный клиент шлюза {@link OrderGateway}. Открывает заданное количество соединений
+ * неблокирующими каналами в одном потоке, поэтому на одной машине можно открыть десятки тысяч соединений.
+ * Каждое соединение отправляет заявки {@link OrderFlowGenerator} по одной и ждет подтверждения перед отправкой
+ * следующей, время от отправки до подтверждения записывается в {@link LatencyHistogram}.
+ *
+ * Исходящие адреса соединений распределяются по адресам 127.0.0.x по {@link #CONNECTIONS_PER_ADDRESS}
+ * соединений, чтобы не исчерпать диапазон временных портов одного адреса.
+ * Количество соединений ограничено также лимитом открытых файлов процесса.
+ */
+public class OrderGatewayLoadClient {
+  /**
+   * Количество соединений с одного исходящего адреса
+   */
+  static final int CONNECTIONS_PER_ADDRESS = 20000;
+  /**
+   * Наибольшее количество одновременно устанавливаемых соединений
+   */
+  private static final int CONNECTING_LIMIT = 1000;
+
+  private final InetSocketAddress address;
+  private final OrderFlowGenerator generator;
+  private final int connections;
+  private final int ordersPerConnection;
+  private final LatencyHistogram latency = new LatencyHistogram();
+  private final byte[] line = new byte[OrderFlowGenerator.LINE_SIZE];
+  private long acks;
+  private long fills;
+  private long rejects;
+  private int connected;
+  private int finished;
+
+  /**
+   * @param address адрес шлюза
+   * @param generator генератор заявок, клиенты генератора должны быть в базе клиентов биржи
+   * @param connections количество соединений
+   * @param ordersPerConnection количество заявок на соединение
+   */
+  public OrderGatewayLoadClient(InetSocketAddress address, OrderFlowGenerator generator,
+                                int connections, int ordersPerConnection) {
+    if (connections < 1 || ordersPerConnection < 1) {
+      throw new IllegalArgumentException("Количество соединений и заявок должно быть положительным");
+    }
+    this.address = address;
+    this.generator = generator;
+    this.connections = connections;
+    this.ordersPerConnection = ordersPerConnection;
+  }
+
+  /**
+   * Открытие соединений и отправка заявок до подтверждения всех заявок
+   * @throws IOException ошибка соединения
+   */
+  public void run() throws IOException {
+    try (Selector selector = Selector.open()) {
+      Queue<Session> sessions = new ArrayDeque<>();
+      int opened = 0;
+      try {
+        while (finished < connections) {
+          while (opened < connections && opened - connected < CONNECTING_LIMIT) {
+            sessions.add(open(selector, opened++));
+          }
+          selector.select(1000);
+          Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+          while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            Session session = (Session) key.attachment();
+            if (key.isConnectable()) {
+              session.connect(key);
+            }
+            if (key.isValid() && key.isWritable()) {
+              session.flush(key);
+            }
+            if (key.isValid() && key.isReadable()) {
+              session.read(key);
+            }
+          }
+        }
+      } finally {
+        for (Session session : sessions) {
+          session.channel.close();
+        }
+      }
+    }
+  }
+
+  private Session open(Selector selector, int index) throws IOException {
+    SocketChannel channel = SocketChannel.open();
+    channel.configureBlocking(false);
+    channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+    int source = index / CONNECTIONS_PER_ADDRESS;
+    if (source > 0 && address.getAddress().isLoopbackAddress()) {
+      channel.bind(new InetSocketAddress(InetAddress.getByAddress(new byte[]{127, 0, 0, (byte) (1 + source)}), 0));
+    }
+    Session session = new Session(channel);
+    if (channel.connect(address)) {
+      session.connect(channel.register(selector, SelectionKey.OP_READ, session));
+    } else {
+      channel.register(selector, SelectionKey.OP_CONNECT, session);
+    }
+    return session;
+  }
+
+  /**
+   * Возвращает гистограмму времени от отправки заявки до подтверждения
+   * @return гистограмма задержек
+   */
+  public LatencyHistogram getLatency() {
+    return latency;
+  }
+
+  /**
+   * Возвращает количество подтвержденных заявок
+   * @return количество ответов ACK
+   */
+  public long getAcks() {
+    return acks;
+  }
+
+  /**
+   * Возвращает количество полученных сделок
+   * @return количество ответов FILL
+   */
+  public long getFills() {
+    return fills;
+  }
+
+  /**
+   * Возвращает количество отклоненных заявок
+   * @return количество ответов REJECT
+   */
+  public long getRejects() {
+    return rejects;
+  }
+
+  /**
+   * Соединение нагрузочного клиента
+   */
+  private class Session {
+    final SocketChannel channel;
+    final ByteBuffer in = ByteBuffer.allocate(4096);
+    final ByteBuffer out = ByteBuffer.allocate(OrderFlowGenerator.LINE_SIZE);
+    int answered;
+    long sentAt;
+
+    Session(SocketChannel channel) {
+      this.channel = channel;
+      out.flip();
+    }
+
+    void connect(SelectionKey key) throws IOException {
+      if (key.isConnectable() && !channel.finishConnect()) {
+        return;
+      }
+      connected++;
+      key.interestOps(SelectionKey.OP_READ);
+      send(key);
+    }
+
+    /**
+     * Отправка очередной заявки
+     */
+    void send(SelectionKey key) throws IOException {
+      out.clear();
+      out.put(line, 0, generator.nextLine(line));
+      out.flip();
+      sentAt = System.nanoTime();
+      flush(key);
+    }
+
+    void flush(SelectionKey key) throws IOException {
+      channel.write(out);
+      key.interestOps(out.hasRemaining() ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+
+    void read(SelectionKey key) throws IOException {
+      if (channel.read(in) < 0) {
+        throw new IOException("Шлюз закрыл соединение");
+      }
+      in.flip();
+      int start = in.position();
+      for (int i = start; i < in.limit(); i++) {
+        if (in.get(i) == '\n') {
+          answer(key, start);
+          start = i + 1;
+        }
+      }
+      in.position(start);
+      in.compact();
+    }
+
+    /**
+     * Обработка ответа шлюза по первой букве. Ответом на заявку считается ACK или REJECT, FILL только учитывается.
+     */
+    private void answer(SelectionKey key, int start) throws IOException {
+      byte type = in.get(start);
+      if (type == 'F') {
+        fills++;
+        return;
+      }
+      if (type == 'A') {
+        acks++;
+        latency.record(System.nanoTime() - sentAt);
+      } else {
+        rejects++;
+      }
+      if (++answered < ordersPerConnection) {
+        send(key);
+      } else if (answered == ordersPerConnection) {
+        finished++;
+      }
+    }
+  }
+
+  /**
+   * Нагрузка на шлюз, запущенный в том же процессе на базе клиентов генератора или внешний по свойству gateway.port.
+   * Параметры генератора задаются свойствами generator.*
+   * @param args количество соединений и количество заявок на соединение
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      System.err.println("Использование: OrderGatewayLoadClient <количество соединений> <заявок на соединение>");
+      return;
+    }
+    OrderFlowGenerator generator = OrderFlowGenerator.newBuilder()
+        .seed(Long.getLong("generator.seed", 1))
+        .clients(Integer.getInteger("generator.clients", 100))
+        .build();
+    Integer port = Integer.getInteger("gateway.port");
+    OrderGateway gateway = null;
+    if (port == null) {
+      gateway = new OrderGateway(new Exchange(generator.clientBase()), InetAddress.getLoopbackAddress(), 0);
+      gateway.start();
+      port = gateway.getPort();
+    }
+    OrderGatewayLoadClient client = new OrderGatewayLoadClient(
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), port), generator,
+        Integer.parseInt(args[0]), Integer.parseInt(args[1]));
+    long start = System.nanoTime();
+    client.run();
+    long elapsed = System.nanoTime() - start;
+    if (gateway != null) {
+      gateway.close();
+    }
+    LatencyHistogram latency = client.getLatency();
+    System.out.printf("Заявок %d за %d мс, %.0f заявок/с, сделок %d, отклонено %d%n", client.getAcks(),
+        TimeUnit.NANOSECONDS.toMillis(elapsed), client.getAcks() * 1e9 / elapsed, client.getFills(), client.getRejects());
+    System.out.printf("Подтверждение, мкс: p50 %d, p99 %d, p99.9 %d, max %d%n",
+        latency.percentile(50) / 1000, latency.percentile(99) / 1000, latency.percentile(99.9) / 1000,
+        latency.max() / 1000);
+  }
+}
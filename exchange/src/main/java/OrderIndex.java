@@ -0,0 +1,115 @@
+/**
+ * Индекс заявок стакана по клиенту {@link Order#getClientId()} и номеру заявки {@link Order#getId()}.
+ * Номера заявок назначают клиенты, поэтому одинаковые номера разных клиентов не пересекаются.
+ * Используется открытая адресация с линейным пробированием, при удалении следующие элементы цепочки
+ * сдвигаются назад, поэтому поиск, добавление и удаление не создают объектов и выполняются в среднем за O(1).
+ * Класс не является потокобезопасным.
+ */
+class OrderIndex {
+  private static final int INITIAL_CAPACITY = 64;
+
+  private long[] keys = new long[INITIAL_CAPACITY];
+  private Order[] values = new Order[INITIAL_CAPACITY];
+  private int size;
+
+  /**
+   * Поиск заявки
+   * @param clientId номер клиента
+   * @param id номер заявки
+   * @return заявка или null
+   */
+  Order get(int clientId, int id) {
+    long key = key(clientId, id);
+    int mask = keys.length - 1;
+    for (int i = slot(key, mask); values[i] != null; i = (i + 1) & mask) {
+      if (keys[i] == key) {
+        return values[i];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Добавление заявки
+   * @param order заявка с номером, которого нет в индексе у ее клиента
+   */
+  void put(Order order) {
+    long key = key(order.getClientId(), order.getId());
+    int mask = keys.length - 1;
+    int i = slot(key, mask);
+    while (values[i] != null) {
+      i = (i + 1) & mask;
+    }
+    keys[i] = key;
+    values[i] = order;
+    if (++size * 2 > keys.length) {
+      rehash();
+    }
+  }
+
+  /**
+   * Удаление заявки
+   * @param clientId номер клиента
+   * @param id номер заявки
+   * @return удаленная заявка или null, если заявки нет
+   */
+  Order remove(int clientId, int id) {
+    long key = key(clientId, id);
+    int mask = keys.length - 1;
+    int i = slot(key, mask);
+    while (values[i] != null && keys[i] != key) {
+      i = (i + 1) & mask;
+    }
+    Order removed = values[i];
+    if (removed == null) {
+      return null;
+    }
+    size--;
+    for (int next = (i + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+      int home = slot(keys[next], mask);
+      // элемент переносится в освободившуюся ячейку, если она лежит на пути от его начальной ячейки
+      if (((next - home) & mask) >= ((next - i) & mask)) {
+        keys[i] = keys[next];
+        values[i] = values[next];
+        i = next;
+      }
+    }
+    values[i] = null;
+    return removed;
+  }
+
+  /**
+   * Количество заявок в индексе
+   * @return количество заявок
+   */
+  int size() {
+    return size;
+  }
+
+  private void rehash() {
+    long[] oldKeys = keys;
+    Order[] oldValues = values;
+    keys = new long[oldKeys.length * 2];
+    values = new Order[oldValues.length * 2];
+    int mask = keys.length - 1;
+    for (int j = 0; j < oldKeys.length; j++) {
+      if (oldValues[j] != null) {
+        int i = slot(oldKeys[j], mask);
+        while (values[i] != null) {
+          i = (i + 1) & mask;
+        }
+        keys[i] = oldKeys[j];
+        values[i] = oldValues[j];
+      }
+    }
+  }
+
+  private static long key(int clientId, int id) {
+    return ((long) clientId << 32) | (id & 0xffffffffL);
+  }
+
+  private static int slot(long key, int mask) {
+    long hash = key * 0x9e3779b97f4a7c15L;
+    return (int) (hash ^ (hash >>> 32)) & mask;
+  }
+}
@@ -0,0 +1,354 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Журнал упреждающей записи принятых заявок. Заявка записывается до обработки, записи копятся в буфере
+ * и сбрасываются на диск группой по {@link #DEFAULT_GROUP_SIZE} заявок с одним вызовом {@link FileChannel#force(boolean)}.
+ * При сбое теряется не больше одной несброшенной группы.
+ *
+ * Структура файла:
+ * <ol>
+ *   <li>заголовок {@link OrderLog#HEADER_SIZE} байт: сигнатура, версия, масштаб {@link FixedPoint};</li>
+ *   <li>записи заявок в формате {@link OrderLog}, порядковый номер записи - время поступления заявки;</li>
+ *   <li>перед первой заявкой с новым номером клиента или акции - запись имени: тип {@link #STOCK_NAME}
+ *   или {@link #CLIENT_NAME} в байте типа заявки, номер в поле акции или клиента, длина имени в поле количества,
+ *   затем байты имени, дополненные нулями до размера записи;</li>
+ *   <li>сразу после заявки, обработка которой завершилась ошибкой, - отметка {@link #REJECTED}
+ *   с временем поступления заявки.</li>
+ * </ol>
+ * Обработка заявки детерминирована, поэтому при воспроизведении отклоненная заявка снова обрабатывается,
+ * повторяет изменения, сделанные до ошибки, и ошибка не прерывает восстановление.
+ * Номера клиентов и акций совпадают с номерами словарей {@link ClientBase}, поэтому после восстановления
+ * из снимка {@link ExchangeSnapshot} журнал продолжается с того же места.
+ */
+public class OrderJournal implements AutoCloseable {
+  static final int MAGIC = 0x4f4a4e31;
+  static final int VERSION = 3;
+  static final byte STOCK_NAME = 2;
+  static final byte CLIENT_NAME = 3;
+  static final byte REJECTED = 4;
+  /**
+   * Количество заявок, сбрасываемых на диск за один раз
+   */
+  public static final int DEFAULT_GROUP_SIZE = 1024;
+  private static final int READ_BUFFER_SIZE = 1 << 20;
+  private static final int MAX_NAME_SIZE = 0xffff;
+
+  private final FileChannel channel;
+  private final ClientBase clientBase;
+  private final ByteBuffer buffer;
+  private final int groupSize;
+  private int pending;
+  private int journaledStocks;
+  private int journaledClients;
+
+  /**
+   * Открытие журнала для дописывания, при отсутствии файл создается
+   * @param file файл журнала
+   * @param clientBase база клиентов, по словарям которой записываются номера
+   * @throws IOException ошибка открытия файла
+   */
+  public OrderJournal(File file, ClientBase clientBase) throws IOException {
+    this(file, clientBase, DEFAULT_GROUP_SIZE);
+  }
+
+  /**
+   * Открытие журнала для дописывания, при отсутствии файл создается
+   * @param file файл журнала
+   * @param clientBase база клиентов, по словарям которой записываются номера
+   * @param groupSize количество заявок, сбрасываемых на диск за один раз
+   * @throws IOException ошибка открытия файла
+   * @throws IllegalArgumentException файл не является журналом заявок
+   */
+  public OrderJournal(File file, ClientBase clientBase, int groupSize) throws IOException {
+    if (groupSize < 1) {
+      throw new IllegalArgumentException("Размер группы должен быть положительным");
+    }
+    this.clientBase = clientBase;
+    this.groupSize = groupSize;
+    this.buffer = ByteBuffer.allocateDirect(groupSize * OrderLog.RECORD_SIZE + MAX_NAME_SIZE + OrderLog.RECORD_SIZE)
+        .order(ByteOrder.LITTLE_ENDIAN);
+    this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+    if (channel.size() == 0) {
+      buffer.putInt(MAGIC).putInt(VERSION).putInt(FixedPoint.SCALE).putInt(0).putLong(0).putLong(0);
+      commit();
+    } else {
+      checkHeader(channel, file);
+      channel.position(channel.size());
+    }
+    journaledStocks = clientBase.getStockDictionary().size();
+    journaledClients = clientBase.getClientDictionary().size();
+  }
+
+  /**
+   * Запись принятой заявки. Группа заявок сбрасывается на диск при заполнении.
+   * @param order заявка с присвоенным временем поступления
+   */
+  public void append(Order order) {
+    order.resolve(clientBase);
+    NameDictionary stocks = clientBase.getStockDictionary();
+    while (journaledStocks <= order.getStockId()) {
+      putName(STOCK_NAME, journaledStocks, stocks.name(journaledStocks));
+      journaledStocks++;
+    }
+    NameDictionary clients = clientBase.getClientDictionary();
+    while (journaledClients <= order.getClientId()) {
+      putName(CLIENT_NAME, journaledClients, clients.name(journaledClients));
+      journaledClients++;
+    }
+    if (buffer.remaining() < OrderLog.RECORD_SIZE) {
+      write();
+    }
+    OrderLog.putRecord(buffer, order.getTime(), order);
+    if (++pending >= groupSize) {
+      commit();
+    }
+  }
+
+  /**
+   * Отметка последней записанной заявки отклоненной: ее обработка завершилась ошибкой
+   * @param order заявка, записанная последней
+   */
+  public void reject(Order order) {
+    if (buffer.remaining() < OrderLog.RECORD_SIZE) {
+      write();
+    }
+    buffer.putInt(order.getTime()).putInt(0).putLong(0);
+    buffer.putInt(0).putInt(0).putInt(0);
+    buffer.put(REJECTED).put((byte) 0).putShort((short) 0);
+  }
+
+  private void putName(byte type, int id, String name) {
+    byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+    if (bytes.length > MAX_NAME_SIZE) {
+      throw new IllegalArgumentException("Слишком длинное имя: " + name);
+    }
+    int size = OrderLog.RECORD_SIZE + align(bytes.length);
+    if (buffer.remaining() < size) {
+      write();
+    }
+    int start = buffer.position();
+    buffer.putLong(0).putLong(0);
+    buffer.putInt(type == STOCK_NAME ? id : 0).putInt(type == CLIENT_NAME ? id : 0).putInt(bytes.length);
+    buffer.put(type).put((byte) 0).putShort((short) 0);
+    buffer.put(bytes);
+    while (buffer.position() < start + size) {
+      buffer.put((byte) 0);
+    }
+  }
+
+  /**
+   * Сброс накопленных заявок на диск
+   */
+  public void commit() {
+    write();
+    try {
+      channel.force(false);
+    } catch (IOException e) {
+      throw new IllegalStateException("Ошибка записи журнала заявок", e);
+    }
+    pending = 0;
+  }
+
+  private void write() {
+    buffer.flip();
+    try {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Ошибка записи журнала заявок", e);
+    }
+    buffer.clear();
+  }
+
+  /**
+   * Размер журнала со сброшенными на диск заявками
+   * @return позиция, с которой продолжится журнал после {@link #commit()}
+   */
+  public long position() {
+    commit();
+    try {
+      return channel.position();
+    } catch (IOException e) {
+      throw new IllegalStateException("Ошибка чтения позиции журнала заявок", e);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      commit();
+    } finally {
+      channel.close();
+    }
+  }
+
+  /**
+   * Воспроизведение журнала с указанной позиции. Заявки получают время поступления из журнала.
+   * Ошибка обработки заявки с отметкой {@link #REJECTED} пропускается, как и при записи журнала.
+   * Неполная запись в конце журнала, оставшаяся после сбоя, пропускается. Последняя заявка без отметки,
+   * обработка которой завершилась ошибкой, тоже отбрасывается: отметка могла не попасть на диск.
+   * @param file файл журнала
+   * @param position позиция начала воспроизведения, например из снимка {@link ExchangeSnapshot}
+   * @param clientBase база клиентов, восстановленная из снимка, сделанного на этой позиции
+   * @param consumer обработчик заявок
+   * @return позиция конца последней полной записи
+   * @throws IOException ошибка чтения файла
+   * @throws IllegalArgumentException файл не является журналом заявок
+   * @throws IllegalStateException обработка заявки при воспроизведении разошлась с отметкой в журнале
+   */
+  public static long replay(File file, long position, ClientBase clientBase, Consumer<Order> consumer)
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      checkHeader(channel, file);
+      Reader reader = new Reader(channel, Math.max(position, OrderLog.HEADER_SIZE));
+      NameDictionary stocks = clientBase.getStockDictionary();
+      NameDictionary clients = clientBase.getClientDictionary();
+      int[] stockIds = new int[0];
+      int[] clientIds = new int[0];
+      while (reader.fill(OrderLog.RECORD_SIZE)) {
+        ByteBuffer record = reader.buffer;
+        int offset = record.position();
+        byte type = record.get(offset + 28);
+        int stock = record.getInt(offset + 16);
+        int client = record.getInt(offset + 20);
+        int count = record.getInt(offset + 24);
+        if (type == STOCK_NAME || type == CLIENT_NAME) {
+          int size = OrderLog.RECORD_SIZE + align(count);
+          if (!reader.fill(size)) {
+            break;
+          }
+          byte[] bytes = new byte[count];
+          record.position(offset + OrderLog.RECORD_SIZE);
+          record.get(bytes);
+          record.position(offset);
+          String name = new String(bytes, StandardCharsets.UTF_8);
+          if (type == STOCK_NAME) {
+            stockIds = map(stockIds, stock, stocks.id(name));
+          } else {
+            clientIds = map(clientIds, client, clients.id(name));
+          }
+          reader.consume(size);
+          continue;
+        }
+        int stockId = stock < stockIds.length && stockIds[stock] >= 0 ? stockIds[stock] : stock;
+        int clientId = client < clientIds.length && clientIds[client] >= 0 ? clientIds[client] : client;
+        Order order = new Order.Builder()
+            .price(record.getLong(offset + 8), record.get(offset + 29))
+            .stockId(stockId)
+            .stockName(stocks.name(stockId))
+            .clientId(clientId)
+            .clientName(clients.name(clientId))
+            .count(count)
+            .type(OrderLog.type(type, record.get(offset + 30)))
+            .id(record.getInt(offset + 4))
+            .action(OrderLog.ACTIONS[record.get(offset + 30)])
+            .buildUnsequenced();
+        order.restoreTime(record.getInt(offset));
+        long start = reader.position;
+        reader.consume(OrderLog.RECORD_SIZE);
+        boolean rejected = reader.fill(OrderLog.RECORD_SIZE) && record.get(record.position() + 28) == REJECTED;
+        if (rejected) {
+          reader.consume(OrderLog.RECORD_SIZE);
+        }
+        try {
+          consumer.accept(order);
+        } catch (RuntimeException e) {
+          if (rejected) {
+            continue;
+          }
+          if (!reader.fill(OrderLog.RECORD_SIZE)) {
+            return start;
+          }
+          throw new IllegalStateException("Заявка " + order.getTime() + " из журнала была принята, "
+              + "но при воспроизведении завершилась ошибкой", e);
+        }
+        if (rejected) {
+          throw new IllegalStateException("Заявка " + order.getTime() + " из журнала была отклонена, "
+              + "но при воспроизведении обработана");
+        }
+      }
+      return reader.position;
+    }
+  }
+
+  private static int[] map(int[] ids, int journalId, int id) {
+    if (journalId >= ids.length) {
+      int length = ids.length;
+      ids = Arrays.copyOf(ids, Math.max(length * 2, journalId + 1));
+      Arrays.fill(ids, length, ids.length, -1);
+    }
+    ids[journalId] = id;
+    return ids;
+  }
+
+  private static int align(int size) {
+    return (size + OrderLog.RECORD_SIZE - 1) / OrderLog.RECORD_SIZE * OrderLog.RECORD_SIZE;
+  }
+
+  private static void checkHeader(FileChannel channel, File file) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(OrderLog.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+    }
+    if (header.hasRemaining() || header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+      throw new IllegalArgumentException("Файл не является журналом заявок: " + file);
+    }
+    if (header.getInt(8) != FixedPoint.SCALE) {
+      throw new IllegalArgumentException("Журнал записан с масштабом цен " + header.getInt(8)
+          + ", текущий масштаб " + FixedPoint.SCALE);
+    }
+  }
+
+  /**
+   * Последовательное чтение журнала через буфер
+   */
+  private static class Reader {
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    /**
+     * Позиция в файле начала непрочитанных данных буфера
+     */
+    private long position;
+
+    Reader(FileChannel channel, long position) {
+      this.channel = channel;
+      this.position = position;
+      buffer.limit(0);
+    }
+
+    /**
+     * Дочитывает файл, пока в буфере не окажется указанное количество байт
+     * @return false, если файл закончился раньше
+     */
+    boolean fill(int size) throws IOException {
+      if (buffer.remaining() >= size) {
+        return true;
+      }
+      buffer.compact();
+      long readPosition = position + buffer.position();
+      while (buffer.position() < size) {
+        int read = channel.read(buffer, readPosition);
+        if (read <= 0) {
+          break;
+        }
+        readPosition += read;
+      }
+      buffer.flip();
+      return buffer.remaining() >= size;
+    }
+
+    void consume(int size) {
+      buffer.position(buffer.position() + size);
+      position += size;
+    }
+  }
+}
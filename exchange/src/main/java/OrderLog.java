@@ -0,0 +1,248 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Двоичный журнал заявок с записями фиксированной длины. Позволяет многократно воспроизводить поток заявок
+ * без повторного разбора текста: файл отображается в память, записи читаются по смещению.
+ *
+ * Структура файла:
+ * <ol>
+ *   <li>заголовок {@link #HEADER_SIZE} байт: сигнатура, версия, масштаб {@link FixedPoint}, количество записей,
+ *   смещение словаря имен;</li>
+ *   <li>записи по {@link #RECORD_SIZE} байт: порядковый номер, номер заявки, цена в единицах {@link FixedPoint},
+ *   номер акции, номер клиента, количество, тип заявки, масштаб цены для вывода, действие {@link Order.Action};</li>
+ *   <li>словарь имен: список акций и список клиентов, номер в записи указывает позицию в списке.</li>
+ * </ol>
+ * Числа записываются в порядке байтов little-endian.
+ */
+public final class OrderLog {
+  static final int MAGIC = 0x4f4c4731;
+  static final int VERSION = 2;
+  static final int HEADER_SIZE = 32;
+  static final int RECORD_SIZE = 32;
+  private static final int WRITE_BUFFER_SIZE = RECORD_SIZE * 8192;
+  private static final int READ_REGION_RECORDS = 1024 * 1024;
+  static final Order.Action[] ACTIONS = Order.Action.values();
+
+  private OrderLog() {
+  }
+
+  /**
+   * Преобразование текстового файла заявок в двоичный журнал
+   * @param orders файл со списком заявок в текстовом формате
+   * @param log результирующий двоичный журнал
+   * @return количество записанных заявок
+   * @throws IOException ошибка чтения или записи файла
+   */
+  public static long convert(File orders, File log) throws IOException {
+    try (FileChannel channel = FileChannel.open(log.toPath(), StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      ClientBase names = new ClientBase();
+      Writer writer = new Writer(channel, names);
+      new OrderFileParser(names).parse(orders, writer);
+      return writer.finish();
+    }
+  }
+
+  /**
+   * Воспроизведение журнала: заявки передаются обработчику в порядке записи.
+   * Номера клиентов и акций журнала один раз сопоставляются словарям базы клиентов.
+   * @param log двоичный журнал
+   * @param clientBase база клиентов, по словарям которой присваиваются номера клиентов и акций
+   * @param consumer обработчик заявок
+   * @throws IOException ошибка чтения файла
+   * @throws IllegalArgumentException файл не является журналом заявок или записан с другим масштабом цен
+   */
+  public static void replay(File log, ClientBase clientBase, Consumer<Order> consumer) throws IOException {
+    try (FileChannel channel = FileChannel.open(log.toPath(), StandardOpenOption.READ)) {
+      if (channel.size() < HEADER_SIZE) {
+        throw new IllegalArgumentException("Файл не является журналом заявок: " + log);
+      }
+      ByteBuffer header = map(channel, 0, HEADER_SIZE);
+      if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+        throw new IllegalArgumentException("Файл не является журналом заявок: " + log);
+      }
+      if (header.getInt(8) != FixedPoint.SCALE) {
+        throw new IllegalArgumentException("Журнал записан с масштабом цен " + header.getInt(8)
+            + ", текущий масштаб " + FixedPoint.SCALE);
+      }
+      long records = header.getLong(16);
+      long dictionaryOffset = header.getLong(24);
+      ByteBuffer dictionary = map(channel, dictionaryOffset, channel.size() - dictionaryOffset);
+      String[] stocks = readNames(dictionary);
+      String[] clients = readNames(dictionary);
+      int[] stockIds = ids(stocks, clientBase.getStockDictionary());
+      int[] clientIds = ids(clients, clientBase.getClientDictionary());
+
+      long position = HEADER_SIZE;
+      while (records > 0) {
+        int count = (int) Math.min(records, READ_REGION_RECORDS);
+        ByteBuffer buffer = map(channel, position, (long) count * RECORD_SIZE);
+        for (int offset = 0; offset < count * RECORD_SIZE; offset += RECORD_SIZE) {
+          int stock = buffer.getInt(offset + 16);
+          int client = buffer.getInt(offset + 20);
+          consumer.accept(new Order.Builder()
+              .price(buffer.getLong(offset + 8), buffer.get(offset + 29))
+              .stockName(stocks[stock])
+              .stockId(stockIds[stock])
+              .clientName(clients[client])
+              .clientId(clientIds[client])
+              .count(buffer.getInt(offset + 24))
+              .type(type(buffer.get(offset + 28), buffer.get(offset + 30)))
+              .id(buffer.getInt(offset + 4))
+              .action(ACTIONS[buffer.get(offset + 30)])
+              .build());
+        }
+        records -= count;
+        position += (long) count * RECORD_SIZE;
+      }
+    }
+  }
+
+  /**
+   * Запись заявки в буфер в формате записи журнала
+   * @param buffer буфер с порядком байтов little-endian
+   * @param sequence порядковый номер записи
+   * @param order заявка с присвоенными номерами клиента и акции
+   */
+  static void putRecord(ByteBuffer buffer, long sequence, Order order) {
+    buffer.putInt((int) sequence);
+    buffer.putInt(order.getId());
+    buffer.putLong(order.getPriceUnits());
+    buffer.putInt(order.getStockId());
+    buffer.putInt(order.getClientId());
+    buffer.putInt(order.getCount());
+    buffer.put((byte) (order.getType() == Order.Type.BAY ? 1 : 0));
+    buffer.put((byte) order.getPriceScale());
+    buffer.put((byte) order.getAction().ordinal());
+    buffer.put((byte) 0);
+  }
+
+  /**
+   * Тип заявки записи, у команды тип не указывается
+   * @param type байт типа заявки
+   * @param action байт действия
+   * @return тип заявки или null для команды
+   */
+  static Order.Type type(byte type, byte action) {
+    if (action != 0) {
+      return null;
+    }
+    return type == 0 ? Order.Type.SELL : Order.Type.BAY;
+  }
+
+  private static ByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(size, channel.size() - position));
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    return buffer;
+  }
+
+  private static int[] ids(String[] names, NameDictionary dictionary) {
+    int[] ids = new int[names.length];
+    for (int i = 0; i < names.length; i++) {
+      ids[i] = dictionary.id(names[i]);
+    }
+    return ids;
+  }
+
+  private static String[] readNames(ByteBuffer buffer) {
+    String[] names = new String[buffer.getInt()];
+    for (int i = 0; i < names.length; i++) {
+      byte[] bytes = new byte[buffer.getShort() & 0xffff];
+      buffer.get(bytes);
+      names[i] = new String(bytes, StandardCharsets.UTF_8);
+    }
+    return names;
+  }
+
+  /**
+   * Запись заявок в журнал через буфер
+   */
+  private static class Writer implements Consumer<Order> {
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final NameDictionary stocks;
+    private final NameDictionary clients;
+    private long sequence;
+
+    Writer(FileChannel channel, ClientBase names) throws IOException {
+      this.channel = channel;
+      this.stocks = names.getStockDictionary();
+      this.clients = names.getClientDictionary();
+      channel.position(HEADER_SIZE);
+    }
+
+    @Override
+    public void accept(Order order) {
+      if (buffer.remaining() < RECORD_SIZE) {
+        flush();
+      }
+      putRecord(buffer, sequence++, order);
+    }
+
+    long finish() throws IOException {
+      flush();
+      long dictionaryOffset = channel.position();
+      writeNames(stocks);
+      writeNames(clients);
+      flush();
+      buffer.putInt(MAGIC).putInt(VERSION).putInt(FixedPoint.SCALE).putInt(0)
+          .putLong(sequence).putLong(dictionaryOffset);
+      buffer.flip();
+      channel.write(buffer, 0);
+      buffer.clear();
+      return sequence;
+    }
+
+    private void writeNames(NameDictionary names) {
+      if (buffer.remaining() < 4) {
+        flush();
+      }
+      buffer.putInt(names.size());
+      for (int id = 0; id < names.size(); id++) {
+        String name = names.name(id);
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xffff) {
+          throw new IllegalArgumentException("Слишком длинное имя: " + name);
+        }
+        if (buffer.remaining() < bytes.length + 2) {
+          flush();
+        }
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+      }
+    }
+
+    private void flush() {
+      buffer.flip();
+      try {
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+      } catch (IOException e) {
+        throw new IllegalStateException("Ошибка записи журнала заявок", e);
+      }
+      buffer.clear();
+    }
+  }
+
+  /**
+   * Преобразование текстового файла заявок в двоичный журнал
+   * @param args файл заявок и файл журнала
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      System.err.println("Использование: OrderLog <файл заявок> <файл журнала>");
+      return;
+    }
+    long count = convert(new File(args[0]), new File(args[1]));
+    System.out.println("Записано заявок: " + count);
+  }
+}
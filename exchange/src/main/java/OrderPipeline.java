@@ -0,0 +1,212 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Конвейер обработки заявок на заранее выделенном кольце в духе LMAX Disruptor. Источник заявок пишет их
+ * в кольцо в вызывающем потоке (единственный производитель), каждая стадия работает в своем потоке
+ * и обрабатывает заявки в порядке кольца после предыдущей стадии. Заявки не копируются и не передаются
+ * через блокирующие очереди: стадии обмениваются только счетчиками обработанных заявок.
+ *
+ * Стадия выбирает сразу все заявки, переданные предыдущей стадией, но не больше размера пачки,
+ * и отмечает их обработку одной записью счетчика. Последняя заявка выборки передается обработчику
+ * с признаком конца пачки, по нему обработчик может выполнить накопленную работу.
+ *
+ * Если обработчик выбросил исключение, заявки в кольце проходят через конвейер без обработки, следующая запись
+ * в кольцо выбрасывает это исключение источнику, и оно выбрасывается из {@link #run(Source, Handler...)}.
+ * Класс не является потокобезопасным: одновременно выполняется один запуск.
+ */
+class OrderPipeline {
+  /**
+   * Емкость кольца по умолчанию
+   */
+  static final int DEFAULT_RING_SIZE = 1 << 16;
+  /**
+   * Размер пачки стадии по умолчанию
+   */
+  static final int DEFAULT_BATCH_SIZE = 256;
+
+  /**
+   * Источник заявок
+   */
+  interface Source {
+    /**
+     * Передача всех заявок источника
+     * @param consumer получатель заявок, при заполненном кольце ожидает
+     * @throws IOException ошибка чтения заявок
+     */
+    void feed(Consumer<Order> consumer) throws IOException;
+  }
+
+  /**
+   * Обработчик заявок стадии
+   */
+  interface Handler {
+    /**
+     * Обработка заявки в потоке стадии
+     * @param order заявка
+     * @param endOfBatch последняя заявка выборки
+     */
+    void onOrder(Order order, boolean endOfBatch);
+  }
+
+  private final Order[] ring;
+  private final int mask;
+  private final int batchSize;
+  private final WaitStrategy waitStrategy;
+  /**
+   * Количество заявок, записанных источником в кольцо
+   */
+  private final AtomicLong cursor = new AtomicLong();
+  /**
+   * Количество заявок, обработанных каждой стадией
+   */
+  private AtomicLong[] sequences = new AtomicLong[0];
+  /**
+   * Количество заявок источника после его окончания
+   */
+  private volatile long end;
+  private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+  /**
+   * Наименьшее известное количество заявок, обработанных последней стадией
+   */
+  private long gate;
+  private long stalls;
+
+  /**
+   * @param ringSize емкость кольца, степень двойки
+   * @param batchSize наибольшее количество заявок, выбираемых стадией за раз
+   * @param waitStrategy способ ожидания стадий и источника
+   */
+  OrderPipeline(int ringSize, int batchSize, WaitStrategy waitStrategy) {
+    if (ringSize < 1 || Integer.bitCount(ringSize) != 1) {
+      throw new IllegalArgumentException("Емкость кольца должна быть степенью двойки");
+    }
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("Размер пачки должен быть положительным");
+    }
+    if (waitStrategy == null) {
+      throw new IllegalArgumentException("Не указан способ ожидания");
+    }
+    this.ring = new Order[ringSize];
+    this.mask = ringSize - 1;
+    this.batchSize = batchSize;
+    this.waitStrategy = waitStrategy;
+  }
+
+  /**
+   * Передача всех заявок источника через стадии. Возвращается после обработки всех заявок последней стадией.
+   * @param source источник заявок
+   * @param handlers обработчики стадий в порядке конвейера
+   * @throws IOException ошибка чтения заявок источником
+   * @throws RuntimeException первая ошибка обработчика стадии или источника
+   */
+  void run(Source source, Handler... handlers) throws IOException {
+    if (handlers.length == 0) {
+      throw new IllegalArgumentException("Конвейер должен содержать хотя бы одну стадию");
+    }
+    failure.set(null);
+    cursor.set(0);
+    gate = 0;
+    end = Long.MAX_VALUE;
+    sequences = new AtomicLong[handlers.length];
+    for (int i = 0; i < handlers.length; i++) {
+      sequences[i] = new AtomicLong();
+    }
+    Thread[] threads = new Thread[handlers.length];
+    for (int i = 0; i < handlers.length; i++) {
+      int stage = i;
+      threads[i] = new Thread(() -> drain(stage, handlers[stage]), "order-pipeline-" + i);
+      threads[i].setDaemon(true);
+      threads[i].start();
+    }
+    try {
+      source.feed(this::publish);
+    } finally {
+      end = cursor.get();
+      for (Thread thread : threads) {
+        join(thread);
+      }
+      Arrays.fill(ring, null);
+    }
+    RuntimeException error = failure.getAndSet(null);
+    if (error != null) {
+      throw error;
+    }
+  }
+
+  /**
+   * Количество ожиданий источника из-за заполненного кольца за все запуски
+   * @return количество ожиданий
+   */
+  long getStalls() {
+    return stalls;
+  }
+
+  /**
+   * Запись заявки в кольцо. Ячейка свободна, когда последняя стадия обработала заявку на круг раньше.
+   * После ошибки стадии заявка не записывается, а ошибка выбрасывается, чтобы источник прекратил чтение.
+   */
+  private void publish(Order order) {
+    RuntimeException error = failure.get();
+    if (error != null) {
+      throw error;
+    }
+    long sequence = cursor.get();
+    long wrap = sequence - ring.length;
+    if (wrap >= gate) {
+      AtomicLong last = sequences[sequences.length - 1];
+      gate = last.get();
+      if (wrap >= gate) {
+        stalls++;
+        do {
+          waitStrategy.idle();
+          gate = last.get();
+        } while (wrap >= gate);
+      }
+    }
+    ring[(int) sequence & mask] = order;
+    cursor.lazySet(sequence + 1);
+  }
+
+  /**
+   * Поток стадии: выбирает пачками заявки, обработанные предыдущей стадией, до окончания источника
+   */
+  private void drain(int stage, Handler handler) {
+    AtomicLong sequence = sequences[stage];
+    AtomicLong barrier = stage == 0 ? cursor : sequences[stage - 1];
+    long next = 0;
+    while (true) {
+      long available = barrier.get();
+      if (next == available) {
+        if (next == end) {
+          return;
+        }
+        waitStrategy.idle();
+        continue;
+      }
+      long to = Math.min(available, next + batchSize);
+      for (; next < to; next++) {
+        if (failure.get() == null) {
+          try {
+            handler.onOrder(ring[(int) next & mask], next == to - 1);
+          } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+          }
+        }
+      }
+      sequence.lazySet(to);
+    }
+  }
+
+  private static void join(Thread thread) {
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Ожидание стадии конвейера прервано", e);
+    }
+  }
+}
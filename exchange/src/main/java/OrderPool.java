@@ -0,0 +1,69 @@
+/**
+ * Пул заявок для повторного использования. Полностью исполненные заявки возвращаются в пул
+ * и выдаются снова при разборе следующих заявок, поэтому в установившемся режиме обработка
+ * заявок не создает объектов. Свободные заявки связаны в список через ссылку {@link Order#next}.
+ *
+ * Класс не является потокобезопасным: заявки должны браться и возвращаться в одном потоке.
+ */
+public class OrderPool {
+  private Order free;
+  private int freeCount;
+  private long allocated;
+
+  public OrderPool() {
+  }
+
+  /**
+   * Создает пул с заранее созданными заявками
+   * @param capacity количество заранее созданных заявок
+   */
+  public OrderPool(int capacity) {
+    for (int i = 0; i < capacity; i++) {
+      release(Order.allocate());
+      allocated++;
+    }
+  }
+
+  /**
+   * Выдает свободную заявку, при пустом пуле заявка создается
+   * @return заявка, которую нужно заполнить через {@link Order#init}
+   */
+  Order acquire() {
+    Order order = free;
+    if (order == null) {
+      allocated++;
+      return Order.allocate();
+    }
+    free = order.next;
+    order.next = null;
+    freeCount--;
+    return order;
+  }
+
+  /**
+   * Возврат заявки в пул. После возврата заявка не должна использоваться
+   * @param order заявка, не находящаяся в очереди
+   */
+  void release(Order order) {
+    order.prev = null;
+    order.next = free;
+    free = order;
+    freeCount++;
+  }
+
+  /**
+   * Возвращает количество свободных заявок
+   * @return количество заявок в пуле
+   */
+  public int getFreeCount() {
+    return freeCount;
+  }
+
+  /**
+   * Возвращает количество заявок, созданных пулом
+   * @return количество созданных заявок
+   */
+  public long getAllocated() {
+    return allocated;
+  }
+}
@@ -0,0 +1,32 @@
+/**
+ * Серия идущих подряд заявок одного клиента на ценовом уровне {@link PriceLevel}.
+ * Каждая заявка уровня входит ровно в одну серию, поэтому заявки клиента, выставившего новую заявку,
+ * пропускаются при сопоставлении целой серией за один шаг, без извлечения их из уровня.
+ * Соседние серии одного клиента после удаления разделявших их заявок не объединяются,
+ * это не влияет на результат, только на количество шагов.
+ */
+class OrderRun {
+  /**
+   * Номер клиента заявок серии
+   */
+  int clientId;
+  /**
+   * Первая заявка серии
+   */
+  Order head;
+  /**
+   * Последняя заявка серии
+   */
+  Order tail;
+  /**
+   * Количество заявок в серии
+   */
+  int size;
+  /**
+   * Следующая свободная серия в списке свободных серий уровня
+   */
+  OrderRun nextFree;
+
+  OrderRun() {
+  }
+}
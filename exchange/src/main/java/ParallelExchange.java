@@ -0,0 +1,241 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Многопоточный эмулятор биржи. Стаканы разных акций не зависят друг от друга, поэтому каждая акция
+ * закрепляется за одним из рабочих потоков и все ее заявки обрабатываются только этим потоком
+ * в порядке поступления. Поток чтения разбирает заявки и раскладывает их по рабочим потокам пачками.
+ *
+ * Расчеты по счетам клиентов детерминированы: количество акций одного вида у клиента меняет только
+ * поток, за которым закреплена акция, а изменения денежного баланса складываются и не зависят от порядка.
+ * Результат обработки совпадает с результатом однопоточной {@link Exchange}.
+ *
+ * Исключение - ошибка обработки заявки. Заявки, поступившие раньше ошибочной, обрабатываются все,
+ * а ошибка выбрасывается для самой ранней по поступлению ошибочной заявки, как у {@link Exchange}.
+ * Заявки своей акции после ошибочной не обрабатываются, но заявки других акций, поступившие после нее,
+ * могут быть уже обработаны другими потоками, и сколько их обработано, зависит от соотношения скоростей потоков.
+ */
+public class ParallelExchange extends Exchange implements AutoCloseable {
+  /**
+   * Количество заявок, передаваемых рабочему потоку за один раз
+   */
+  private static final int BATCH_SIZE = 256;
+  /**
+   * Количество пачек в очереди рабочего потока, при заполнении поток чтения ожидает
+   */
+  private static final int QUEUE_CAPACITY = 64;
+
+  private final Worker[] workers;
+  private Worker[] partitions = new Worker[16];
+  private int partitionCount;
+  /**
+   * Количество заявок, переданных рабочим потокам, номер следующей заявки в порядке поступления
+   */
+  private long submitted;
+  /**
+   * Самая ранняя по поступлению ошибочная заявка
+   */
+  private final AtomicReference<Failure> failure = new AtomicReference<>();
+
+  /**
+   * Инициализации биржи и запуск рабочих потоков
+   * @param clientBase база клиентов
+   * @param threads количество рабочих потоков
+   */
+  public ParallelExchange(ClientBase clientBase, int threads) {
+    super(clientBase);
+    if (threads < 1) {
+      throw new IllegalArgumentException("Количество потоков должно быть положительным");
+    }
+    workers = new Worker[threads];
+    for (int i = 0; i < threads; i++) {
+      workers[i] = new Worker();
+      Thread thread = new Thread(workers[i], "exchange-worker-" + i);
+      thread.setDaemon(true);
+      thread.start();
+    }
+  }
+
+  /**
+   * Переиспользование заявок не поддерживается: заявки возвращались бы в пул из рабочих потоков
+   * @throws IllegalArgumentException всегда, кроме отключения пула
+   */
+  @Override
+  public void setOrderPool(OrderPool orderPool) {
+    if (orderPool != null) {
+      throw new IllegalArgumentException("Пул заявок не поддерживается многопоточной биржей");
+    }
+  }
+
+  @Override
+  void processOrder(Order order) {
+    order.resolve(clientBase);
+    int stockId = order.getStockId();
+    if (stockId >= partitions.length) {
+      partitions = Arrays.copyOf(partitions, Math.max(partitions.length * 2, stockId + 1));
+    }
+    Worker worker = partitions[stockId];
+    if (worker == null) {
+      worker = workers[partitionCount++ % workers.length];
+      partitions[stockId] = worker;
+    }
+    worker.submit(ordersQueue(stockId), order, submitted++);
+  }
+
+  /**
+   * Заявки пачки раскладываются по рабочим потокам по одной, рабочие потоки и так получают их пачками
+   */
+  @Override
+  void processBatch(Order[] orders, int count) {
+    for (int i = 0; i < count; i++) {
+      processOrder(orders[i]);
+    }
+  }
+
+  /**
+   * Ожидание обработки всех переданных заявок рабочими потоками
+   * @throws RuntimeException ошибка, возникшая при обработке заявки в рабочем потоке
+   */
+  @Override
+  void awaitProcessed() {
+    CountDownLatch latch = new CountDownLatch(workers.length);
+    for (Worker worker : workers) {
+      worker.flush();
+      worker.handOff(new Batch(latch));
+    }
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Ожидание обработки заявок прервано", e);
+    }
+    Failure error = failure.getAndSet(null);
+    if (error != null) {
+      throw error.error;
+    }
+  }
+
+  /**
+   * Запоминает ошибку, если ошибочная заявка поступила раньше уже известной
+   */
+  private void fail(long position, RuntimeException error) {
+    Failure next = new Failure(position, error);
+    Failure known;
+    do {
+      known = failure.get();
+      if (known != null && known.position < position) {
+        return;
+      }
+    } while (!failure.compareAndSet(known, next));
+  }
+
+  /**
+   * Остановка рабочих потоков после обработки переданных заявок
+   */
+  @Override
+  public void close() {
+    for (Worker worker : workers) {
+      worker.flush();
+      worker.handOff(Batch.STOP);
+    }
+  }
+
+  /**
+   * Ошибка обработки заявки вместе с номером заявки в порядке поступления
+   */
+  private static class Failure {
+    final long position;
+    final RuntimeException error;
+
+    Failure(long position, RuntimeException error) {
+      this.position = position;
+      this.error = error;
+    }
+  }
+
+  /**
+   * Пачка заявок для рабочего потока вместе с очередями, в которые они направляются, и номерами заявок
+   * в порядке поступления.
+   * Пачка с защелкой служит барьером: рабочий поток отмечает, что все предыдущие заявки обработаны.
+   */
+  private static class Batch {
+    static final Batch STOP = new Batch(null);
+
+    final List<StockOrdersQueue> queues = new ArrayList<>(BATCH_SIZE);
+    final List<Order> orders = new ArrayList<>(BATCH_SIZE);
+    final long[] positions = new long[BATCH_SIZE];
+    final CountDownLatch barrier;
+
+    Batch(CountDownLatch barrier) {
+      this.barrier = barrier;
+    }
+  }
+
+  /**
+   * Рабочий поток, единственный обработчик закрепленных за ним стаканов
+   */
+  private class Worker implements Runnable {
+    private final BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private Batch current = new Batch(null);
+
+    void submit(StockOrdersQueue ordersQueue, Order order, long position) {
+      current.positions[current.orders.size()] = position;
+      current.queues.add(ordersQueue);
+      current.orders.add(order);
+      if (current.orders.size() == BATCH_SIZE) {
+        flush();
+      }
+    }
+
+    void flush() {
+      if (!current.orders.isEmpty()) {
+        handOff(current);
+        current = new Batch(null);
+      }
+    }
+
+    void handOff(Batch batch) {
+      try {
+        queue.put(batch);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Передача заявок прервана", e);
+      }
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (true) {
+          Batch batch = queue.take();
+          if (batch == Batch.STOP) {
+            return;
+          }
+          if (batch.barrier != null) {
+            batch.barrier.countDown();
+            continue;
+          }
+          for (int i = 0; i < batch.orders.size(); i++) {
+            Failure known = failure.get();
+            // номера заявок потока возрастают, поэтому остальные заявки пачки тоже поступили после ошибочной
+            if (known != null && known.position < batch.positions[i]) {
+              break;
+            }
+            try {
+              batch.queues.get(i).addAndProcess(batch.orders.get(i));
+            } catch (RuntimeException e) {
+              fail(batch.positions[i], e);
+            }
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
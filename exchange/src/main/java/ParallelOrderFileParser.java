@@ -0,0 +1,185 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Параллельный разбор файла заявок. Отображенный в память файл делится на участки, выровненные по концу строки,
+ * участки разбираются в пачки заявок несколькими потоками. Пачки передаются обработчику строго в порядке
+ * следования в файле, и только в этот момент заявкам присваивается время поступления, поэтому приоритет
+ * по времени совпадает с последовательным разбором. Обработчик вызывается в потоке, вызвавшем разбор.
+ *
+ * Количество одновременно разбираемых участков ограничено, так что память не зависит от размера файла.
+ */
+class ParallelOrderFileParser {
+  /**
+   * Размер участка для разбора одним потоком по умолчанию
+   */
+  static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+  private final ClientBase clientBase;
+  private final int threads;
+  private final int chunkSize;
+  private final int regionSize;
+
+  /**
+   * @param clientBase база клиентов, по словарям которой присваиваются номера клиентов и акций
+   * @param threads количество потоков разбора
+   */
+  ParallelOrderFileParser(ClientBase clientBase, int threads) {
+    this(clientBase, threads, DEFAULT_CHUNK_SIZE, OrderFileParser.DEFAULT_REGION_SIZE);
+  }
+
+  /**
+   * @param clientBase база клиентов, по словарям которой присваиваются номера клиентов и акций
+   * @param threads количество потоков разбора
+   * @param chunkSize размер участка для разбора одним потоком
+   * @param regionSize размер участка файла, отображаемого в память за один раз
+   */
+  ParallelOrderFileParser(ClientBase clientBase, int threads, int chunkSize, int regionSize) {
+    this.clientBase = clientBase;
+    if (threads < 1) {
+      throw new IllegalArgumentException("Количество потоков должно быть положительным");
+    }
+    this.threads = threads;
+    this.chunkSize = chunkSize;
+    this.regionSize = regionSize;
+  }
+
+  /**
+   * Разбор файла заявок
+   * @param file файл со списком заявок
+   * @param consumer обработчик разобранных заявок, вызывается в порядке следования строк
+   * @throws IOException ошибка чтения файла
+   * @throws IllegalArgumentException ошибка формата с номером и текстом строки, заявки до ошибки передаются обработчику
+   */
+  void parse(File file, Consumer<Order> consumer) throws IOException {
+    ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable, "order-parser");
+      thread.setDaemon(true);
+      return thread;
+    });
+    ThreadLocal<OrderFileParser> parsers = ThreadLocal.withInitial(() -> {
+      OrderFileParser parser = new OrderFileParser(clientBase);
+      parser.setSequenced(false);
+      return parser;
+    });
+    Deque<Chunk> inFlight = new ArrayDeque<>();
+    long lines = 0;
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long size = channel.size();
+      long position = 0;
+      while (position < size) {
+        int length = (int) Math.min(regionSize, size - position);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        int end = length;
+        if (position + length < size) {
+          end = OrderFileParser.lineEndBefore(buffer, 0, length);
+        }
+        int start = 0;
+        while (start < end) {
+          Chunk chunk = new Chunk(buffer, start, chunkEnd(buffer, start, end));
+          chunk.orders = executor.submit(() -> parseChunk(parsers.get(), chunk));
+          inFlight.add(chunk);
+          if (inFlight.size() >= threads * 2) {
+            lines = release(inFlight.poll(), lines, consumer);
+          }
+          start = chunk.end;
+        }
+        position += end;
+      }
+      while (!inFlight.isEmpty()) {
+        lines = release(inFlight.poll(), lines, consumer);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Разбор участка в потоке разбора
+   * @return заявки участка или null, если в участке есть ошибка формата
+   */
+  private static List<Order> parseChunk(OrderFileParser parser, Chunk chunk) {
+    List<Order> orders = new ArrayList<>();
+    try {
+      parser.parse(chunk.buffer, chunk.start, chunk.end, orders::add);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+    return orders;
+  }
+
+  /**
+   * Передача заявок участка обработчику. Участок с ошибкой разбирается повторно последовательно
+   * с правильной нумерацией строк: заявки до ошибки передаются обработчику, затем выбрасывается ошибка.
+   * @param chunk участок
+   * @param linesBefore количество строк в предыдущих участках
+   * @param consumer обработчик заявок
+   * @return количество строк с учетом участка
+   */
+  private long release(Chunk chunk, long linesBefore, Consumer<Order> consumer) {
+    List<Order> orders;
+    try {
+      orders = chunk.orders.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Разбор файла заявок прерван", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    }
+    if (orders == null) {
+      OrderFileParser parser = new OrderFileParser(clientBase);
+      parser.setLineNumber(linesBefore);
+      parser.parse(chunk.buffer, chunk.start, chunk.end, consumer);
+      return parser.getLineNumber();
+    }
+    for (Order order : orders) {
+      order.sequence();
+      consumer.accept(order);
+    }
+    return linesBefore + orders.size();
+  }
+
+  /**
+   * Конец участка: первый перевод строки после набора {@link #chunkSize} байт
+   */
+  private int chunkEnd(ByteBuffer buffer, int start, int end) {
+    for (int i = start + chunkSize - 1; i < end; i++) {
+      if (buffer.get(i) == '\n') {
+        return i + 1;
+      }
+    }
+    return end;
+  }
+
+  /**
+   * Участок файла, разбираемый одним потоком
+   */
+  private static class Chunk {
+    final ByteBuffer buffer;
+    final int start;
+    final int end;
+    Future<List<Order>> orders;
+
+    Chunk(ByteBuffer buffer, int start, int end) {
+      this.buffer = buffer;
+      this.start = start;
+      this.end = end;
+    }
+  }
+}
@@ -0,0 +1,147 @@
+/**
+ * Ценовой уровень стакана: все заявки одной стороны по одной цене.
+ * Заявки хранятся в порядке поступления (FIFO) в виде двусвязного списка,
+ * ссылки на соседей хранятся в самих заявках, поэтому операции над уровнем не создают объектов.
+ * Подряд идущие заявки одного клиента объединяются в серии {@link OrderRun}, освободившиеся серии
+ * сохраняются на уровне для повторного использования.
+ * Уровень хранит суммарный остаток своих заявок, поэтому глубина стакана публикуется без обхода заявок.
+ */
+class PriceLevel {
+  /**
+   * Цена уровня в единицах {@link FixedPoint}
+   */
+  long price;
+  /**
+   * Первая заявка в очереди уровня
+   */
+  Order head;
+  /**
+   * Последняя заявка в очереди уровня
+   */
+  Order tail;
+  /**
+   * Количество заявок на уровне
+   */
+  int size;
+  /**
+   * Суммарный остаток заявок на уровне
+   */
+  long quantity;
+  /**
+   * Свободные серии заявок
+   */
+  private OrderRun freeRuns;
+
+  PriceLevel() {
+  }
+
+  boolean isEmpty() {
+    return head == null;
+  }
+
+  /**
+   * Добавление заявки в конец очереди уровня
+   * @param order заявка
+   */
+  void addLast(Order order) {
+    order.prev = tail;
+    order.next = null;
+    if (tail == null) {
+      head = order;
+    } else {
+      tail.next = order;
+    }
+    tail = order;
+    size++;
+    quantity += order.getCount();
+    OrderRun run = order.prev != null ? order.prev.run : null;
+    if (run != null && run.clientId == order.getClientId()) {
+      run.tail = order;
+      run.size++;
+      order.run = run;
+    } else {
+      order.run = newRun(order);
+    }
+  }
+
+  /**
+   * Добавление заявки в начало очереди уровня
+   * @param order заявка
+   */
+  void addFirst(Order order) {
+    order.prev = null;
+    order.next = head;
+    if (head == null) {
+      tail = order;
+    } else {
+      head.prev = order;
+    }
+    head = order;
+    size++;
+    quantity += order.getCount();
+    OrderRun run = order.next != null ? order.next.run : null;
+    if (run != null && run.clientId == order.getClientId()) {
+      run.head = order;
+      run.size++;
+      order.run = run;
+    } else {
+      order.run = newRun(order);
+    }
+  }
+
+  /**
+   * Удаление заявки из очереди уровня
+   * @param order заявка, находящаяся на этом уровне
+   */
+  void remove(Order order) {
+    OrderRun run = order.run;
+    if (run.size == 1) {
+      freeRun(run);
+    } else {
+      if (run.head == order) {
+        run.head = order.next;
+      } else if (run.tail == order) {
+        run.tail = order.prev;
+      }
+      run.size--;
+    }
+    order.run = null;
+    if (order.prev == null) {
+      head = order.next;
+    } else {
+      order.prev.next = order.next;
+    }
+    if (order.next == null) {
+      tail = order.prev;
+    } else {
+      order.next.prev = order.prev;
+    }
+    order.prev = null;
+    order.next = null;
+    size--;
+    quantity -= order.getCount();
+  }
+
+  private OrderRun newRun(Order order) {
+    OrderRun run = freeRuns;
+    if (run == null) {
+      run = new OrderRun();
+    } else {
+      freeRuns = run.nextFree;
+      run.nextFree = null;
+    }
+    run.clientId = order.getClientId();
+    run.head = order;
+    run.tail = order;
+    run.size = 1;
+    return run;
+  }
+
+  private void freeRun(OrderRun run) {
+    run.head = null;
+    run.tail = null;
+    run.size = 0;
+    run.nextFree = freeRuns;
+    freeRuns = run;
+  }
+}
@@ -0,0 +1,335 @@
+/**
+ * Заявки на куплю/продажи по одному типу акций
+ */
+public class StockOrdersQueue {
+
+  /**
+   * База клиентов
+   */
+  ClientBase clientBase;
+  /**
+   * Очередь заявок на продажу
+   */
+  OrderBookSide sell = new OrderBookSide(Order.Type.SELL);
+  /**
+   * Очередь заявок на покупку
+   */
+  OrderBookSide bay = new OrderBookSide(Order.Type.BAY);
+  /**
+   * Пул, в который возвращаются исполненные заявки, или null, если заявки не переиспользуются
+   */
+  private OrderPool orderPool;
+  /**
+   * Показатели работы биржи или null, если показатели не собираются
+   */
+  private ExchangeMetrics metrics;
+  /**
+   * Получатель сделок или null
+   */
+  private FillListener fillListener;
+  /**
+   * Получатель изменений глубины стакана или null
+   */
+  private DepthListener depthListener;
+  /**
+   * Заявки обеих сторон стакана по номеру заявки
+   */
+  private final OrderIndex index = new OrderIndex();
+
+  /**
+   * Инициализация очереди на куплю/продажу. Передается ссылка на базу клиентов
+   * @param clientBase база клиентов
+   */
+  public StockOrdersQueue(ClientBase clientBase) {
+    this.clientBase = clientBase;
+  }
+
+  /**
+   * Указывает пул, в который возвращаются полностью исполненные заявки
+   * @param orderPool пул заявок или null, если заявки не переиспользуются
+   */
+  public void setOrderPool(OrderPool orderPool) {
+    this.orderPool = orderPool;
+  }
+
+  /**
+   * Указывает показатели, в которых учитывается обработка заявок
+   * @param metrics показатели или null, если показатели не собираются
+   */
+  public void setMetrics(ExchangeMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * Указывает получателя сделок по стакану
+   * @param fillListener получатель сделок или null
+   */
+  public void setFillListener(FillListener fillListener) {
+    this.fillListener = fillListener;
+  }
+
+  /**
+   * Указывает получателя изменений глубины стакана. Изменения публикуются по затронутым уровням
+   * без обхода стакана.
+   * @param depthListener получатель изменений или null
+   */
+  public void setDepthListener(DepthListener depthListener) {
+    this.depthListener = depthListener;
+  }
+
+  /**
+   * Обработка позиции купли/продажи. Алгоритм работы на примере покупки.
+   * При размещении заявки на покупку, проверяется наличие заявок на продажу по такой же  или более низкой цене.
+   * Если такие заявки имеются, то обрабатываются все доступные заявки, за сключением заявок, выставленных тем же пользователем.
+   * Цена новой заявки и заявки в очереди могут отличаться, в этом случае операция будет производится по цене заявке в очереди.
+   * Если нет подходящих заявок на продажу, то заявка на покупку выставляется в очередь.
+   *
+   * Очереди заявок сгруппированы по ценовым уровням, внутри уровня заявки упорядочены по времени.
+   * Частично исполненная заявка из очереди остается на своем месте в начале уровня.
+   *
+   * Команда снятия, уменьшения или изменения {@link Order.Action} выполняется над заявкой того же клиента
+   * с номером команды, если такой заявки в стакане нет (например, она уже исполнена), команда не выполняется.
+   *
+   * @param newOrder новая заявка на обработку или выставление в очередь
+   * @throws IllegalArgumentException заявка с таким номером уже есть в стакане
+   */
+  public void addAndProcess(Order newOrder) {
+    newOrder.resolve(clientBase);
+    execute(newOrder, metrics);
+  }
+
+  /**
+   * Поиск заявки в стакане
+   * @param clientId номер клиента
+   * @param id номер заявки клиента
+   * @return заявка или null, если заявки нет в стакане
+   */
+  Order find(int clientId, int id) {
+    return index.get(clientId, id);
+  }
+
+  /**
+   * Снятие заявки из стакана
+   * @param clientId номер клиента
+   * @param id номер заявки клиента
+   * @return true, если заявка была в стакане
+   */
+  public boolean cancel(int clientId, int id) {
+    Order order = index.remove(clientId, id);
+    if (order == null) {
+      return false;
+    }
+    side(order.getType()).remove(order);
+    publish(order.getType(), order);
+    recycle(order);
+    return true;
+  }
+
+  /**
+   * Уменьшение остатка заявки. Заявка остается на своем месте в очереди уровня.
+   * @param clientId номер клиента
+   * @param id номер заявки клиента
+   * @param count новый остаток, 0 снимает заявку
+   * @return true, если заявка в стакане и ее остаток больше нового
+   */
+  public boolean reduce(int clientId, int id, int count) {
+    Order order = index.get(clientId, id);
+    if (order == null || count >= order.getCount()) {
+      return false;
+    }
+    if (count <= 0) {
+      return cancel(clientId, id);
+    }
+    side(order.getType()).reduce(order, count);
+    publish(order.getType(), order);
+    return true;
+  }
+
+  /**
+   * Изменение цены и количества заявки. Заявка теряет приоритет: она снимается из стакана, получает новое время
+   * поступления и обрабатывается как новая, поэтому может сразу исполниться.
+   * @param clientId номер клиента
+   * @param id номер заявки клиента
+   * @param price новая цена в единицах {@link FixedPoint}
+   * @param priceScale масштаб цены для вывода
+   * @param count новое количество, 0 снимает заявку
+   * @return true, если заявка была в стакане
+   */
+  public boolean amend(int clientId, int id, long price, int priceScale, int count) {
+    if (count <= 0) {
+      return cancel(clientId, id);
+    }
+    Order order = index.remove(clientId, id);
+    if (order == null) {
+      return false;
+    }
+    side(order.getType()).remove(order);
+    publish(order.getType(), order);
+    order.amend(price, priceScale, count);
+    order.sequence();
+    process(order, metrics);
+    return true;
+  }
+
+  /**
+   * Выполнение новой заявки или команды над заявкой в стакане. Команда действует только на заявку того же клиента.
+   */
+  private void execute(Order order, ExchangeMetrics metrics) {
+    if (order.getAction() == Order.Action.NEW) {
+      if (order.getId() > 0 && index.get(order.getClientId(), order.getId()) != null) {
+        throw new IllegalArgumentException("Заявка с номером " + order.getId() + " уже есть в стакане");
+      }
+      process(order, metrics);
+      return;
+    }
+    switch (order.getAction()) {
+      case CANCEL:
+        cancel(order.getClientId(), order.getId());
+        break;
+      case REDUCE:
+        reduce(order.getClientId(), order.getId(), order.getCount());
+        break;
+      case AMEND:
+        amend(order.getClientId(), order.getId(), order.getPriceUnits(), order.getPriceScale(), order.getCount());
+        break;
+    }
+    recycle(order);
+  }
+
+  /**
+   * Сопоставление заявки с противоположной стороной стакана. Уровни и заявки на них просматриваются на месте
+   * в порядке приоритета, заявки того же клиента пропускаются целыми сериями {@link OrderRun} и остаются
+   * на своих местах.
+   */
+  private void process(Order newOrder, ExchangeMetrics metrics) {
+    long start = metrics != null ? System.nanoTime() : 0;
+    int fills = 0;
+    int selfSkips = 0;
+    int clientId = newOrder.getClientId();
+    OrderBookSide opposite = oppositeSide(newOrder.getType());
+    for (int levelIndex = opposite.levelCount() - 1; levelIndex >= 0; levelIndex--) {
+      PriceLevel level = opposite.level(levelIndex);
+      if (!isGoodPrice(newOrder, level.price)) {
+        break;
+      }
+      int levelFills = fills;
+      int levelScale = 0;
+      Order queueOrder = level.head;
+      while (queueOrder != null) {
+        if (queueOrder.getClientId() == clientId) {
+          OrderRun run = queueOrder.run;
+          selfSkips += run.size;
+          queueOrder = run.tail.next;
+          continue;
+        }
+        Order next = queueOrder.next;
+
+        int minCount = Math.min(newOrder.getCount(), queueOrder.getCount());
+        long settleStart = metrics != null ? System.nanoTime() : 0;
+        newOrder.process(clientBase, queueOrder.getPriceUnits(), queueOrder.getPriceScale(), minCount);
+        queueOrder.process(clientBase, queueOrder.getPriceUnits(), queueOrder.getPriceScale(), minCount);
+        level.quantity -= minCount;
+        levelScale = queueOrder.getPriceScale();
+        if (metrics != null) {
+          metrics.settle.record(System.nanoTime() - settleStart);
+        }
+        fills++;
+        if (fillListener != null) {
+          fillListener.onFill(newOrder, queueOrder, queueOrder.getPriceUnits(), queueOrder.getPriceScale(), minCount);
+        }
+
+        if (queueOrder.getCount() <= 0) {
+          opposite.remove(levelIndex, queueOrder);
+          index.remove(queueOrder.getClientId(), queueOrder.getId());
+          recycle(queueOrder);
+        }
+        if (newOrder.getCount() <= 0) {
+          break;
+        }
+        queueOrder = next;
+      }
+      if (fills > levelFills && depthListener != null) {
+        // опустевший уровень уже освобожден, но его цена и нулевой остаток еще не изменились
+        depthListener.onLevel(newOrder.getStockId(), opposite == sell ? Order.Type.SELL : Order.Type.BAY,
+            level.price, levelScale, level.quantity, level.size);
+      }
+      if (newOrder.getCount() <= 0) {
+        break;
+      }
+    }
+    boolean rested = newOrder.getCount() > 0;
+    if (rested) {
+      addOrder(newOrder);
+    } else {
+      recycle(newOrder);
+    }
+    if (metrics != null) {
+      metrics.orderProcessed(System.nanoTime() - start, fills, rested, selfSkips);
+    }
+  }
+
+  private void recycle(Order order) {
+    if (orderPool != null) {
+      orderPool.release(order);
+    }
+  }
+
+  /**
+   * Проверка, что новая заявка исполняется по цене уровня противоположной стороны
+   */
+  private boolean isGoodPrice(Order newOrder, long levelPrice) {
+    switch (newOrder.getType()) {
+      case SELL:
+        return levelPrice >= newOrder.getPriceUnits();
+      case BAY:
+        return newOrder.getPriceUnits() >= levelPrice;
+    }
+    return false;
+  }
+
+  /**
+   * Возврат заявки в стакан при восстановлении из снимка, без сопоставления
+   * @param order заявка с временем поступления
+   */
+  void restore(Order order) {
+    addOrder(order);
+  }
+
+  private OrderBookSide side(Order.Type type) {
+    return type == Order.Type.SELL ? sell : bay;
+  }
+
+  private OrderBookSide oppositeSide(Order.Type type) {
+    switch (type) {
+      case SELL:
+        return bay;
+      case BAY:
+        return sell;
+    }
+    return null;
+  }
+
+  private void addOrder(Order order) {
+    index.put(order);
+    switch (order.getType()) {
+      case SELL:
+        sell.add(order);
+        break;
+      case BAY:
+        bay.add(order);
+        break;
+    }
+    publish(order.getType(), order);
+  }
+
+  /**
+   * Публикация состояния уровня с ценой заявки
+   */
+  private void publish(Order.Type type, Order order) {
+    if (depthListener != null) {
+      PriceLevel level = side(type).findLevel(order.getPriceUnits());
+      depthListener.onLevel(order.getStockId(), type, order.getPriceUnits(), order.getPriceScale(),
+          level != null ? level.quantity : 0, level != null ? level.size : 0);
+    }
+  }
+}
@@ -0,0 +1,42 @@
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Способ ожидания стадии конвейера {@link OrderPipeline}, когда предыдущая стадия еще не передала заявки
+ * или кольцо заполнено
+ */
+public enum WaitStrategy {
+  /**
+   * Постоянная проверка без уступки процессора. Наименьшая задержка, если у каждого потока конвейера
+   * свое ядро, иначе ожидающий поток занимает процессор до конца своего кванта времени.
+   */
+  BUSY_SPIN {
+    @Override
+    void idle() {
+    }
+  },
+  /**
+   * Уступка процессора другим готовым потокам между проверками
+   */
+  YIELD {
+    @Override
+    void idle() {
+      Thread.yield();
+    }
+  },
+  /**
+   * Засыпание на короткое время между проверками: процессор свободен, но задержка растет на время сна
+   */
+  PARK {
+    @Override
+    void idle() {
+      LockSupport.parkNanos(PARK_NANOS);
+    }
+  };
+
+  private static final long PARK_NANOS = 10_000;
+
+  /**
+   * Одно ожидание перед повторной проверкой
+   */
+  abstract void idle();
+}
@@ -0,0 +1,116 @@
+import org.hamcrest.Matchers;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+
+public class AccountColumnsTest {
+
+  private File tempFile() throws Exception {
+    File file = File.createTempFile("clients", ".txt");
+    file.deleteOnExit();
+    return file;
+  }
+
+  private Order order(String client, Order.Type type, String stock, int price, int count) {
+    return new Order.Builder().clientName(client).type(type).stockName(stock).price(BigDecimal.valueOf(price)).count(count).build();
+  }
+
+  @Test
+  public void sameResultAsObjectBase() throws Exception {
+    OrderFlowGenerator generator = OrderFlowGenerator.newBuilder().seed(17).clients(200).build();
+    File clients = tempFile();
+    generator.writeClients(clients);
+    File orders = tempFile();
+    generator.write(orders, 20000);
+
+    ClientBase objects = new ClientBase();
+    objects.initClientBase(clients);
+    new Exchange(objects).processOrderList(orders);
+    ClientBase columnar = ClientBase.columnar();
+    columnar.initClientBase(clients);
+    new Exchange(columnar).processOrderList(orders);
+
+    File expected = tempFile();
+    objects.clientToFile(expected);
+    File actual = tempFile();
+    columnar.clientToFile(actual);
+    Assert.assertThat(Files.readAllBytes(actual.toPath()), Matchers.equalTo(Files.readAllBytes(expected.toPath())));
+  }
+
+  @Test
+  public void balanceIsViewOverColumns() {
+    ClientBase clientBase = ClientBase.columnar();
+    ClientBalance added = ClientBalance.newBuilder().name("C1").amount(BigDecimal.valueOf(100)).stock("A", 10).build();
+    clientBase.addClientBalance(added);
+    clientBase.addClientBalance(ClientBalance.newBuilder().name("C2").amount(BigDecimal.valueOf(50)).build());
+
+    Exchange exchange = new Exchange(clientBase);
+    exchange.processOrder(order("C1", Order.Type.SELL, "A", 3, 4));
+    exchange.processOrder(order("C2", Order.Type.BAY, "A", 3, 4));
+
+    Assert.assertThat(added.getAmount(), Matchers.equalTo(BigDecimal.valueOf(112)));
+    Assert.assertThat(added.getStocks(), Matchers.hasEntry("A", 6));
+    ClientBalance c2 = clientBase.getClientBalance("C2");
+    Assert.assertThat(c2.getAmount(), Matchers.equalTo(BigDecimal.valueOf(38)));
+    Assert.assertThat(c2.getStocks().size(), Matchers.equalTo(1));
+    Assert.assertThat(c2.getStocks(), Matchers.hasEntry("A", 4));
+
+    AccountStore columns = clientBase.getAccountStore();
+    Assert.assertThat(columns.size(), Matchers.equalTo(2));
+    Assert.assertThat(columns.totalAmount(), Matchers.equalTo(FixedPoint.valueOf(150)));
+    Assert.assertThat(columns.totalStock(0), Matchers.equalTo(10L));
+    Assert.assertThat(columns.totalStock(1), Matchers.equalTo(0L));
+  }
+
+  @Test
+  public void mapViewKeepsClientOrder() throws Exception {
+    File clients = tempFile();
+    Files.write(clients.toPath(), "C2\t10\t1\t2\t3\t4\nC1\t20\t0\t0\t0\t0\n".getBytes());
+    ClientBase clientBase = ClientBase.columnar();
+
+    Map<String, ClientBalance> res = clientBase.initClientBase(clients);
+
+    Assert.assertThat(res.size(), Matchers.equalTo(2));
+    Assert.assertThat(res.keySet(), Matchers.contains("C2", "C1"));
+    Assert.assertThat(res.get("C1").getAmount(), Matchers.equalTo(BigDecimal.valueOf(20)));
+    Assert.assertThat(res.get("C3"), Matchers.nullValue());
+  }
+
+  @Test
+  public void drainsChangedAccountsOnce() {
+    ClientBase clientBase = ClientBase.columnar();
+    for (int i = 1; i <= 3; i++) {
+      clientBase.addClientBalance(ClientBalance.newBuilder().name("C" + i).amount(BigDecimal.valueOf(100)).stock("A", 10).build());
+    }
+    Assert.assertThat(clientBase.drainDirty().size(), Matchers.equalTo(3));
+
+    Exchange exchange = new Exchange(clientBase);
+    exchange.processOrder(order("C3", Order.Type.SELL, "A", 5, 2));
+    exchange.processOrder(order("C1", Order.Type.BAY, "A", 5, 1));
+    exchange.processOrder(order("C1", Order.Type.BAY, "A", 5, 1));
+
+    List<ClientBalance> changed = clientBase.drainDirty();
+    Assert.assertThat(changed.size(), Matchers.equalTo(2));
+    Assert.assertThat(changed.get(0).getName(), Matchers.equalTo("C1"));
+    Assert.assertThat(changed.get(1).getName(), Matchers.equalTo("C3"));
+    Assert.assertThat(clientBase.drainDirty(), Matchers.empty());
+  }
+
+  @Test
+  public void sellWithoutPositionIsRejected() {
+    ClientBase clientBase = ClientBase.columnar();
+    clientBase.addClientBalance(ClientBalance.newBuilder().name("C1").amount(BigDecimal.valueOf(100)).build());
+    try {
+      clientBase.getClientBalance(0).sell("B", 1, 1);
+      Assert.fail();
+    } catch (IllegalArgumentException e) {
+      Assert.assertThat(e.getMessage(), Matchers.equalTo("У клиента нет заявленных акций"));
+    }
+    Assert.assertThat(clientBase.getClientBalance(0).getAmount(), Matchers.equalTo(BigDecimal.valueOf(100)));
+  }
+}
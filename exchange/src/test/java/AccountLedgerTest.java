@@ -0,0 +1,108 @@
+import org.hamcrest.Matchers;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+
+public class AccountLedgerTest {
+
+  private File tempFile() throws Exception {
+    File file = File.createTempFile("clients", ".txt");
+    file.deleteOnExit();
+    return file;
+  }
+
+  private File ledgerFile() throws Exception {
+    File directory = Files.createTempDirectory("ledger").toFile();
+    directory.deleteOnExit();
+    File ledger = new File(directory, "accounts.bin");
+    ledger.deleteOnExit();
+    AccountLedger.namesFile(ledger).deleteOnExit();
+    return ledger;
+  }
+
+  private Order order(String client, Order.Type type, String stock, int price, int count) {
+    return new Order.Builder().clientName(client).type(type).stockName(stock).price(BigDecimal.valueOf(price)).count(count).build();
+  }
+
+  @Test
+  public void sameResultAsObjectBase() throws Exception {
+    OrderFlowGenerator generator = OrderFlowGenerator.newBuilder().seed(23).clients(300).build();
+    File clients = tempFile();
+    generator.writeClients(clients);
+    File orders = tempFile();
+    generator.write(orders, 20000);
+
+    ClientBase objects = new ClientBase();
+    objects.initClientBase(clients);
+    new Exchange(objects).processOrderList(orders);
+    ClientBase offHeap = ClientBase.offHeap(AccountLedger.DEFAULT_STOCK_SLOTS);
+    offHeap.initClientBase(clients);
+    new Exchange(offHeap).processOrderList(orders);
+
+    File expected = tempFile();
+    objects.clientToFile(expected);
+    File actual = tempFile();
+    offHeap.clientToFile(actual);
+    Assert.assertThat(Files.readAllBytes(actual.toPath()), Matchers.equalTo(Files.readAllBytes(expected.toPath())));
+  }
+
+  @Test
+  public void reopenedLedgerKeepsAccounts() throws Exception {
+    File ledger = ledgerFile();
+    ClientBase clientBase = ClientBase.offHeap(ledger, AccountLedger.DEFAULT_STOCK_SLOTS);
+    clientBase.addClientBalance(ClientBalance.newBuilder().name("C1").amount(BigDecimal.valueOf(100)).stock("A", 10).build());
+    clientBase.addClientBalance(ClientBalance.newBuilder().name("Клиент").amount(new BigDecimal("50.5")).build());
+    Exchange exchange = new Exchange(clientBase);
+    exchange.processOrder(order("C1", Order.Type.SELL, "E", 3, 4));
+    exchange.processOrder(order("C1", Order.Type.SELL, "A", 3, 4));
+    exchange.processOrder(order("Клиент", Order.Type.BAY, "A", 3, 4));
+    ((AccountLedger) clientBase.getAccountStore()).close();
+
+    ClientBase reopened = ClientBase.offHeap(ledger, 2);
+
+    Assert.assertThat(reopened.getClientDictionary().size(), Matchers.equalTo(2));
+    Assert.assertThat(reopened.getStockDictionary().name(4), Matchers.equalTo("E"));
+    Assert.assertThat(reopened.getClientBalance("C1").getAmount(), Matchers.equalTo(BigDecimal.valueOf(112)));
+    Assert.assertThat(reopened.getClientBalance("C1").getStocks(), Matchers.hasEntry("A", 6));
+    ClientBalance client = reopened.getClientBalance(1);
+    Assert.assertThat(client.getName(), Matchers.equalTo("Клиент"));
+    Assert.assertThat(client.getAmount(), Matchers.equalTo(new BigDecimal("38.5")));
+    Assert.assertThat(client.getStocks().size(), Matchers.equalTo(1));
+    Assert.assertThat(reopened.drainDirty().size(), Matchers.equalTo(2));
+  }
+
+  @Test
+  public void reloadTruncatesLedger() throws Exception {
+    File ledger = ledgerFile();
+    ClientBase clientBase = ClientBase.offHeap(ledger, AccountLedger.DEFAULT_STOCK_SLOTS);
+    for (int i = 0; i < 100; i++) {
+      clientBase.addClientBalance(ClientBalance.newBuilder().name("C" + i).amount(BigDecimal.ONE).build());
+    }
+    File clients = tempFile();
+    Files.write(clients.toPath(), "X1\t10\t1\t2\t3\t4\n".getBytes());
+
+    clientBase.initClientBase(clients);
+    ((AccountLedger) clientBase.getAccountStore()).close();
+    ClientBase reopened = ClientBase.offHeap(ledger, AccountLedger.DEFAULT_STOCK_SLOTS);
+
+    Assert.assertThat(reopened.getAccountStore().size(), Matchers.equalTo(1));
+    Assert.assertThat(reopened.getClientBalance("X1").getStocks(), Matchers.hasEntry("D", 4));
+    Assert.assertThat(reopened.getClientBalance("C1"), Matchers.nullValue());
+  }
+
+  @Test
+  public void rejectsStockBeyondRecordSlots() {
+    ClientBase clientBase = ClientBase.offHeap(4);
+    clientBase.addClientBalance(ClientBalance.newBuilder().name("C1").amount(BigDecimal.valueOf(100)).build());
+    try {
+      clientBase.getClientBalance(0).bay("E", 1, 1);
+      Assert.fail();
+    } catch (IllegalStateException e) {
+      Assert.assertThat(e.getMessage(), Matchers.containsString("4"));
+    }
+    Assert.assertThat(clientBase.getClientBalance(0).getAmount(), Matchers.equalTo(BigDecimal.valueOf(100)));
+  }
+}
@@ -85,4 +85,32 @@ public class ClientBalanceTest {
       Assert.assertThat(e.getMessage(), Matchers.equalTo("Не допускается указывать отрицательное количество акций"));
     }
   }
-}
\ No newline at end of file
+
+  @Test
+  public void stocksView() {
+    Assert.assertThat(subj.getStocks().size(), Matchers.equalTo(4));
+    Assert.assertThat(subj.getStocks(), Matchers.hasEntry("D", 0));
+    Assert.assertThat(subj.getStocks().containsKey("E"), Matchers.is(false));
+    Assert.assertThat(subj.getStocks().keySet(), Matchers.contains("A", "B", "C", "D"));
+
+    subj.bay("E", 1, 3);
+    Assert.assertThat(subj.getStocks(), Matchers.hasEntry("E", 3));
+    Assert.assertThat(subj.getStocks().size(), Matchers.equalTo(5));
+  }
+
+  @Test
+  public void rebindToClientBase() {
+    ClientBase clientBase = new ClientBase();
+    clientBase.getStockDictionary().id("X");
+    ClientBalance balance = ClientBalance.newBuilder().name("C1").stock("X", 5).stock("A", 7).build();
+    clientBase.addClientBalance(balance);
+
+    int x = clientBase.getStockDictionary().find("X");
+    Assert.assertThat(balance.getStockCount(x), Matchers.equalTo(5));
+    Assert.assertThat(balance.getStockCount(0), Matchers.equalTo(7));
+    Assert.assertThat(balance.getStockCount(1), Matchers.equalTo(ClientBalance.ABSENT));
+    balance.sell(x, FixedPoint.valueOf(2), 0, 5);
+    Assert.assertThat(balance.getStocks(), Matchers.hasEntry("X", 0));
+    Assert.assertThat(balance.getAmount(), Matchers.equalTo(BigDecimal.valueOf(10)));
+  }
+}
@@ -0,0 +1,88 @@
+import org.hamcrest.Matchers;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.List;
+
+public class ClientBaseCheckpointTest {
+
+  private File tempFile() throws Exception {
+    File file = File.createTempFile("clients", ".txt");
+    file.deleteOnExit();
+    return file;
+  }
+
+  private File tempDirectory() throws Exception {
+    File directory = Files.createTempDirectory("checkpoints").toFile();
+    directory.deleteOnExit();
+    return directory;
+  }
+
+  private Order order(String client, Order.Type type, String stock, int price, int count) {
+    return new Order.Builder().clientName(client).type(type).stockName(stock).price(BigDecimal.valueOf(price)).count(count).build();
+  }
+
+  @Test
+  public void deltaContainsOnlyChangedAccounts() throws Exception {
+    ClientBase clientBase = new ClientBase();
+    for (int i = 1; i <= 5; i++) {
+      clientBase.addClientBalance(ClientBalance.newBuilder().name("C" + i).amount(BigDecimal.valueOf(100)).stock("A", 10).build());
+    }
+    try (ClientBaseCheckpoint checkpoint = new ClientBaseCheckpoint(clientBase, tempDirectory())) {
+      Assert.assertThat(Files.readAllLines(checkpoint.checkpoint().toPath()).size(), Matchers.equalTo(5));
+      Assert.assertThat(checkpoint.checkpoint(), Matchers.nullValue());
+
+      Exchange exchange = new Exchange(clientBase);
+      exchange.processOrder(order("C2", Order.Type.SELL, "A", 5, 2));
+      exchange.processOrder(order("C4", Order.Type.BAY, "A", 5, 1));
+      exchange.processOrder(order("C4", Order.Type.BAY, "A", 5, 1));
+
+      List<String> delta = Files.readAllLines(checkpoint.checkpoint().toPath());
+      Assert.assertThat(delta.size(), Matchers.equalTo(2));
+      Assert.assertThat(delta.get(0), Matchers.startsWith("C4\t90\t12\t"));
+      Assert.assertThat(delta.get(1), Matchers.startsWith("C2\t110\t8\t"));
+    }
+  }
+
+  @Test
+  public void resultMatchesFullRewrite() throws Exception {
+    OrderFlowGenerator generator = OrderFlowGenerator.newBuilder().seed(5).clients(50).build();
+    File clients = tempFile();
+    generator.writeClients(clients);
+    ClientBase clientBase = new ClientBase();
+    clientBase.initClientBase(clients);
+    Exchange exchange = new Exchange(clientBase);
+    File directory = tempDirectory();
+
+    try (ClientBaseCheckpoint checkpoint = new ClientBaseCheckpoint(clientBase, directory)) {
+      checkpoint.setCompactionThreshold(3);
+      for (int i = 0; i < 10; i++) {
+        generator.feed(exchange, 200);
+        checkpoint.checkpoint();
+      }
+      clientBase.addClientBalance(ClientBalance.newBuilder().name("New").amount(BigDecimal.ONE).build());
+      generator.feed(exchange, 200);
+
+      File result = tempFile();
+      checkpoint.writeResult(result);
+      File expected = tempFile();
+      clientBase.clientToFile(expected);
+
+      Assert.assertThat(Files.readAllBytes(result.toPath()), Matchers.equalTo(Files.readAllBytes(expected.toPath())));
+      Assert.assertThat(directory.list().length, Matchers.equalTo(1));
+    }
+
+    try (ClientBaseCheckpoint reopened = new ClientBaseCheckpoint(clientBase, directory)) {
+      generator.feed(exchange, 200);
+      File result = tempFile();
+      reopened.writeResult(result);
+      File expected = tempFile();
+      clientBase.clientToFile(expected);
+
+      Assert.assertThat(Files.readAllBytes(result.toPath()), Matchers.equalTo(Files.readAllBytes(expected.toPath())));
+    }
+  }
+}
@@ -0,0 +1,96 @@
+import org.hamcrest.Matchers;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Random;
+
+public class ClientBaseLoaderTest {
+
+  private File tempFile() throws Exception {
+    File file = File.createTempFile("clients", ".txt");
+    file.deleteOnExit();
+    return file;
+  }
+
+  private File clientsFile(int clients) throws Exception {
+    Random random = new Random(5);
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < clients; i++) {
+      text.append(i % 9 == 0 ? "Клиент" : "C").append(i).append('\t')
+          .append(BigDecimal.valueOf(random.nextInt(1000000), random.nextInt(FixedPoint.SCALE + 1)).toPlainString());
+      for (int stock = 0; stock < ClientBase.FILE_STOCKS.length; stock++) {
+        text.append('\t').append(random.nextInt(100000));
+      }
+      text.append('\n');
+    }
+    File file = tempFile();
+    Files.write(file.toPath(), text.toString().getBytes(Charset.defaultCharset()));
+    return file;
+  }
+
+  @Test
+  public void parallelLoadKeepsFileOrder() throws Exception {
+    File clients = clientsFile(3000);
+    ClientBase sequential = new ClientBase();
+    new ClientBaseLoader(sequential, 1).load(clients);
+    ClientBase parallel = new ClientBase();
+    new ClientBaseLoader(parallel, 4, 1024, 16 * 1024).load(clients);
+
+    File result = tempFile();
+    parallel.clientToFile(result);
+    Assert.assertThat(Files.readAllBytes(result.toPath()), Matchers.equalTo(Files.readAllBytes(clients.toPath())));
+    Assert.assertThat(new ArrayList<>(parallel.getClientBalances()).size(), Matchers.equalTo(3000));
+    for (int id = 0; id < 3000; id++) {
+      Assert.assertThat(parallel.getClientDictionary().name(id),
+          Matchers.equalTo(sequential.getClientDictionary().name(id)));
+      Assert.assertThat(parallel.getClientBalance(id).getAmount(),
+          Matchers.equalTo(sequential.getClientBalance(id).getAmount()));
+    }
+  }
+
+  @Test
+  public void loadReplacesPreviousClients() throws Exception {
+    ClientBase clientBase = new ClientBase();
+    clientBase.addClientBalance(ClientBalance.newBuilder().name("Old").amount(BigDecimal.ONE).build());
+    File clients = tempFile();
+    Files.write(clients.toPath(), "C1\t10\t1\t2\t3\t4\r\nC2\t20.5\t0\t0\t0\t7\t\r\n".getBytes(Charset.defaultCharset()));
+
+    new ClientBaseLoader(clientBase, 2).load(clients);
+
+    Assert.assertThat(clientBase.getClientBalance("Old"), Matchers.nullValue());
+    Assert.assertThat(clientBase.getClientDictionary().name(1), Matchers.equalTo("C2"));
+    Assert.assertThat(clientBase.getClientBalance(1).getAmount(), Matchers.equalTo(new BigDecimal("20.5")));
+    Assert.assertThat(clientBase.getClientBalance("C2").getStockCount(3), Matchers.equalTo(7));
+  }
+
+  @Test
+  public void reportsErrorLineAndKeepsPrecedingClients() throws Exception {
+    StringBuilder text = new StringBuilder();
+    for (int i = 1; i <= 200; i++) {
+      text.append("C").append(i).append(i == 150 ? "\t10\t1\t-2\t3\t4\n" : "\t10\t1\t2\t3\t4\n");
+    }
+    File clients = tempFile();
+    Files.write(clients.toPath(), text.toString().getBytes(Charset.defaultCharset()));
+    ClientBase clientBase = new ClientBase();
+
+    try {
+      new ClientBaseLoader(clientBase, 3, 256, 1024).load(clients);
+      Assert.fail();
+    } catch (IllegalArgumentException e) {
+      Assert.assertThat(e.getMessage(), Matchers.containsString("строка 150: C150"));
+    }
+    Assert.assertThat(clientBase.getClientBalances().size(), Matchers.equalTo(149));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsMissingFields() throws Exception {
+    File clients = tempFile();
+    Files.write(clients.toPath(), "C1\t10\t1\t2\t3\n".getBytes(Charset.defaultCharset()));
+    new ClientBaseLoader(new ClientBase(), 1).load(clients);
+  }
+}
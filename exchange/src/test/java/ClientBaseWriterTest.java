@@ -0,0 +1,92 @@
+import org.hamcrest.Matchers;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Random;
+
+public class ClientBaseWriterTest {
+
+  private File tempFile() throws Exception {
+    File file = File.createTempFile("clients", ".txt");
+    file.deleteOnExit();
+    return file;
+  }
+
+  private ClientBase clientBase(int clients) {
+    Random random = new Random(11);
+    ClientBase clientBase = new ClientBase();
+    for (int i = 0; i < clients; i++) {
+      ClientBalance.Builder builder = ClientBalance.newBuilder()
+          .name((i % 7 == 0 ? "Клиент" : "C") + i)
+          .amount(BigDecimal.valueOf(random.nextInt(1000000), random.nextInt(FixedPoint.SCALE + 1)));
+      for (String stock : ClientBase.FILE_STOCKS) {
+        if (random.nextInt(5) > 0) {
+          builder.stock(stock, random.nextInt(Integer.MAX_VALUE));
+        }
+      }
+      clientBase.addClientBalance(builder.build());
+    }
+    clientBase.getClientBalance("C1").bay("A", new BigDecimal("12345.678"), 1000);
+    return clientBase;
+  }
+
+  private byte[] expected(ClientBase clientBase) throws Exception {
+    File file = tempFile();
+    try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+      for (ClientBalance clientBalance : clientBase.getClientBalances()) {
+        writer.write(ClientBase.clientLine(clientBalance));
+        writer.newLine();
+      }
+    }
+    return Files.readAllBytes(file.toPath());
+  }
+
+  @Test
+  public void sameBytesAsFormattedLines() throws Exception {
+    ClientBase clientBase = clientBase(5000);
+    File result = tempFile();
+
+    new ClientBaseWriter().write(clientBase, result);
+
+    Assert.assertThat(Files.readAllBytes(result.toPath()), Matchers.equalTo(expected(clientBase)));
+  }
+
+  @Test
+  public void parallelSegmentsKeepOrder() throws Exception {
+    ClientBase clientBase = clientBase(5000);
+    File result = tempFile();
+    Files.write(result.toPath(), new byte[1 << 20]);
+
+    new ClientBaseWriter(4, 97).write(clientBase, result);
+
+    Assert.assertThat(Files.readAllBytes(result.toPath()), Matchers.equalTo(expected(clientBase)));
+  }
+
+  @Test
+  public void amountAsPlainString() {
+    Random random = new Random(3);
+    ByteBuffer buffer = ByteBuffer.allocate(64);
+    long[] values = {0, 1, -1, 5, -5, 10000, -10000, Long.MAX_VALUE, Long.MIN_VALUE, 123456789};
+    for (int i = 0; i < 10000; i++) {
+      long value = i < values.length ? values[i] : random.nextLong() / (1 + random.nextInt(1000000));
+      for (int scale = 0; scale <= FixedPoint.SCALE; scale++) {
+        String expected;
+        try {
+          expected = FixedPoint.toBigDecimal(value, scale).toPlainString();
+        } catch (ArithmeticException e) {
+          continue;
+        }
+        buffer.clear();
+        ClientBaseWriter.putAmount(buffer, value, scale);
+        Assert.assertThat(new String(buffer.array(), 0, buffer.position(), Charset.defaultCharset()), Matchers.equalTo(expected));
+      }
+    }
+  }
+}
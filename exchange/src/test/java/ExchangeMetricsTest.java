@@ -0,0 +1,103 @@
+import org.hamcrest.Matchers;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.nio.file.Paths;
+import java.util.Map;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+public class ExchangeMetricsTest {
+
+  private ClientBase clientBase() throws Exception {
+    ClientBase clientBase = new ClientBase();
+    clientBase.initClientBase(Paths.get(ExchangeMetricsTest.class.getClassLoader().getResource("clients.txt").toURI()).toFile());
+    return clientBase;
+  }
+
+  private void process(Exchange exchange) throws Exception {
+    exchange.processOrderList(Paths.get(ExchangeMetricsTest.class.getClassLoader().getResource("orders.txt").toURI()).toFile());
+  }
+
+  @Test
+  public void countsOrderFlow() throws Exception {
+    ExchangeMetrics metrics = new ExchangeMetrics();
+    Exchange exchange = new Exchange(clientBase());
+    exchange.setMetrics(metrics);
+    process(exchange);
+
+    Assert.assertThat(metrics.getOrders(), Matchers.equalTo(4L));
+    Assert.assertThat(metrics.getFills(), Matchers.equalTo(1L));
+    Assert.assertThat(metrics.getCrossedOrders(), Matchers.equalTo(1L));
+    Assert.assertThat(metrics.getRestedOrders(), Matchers.equalTo(4L));
+    Assert.assertThat(metrics.getSelfTradeSkips(), Matchers.equalTo(0L));
+    Assert.assertThat(metrics.getParseLatency().getCount(), Matchers.equalTo(4L));
+    Assert.assertThat(metrics.getMatchLatency().getCount(), Matchers.equalTo(4L));
+    Assert.assertThat(metrics.getSettleLatency().getCount(), Matchers.equalTo(1L));
+
+    Map<String, Integer> depth = metrics.getBookDepth();
+    Assert.assertThat(depth.size(), Matchers.equalTo(3));
+    Assert.assertThat(depth.get("A"), Matchers.equalTo(1));
+    Assert.assertThat(depth.get("C"), Matchers.equalTo(1));
+    Assert.assertThat(depth.get("D"), Matchers.equalTo(1));
+
+    metrics.reset();
+    Assert.assertThat(metrics.getOrders(), Matchers.equalTo(0L));
+    Assert.assertThat(metrics.getMatchLatency().getCount(), Matchers.equalTo(0L));
+  }
+
+  @Test
+  public void parallelExchangeCounts() throws Exception {
+    ExchangeMetrics metrics = new ExchangeMetrics();
+    try (ParallelExchange exchange = new ParallelExchange(clientBase(), 2)) {
+      exchange.setMetrics(metrics);
+      process(exchange);
+    }
+
+    Assert.assertThat(metrics.getOrders(), Matchers.equalTo(4L));
+    Assert.assertThat(metrics.getFills(), Matchers.equalTo(1L));
+  }
+
+  @Test
+  public void countsSelfTradeSkips() {
+    ClientBase clientBase = new ClientBase();
+    clientBase.addClientBalance(new ClientBalance.Builder().name("C1").amount(BigDecimal.valueOf(100)).stock("A", 10).build());
+    clientBase.addClientBalance(new ClientBalance.Builder().name("C2").amount(BigDecimal.valueOf(100)).stock("A", 10).build());
+    ExchangeMetrics metrics = new ExchangeMetrics();
+    StockOrdersQueue queue = new StockOrdersQueue(clientBase);
+    queue.setMetrics(metrics);
+
+    queue.addAndProcess(new Order.Builder().clientName("C1").type(Order.Type.SELL).stockName("A").price(BigDecimal.valueOf(5)).count(1).build());
+    queue.addAndProcess(new Order.Builder().clientName("C1").type(Order.Type.SELL).stockName("A").price(BigDecimal.valueOf(5)).count(1).build());
+    queue.addAndProcess(new Order.Builder().clientName("C2").type(Order.Type.SELL).stockName("A").price(BigDecimal.valueOf(6)).count(1).build());
+    queue.addAndProcess(new Order.Builder().clientName("C1").type(Order.Type.BAY).stockName("A").price(BigDecimal.valueOf(6)).count(1).build());
+
+    Assert.assertThat(metrics.getSelfTradeSkips(), Matchers.equalTo(2L));
+    Assert.assertThat(metrics.getFills(), Matchers.equalTo(1L));
+    Assert.assertThat(metrics.getRestedOrders(), Matchers.equalTo(3L));
+  }
+
+  @Test
+  public void exposedThroughJmx() throws Exception {
+    ExchangeMetrics metrics = new ExchangeMetrics();
+    Exchange exchange = new Exchange(clientBase());
+    exchange.setMetrics(metrics);
+    ObjectName name = metrics.register("test");
+    try {
+      process(exchange);
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+      Assert.assertThat(server.getAttribute(name, "Orders"), Matchers.equalTo((Object) 4L));
+      CompositeData match = (CompositeData) server.getAttribute(name, "MatchLatency");
+      Assert.assertThat(match.get("count"), Matchers.equalTo((Object) 4L));
+      TabularData depth = (TabularData) server.getAttribute(name, "BookDepth");
+      Assert.assertThat(depth.size(), Matchers.equalTo(3));
+    } finally {
+      ExchangeMetrics.unregister(name);
+    }
+  }
+}
@@ -0,0 +1,192 @@
+import org.hamcrest.Matchers;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ExchangeSnapshotTest {
+
+  private File tempFile() throws Exception {
+    File file = File.createTempFile("exchange", ".txt");
+    file.deleteOnExit();
+    return file;
+  }
+
+  private File tempDirectory() throws Exception {
+    File directory = Files.createTempDirectory("snapshots").toFile();
+    directory.deleteOnExit();
+    return directory;
+  }
+
+  private List<String> book(Exchange exchange, String stock) {
+    List<String> orders = new ArrayList<>();
+    StockOrdersQueue queue = exchange.book(exchange.clientBase.getStockDictionary().find(stock));
+    if (queue != null) {
+      for (Order order : queue.sell) {
+        orders.add("s " + order.getClientName() + " " + order.getPrice() + " " + order.getCount());
+      }
+      for (Order order : queue.bay) {
+        orders.add("b " + order.getClientName() + " " + order.getPrice() + " " + order.getCount());
+      }
+    }
+    return orders;
+  }
+
+  @Test
+  public void recoverAfterCrash() throws Exception {
+    OrderFlowGenerator generator = OrderFlowGenerator.newBuilder().seed(3).clients(20).crossProbability(0.4).build();
+    File clients = tempFile();
+    File orders = tempFile();
+    generator.writeClients(clients);
+    generator.write(orders, 20000);
+    File head = tempFile();
+    File tail = tempFile();
+    try (BufferedReader reader = Files.newBufferedReader(orders.toPath());
+         BufferedWriter headWriter = Files.newBufferedWriter(head.toPath());
+         BufferedWriter tailWriter = Files.newBufferedWriter(tail.toPath())) {
+      String line;
+      for (int i = 0; (line = reader.readLine()) != null; i++) {
+        BufferedWriter writer = i < 13000 ? headWriter : tailWriter;
+        writer.write(line);
+        writer.newLine();
+      }
+    }
+
+    ClientBase expectedBase = new ClientBase();
+    expectedBase.initClientBase(clients);
+    Exchange expected = new Exchange(expectedBase);
+    expected.processOrderList(orders);
+    File expectedResult = tempFile();
+    expectedBase.clientToFile(expectedResult);
+
+    File snapshots = tempDirectory();
+    File journalFile = tempFile();
+    journalFile.delete();
+    ClientBase crashedBase = new ClientBase();
+    crashedBase.initClientBase(clients);
+    Exchange crashed = new Exchange(crashedBase);
+    OrderJournal journal = new OrderJournal(journalFile, crashedBase, 100);
+    crashed.setJournal(journal, snapshots, 5000);
+    crashed.processOrderList(head);
+    journal.commit();
+    Assert.assertThat(snapshots.list().length, Matchers.equalTo(2));
+
+    ClientBase clientBase = new ClientBase();
+    Exchange recovered = new Exchange(clientBase);
+    Assert.assertThat(recovered.recover(snapshots, journalFile), Matchers.equalTo(3000L));
+    try (OrderJournal reopened = new OrderJournal(journalFile, clientBase)) {
+      recovered.setJournal(reopened, snapshots, 5000);
+      recovered.processOrderList(tail);
+    }
+    File result = tempFile();
+    clientBase.clientToFile(result);
+
+    Assert.assertThat(Files.readAllBytes(result.toPath()), Matchers.equalTo(Files.readAllBytes(expectedResult.toPath())));
+    for (String stock : ClientBase.FILE_STOCKS) {
+      Assert.assertThat(book(recovered, stock), Matchers.equalTo(book(expected, stock)));
+    }
+  }
+
+  @Test
+  public void recoverAfterRejectedOrder() throws Exception {
+    ClientBase clientBase = new ClientBase();
+    clientBase.addClientBalance(ClientBalance.newBuilder().name("C1").amount(BigDecimal.valueOf(100)).stock("A", 10).build());
+    clientBase.addClientBalance(ClientBalance.newBuilder().name("C2").amount(BigDecimal.valueOf(100)).build());
+    clientBase.addClientBalance(ClientBalance.newBuilder().name("C3").amount(BigDecimal.ZERO).stock("A", 2).build());
+    File snapshots = tempDirectory();
+    File journalFile = tempFile();
+    journalFile.delete();
+    Exchange exchange = new Exchange(clientBase);
+    try (OrderJournal journal = new OrderJournal(journalFile, clientBase)) {
+      exchange.setJournal(journal, snapshots, 0);
+      exchange.processOrders(new Order.Builder().clientName("C1").type(Order.Type.SELL).stockName("A")
+          .price(BigDecimal.ONE).count(5).build());
+      exchange.processOrders(new Order.Builder().clientName("C3").type(Order.Type.SELL).stockName("A")
+          .price(BigDecimal.ONE).count(5).build());
+      try {
+        // покупка исполняется с C1 и падает на расчете с C3, у которого не хватает акций
+        exchange.processOrders(new Order.Builder().clientName("C2").type(Order.Type.BAY).stockName("A")
+            .price(BigDecimal.ONE).count(10).build());
+        Assert.fail();
+      } catch (IllegalArgumentException e) {
+        Assert.assertThat(e.getMessage(), Matchers.equalTo("У клиента меньше акций, чем заявлено на продажу"));
+      }
+      exchange.processOrders(new Order.Builder().clientName("C2").type(Order.Type.SELL).stockName("A")
+          .price(BigDecimal.valueOf(5)).count(1).build());
+      exchange.processOrders(new Order.Builder().clientName("C1").type(Order.Type.BAY).stockName("A")
+          .price(BigDecimal.valueOf(5)).count(1).build());
+    }
+
+    ClientBase recoveredBase = new ClientBase();
+    Exchange recovered = new Exchange(recoveredBase);
+    Assert.assertThat(recovered.recover(snapshots, journalFile), Matchers.equalTo(5L));
+
+    for (String client : new String[] {"C1", "C2", "C3"}) {
+      Assert.assertThat(recoveredBase.getClientBalance(client).getAmount(),
+          Matchers.equalTo(clientBase.getClientBalance(client).getAmount()));
+      Assert.assertThat(recoveredBase.getClientBalance(client).getStocks(),
+          Matchers.equalTo(clientBase.getClientBalance(client).getStocks()));
+    }
+    Assert.assertThat(book(recovered, "A"), Matchers.equalTo(book(exchange, "A")));
+  }
+
+  @Test
+  public void restoreBooksAndNegativeBalance() throws Exception {
+    ClientBase clientBase = new ClientBase();
+    clientBase.addClientBalance(ClientBalance.newBuilder().name("C1").amount(BigDecimal.ONE).stock("A", 10).build());
+    clientBase.addClientBalance(ClientBalance.newBuilder().name("C2").amount(BigDecimal.ZERO).stock("Z", 10).build());
+    Exchange exchange = new Exchange(clientBase);
+    exchange.processOrder(new Order.Builder().clientName("C1").type(Order.Type.BAY).stockName("Z").price(new BigDecimal("2.5")).count(1).build());
+    exchange.processOrder(new Order.Builder().clientName("C2").type(Order.Type.SELL).stockName("Z").price(new BigDecimal("2")).count(4).build());
+    exchange.processOrder(new Order.Builder().clientName("C1").type(Order.Type.SELL).stockName("A").price(new BigDecimal("7")).count(4).build());
+    exchange.processOrder(new Order.Builder().clientName("C1").type(Order.Type.SELL).stockName("A").price(new BigDecimal("6")).count(1).build());
+    File snapshot = tempFile();
+    ExchangeSnapshot.write(snapshot, exchange, 42);
+
+    ClientBase restoredBase = new ClientBase();
+    Exchange restored = new Exchange(restoredBase);
+    Assert.assertThat(ExchangeSnapshot.read(snapshot, restored), Matchers.equalTo(42L));
+
+    Assert.assertThat(restoredBase.getClientBalance("C1").getAmount(), Matchers.equalTo(new BigDecimal("-1.5")));
+    Assert.assertThat(restoredBase.getClientBalance("C1").getStocks(), Matchers.equalTo(clientBase.getClientBalance("C1").getStocks()));
+    Assert.assertThat(restoredBase.getClientBalance("C2").getStocks().get("Z"), Matchers.equalTo(9));
+    Assert.assertThat(book(restored, "A"), Matchers.equalTo(book(exchange, "A")));
+    Assert.assertThat(book(restored, "Z"), Matchers.equalTo(book(exchange, "Z")));
+    Assert.assertThat(book(restored, "A").get(0), Matchers.equalTo("s C1 6 1"));
+  }
+
+  @Test
+  public void restoredOrdersKeepIds() throws Exception {
+    ClientBase clientBase = new ClientBase();
+    clientBase.addClientBalance(ClientBalance.newBuilder().name("C1").amount(BigDecimal.TEN).stock("A", 10).build());
+    Exchange exchange = new Exchange(clientBase);
+    exchange.processOrder(new Order.Builder().clientName("C1").type(Order.Type.SELL).stockName("A")
+        .price(new BigDecimal("7")).count(4).id(5).build());
+    File snapshot = tempFile();
+    ExchangeSnapshot.write(snapshot, exchange, 0);
+
+    Exchange restored = new Exchange(new ClientBase());
+    ExchangeSnapshot.read(snapshot, restored);
+    StockOrdersQueue book = restored.book(restored.clientBase.getStockDictionary().find("A"));
+
+    int client = restored.clientBase.getClientDictionary().find("C1");
+    Assert.assertThat(book.find(client, 5).getCount(), Matchers.equalTo(4));
+    Assert.assertThat(book.cancel(client, 5), Matchers.is(true));
+    Assert.assertThat(book.sell.isEmpty(), Matchers.is(true));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void restoreIntoNonEmptyBase() throws Exception {
+    ClientBase clientBase = new ClientBase();
+    clientBase.addClientBalance(ClientBalance.newBuilder().name("C1").build());
+    File snapshot = tempFile();
+    ExchangeSnapshot.write(snapshot, new Exchange(clientBase), 0);
+    ExchangeSnapshot.read(snapshot, new Exchange(clientBase));
+  }
+}
@@ -0,0 +1,333 @@
+import org.hamcrest.Matchers;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ExchangeTest {
+
+  private Exchange subj;
+  private ClientBase clientBase;
+
+  @Before
+  public void setUp() throws Exception {
+    File clientBaseFile = Paths.get(ExchangeTest.class.getClassLoader().getResource("clients.txt").toURI()).toFile();
+
+    clientBase = new ClientBase();
+    clientBase.initClientBase(clientBaseFile);
+    subj = new Exchange(clientBase);
+  }
+
+  @Test
+  public void processOrderList() throws Exception {
+    File orders = Paths.get(ExchangeTest.class.getClassLoader().getResource("orders.txt").toURI()).toFile();
+
+    subj.processOrderList(orders);
+
+    assertStockQueues();
+    assertStockA();
+    assertStockC();
+    assertStockD();
+
+    assertC1();
+    assertC2();
+  }
+
+  private StockOrdersQueue book(String stock) {
+    return subj.book(clientBase.getStockDictionary().find(stock));
+  }
+
+  private void assertStockQueues() {
+    Assert.assertThat(subj.bookDepth().keySet(), Matchers.contains("A", "C", "D"));
+  }
+
+  private void assertStockA() {
+    StockOrdersQueue stockOrdersQueueA = book("A");
+    Assert.assertThat(stockOrdersQueueA.sell.size(), Matchers.is(1));
+    Assert.assertThat(stockOrdersQueueA.sell.peek().getPrice(), Matchers.equalTo(BigDecimal.valueOf(15)));
+    Assert.assertThat(stockOrdersQueueA.sell.peek().getCount(), Matchers.equalTo(3));
+    Assert.assertThat(stockOrdersQueueA.sell.peek().getClientName(), Matchers.equalTo("C1"));
+    Assert.assertThat(stockOrdersQueueA.bay.isEmpty(), Matchers.is(true));
+  }
+
+  private void assertStockC() {
+    StockOrdersQueue stockOrdersQueueC = book("C");
+    Assert.assertThat(stockOrdersQueueC.sell.isEmpty(), Matchers.is(true));
+    Assert.assertThat(stockOrdersQueueC.bay.size(), Matchers.equalTo(1));
+    Assert.assertThat(stockOrdersQueueC.bay.peek().getPrice(), Matchers.equalTo(BigDecimal.valueOf(15)));
+    Assert.assertThat(stockOrdersQueueC.bay.peek().getCount(), Matchers.equalTo(2));
+    Assert.assertThat(stockOrdersQueueC.bay.peek().getClientName(), Matchers.equalTo("C2"));
+  }
+
+  private void assertStockD() {
+    StockOrdersQueue stockOrdersQueueD = book("D");
+    Assert.assertThat(stockOrdersQueueD.sell.isEmpty(), Matchers.is(true));
+    Assert.assertThat(stockOrdersQueueD.bay.size(), Matchers.equalTo(1));
+    Assert.assertThat(stockOrdersQueueD.bay.peek().getPrice(), Matchers.equalTo(BigDecimal.valueOf(4)));
+    Assert.assertThat(stockOrdersQueueD.bay.peek().getCount(), Matchers.equalTo(3));
+    Assert.assertThat(stockOrdersQueueD.bay.peek().getClientName(), Matchers.equalTo("C2"));
+  }
+
+  private void assertC1() {
+    ClientBalance c1 = clientBase.getClientBalance("C1");
+    Assert.assertThat(c1.getAmount(), Matchers.equalTo(BigDecimal.valueOf(1045)));
+    Assert.assertThat(c1.getStocks().get("A"), Matchers.equalTo(130	));
+    Assert.assertThat(c1.getStocks().get("B"), Matchers.equalTo(240));
+    Assert.assertThat(c1.getStocks().get("C"), Matchers.equalTo(757	));
+    Assert.assertThat(c1.getStocks().get("D"), Matchers.equalTo(320	));
+  }
+
+  private void assertC2() {
+    ClientBalance c2 = clientBase.getClientBalance("C2");
+    Assert.assertThat(c2.getAmount(), Matchers.equalTo(BigDecimal.valueOf(4305)));
+    Assert.assertThat(c2.getStocks().get("A"), Matchers.equalTo(370	));
+    Assert.assertThat(c2.getStocks().get("B"), Matchers.equalTo(120));
+    Assert.assertThat(c2.getStocks().get("C"), Matchers.equalTo(953	));
+    Assert.assertThat(c2.getStocks().get("D"), Matchers.equalTo(560	));
+  }
+
+
+  @Test
+  public void processOrderListThroughPipeline() throws Exception {
+    File orders = Paths.get(ExchangeTest.class.getClassLoader().getResource("orders.txt").toURI()).toFile();
+    for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+      setUp();
+      subj.setPipeline(waitStrategy, 4, 2);
+
+      subj.processOrderList(orders);
+
+      assertStockQueues();
+      assertStockA();
+      assertStockC();
+      assertStockD();
+      assertC1();
+      assertC2();
+    }
+  }
+
+  @Test
+  public void pipelineSameAsInlineWithCommands() throws Exception {
+    OrderFlowGenerator generator = OrderFlowGenerator.newBuilder().seed(29).clients(20).initialStocks(2000)
+        .cancelShare(0.3).build();
+    File clients = File.createTempFile("clients", ".txt");
+    clients.deleteOnExit();
+    File orders = File.createTempFile("orders", ".txt");
+    orders.deleteOnExit();
+    generator.writeClients(clients);
+    generator.write(orders, 30000);
+
+    ClientBase inlineBase = new ClientBase();
+    inlineBase.initClientBase(clients);
+    Exchange inline = new Exchange(inlineBase);
+    List<String> inlineFills = new ArrayList<>();
+    inline.setFillListener(fillRecorder(inlineFills));
+    inline.processOrderList(orders);
+    File expected = File.createTempFile("expected", ".txt");
+    expected.deleteOnExit();
+    inlineBase.clientToFile(expected);
+
+    ClientBase pipelinedBase = new ClientBase();
+    pipelinedBase.initClientBase(clients);
+    Exchange pipelined = new Exchange(pipelinedBase);
+    pipelined.setPipeline(WaitStrategy.YIELD, 64, 16);
+    List<String> pipelinedFills = new ArrayList<>();
+    pipelined.setFillListener(fillRecorder(pipelinedFills));
+    pipelined.processOrderList(orders);
+    File actual = File.createTempFile("actual", ".txt");
+    actual.deleteOnExit();
+    pipelinedBase.clientToFile(actual);
+
+    Assert.assertThat(Files.readAllBytes(actual.toPath()), Matchers.equalTo(Files.readAllBytes(expected.toPath())));
+    Assert.assertThat(pipelined.bookDepth(), Matchers.equalTo(inline.bookDepth()));
+    Assert.assertThat(inlineFills.isEmpty(), Matchers.is(false));
+    Assert.assertThat(pipelinedFills, Matchers.equalTo(inlineFills));
+  }
+
+  @Test
+  public void pipelineStopsAtFailureLikeInline() throws Exception {
+    File orders = File.createTempFile("orders", ".txt");
+    orders.deleteOnExit();
+    Files.write(orders.toPath(), ("C1\ts\tC\t1\t1\nC2\tb\tC\t1\t1\nC1\ts\tA\t1\t200\n"
+        + "C2\tb\tA\t1\t200\nC2\tb\tC\t2\t1\nC1\ts\tC\t2\t1\n").getBytes("UTF-8"));
+    List<String> inlineFills = new ArrayList<>();
+    subj.setFillListener(fillRecorder(inlineFills));
+    try {
+      subj.processOrderList(orders);
+      Assert.fail();
+    } catch (IllegalArgumentException e) {
+      Assert.assertThat(e.getMessage(), Matchers.equalTo("У клиента меньше акций, чем заявлено на продажу"));
+    }
+
+    ClientBase pipelinedBase = new ClientBase();
+    pipelinedBase.initClientBase(Paths.get(ExchangeTest.class.getClassLoader().getResource("clients.txt").toURI()).toFile());
+    Exchange pipelined = new Exchange(pipelinedBase);
+    pipelined.setPipeline(WaitStrategy.PARK);
+    List<String> pipelinedFills = new ArrayList<>();
+    pipelined.setFillListener(fillRecorder(pipelinedFills));
+    try {
+      pipelined.processOrderList(orders);
+      Assert.fail();
+    } catch (IllegalArgumentException e) {
+      Assert.assertThat(e.getMessage(), Matchers.equalTo("У клиента меньше акций, чем заявлено на продажу"));
+    }
+
+    Assert.assertThat(pipelinedFills, Matchers.equalTo(inlineFills));
+    Assert.assertThat(pipelined.bookDepth(), Matchers.equalTo(subj.bookDepth()));
+    for (String client : new String[] {"C1", "C2"}) {
+      Assert.assertThat(pipelinedBase.getClientBalance(client).getAmount(),
+          Matchers.equalTo(clientBase.getClientBalance(client).getAmount()));
+      Assert.assertThat(pipelinedBase.getClientBalance(client).getStocks(),
+          Matchers.equalTo(clientBase.getClientBalance(client).getStocks()));
+    }
+  }
+
+  @Test
+  public void pipelineFailureIsRethrown() throws Exception {
+    File orders = File.createTempFile("orders", ".txt");
+    orders.deleteOnExit();
+    Files.write(orders.toPath(), "C1\ts\tA\t1\t200\nC2\tb\tA\t1\t200\nC2\tb\tC\t1\t1\n".getBytes("UTF-8"));
+    subj.setPipeline(WaitStrategy.PARK);
+    try {
+      subj.processOrderList(orders);
+      Assert.fail();
+    } catch (IllegalArgumentException e) {
+      Assert.assertThat(e.getMessage(), Matchers.equalTo("У клиента меньше акций, чем заявлено на продажу"));
+    }
+  }
+
+  @Test
+  public void processOrdersGroupsBySymbolKeepingOrder() {
+    Order first = order("C1", Order.Type.SELL, "A", 10, 5);
+    Order other = order("C2", Order.Type.BAY, "C", 1, 1);
+    Order second = order("C1", Order.Type.SELL, "A", 10, 5);
+    Order buy = order("C2", Order.Type.BAY, "A", 10, 7);
+
+    subj.processOrders(first, other, second, buy);
+
+    StockOrdersQueue stockA = book("A");
+    Assert.assertThat(stockA.sell.size(), Matchers.is(1));
+    Assert.assertThat(stockA.sell.peek(), Matchers.sameInstance(second));
+    Assert.assertThat(second.getCount(), Matchers.equalTo(3));
+    Assert.assertThat(first.getCount(), Matchers.equalTo(0));
+    Assert.assertThat(book("C").bay.peek(), Matchers.sameInstance(other));
+  }
+
+  @Test
+  public void processOrdersStopAtFailureLikeOneByOne() {
+    Order earlierBuyC = order("C2", Order.Type.BAY, "C", 1, 1);
+    Order sellA = order("C1", Order.Type.SELL, "A", 1, 1000);
+    Order failingBuyA = order("C2", Order.Type.BAY, "A", 1, 1000);
+    Order laterSellA = order("C1", Order.Type.SELL, "A", 2, 1);
+    Order laterSellC = order("C1", Order.Type.SELL, "C", 1, 1);
+    try {
+      subj.processOrders(earlierBuyC, sellA, failingBuyA, laterSellA, laterSellC);
+      Assert.fail();
+    } catch (IllegalArgumentException e) {
+      Assert.assertThat(e.getMessage(), Matchers.equalTo("У клиента меньше акций, чем заявлено на продажу"));
+    }
+
+    Assert.assertThat(clientBase.getClientBalance("C2").getStocks().get("C"), Matchers.equalTo(950));
+    Assert.assertThat(clientBase.getClientBalance("C1").getStocks().get("C"), Matchers.equalTo(760));
+    Assert.assertThat(book("C").bay.peek(), Matchers.sameInstance(earlierBuyC));
+    Assert.assertThat(book("C").sell.isEmpty(), Matchers.is(true));
+    Assert.assertThat(book("A").find(laterSellA.getClientId(), laterSellA.getId()), Matchers.nullValue());
+  }
+
+  @Test
+  public void processOrdersReportsFillsInArrivalOrder() {
+    List<String> fills = new ArrayList<>();
+    subj.setFillListener((incoming, resting, price, priceScale, count) -> fills.add(incoming.getStockName()));
+
+    subj.processOrders(order("C1", Order.Type.SELL, "C", 1, 1), order("C2", Order.Type.BAY, "C", 1, 1),
+        order("C1", Order.Type.SELL, "A", 1, 1), order("C2", Order.Type.BAY, "A", 1, 1));
+    Assert.assertThat(fills, Matchers.contains("C", "A"));
+
+    fills.clear();
+    subj.processOrder(order("C1", Order.Type.SELL, "C", 1, 1));
+    subj.processOrder(order("C2", Order.Type.BAY, "C", 1, 1));
+    subj.processOrder(order("C1", Order.Type.SELL, "A", 1, 1));
+    subj.processOrder(order("C2", Order.Type.BAY, "A", 1, 1));
+    Assert.assertThat(fills, Matchers.contains("C", "A"));
+  }
+
+  @Test
+  public void addedFillListenersAreCalledInOrder() {
+    List<String> fills = new ArrayList<>();
+    FillListener first = (incoming, resting, price, priceScale, count) -> fills.add("first " + count);
+    FillListener second = (incoming, resting, price, priceScale, count) -> fills.add("second " + count);
+    subj.setFillListener(first);
+    subj.addFillListener(second);
+
+    subj.processOrder(order("C1", Order.Type.SELL, "C", 1, 2));
+    subj.processOrder(order("C2", Order.Type.BAY, "C", 1, 1));
+    Assert.assertThat(fills, Matchers.contains("first 1", "second 1"));
+
+    fills.clear();
+    subj.removeFillListener(first);
+    subj.processOrder(order("C2", Order.Type.BAY, "C", 1, 1));
+    Assert.assertThat(fills, Matchers.contains("second 1"));
+  }
+
+  @Test
+  public void processOrdersSameAsOneByOne() throws Exception {
+    assertBatchSameAsOneByOne(new Exchange(generatorBase()), new Exchange(generatorBase()));
+  }
+
+  @Test
+  public void parallelProcessOrdersSameAsOneByOne() throws Exception {
+    try (ParallelExchange batched = new ParallelExchange(generatorBase(), 3)) {
+      assertBatchSameAsOneByOne(new Exchange(generatorBase()), batched);
+    }
+  }
+
+  private FillListener fillRecorder(List<String> fills) {
+    return (incoming, resting, price, priceScale, count) ->
+        fills.add(incoming.getClientName() + " " + resting.getClientName() + " " + incoming.getStockName() + " "
+            + price + " " + count);
+  }
+
+  private Order order(String client, Order.Type type, String stock, int price, int count) {
+    return new Order.Builder().clientName(client).type(type).stockName(stock).price(BigDecimal.valueOf(price)).count(count).build();
+  }
+
+  private OrderFlowGenerator generator() {
+    return OrderFlowGenerator.newBuilder().seed(23).clients(100).hotSymbolSkew(1).build();
+  }
+
+  private ClientBase generatorBase() {
+    return generator().clientBase();
+  }
+
+  private void assertBatchSameAsOneByOne(Exchange oneByOne, Exchange batched) throws Exception {
+    OrderFlowGenerator single = generator();
+    OrderFlowGenerator bursts = generator();
+    List<Order> burst = new ArrayList<>();
+    for (int i = 0; i < 20000; i++) {
+      oneByOne.processOrder(single.nextOrder());
+      burst.add(bursts.nextOrder());
+      if (burst.size() == 97) {
+        batched.processOrders(burst);
+        burst.clear();
+      }
+    }
+    batched.processOrders(burst);
+
+    File expected = File.createTempFile("expected", ".txt");
+    expected.deleteOnExit();
+    oneByOne.clientBase.clientToFile(expected);
+    File actual = File.createTempFile("actual", ".txt");
+    actual.deleteOnExit();
+    batched.clientBase.clientToFile(actual);
+    Assert.assertThat(Files.readAllBytes(actual.toPath()), Matchers.equalTo(Files.readAllBytes(expected.toPath())));
+    Assert.assertThat(batched.bookDepth(), Matchers.equalTo(oneByOne.bookDepth()));
+  }
+}
\ No newline at end of file
@@ -0,0 +1,75 @@
+import org.hamcrest.Matchers;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+public class ExecutionReportWriterTest {
+
+  private File tempFile() throws Exception {
+    File file = File.createTempFile("executions", ".txt");
+    file.deleteOnExit();
+    return file;
+  }
+
+  @Test
+  public void reportsEveryFill() throws Exception {
+    ClientBase clientBase = new ClientBase();
+    clientBase.addClientBalance(ClientBalance.newBuilder().name("C1").amount(BigDecimal.valueOf(100)).stock("A", 10).build());
+    clientBase.addClientBalance(ClientBalance.newBuilder().name("Клиент").amount(BigDecimal.valueOf(100)).build());
+    File file = tempFile();
+    Exchange exchange = new Exchange(clientBase);
+    try (ExecutionReportWriter reports = new ExecutionReportWriter(file, clientBase)) {
+      exchange.setFillListener(reports);
+      exchange.processOrder(new Order.Builder().clientName("C1").type(Order.Type.SELL).stockName("A")
+          .price(new BigDecimal("5.5")).count(3).build());
+      exchange.processOrder(new Order.Builder().clientName("C1").type(Order.Type.SELL).stockName("A")
+          .price(new BigDecimal("6")).count(3).build());
+      exchange.processOrder(new Order.Builder().clientName("Клиент").type(Order.Type.BAY).stockName("A")
+          .price(new BigDecimal("6")).count(4).build());
+      exchange.processOrder(new Order.Builder().clientName("C1").type(Order.Type.BAY).stockName("A")
+          .price(new BigDecimal("2")).count(1).build());
+      exchange.processOrder(new Order.Builder().clientName("Клиент").type(Order.Type.SELL).stockName("A")
+          .price(new BigDecimal("1")).count(1).build());
+      Assert.assertThat(reports.getReports(), Matchers.equalTo(3L));
+    }
+
+    Assert.assertThat(Files.readAllLines(file.toPath(), StandardCharsets.UTF_8), Matchers.contains(
+        "1\tКлиент\tC1\tA\t5.5\t3",
+        "2\tКлиент\tC1\tA\t6\t1",
+        "3\tC1\tКлиент\tA\t2\t1"));
+  }
+
+  @Test
+  public void smallRingKeepsEveryReport() throws Exception {
+    OrderFlowGenerator generator = OrderFlowGenerator.newBuilder().seed(3).clients(20).crossProbability(0.6).build();
+    ClientBase clientBase = generator.clientBase();
+    Exchange exchange = new Exchange(clientBase);
+    File file = tempFile();
+    long reported;
+    try (ExecutionReportWriter reports = new ExecutionReportWriter(file, clientBase, 4)) {
+      exchange.setFillListener(reports);
+      generator.feed(exchange, 20000);
+      reports.flush();
+      Assert.assertThat(Files.readAllLines(file.toPath(), StandardCharsets.UTF_8).size(),
+          Matchers.equalTo((int) reports.getReports()));
+      reported = reports.getReports();
+    }
+
+    List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+    Assert.assertThat(reported, Matchers.greaterThan(5000L));
+    Assert.assertThat(lines.size(), Matchers.equalTo((int) reported));
+    for (int i = 0; i < lines.size(); i++) {
+      Assert.assertThat(lines.get(i), Matchers.startsWith((i + 1) + "\t"));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void capacityIsPowerOfTwo() throws Exception {
+    new ExecutionReportWriter(tempFile(), new ClientBase(), 3);
+  }
+}
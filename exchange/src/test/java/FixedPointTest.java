@@ -0,0 +1,46 @@
+import org.hamcrest.Matchers;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+public class FixedPointTest {
+
+  @Test
+  public void parse() {
+    Assert.assertThat(FixedPoint.parse("15"), Matchers.equalTo(15 * FixedPoint.ONE));
+    Assert.assertThat(FixedPoint.parse("1.5"), Matchers.equalTo(FixedPoint.ONE + FixedPoint.ONE / 2));
+    Assert.assertThat(FixedPoint.parse("-0.25"), Matchers.equalTo(-FixedPoint.ONE / 4));
+    Assert.assertThat(FixedPoint.parse("1.5"), Matchers.equalTo(FixedPoint.valueOf(new BigDecimal("1.5"))));
+  }
+
+  @Test
+  public void scaleOf() {
+    Assert.assertThat(FixedPoint.scaleOf("15"), Matchers.equalTo(0));
+    Assert.assertThat(FixedPoint.scaleOf("15.50"), Matchers.equalTo(2));
+    Assert.assertThat(FixedPoint.scaleOf(new BigDecimal("15.50")), Matchers.equalTo(2));
+  }
+
+  @Test
+  public void toBigDecimalKeepsScale() {
+    long value = FixedPoint.parse("10.50");
+    Assert.assertThat(FixedPoint.toBigDecimal(value, 2).toPlainString(), Matchers.equalTo("10.50"));
+    Assert.assertThat(FixedPoint.toBigDecimal(value, 1), Matchers.equalTo(new BigDecimal("10.5")));
+    Assert.assertThat(FixedPoint.toBigDecimal(FixedPoint.valueOf(150), 0), Matchers.equalTo(BigDecimal.valueOf(150)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void parseTooPrecise() {
+    FixedPoint.parse("1.123456789012345678");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void parseIncorrect() {
+    FixedPoint.parse("1,5");
+  }
+
+  @Test(expected = ArithmeticException.class)
+  public void multiplyOverflow() {
+    FixedPoint.multiply(Long.MAX_VALUE / 2, 3);
+  }
+}
@@ -0,0 +1,36 @@
+import org.hamcrest.Matchers;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+  @Test
+  public void percentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 1000; i++) {
+      histogram.record(i);
+    }
+
+    Assert.assertThat(histogram.count(), Matchers.equalTo(1000L));
+    Assert.assertThat(histogram.max(), Matchers.equalTo(1000L));
+    Assert.assertThat(histogram.percentile(50), Matchers.equalTo(511L));
+    Assert.assertThat(histogram.percentile(99), Matchers.equalTo(1000L));
+    Assert.assertThat(histogram.percentile(0), Matchers.equalTo(1L));
+  }
+
+  @Test
+  public void emptyAndReset() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    Assert.assertThat(histogram.percentile(99), Matchers.equalTo(0L));
+
+    histogram.record(-5);
+    histogram.record(Long.MAX_VALUE);
+    Assert.assertThat(histogram.count(), Matchers.equalTo(2L));
+    Assert.assertThat(histogram.percentile(50), Matchers.equalTo(0L));
+    Assert.assertThat(histogram.percentile(100), Matchers.equalTo(Long.MAX_VALUE));
+
+    histogram.reset();
+    Assert.assertThat(histogram.count(), Matchers.equalTo(0L));
+    Assert.assertThat(histogram.summary().getMax(), Matchers.equalTo(0L));
+  }
+}
@@ -0,0 +1,178 @@
+import org.hamcrest.Matchers;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class MarketDataFeedTest {
+
+  private ClientBase clientBase;
+  private Exchange exchange;
+  private MarketDataFeed feed;
+
+  @Before
+  public void setUp() {
+    clientBase = new ClientBase();
+    clientBase.addClientBalance(ClientBalance.newBuilder().name("C1").amount(BigDecimal.valueOf(100)).stock("A", 100).build());
+    clientBase.addClientBalance(ClientBalance.newBuilder().name("C2").amount(BigDecimal.valueOf(100)).build());
+    exchange = new Exchange(clientBase);
+    feed = new MarketDataFeed(clientBase);
+    exchange.setDepthListener(feed);
+  }
+
+  private void submit(String client, Order.Type type, String price, int count) {
+    exchange.processOrder(new Order.Builder().clientName(client).type(type).stockName("A")
+        .price(new BigDecimal(price)).count(count).build());
+  }
+
+  private List<String> poll(MarketDataFeed.Subscription subscription, boolean snapshot) {
+    List<DepthLevel> updates = new ArrayList<>();
+    Assert.assertThat(subscription.poll(updates), Matchers.is(snapshot));
+    List<String> lines = new ArrayList<>();
+    for (DepthLevel level : updates) {
+      lines.add(level.toString());
+    }
+    return lines;
+  }
+
+  @Test
+  public void publishesChangedLevels() {
+    MarketDataFeed.Subscription subscription = feed.subscribe();
+    Assert.assertThat(poll(subscription, true), Matchers.empty());
+
+    submit("C1", Order.Type.SELL, "5.5", 3);
+    submit("C1", Order.Type.SELL, "6", 2);
+    Assert.assertThat(poll(subscription, false), Matchers.contains("A s 5.5 3 1", "A s 6 2 1"));
+
+    submit("C2", Order.Type.BAY, "6", 4);
+    Assert.assertThat(poll(subscription, false), Matchers.contains("A s 5.5 0 0", "A s 6 1 1"));
+    Assert.assertThat(poll(subscription, false), Matchers.empty());
+    Assert.assertThat(feed.depth(0, Order.Type.SELL).toString(), Matchers.equalTo("[A s 6 1 1]"));
+  }
+
+  @Test
+  public void repeatedChangesAreConflated() {
+    MarketDataFeed.Subscription subscription = feed.subscribe();
+    poll(subscription, true);
+    for (int i = 0; i < 10; i++) {
+      submit("C1", Order.Type.SELL, "7", 1);
+    }
+    submit("C2", Order.Type.BAY, "7", 4);
+
+    Assert.assertThat(poll(subscription, false), Matchers.contains("A s 7 6 6"));
+  }
+
+  @Test
+  public void slowSubscriberGetsSnapshot() {
+    MarketDataFeed.Subscription subscription = feed.subscribe(2);
+    poll(subscription, true);
+    submit("C1", Order.Type.SELL, "7", 1);
+    submit("C1", Order.Type.SELL, "6", 1);
+    submit("C2", Order.Type.BAY, "3", 1);
+
+    Assert.assertThat(poll(subscription, true), Matchers.contains("A s 6 1 1", "A s 7 1 1", "A b 3 1 1"));
+    Assert.assertThat(subscription.getSnapshots(), Matchers.equalTo(2L));
+    submit("C2", Order.Type.BAY, "4", 1);
+    Assert.assertThat(poll(subscription, false), Matchers.contains("A b 4 1 1"));
+  }
+
+  @Test
+  public void subscriberViewMatchesBooks() {
+    OrderFlowGenerator generator = OrderFlowGenerator.newBuilder().seed(7).clients(20).cancelShare(0.3).build();
+    clientBase = generator.clientBase();
+    exchange = new Exchange(clientBase);
+    feed = new MarketDataFeed(clientBase);
+    exchange.setDepthListener(feed);
+    MarketDataFeed.Subscription subscription = feed.subscribe(32);
+    Map<String, Long> view = new HashMap<>();
+    List<DepthLevel> updates = new ArrayList<>();
+    for (int i = 0; i < 20000; i++) {
+      exchange.processOrder(generator.nextOrder());
+      if (i % 50 == 0) {
+        apply(subscription, updates, view);
+      }
+    }
+    exchange.awaitProcessed();
+    apply(subscription, updates, view);
+
+    Map<String, Long> books = new HashMap<>();
+    NameDictionary stocks = clientBase.getStockDictionary();
+    for (int stockId = 0; stockId < stocks.size(); stockId++) {
+      StockOrdersQueue book = exchange.book(stockId);
+      for (OrderBookSide side : new OrderBookSide[]{book.sell, book.bay}) {
+        for (int i = 0; i < side.levelCount(); i++) {
+          PriceLevel level = side.level(i);
+          long quantity = 0;
+          for (Order order = level.head; order != null; order = order.next) {
+            quantity += order.getCount();
+          }
+          books.put(stockId + " " + (side == book.sell) + " " + level.price, quantity);
+          Assert.assertThat(level.quantity, Matchers.equalTo(quantity));
+        }
+      }
+    }
+    Assert.assertThat(books.size(), Matchers.greaterThan(100));
+    Assert.assertThat(view, Matchers.equalTo(books));
+    Assert.assertThat(subscription.getSnapshots(), Matchers.greaterThan(1L));
+  }
+
+  @Test
+  public void concurrentSubscriberViewMatchesFeed() throws Exception {
+    OrderFlowGenerator generator = OrderFlowGenerator.newBuilder().seed(11).clients(20).cancelShare(0.3).build();
+    clientBase = generator.clientBase();
+    feed = new MarketDataFeed(clientBase);
+    MarketDataFeed.Subscription subscription = feed.subscribe(16);
+    Map<String, Long> view = new HashMap<>();
+    List<DepthLevel> updates = new ArrayList<>();
+    AtomicBoolean done = new AtomicBoolean();
+    Thread subscriber = new Thread(() -> {
+      while (!done.get()) {
+        apply(subscription, updates, view);
+      }
+    });
+    try (ParallelExchange parallel = new ParallelExchange(clientBase, 3)) {
+      parallel.setDepthListener(feed);
+      subscriber.start();
+      for (int i = 0; i < 20000; i++) {
+        parallel.processOrder(generator.nextOrder());
+      }
+      parallel.awaitProcessed();
+    } finally {
+      done.set(true);
+      subscriber.join();
+    }
+    apply(subscription, updates, view);
+
+    Map<String, Long> expected = new HashMap<>();
+    for (int stockId = 0; stockId < clientBase.getStockDictionary().size(); stockId++) {
+      for (Order.Type type : Order.Type.values()) {
+        for (DepthLevel level : feed.depth(stockId, type)) {
+          expected.put(stockId + " " + (type == Order.Type.SELL) + " " + level.getPriceUnits(), level.getQuantity());
+        }
+      }
+    }
+    Assert.assertThat(expected.size(), Matchers.greaterThan(100));
+    Assert.assertThat(view, Matchers.equalTo(expected));
+  }
+
+  private void apply(MarketDataFeed.Subscription subscription, List<DepthLevel> updates, Map<String, Long> view) {
+    updates.clear();
+    if (subscription.poll(updates)) {
+      view.clear();
+    }
+    for (DepthLevel level : updates) {
+      String key = level.getStockId() + " " + (level.getType() == Order.Type.SELL) + " " + level.getPriceUnits();
+      if (level.getQuantity() == 0) {
+        view.remove(key);
+      } else {
+        view.put(key, level.getQuantity());
+      }
+    }
+  }
+}
@@ -0,0 +1,38 @@
+import org.hamcrest.Matchers;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class NameDictionaryTest {
+
+  private NameDictionary subj = new NameDictionary();
+
+  @Test
+  public void denseIds() {
+    for (int i = 0; i < 100; i++) {
+      Assert.assertThat(subj.id("C" + i), Matchers.equalTo(i));
+    }
+    Assert.assertThat(subj.id("C5"), Matchers.equalTo(5));
+    Assert.assertThat(subj.name(42), Matchers.equalTo("C42"));
+    Assert.assertThat(subj.size(), Matchers.equalTo(100));
+  }
+
+  @Test
+  public void find() {
+    subj.id("A");
+    Assert.assertThat(subj.find("A"), Matchers.equalTo(0));
+    Assert.assertThat(subj.find("B"), Matchers.equalTo(-1));
+    Assert.assertThat(subj.size(), Matchers.equalTo(1));
+  }
+
+  @Test
+  public void clientBaseIds() {
+    ClientBase clientBase = new ClientBase();
+    clientBase.addClientBalance(ClientBalance.newBuilder().name("C2").build());
+    clientBase.addClientBalance(ClientBalance.newBuilder().name("C1").build());
+
+    Assert.assertThat(clientBase.getClientDictionary().find("C1"), Matchers.equalTo(1));
+    Assert.assertThat(clientBase.getClientBalance(1).getName(), Matchers.equalTo("C1"));
+    Assert.assertThat(clientBase.getClientBalance(2), Matchers.nullValue());
+    Assert.assertThat(clientBase.getStockDictionary().find("D"), Matchers.equalTo(3));
+  }
+}
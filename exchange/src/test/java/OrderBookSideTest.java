@@ -0,0 +1,143 @@
+import org.hamcrest.Matchers;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+public class OrderBookSideTest {
+
+  private Order order(Order.Type type, long price, int count) {
+    return new Order.Builder()
+        .price(BigDecimal.valueOf(price))
+        .type(type)
+        .count(count)
+        .stockName("A")
+        .clientName("C1")
+        .build();
+  }
+
+  @Test
+  public void sellPriceTimeOrder() {
+    OrderBookSide subj = new OrderBookSide(Order.Type.SELL);
+    Order o1 = order(Order.Type.SELL, 10, 1);
+    Order o2 = order(Order.Type.SELL, 5, 2);
+    Order o3 = order(Order.Type.SELL, 10, 3);
+    Order o4 = order(Order.Type.SELL, 7, 4);
+    subj.add(o1);
+    subj.add(o2);
+    subj.add(o3);
+    subj.add(o4);
+
+    Assert.assertThat(subj.size(), Matchers.equalTo(4));
+    Assert.assertThat(subj.levelCount(), Matchers.equalTo(3));
+    Assert.assertThat(subj.bestLevel().price, Matchers.equalTo(FixedPoint.valueOf(5)));
+
+    List<Order> orders = new ArrayList<>(subj);
+    Assert.assertThat(orders, Matchers.contains(o2, o4, o1, o3));
+
+    Assert.assertThat(subj.poll(), Matchers.sameInstance(o2));
+    Assert.assertThat(subj.poll(), Matchers.sameInstance(o4));
+    Assert.assertThat(subj.poll(), Matchers.sameInstance(o1));
+    Assert.assertThat(subj.poll(), Matchers.sameInstance(o3));
+    Assert.assertThat(subj.poll(), Matchers.nullValue());
+    Assert.assertThat(subj.isEmpty(), Matchers.is(true));
+    Assert.assertThat(subj.levelCount(), Matchers.equalTo(0));
+  }
+
+  @Test
+  public void bayPriceTimeOrder() {
+    OrderBookSide subj = new OrderBookSide(Order.Type.BAY);
+    Order o1 = order(Order.Type.BAY, 5, 1);
+    Order o2 = order(Order.Type.BAY, 10, 2);
+    Order o3 = order(Order.Type.BAY, 5, 3);
+    subj.add(o1);
+    subj.add(o2);
+    subj.add(o3);
+
+    Assert.assertThat(new ArrayList<>(subj), Matchers.contains(o2, o1, o3));
+    Assert.assertThat(subj.peek(), Matchers.sameInstance(o2));
+  }
+
+  @Test
+  public void addFirstKeepsPriority() {
+    OrderBookSide subj = new OrderBookSide(Order.Type.SELL);
+    Order o1 = order(Order.Type.SELL, 5, 1);
+    Order o2 = order(Order.Type.SELL, 5, 2);
+    Order o3 = order(Order.Type.SELL, 6, 3);
+    subj.add(o1);
+    subj.add(o2);
+    subj.add(o3);
+
+    Order polled1 = subj.poll();
+    Order polled2 = subj.poll();
+    Order polled3 = subj.poll();
+    subj.addFirst(polled3);
+    subj.addFirst(polled2);
+    subj.addFirst(polled1);
+
+    Assert.assertThat(new ArrayList<>(subj), Matchers.contains(o1, o2, o3));
+    Assert.assertThat(subj.levelCount(), Matchers.equalTo(2));
+  }
+
+  @Test
+  public void sameClientOrdersFormRuns() {
+    OrderBookSide subj = new OrderBookSide(Order.Type.SELL);
+    Order a1 = clientOrder(1, 5);
+    Order a2 = clientOrder(1, 5);
+    Order b1 = clientOrder(2, 5);
+    Order a3 = clientOrder(1, 5);
+    subj.add(a1);
+    subj.add(a2);
+    subj.add(b1);
+    subj.add(a3);
+
+    Assert.assertThat(a1.run, Matchers.sameInstance(a2.run));
+    Assert.assertThat(a1.run.size, Matchers.equalTo(2));
+    Assert.assertThat(a1.run.tail, Matchers.sameInstance(a2));
+    Assert.assertThat(b1.run.size, Matchers.equalTo(1));
+    Assert.assertThat(a3.run, Matchers.not(Matchers.sameInstance(a1.run)));
+
+    subj.remove(subj.levelCount() - 1, b1);
+    Assert.assertThat(b1.run, Matchers.nullValue());
+    Assert.assertThat(new ArrayList<>(subj), Matchers.contains(a1, a2, a3));
+    subj.remove(subj.levelCount() - 1, a1);
+    Assert.assertThat(a2.run.head, Matchers.sameInstance(a2));
+    Assert.assertThat(a2.run.size, Matchers.equalTo(1));
+
+    Order a0 = subj.poll();
+    subj.addFirst(a0);
+    Assert.assertThat(a0.run.head, Matchers.sameInstance(a0));
+    Assert.assertThat(subj.size(), Matchers.equalTo(2));
+  }
+
+  @Test
+  public void removeKeepsOtherLevelIndexes() {
+    OrderBookSide subj = new OrderBookSide(Order.Type.SELL);
+    Order best = order(Order.Type.SELL, 5, 1);
+    Order middle = order(Order.Type.SELL, 6, 1);
+    Order worst = order(Order.Type.SELL, 7, 1);
+    subj.add(best);
+    subj.add(middle);
+    subj.add(worst);
+
+    subj.remove(1, middle);
+
+    Assert.assertThat(subj.levelCount(), Matchers.equalTo(2));
+    Assert.assertThat(subj.level(0).head, Matchers.sameInstance(worst));
+    Assert.assertThat(subj.level(1).head, Matchers.sameInstance(best));
+    Assert.assertThat(new ArrayList<>(subj), Matchers.contains(best, worst));
+  }
+
+  private Order clientOrder(int clientId, long price) {
+    return new Order.Builder()
+        .price(BigDecimal.valueOf(price))
+        .type(Order.Type.SELL)
+        .count(1)
+        .stockName("A")
+        .clientId(clientId)
+        .clientName("C" + clientId)
+        .build();
+  }
+}
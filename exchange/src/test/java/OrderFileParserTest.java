@@ -0,0 +1,143 @@
+import org.hamcrest.Matchers;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+public class OrderFileParserTest {
+
+  private File file(String content) throws Exception {
+    File file = File.createTempFile("orders", ".txt");
+    file.deleteOnExit();
+    Files.write(file.toPath(), content.getBytes(Charset.defaultCharset()));
+    return file;
+  }
+
+  @Test
+  public void parse() throws Exception {
+    List<Order> orders = new ArrayList<>();
+    new OrderFileParser(new ClientBase()).parse(file("C1\ts\tA\t15\t3\r\nC2\tB\tC\t14.5\t5\n"), orders::add);
+
+    Assert.assertThat(orders.size(), Matchers.equalTo(2));
+    Assert.assertThat(orders.get(0).getClientName(), Matchers.equalTo("C1"));
+    Assert.assertThat(orders.get(0).getType(), Matchers.equalTo(Order.Type.SELL));
+    Assert.assertThat(orders.get(0).getStockName(), Matchers.equalTo("A"));
+    Assert.assertThat(orders.get(0).getPrice(), Matchers.equalTo(BigDecimal.valueOf(15)));
+    Assert.assertThat(orders.get(0).getCount(), Matchers.equalTo(3));
+    Assert.assertThat(orders.get(1).getClientName(), Matchers.equalTo("C2"));
+    Assert.assertThat(orders.get(1).getType(), Matchers.equalTo(Order.Type.BAY));
+    Assert.assertThat(orders.get(1).getPrice(), Matchers.equalTo(new BigDecimal("14.5")));
+    Assert.assertThat(orders.get(1).getCount(), Matchers.equalTo(5));
+  }
+
+  @Test
+  public void namesMatchClientBaseCharset() throws Exception {
+    File clients = File.createTempFile("clients", ".txt");
+    clients.deleteOnExit();
+    Files.write(clients.toPath(), "Клиент\t100\t10\t0\t0\t0\nC2\t100\t0\t0\t0\t0\n".getBytes(Charset.defaultCharset()));
+    ClientBase clientBase = new ClientBase();
+    clientBase.initClientBase(clients);
+
+    new Exchange(clientBase).processOrderList(file("Клиент\ts\tA\t2\t3\nC2\tb\tA\t2\t3\n"));
+
+    Assert.assertThat(clientBase.getClientBalance("C2").getStocks().get("A"), Matchers.equalTo(3));
+    ClientBalance seller = clientBase.getClientBalance(0);
+    Assert.assertThat(seller.getStocks().get("A"), Matchers.equalTo(7));
+    Assert.assertThat(seller.getAmount(), Matchers.equalTo(BigDecimal.valueOf(106)));
+  }
+
+  @Test
+  public void parseByRegions() throws Exception {
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      content.append("C").append(i % 7).append("\tb\tS").append(i % 3).append('\t').append(i).append("\t").append(i + 1).append('\n');
+    }
+    content.append("C1\ts\tS1\t1\t1");
+    List<Order> orders = new ArrayList<>();
+    new OrderFileParser(new ClientBase(), 64).parse(file(content.toString()), orders::add);
+
+    Assert.assertThat(orders.size(), Matchers.equalTo(101));
+    for (int i = 0; i < 100; i++) {
+      Assert.assertThat(orders.get(i).getClientName(), Matchers.equalTo("C" + (i % 7)));
+      Assert.assertThat(orders.get(i).getStockName(), Matchers.equalTo("S" + (i % 3)));
+      Assert.assertThat(orders.get(i).getPriceUnits(), Matchers.equalTo(FixedPoint.valueOf(i)));
+      Assert.assertThat(orders.get(i).getCount(), Matchers.equalTo(i + 1));
+    }
+    Assert.assertThat(orders.get(100).getType(), Matchers.equalTo(Order.Type.SELL));
+  }
+
+  @Test
+  public void parseCommands() throws Exception {
+    List<Order> orders = new ArrayList<>();
+    new OrderFileParser(new ClientBase()).parse(
+        file("C1\ts\tA\t15\t3\t7\nC1\tr\tA\t2\t7\nC1\ta\tA\t14.5\t2\t7\nC1\tc\tA\t7\n"), orders::add);
+
+    Assert.assertThat(orders.size(), Matchers.equalTo(4));
+    Assert.assertThat(orders.get(0).getAction(), Matchers.equalTo(Order.Action.NEW));
+    Assert.assertThat(orders.get(0).getType(), Matchers.equalTo(Order.Type.SELL));
+    Assert.assertThat(orders.get(0).getCount(), Matchers.equalTo(3));
+    Assert.assertThat(orders.get(1).getAction(), Matchers.equalTo(Order.Action.REDUCE));
+    Assert.assertThat(orders.get(1).getCount(), Matchers.equalTo(2));
+    Assert.assertThat(orders.get(2).getAction(), Matchers.equalTo(Order.Action.AMEND));
+    Assert.assertThat(orders.get(2).getPrice(), Matchers.equalTo(new BigDecimal("14.5")));
+    Assert.assertThat(orders.get(2).getCount(), Matchers.equalTo(2));
+    Assert.assertThat(orders.get(3).getAction(), Matchers.equalTo(Order.Action.CANCEL));
+    Assert.assertThat(orders.get(3).getType(), Matchers.nullValue());
+    for (Order order : orders) {
+      Assert.assertThat(order.getId(), Matchers.equalTo(7));
+      Assert.assertThat(order.getStockName(), Matchers.equalTo("A"));
+    }
+  }
+
+  @Test
+  public void wrongCommand() throws Exception {
+    try {
+      new OrderFileParser(new ClientBase()).parse(file("C1\tc\tA\t0\n"), o -> { });
+      Assert.fail();
+    } catch (IllegalArgumentException e) {
+      Assert.assertThat(e.getMessage(), Matchers.startsWith("Некорректный номер заявки 0"));
+    }
+    try {
+      new OrderFileParser(new ClientBase()).parse(file("C1\tr\tA\t7\n"), o -> { });
+      Assert.fail();
+    } catch (IllegalArgumentException e) {
+      Assert.assertThat(e.getMessage(), Matchers.startsWith("Для команды REDUCE ожидается 5 полей в строке"));
+    }
+  }
+
+  @Test
+  public void wrongFieldCount() throws Exception {
+    try {
+      new OrderFileParser(new ClientBase()).parse(file("C1\ts\tA\t15\t3\nC1\ts\tA\t15\n"), o -> { });
+      Assert.fail();
+    } catch (IllegalArgumentException e) {
+      Assert.assertThat(e.getMessage(), Matchers.equalTo(
+          "В файле с позициями на продажу ожидается 5 полей в строке (строка 2: C1\ts\tA\t15)"));
+    }
+  }
+
+  @Test
+  public void wrongType() throws Exception {
+    try {
+      new OrderFileParser(new ClientBase()).parse(file("C1\tx\tA\t15\t3\n"), o -> { });
+      Assert.fail();
+    } catch (IllegalArgumentException e) {
+      Assert.assertThat(e.getMessage(), Matchers.equalTo("Некорректный тип заявки x (строка 1: C1\tx\tA\t15\t3)"));
+    }
+  }
+
+  @Test
+  public void wrongCount() throws Exception {
+    try {
+      new OrderFileParser(new ClientBase()).parse(file("C1\ts\tA\t15\t3x\n"), o -> { });
+      Assert.fail();
+    } catch (IllegalArgumentException e) {
+      Assert.assertThat(e.getMessage(), Matchers.startsWith("Некорректное количество акций 3x"));
+    }
+  }
+}
@@ -0,0 +1,127 @@
+import org.hamcrest.Matchers;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class OrderFlowGeneratorTest {
+
+  private File tempFile() throws Exception {
+    File file = File.createTempFile("orders", ".txt");
+    file.deleteOnExit();
+    return file;
+  }
+
+  @Test
+  public void sameSeedSameFlow() throws Exception {
+    File first = tempFile();
+    File second = tempFile();
+    File other = tempFile();
+    OrderFlowGenerator.newBuilder().seed(7).build().write(first, 10000);
+    OrderFlowGenerator.newBuilder().seed(7).build().write(second, 10000);
+    OrderFlowGenerator.newBuilder().seed(8).build().write(other, 10000);
+
+    Assert.assertThat(Files.readAllBytes(first.toPath()), Matchers.equalTo(Files.readAllBytes(second.toPath())));
+    Assert.assertThat(Files.readAllBytes(first.toPath()), Matchers.not(Matchers.equalTo(Files.readAllBytes(other.toPath()))));
+  }
+
+  @Test
+  public void fileIsParsed() throws Exception {
+    File orders = tempFile();
+    OrderFlowGenerator.newBuilder().symbols(6).tick(new BigDecimal("0.05")).build().write(orders, 5000);
+
+    List<Order> parsed = new ArrayList<>();
+    new OrderFileParser(new ClientBase()).parse(orders, parsed::add);
+
+    Assert.assertThat(parsed.size(), Matchers.equalTo(5000));
+    for (Order order : parsed) {
+      Assert.assertThat(order.getPrice().signum(), Matchers.equalTo(1));
+      Assert.assertThat(order.getCount(), Matchers.allOf(Matchers.greaterThan(0), Matchers.lessThanOrEqualTo(100)));
+    }
+  }
+
+  @Test
+  public void hotSymbolSkew() throws Exception {
+    File orders = tempFile();
+    OrderFlowGenerator.newBuilder().symbols(4).hotSymbolSkew(2).build().write(orders, 10000);
+
+    Map<String, Integer> counts = new HashMap<>();
+    new OrderFileParser(new ClientBase()).parse(orders, order -> counts.merge(order.getStockName(), 1, Integer::sum));
+
+    Assert.assertThat(counts.get("A"), Matchers.greaterThan(counts.get("B") * 3));
+    Assert.assertThat(counts.get("B"), Matchers.greaterThan(counts.get("D")));
+  }
+
+  @Test
+  public void fileAndFeedGiveSameResult() throws Exception {
+    OrderFlowGenerator.Builder builder = OrderFlowGenerator.newBuilder()
+        .clients(5)
+        .initialStocks(2000)
+        .crossProbability(0.5)
+        .selfTradeShare(0.2);
+    File orders = tempFile();
+    File clients = tempFile();
+    OrderFlowGenerator fileGenerator = builder.build();
+    fileGenerator.writeClients(clients);
+    fileGenerator.write(orders, 20000);
+
+    ClientBase fileBase = new ClientBase();
+    fileBase.initClientBase(clients);
+    new Exchange(fileBase).processOrderList(orders);
+    File expected = tempFile();
+    fileBase.clientToFile(expected);
+
+    OrderFlowGenerator feedGenerator = builder.build();
+    ClientBase feedBase = feedGenerator.clientBase();
+    feedGenerator.feed(new Exchange(feedBase), 20000);
+    File result = tempFile();
+    feedBase.clientToFile(result);
+
+    Assert.assertThat(Files.readAllBytes(result.toPath()), Matchers.equalTo(Files.readAllBytes(expected.toPath())));
+    Assert.assertThat(Files.readAllBytes(result.toPath()), Matchers.not(Matchers.equalTo(Files.readAllBytes(clients.toPath()))));
+  }
+
+  @Test
+  public void cancelFlowFileAndFeedGiveSameResult() throws Exception {
+    OrderFlowGenerator.Builder builder = OrderFlowGenerator.newBuilder()
+        .clients(5)
+        .initialStocks(2000)
+        .cancelShare(0.5);
+    File orders = tempFile();
+    File clients = tempFile();
+    OrderFlowGenerator fileGenerator = builder.build();
+    fileGenerator.writeClients(clients);
+    fileGenerator.write(orders, 20000);
+    Map<Order.Action, Integer> actions = new EnumMap<>(Order.Action.class);
+    new OrderFileParser(new ClientBase()).parse(orders, order -> actions.merge(order.getAction(), 1, Integer::sum));
+
+    ClientBase fileBase = new ClientBase();
+    fileBase.initClientBase(clients);
+    new Exchange(fileBase).processOrderList(orders);
+    File expected = tempFile();
+    fileBase.clientToFile(expected);
+
+    OrderFlowGenerator feedGenerator = builder.build();
+    ClientBase feedBase = feedGenerator.clientBase();
+    feedGenerator.feed(new Exchange(feedBase), 20000);
+    File result = tempFile();
+    feedBase.clientToFile(result);
+
+    Assert.assertThat(actions.get(Order.Action.CANCEL), Matchers.greaterThan(actions.get(Order.Action.AMEND)));
+    Assert.assertThat(actions.get(Order.Action.REDUCE), Matchers.greaterThan(1000));
+    Assert.assertThat(actions.get(Order.Action.NEW), Matchers.greaterThan(8000));
+    Assert.assertThat(Files.readAllBytes(result.toPath()), Matchers.equalTo(Files.readAllBytes(expected.toPath())));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void tooManySymbolsForClientsFile() throws Exception {
+    OrderFlowGenerator.newBuilder().symbols(5).build().writeClients(tempFile());
+  }
+}
@@ -0,0 +1,177 @@
+import org.hamcrest.Matchers;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class OrderGatewayTest {
+
+  private ClientBase clientBase;
+  private OrderGateway gateway;
+
+  @Before
+  public void setUp() throws Exception {
+    clientBase = new ClientBase();
+    clientBase.addClientBalance(ClientBalance.newBuilder().name("C1").amount(BigDecimal.valueOf(100)).stock("A", 10).build());
+    clientBase.addClientBalance(ClientBalance.newBuilder().name("C2").amount(BigDecimal.valueOf(100)).build());
+    gateway = new OrderGateway(new Exchange(clientBase), 0);
+    gateway.start();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    gateway.close();
+  }
+
+  private Socket connect() throws Exception {
+    Socket socket = new Socket(InetAddress.getLoopbackAddress(), gateway.getPort());
+    socket.setSoTimeout(10000);
+    return socket;
+  }
+
+  private void send(Socket socket, String line) throws Exception {
+    OutputStream out = socket.getOutputStream();
+    out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+    out.flush();
+  }
+
+  private BufferedReader reader(Socket socket) throws Exception {
+    return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void acknowledgesAndReportsFillsToBothSides() throws Exception {
+    try (Socket seller = connect(); Socket buyer = connect()) {
+      BufferedReader sellerIn = reader(seller);
+      BufferedReader buyerIn = reader(buyer);
+
+      send(seller, "C1\ts\tA\t5\t4");
+      String sellAck = sellerIn.readLine();
+      Assert.assertThat(sellAck, Matchers.startsWith("ACK "));
+      send(buyer, "C2\tb\tA\t5\t3");
+      String buyAck = buyerIn.readLine();
+      Assert.assertThat(buyAck, Matchers.startsWith("ACK "));
+
+      Assert.assertThat(buyerIn.readLine(), Matchers.equalTo("FILL " + buyAck.substring(4) + " A 5 3 0"));
+      Assert.assertThat(sellerIn.readLine(), Matchers.equalTo("FILL " + sellAck.substring(4) + " A 5 3 1"));
+    }
+    gateway.close();
+
+    Assert.assertThat(gateway.getAccepted(), Matchers.equalTo(2L));
+    Assert.assertThat(clientBase.getClientBalance("C1").getAmount(), Matchers.equalTo(BigDecimal.valueOf(115)));
+    Assert.assertThat(clientBase.getClientBalance("C2").getAmount(), Matchers.equalTo(BigDecimal.valueOf(85)));
+    Assert.assertThat(clientBase.getClientBalance("C2").getStocks(), Matchers.hasEntry("A", 3));
+  }
+
+  @Test
+  public void keepsExchangeFillListener() throws Exception {
+    gateway.close();
+    Exchange exchange = new Exchange(clientBase);
+    List<Integer> fills = new ArrayList<>();
+    exchange.setFillListener((incoming, resting, price, priceScale, count) -> fills.add(count));
+    gateway = new OrderGateway(exchange, InetAddress.getLoopbackAddress(), 0);
+    gateway.start();
+
+    try (Socket socket = connect()) {
+      BufferedReader in = reader(socket);
+      send(socket, "C1\ts\tA\t5\t4");
+      Assert.assertThat(in.readLine(), Matchers.startsWith("ACK "));
+      send(socket, "C2\tb\tA\t5\t3");
+      Assert.assertThat(in.readLine(), Matchers.startsWith("ACK "));
+      Assert.assertThat(in.readLine(), Matchers.startsWith("FILL "));
+    }
+    gateway.close();
+    exchange.processOrder(new Order.Builder().clientName("C2").type(Order.Type.BAY).stockName("A")
+        .price(BigDecimal.valueOf(5)).count(1).build());
+
+    Assert.assertThat(fills, Matchers.contains(3, 1));
+  }
+
+  @Test
+  public void rejectsMalformedAndFailedOrders() throws Exception {
+    try (Socket socket = connect()) {
+      BufferedReader in = reader(socket);
+
+      send(socket, "C1\tx\tA\t5\t4");
+      Assert.assertThat(in.readLine(), Matchers.startsWith("REJECT 0 Некорректный тип заявки"));
+      send(socket, "C2\ts\tA\t5\t4");
+      Assert.assertThat(in.readLine(), Matchers.startsWith("ACK "));
+      send(socket, "C1\tb\tA\t5\t4");
+      String reject = in.readLine();
+      Assert.assertThat(reject, Matchers.startsWith("REJECT "));
+      Assert.assertThat(reject, Matchers.not(Matchers.startsWith("REJECT 0 ")));
+      Assert.assertThat(reject, Matchers.endsWith(" У клиента нет заявленных акций"));
+      send(socket, "C1\ts\tA\t6\t1");
+      Assert.assertThat(in.readLine(), Matchers.startsWith("ACK "));
+    }
+    Assert.assertThat(gateway.getRejected(), Matchers.equalTo(2L));
+    Assert.assertThat(gateway.getAccepted(), Matchers.equalTo(2L));
+  }
+
+  @Test
+  public void rejectsUnknownClient() throws Exception {
+    try (Socket socket = connect()) {
+      BufferedReader in = reader(socket);
+
+      send(socket, "ZZZ\ts\tA\t1\t2");
+      Assert.assertThat(in.readLine(), Matchers.startsWith("REJECT 0 В базе нет клиента ZZZ"));
+      send(socket, "C2\tb\tA\t1\t2");
+      Assert.assertThat(in.readLine(), Matchers.startsWith("ACK "));
+    }
+    gateway.close();
+
+    Assert.assertThat(clientBase.getClientDictionary().find("ZZZ"), Matchers.equalTo(-1));
+    Assert.assertThat(clientBase.getClientBalance("C2").getAmount(), Matchers.equalTo(BigDecimal.valueOf(100)));
+    Assert.assertThat(clientBase.getClientBalance("C2").getStocks().containsKey("A"), Matchers.is(false));
+  }
+
+  @Test
+  public void loadClientGetsEveryOrderAnswered() throws Exception {
+    OrderFlowGenerator generator = OrderFlowGenerator.newBuilder().seed(5).clients(50).build();
+    gateway.close();
+    gateway = new OrderGateway(new Exchange(generator.clientBase()), InetAddress.getLoopbackAddress(), 0, 16);
+    gateway.start();
+
+    OrderGatewayLoadClient client = new OrderGatewayLoadClient(
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), gateway.getPort()), generator, 200, 20);
+    client.run();
+
+    Assert.assertThat(client.getAcks(), Matchers.equalTo(4000L));
+    Assert.assertThat(client.getRejects(), Matchers.equalTo(0L));
+    Assert.assertThat(client.getLatency().count(), Matchers.equalTo(4000L));
+    Assert.assertThat(gateway.getAccepted(), Matchers.equalTo(4000L));
+  }
+
+  @Test
+  public void answersEveryLineAfterClientHalfClose() throws Exception {
+    try (Socket socket = connect()) {
+      StringBuilder lines = new StringBuilder();
+      for (int i = 0; i < 200; i++) {
+        lines.append("C1\ts\tA\t").append(5 + i).append("\t1\n");
+      }
+      socket.getOutputStream().write(lines.toString().getBytes(StandardCharsets.UTF_8));
+      socket.shutdownOutput();
+
+      BufferedReader in = reader(socket);
+      int acks = 0;
+      String line;
+      while ((line = in.readLine()) != null) {
+        Assert.assertThat(line, Matchers.startsWith("ACK "));
+        acks++;
+      }
+      Assert.assertThat(acks, Matchers.equalTo(200));
+    }
+    Assert.assertThat(gateway.getAccepted(), Matchers.equalTo(200L));
+  }
+}
@@ -0,0 +1,72 @@
+import org.hamcrest.Matchers;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class OrderIndexTest {
+
+  private OrderIndex subj = new OrderIndex();
+
+  private Order order(int clientId, int id) {
+    return Order.allocate().init(clientId, "C" + clientId, Order.Type.SELL, 0, "A", 1, 0, 1)
+        .command(Order.Action.NEW, id);
+  }
+
+  @Test
+  public void putGetRemove() {
+    Order o1 = order(0, 1);
+    Order o2 = order(0, -2);
+    subj.put(o1);
+    subj.put(o2);
+
+    Assert.assertThat(subj.get(0, 1), Matchers.sameInstance(o1));
+    Assert.assertThat(subj.get(0, -2), Matchers.sameInstance(o2));
+    Assert.assertThat(subj.get(0, 3), Matchers.nullValue());
+    Assert.assertThat(subj.remove(0, 1), Matchers.sameInstance(o1));
+    Assert.assertThat(subj.remove(0, 1), Matchers.nullValue());
+    Assert.assertThat(subj.get(0, -2), Matchers.sameInstance(o2));
+    Assert.assertThat(subj.size(), Matchers.equalTo(1));
+  }
+
+  @Test
+  public void sameIdOfDifferentClients() {
+    Order o1 = order(1, 7);
+    Order o2 = order(2, 7);
+    subj.put(o1);
+    subj.put(o2);
+
+    Assert.assertThat(subj.get(1, 7), Matchers.sameInstance(o1));
+    Assert.assertThat(subj.get(2, 7), Matchers.sameInstance(o2));
+    Assert.assertThat(subj.get(3, 7), Matchers.nullValue());
+    Assert.assertThat(subj.remove(2, 7), Matchers.sameInstance(o2));
+    Assert.assertThat(subj.get(1, 7), Matchers.sameInstance(o1));
+  }
+
+  @Test
+  public void sameAsHashMapUnderChurn() {
+    Map<Long, Order> expected = new HashMap<>();
+    Random random = new Random(3);
+    for (int i = 0; i < 200000; i++) {
+      int clientId = random.nextInt(4);
+      int id = random.nextInt(1250) - 625;
+      long key = (long) clientId << 32 | (id & 0xffffffffL);
+      if (expected.containsKey(key)) {
+        Assert.assertThat(subj.remove(clientId, id), Matchers.sameInstance(expected.remove(key)));
+      } else {
+        Order order = order(clientId, id);
+        expected.put(key, order);
+        subj.put(order);
+      }
+    }
+    Assert.assertThat(subj.size(), Matchers.equalTo(expected.size()));
+    for (int clientId = 0; clientId < 4; clientId++) {
+      for (int id = -625; id < 625; id++) {
+        long key = (long) clientId << 32 | (id & 0xffffffffL);
+        Assert.assertThat(subj.get(clientId, id), Matchers.sameInstance(expected.get(key)));
+      }
+    }
+  }
+}
@@ -0,0 +1,154 @@
+import org.hamcrest.Matchers;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+public class OrderJournalTest {
+
+  private File tempFile() throws Exception {
+    File file = File.createTempFile("journal", ".bin");
+    file.delete();
+    file.deleteOnExit();
+    return file;
+  }
+
+  private Order order(String client, Order.Type type, String stock, String price, int count) {
+    return new Order.Builder().clientName(client).type(type).stockName(stock).price(new BigDecimal(price)).count(count).build();
+  }
+
+  @Test
+  public void appendAndReplay() throws Exception {
+    File file = tempFile();
+    List<Order> written = new ArrayList<>();
+    written.add(order("C1", Order.Type.SELL, "A", "15", 3));
+    written.add(order("C2", Order.Type.BAY, "X", "15.25", 5));
+    written.add(order("Клиент", Order.Type.BAY, "A", "4", 1));
+    try (OrderJournal journal = new OrderJournal(file, new ClientBase(), 2)) {
+      for (Order order : written) {
+        journal.append(order);
+      }
+    }
+
+    List<Order> replayed = new ArrayList<>();
+    long end = OrderJournal.replay(file, 0, new ClientBase(), replayed::add);
+
+    Assert.assertThat(end, Matchers.equalTo(file.length()));
+    Assert.assertThat(replayed.size(), Matchers.equalTo(written.size()));
+    for (int i = 0; i < written.size(); i++) {
+      Assert.assertThat(replayed.get(i).getClientName(), Matchers.equalTo(written.get(i).getClientName()));
+      Assert.assertThat(replayed.get(i).getType(), Matchers.equalTo(written.get(i).getType()));
+      Assert.assertThat(replayed.get(i).getStockName(), Matchers.equalTo(written.get(i).getStockName()));
+      Assert.assertThat(replayed.get(i).getPrice(), Matchers.equalTo(written.get(i).getPrice()));
+      Assert.assertThat(replayed.get(i).getCount(), Matchers.equalTo(written.get(i).getCount()));
+      Assert.assertThat(replayed.get(i).getTime(), Matchers.equalTo(written.get(i).getTime()));
+    }
+  }
+
+  @Test
+  public void idsAndCommandsAreReplayed() throws Exception {
+    File file = tempFile();
+    try (OrderJournal journal = new OrderJournal(file, new ClientBase())) {
+      journal.append(new Order.Builder().clientName("C1").type(Order.Type.BAY).stockName("A")
+          .price(BigDecimal.TEN).count(3).id(12).build());
+      journal.append(new Order.Builder().clientName("C1").stockName("A").action(Order.Action.CANCEL).id(12).build());
+      journal.append(order("C1", Order.Type.SELL, "A", "11", 1));
+    }
+
+    List<Order> replayed = new ArrayList<>();
+    OrderJournal.replay(file, 0, new ClientBase(), replayed::add);
+
+    Assert.assertThat(replayed.size(), Matchers.equalTo(3));
+    Assert.assertThat(replayed.get(0).getId(), Matchers.equalTo(12));
+    Assert.assertThat(replayed.get(0).getAction(), Matchers.equalTo(Order.Action.NEW));
+    Assert.assertThat(replayed.get(0).getType(), Matchers.equalTo(Order.Type.BAY));
+    Assert.assertThat(replayed.get(1).getId(), Matchers.equalTo(12));
+    Assert.assertThat(replayed.get(1).getAction(), Matchers.equalTo(Order.Action.CANCEL));
+    Assert.assertThat(replayed.get(1).getType(), Matchers.nullValue());
+    Assert.assertThat(replayed.get(2).getId(), Matchers.equalTo(-replayed.get(2).getTime()));
+  }
+
+  @Test
+  public void reopenAppendsAfterExistingRecords() throws Exception {
+    File file = tempFile();
+    ClientBase clientBase = new ClientBase();
+    try (OrderJournal journal = new OrderJournal(file, clientBase)) {
+      journal.append(order("C1", Order.Type.SELL, "A", "15", 3));
+    }
+    try (OrderJournal journal = new OrderJournal(file, clientBase)) {
+      journal.append(order("C1", Order.Type.BAY, "A", "16", 2));
+    }
+
+    List<Order> replayed = new ArrayList<>();
+    OrderJournal.replay(file, 0, new ClientBase(), replayed::add);
+
+    Assert.assertThat(replayed.size(), Matchers.equalTo(2));
+    Assert.assertThat(replayed.get(1).getClientName(), Matchers.equalTo("C1"));
+    Assert.assertThat(replayed.get(1).getCount(), Matchers.equalTo(2));
+  }
+
+  @Test
+  public void incompleteTailIsSkipped() throws Exception {
+    File file = tempFile();
+    try (OrderJournal journal = new OrderJournal(file, new ClientBase())) {
+      journal.append(order("C1", Order.Type.SELL, "A", "15", 3));
+    }
+    long complete = file.length();
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      raf.setLength(complete + OrderLog.RECORD_SIZE / 2);
+    }
+
+    List<Order> replayed = new ArrayList<>();
+    long end = OrderJournal.replay(file, 0, new ClientBase(), replayed::add);
+
+    Assert.assertThat(replayed.size(), Matchers.equalTo(1));
+    Assert.assertThat(end, Matchers.equalTo(complete));
+  }
+
+  @Test
+  public void rejectedOrderFailsAgainOnReplay() throws Exception {
+    File file = tempFile();
+    try (OrderJournal journal = new OrderJournal(file, new ClientBase())) {
+      Order rejected = order("C1", Order.Type.SELL, "A", "15", 3);
+      journal.append(rejected);
+      journal.reject(rejected);
+      journal.append(order("C2", Order.Type.BAY, "A", "16", 2));
+      journal.append(order("C3", Order.Type.BAY, "A", "17", 1));
+    }
+    long complete = file.length();
+
+    List<String> replayed = new ArrayList<>();
+    long end = OrderJournal.replay(file, 0, new ClientBase(), order -> {
+      replayed.add(order.getClientName());
+      if (!order.getClientName().equals("C2")) {
+        throw new IllegalArgumentException("У клиента нет заявленных акций");
+      }
+    });
+
+    Assert.assertThat(replayed, Matchers.contains("C1", "C2", "C3"));
+    Assert.assertThat(end, Matchers.equalTo(complete - OrderLog.RECORD_SIZE));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void acceptedOrderFailingOnReplay() throws Exception {
+    File file = tempFile();
+    try (OrderJournal journal = new OrderJournal(file, new ClientBase())) {
+      journal.append(order("C1", Order.Type.SELL, "A", "15", 3));
+      journal.append(order("C2", Order.Type.BAY, "A", "16", 2));
+    }
+    OrderJournal.replay(file, 0, new ClientBase(), order -> {
+      throw new IllegalArgumentException("У клиента нет заявленных акций");
+    });
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void notAJournal() throws Exception {
+    File file = tempFile();
+    OrderLog.convert(new File(OrderJournalTest.class.getClassLoader().getResource("orders.txt").toURI()), file);
+    OrderJournal.replay(file, 0, new ClientBase(), order -> { });
+  }
+}
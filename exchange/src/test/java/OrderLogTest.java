@@ -0,0 +1,67 @@
+import org.hamcrest.Matchers;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+public class OrderLogTest {
+
+  private File resource(String name) throws Exception {
+    return Paths.get(OrderLogTest.class.getClassLoader().getResource(name).toURI()).toFile();
+  }
+
+  private File tempFile() throws Exception {
+    File file = File.createTempFile("orders", ".bin");
+    file.deleteOnExit();
+    return file;
+  }
+
+  @Test
+  public void convertAndReplay() throws Exception {
+    File log = tempFile();
+    Assert.assertThat(OrderLog.convert(resource("orders.txt"), log), Matchers.equalTo(4L));
+
+    List<Order> expected = new ArrayList<>();
+    new OrderFileParser(new ClientBase()).parse(resource("orders.txt"), expected::add);
+    List<Order> orders = new ArrayList<>();
+    OrderLog.replay(log, new ClientBase(), orders::add);
+
+    Assert.assertThat(orders.size(), Matchers.equalTo(expected.size()));
+    for (int i = 0; i < orders.size(); i++) {
+      Assert.assertThat(orders.get(i).getClientName(), Matchers.equalTo(expected.get(i).getClientName()));
+      Assert.assertThat(orders.get(i).getType(), Matchers.equalTo(expected.get(i).getType()));
+      Assert.assertThat(orders.get(i).getStockName(), Matchers.equalTo(expected.get(i).getStockName()));
+      Assert.assertThat(orders.get(i).getPrice(), Matchers.equalTo(expected.get(i).getPrice()));
+      Assert.assertThat(orders.get(i).getCount(), Matchers.equalTo(expected.get(i).getCount()));
+    }
+  }
+
+  @Test
+  public void replayIntoExchange() throws Exception {
+    File log = tempFile();
+    OrderLog.convert(resource("orders.txt"), log);
+
+    ClientBase expectedBase = new ClientBase();
+    expectedBase.initClientBase(resource("clients.txt"));
+    new Exchange(expectedBase).processOrderList(resource("orders.txt"));
+    File expected = tempFile();
+    expectedBase.clientToFile(expected);
+
+    ClientBase clientBase = new ClientBase();
+    clientBase.initClientBase(resource("clients.txt"));
+    new Exchange(clientBase).replayOrderLog(log);
+    File result = tempFile();
+    clientBase.clientToFile(result);
+
+    Assert.assertThat(Files.readAllBytes(result.toPath()), Matchers.equalTo(Files.readAllBytes(expected.toPath())));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void replayNotLog() throws Exception {
+    OrderLog.replay(resource("orders.txt"), new ClientBase(), o -> { });
+  }
+}
@@ -0,0 +1,117 @@
+import org.hamcrest.Matchers;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+public class OrderPipelineTest {
+
+  private static final int ORDERS = 10000;
+
+  private static void feed(Consumer<Order> consumer) {
+    for (int id = 1; id <= ORDERS; id++) {
+      consumer.accept(Order.allocate().command(Order.Action.NEW, id));
+    }
+  }
+
+  @Test
+  public void stagesSeeAllOrdersInRingOrder() throws Exception {
+    for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+      OrderPipeline subj = new OrderPipeline(256, 3, waitStrategy);
+      List<Integer> first = new ArrayList<>();
+      List<Integer> second = new ArrayList<>();
+      List<Integer> batches = new ArrayList<>();
+      int[] batch = {0};
+      boolean[] behindFirst = {true};
+
+      subj.run(OrderPipelineTest::feed,
+          (order, endOfBatch) -> first.add(order.getId()),
+          (order, endOfBatch) -> {
+            // вторая стадия видит заявку только после первой
+            behindFirst[0] &= first.size() >= order.getId();
+            second.add(order.getId());
+            batch[0]++;
+            if (endOfBatch) {
+              batches.add(batch[0]);
+              batch[0] = 0;
+            }
+          });
+
+      Assert.assertThat(behindFirst[0], Matchers.is(true));
+      Assert.assertThat(first.size(), Matchers.equalTo(ORDERS));
+      Assert.assertThat(second, Matchers.equalTo(first));
+      Assert.assertThat(second.get(ORDERS - 1), Matchers.equalTo(ORDERS));
+      Assert.assertThat(batch[0], Matchers.equalTo(0));
+      Assert.assertThat(batches.stream().mapToInt(Integer::intValue).sum(), Matchers.equalTo(ORDERS));
+      Assert.assertThat(batches.stream().mapToInt(Integer::intValue).max().getAsInt(), Matchers.lessThanOrEqualTo(3));
+    }
+  }
+
+  @Test
+  public void pipelineIsReusable() throws Exception {
+    OrderPipeline subj = new OrderPipeline(16, 4, WaitStrategy.YIELD);
+    int[] seen = {0};
+    subj.run(OrderPipelineTest::feed, (order, endOfBatch) -> seen[0]++);
+    subj.run(OrderPipelineTest::feed, (order, endOfBatch) -> seen[0]++);
+
+    Assert.assertThat(seen[0], Matchers.equalTo(2 * ORDERS));
+  }
+
+  @Test
+  public void stageFailureStopsProcessingAndIsRethrown() throws Exception {
+    OrderPipeline subj = new OrderPipeline(16, 4, WaitStrategy.PARK);
+    int[] seen = {0};
+    try {
+      subj.run(OrderPipelineTest::feed,
+          (order, endOfBatch) -> {
+            if (order.getId() == 100) {
+              throw new IllegalStateException("Ошибка стадии");
+            }
+          },
+          (order, endOfBatch) -> seen[0]++);
+      Assert.fail();
+    } catch (IllegalStateException e) {
+      Assert.assertThat(e.getMessage(), Matchers.equalTo("Ошибка стадии"));
+    }
+    Assert.assertThat(seen[0], Matchers.lessThan(100));
+
+    subj.run(OrderPipelineTest::feed, (order, endOfBatch) -> seen[0]++);
+    Assert.assertThat(seen[0], Matchers.greaterThanOrEqualTo(ORDERS));
+  }
+
+  @Test
+  public void stageFailureStopsSource() throws Exception {
+    OrderPipeline subj = new OrderPipeline(16, 4, WaitStrategy.PARK);
+    int[] fed = {0};
+    try {
+      subj.run(consumer -> {
+            for (int id = 1; id <= ORDERS; id++) {
+              consumer.accept(Order.allocate().command(Order.Action.NEW, id));
+              fed[0]++;
+            }
+          },
+          (order, endOfBatch) -> {
+            if (order.getId() == 100) {
+              throw new IllegalStateException("Ошибка стадии");
+            }
+          });
+      Assert.fail();
+    } catch (IllegalStateException e) {
+      Assert.assertThat(e.getMessage(), Matchers.equalTo("Ошибка стадии"));
+    }
+    // источник успевает записать не больше заявок, чем помещается в кольцо после ошибочной
+    Assert.assertThat(fed[0], Matchers.lessThanOrEqualTo(100 + 16));
+  }
+
+  @Test
+  public void ringSizeMustBePowerOfTwo() {
+    try {
+      new OrderPipeline(12, 4, WaitStrategy.YIELD);
+      Assert.fail();
+    } catch (IllegalArgumentException e) {
+      Assert.assertThat(e.getMessage(), Matchers.equalTo("Емкость кольца должна быть степенью двойки"));
+    }
+  }
+}
@@ -0,0 +1,104 @@
+import org.hamcrest.Matchers;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+public class ParallelExchangeTest {
+
+  private File resource(String name) throws Exception {
+    return Paths.get(ParallelExchangeTest.class.getClassLoader().getResource(name).toURI()).toFile();
+  }
+
+  private byte[] run(Exchange exchange, ClientBase clientBase) throws Exception {
+    exchange.processOrderList(resource("orders.txt"));
+    File result = File.createTempFile("result", ".txt");
+    result.deleteOnExit();
+    clientBase.clientToFile(result);
+    return Files.readAllBytes(result.toPath());
+  }
+
+  @Test
+  public void sameResultAsSingleThread() throws Exception {
+    ClientBase expectedBase = new ClientBase();
+    expectedBase.initClientBase(resource("clients.txt"));
+    byte[] expected = run(new Exchange(expectedBase), expectedBase);
+
+    ClientBase clientBase = new ClientBase();
+    clientBase.initClientBase(resource("clients.txt"));
+    try (ParallelExchange subj = new ParallelExchange(clientBase, 2)) {
+      Assert.assertThat(run(subj, clientBase), Matchers.equalTo(expected));
+      Assert.assertThat(subj.bookDepth().keySet(), Matchers.contains("A", "C", "D"));
+      Assert.assertThat(subj.book(clientBase.getStockDictionary().find("C")).bay.peek().getCount(),
+          Matchers.equalTo(2));
+    }
+  }
+
+  @Test
+  public void workerFailureIsRethrown() throws Exception {
+    ClientBase clientBase = new ClientBase();
+    clientBase.addClientBalance(ClientBalance.newBuilder().name("C1").stock("A", 1).build());
+    clientBase.addClientBalance(ClientBalance.newBuilder().name("C2").stock("A", 1).build());
+    try (ParallelExchange subj = new ParallelExchange(clientBase, 2)) {
+      subj.processOrder(new Order.Builder().clientName("C1").stockName("A").type(Order.Type.SELL)
+          .price(FixedPoint.valueOf(1), 0).count(5).build());
+      subj.processOrder(new Order.Builder().clientName("C2").stockName("A").type(Order.Type.BAY)
+          .price(FixedPoint.valueOf(1), 0).count(5).build());
+      try {
+        subj.awaitProcessed();
+        Assert.fail();
+      } catch (IllegalArgumentException e) {
+        Assert.assertThat(e.getMessage(), Matchers.equalTo("У клиента меньше акций, чем заявлено на продажу"));
+      }
+    }
+  }
+
+  private static Order order(String client, Order.Type type, String stock, int count) {
+    return new Order.Builder().clientName(client).stockName(stock).type(type)
+        .price(FixedPoint.valueOf(1), 0).count(count).build();
+  }
+
+  @Test
+  public void ordersBeforeEarliestFailureAreProcessed() throws Exception {
+    ClientBase clientBase = new ClientBase();
+    clientBase.addClientBalance(ClientBalance.newBuilder().name("C1").stock("A", 1).stock("B", 10000).build());
+    clientBase.addClientBalance(ClientBalance.newBuilder().name("C2").stock("A", 0).stock("B", 0).build());
+    clientBase.addClientBalance(ClientBalance.newBuilder().name("C3").build());
+    try (ParallelExchange subj = new ParallelExchange(clientBase, 2)) {
+      for (int i = 0; i < 10000; i++) {
+        subj.processOrder(order("C1", Order.Type.SELL, "B", 1));
+        subj.processOrder(order("C2", Order.Type.BAY, "B", 1));
+        if (i == 0) {
+          subj.processOrder(order("C1", Order.Type.SELL, "A", 5));
+        }
+      }
+      // первая ошибочная заявка по поступлению относится к акции A, более поздняя - к акции B,
+      // она не успевает изменить счета, даже если обработана до остановки
+      subj.processOrder(order("C2", Order.Type.BAY, "A", 5));
+      subj.processOrder(order("C2", Order.Type.BAY, "B", 1));
+      subj.processOrder(order("C3", Order.Type.SELL, "B", 1));
+      try {
+        subj.awaitProcessed();
+        Assert.fail();
+      } catch (IllegalArgumentException e) {
+        Assert.assertThat(e.getMessage(), Matchers.equalTo("У клиента меньше акций, чем заявлено на продажу"));
+      }
+      Assert.assertThat(clientBase.getClientBalance("C2").getStocks().get("B"), Matchers.equalTo(10000));
+    }
+  }
+
+  @Test
+  public void orderPoolIsRejected() {
+    try (ParallelExchange subj = new ParallelExchange(new ClientBase(), 2)) {
+      subj.setOrderPool(null);
+      try {
+        subj.setOrderPool(new OrderPool());
+        Assert.fail();
+      } catch (IllegalArgumentException e) {
+        Assert.assertThat(e.getMessage(), Matchers.equalTo("Пул заявок не поддерживается многопоточной биржей"));
+      }
+    }
+  }
+}
@@ -0,0 +1,62 @@
+import org.hamcrest.Matchers;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ParallelOrderFileParserTest {
+
+  private File file(String content) throws Exception {
+    File file = File.createTempFile("orders", ".txt");
+    file.deleteOnExit();
+    Files.write(file.toPath(), content.getBytes(Charset.defaultCharset()));
+    return file;
+  }
+
+  private String orders(int count) {
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      content.append("C").append(i % 5).append(i % 2 == 0 ? "\tb\t" : "\ts\t").append("S").append(i % 3)
+          .append('\t').append(i % 17).append('\t').append(i + 1).append('\n');
+    }
+    return content.toString();
+  }
+
+  @Test
+  public void sameOrderAsSequential() throws Exception {
+    File file = file(orders(5000));
+    List<Order> expected = new ArrayList<>();
+    new OrderFileParser(new ClientBase()).parse(file, expected::add);
+
+    List<Order> orders = new ArrayList<>();
+    new ParallelOrderFileParser(new ClientBase(), 4, 100, 4096).parse(file, orders::add);
+
+    Assert.assertThat(orders.size(), Matchers.equalTo(expected.size()));
+    for (int i = 0; i < orders.size(); i++) {
+      Assert.assertThat(orders.get(i).getClientName(), Matchers.equalTo(expected.get(i).getClientName()));
+      Assert.assertThat(orders.get(i).getStockName(), Matchers.equalTo(expected.get(i).getStockName()));
+      Assert.assertThat(orders.get(i).getPriceUnits(), Matchers.equalTo(expected.get(i).getPriceUnits()));
+      Assert.assertThat(orders.get(i).getCount(), Matchers.equalTo(expected.get(i).getCount()));
+      if (i > 0) {
+        Assert.assertThat(orders.get(i - 1).getTime(), Matchers.lessThan(orders.get(i).getTime()));
+      }
+    }
+  }
+
+  @Test
+  public void errorReportsFileLine() throws Exception {
+    File file = file(orders(1000) + "C1\tx\tA\t1\t1\n" + orders(1000));
+    List<Order> orders = new ArrayList<>();
+    try {
+      new ParallelOrderFileParser(new ClientBase(), 4, 100, 4096).parse(file, orders::add);
+      Assert.fail();
+    } catch (IllegalArgumentException e) {
+      Assert.assertThat(e.getMessage(), Matchers.equalTo("Некорректный тип заявки x (строка 1001: C1\tx\tA\t1\t1)"));
+    }
+    Assert.assertThat(orders.size(), Matchers.equalTo(1000));
+  }
+}
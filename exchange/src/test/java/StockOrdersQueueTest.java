@@ -0,0 +1,420 @@
+import org.hamcrest.Matchers;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+public class StockOrdersQueueTest {
+
+  private ClientBase clientBase;
+  private StockOrdersQueue subj;
+
+  @Before
+  public void setUp() {
+    clientBase = new ClientBase();
+    subj = new StockOrdersQueue(clientBase);
+
+    clientBase.addClientBalance(new ClientBalance.Builder()
+        .name("C1")
+        .amount(BigDecimal.valueOf(100))
+        .stock("A", 100)
+        .stock("B", 15)
+        .build()
+    );
+
+    clientBase.addClientBalance(new ClientBalance.Builder()
+        .name("C2")
+        .amount(BigDecimal.valueOf(200))
+        .stock("A", 5)
+        .stock("B", 10)
+        .build()
+    );
+
+    subj = new StockOrdersQueue(clientBase);
+  }
+
+  @Test
+  public void addAndProcessBay() {
+    Order o0 = new Order.Builder()
+        .price(BigDecimal.valueOf(6))
+        .stockName("A")
+        .type(Order.Type.SELL)
+        .count(50)
+        .clientName("C1")
+        .build();
+
+    Order o1 = new Order.Builder()
+        .price(BigDecimal.valueOf(5))
+        .stockName("A")
+        .type(Order.Type.SELL)
+        .count(100)
+        .clientName("C1")
+        .build();
+
+    Order o2 = new Order.Builder()
+        .price(BigDecimal.valueOf(6))
+        .stockName("A")
+        .type(Order.Type.BAY)
+        .count(10)
+        .clientName("C2")
+        .build();
+
+    subj.addAndProcess(o0);
+    subj.addAndProcess(o1);
+    subj.addAndProcess(o2);
+
+    Assert.assertThat(subj.bay.isEmpty(), Matchers.is(true));
+    Assert.assertThat(subj.sell.size(), Matchers.equalTo(2));
+    Assert.assertThat(subj.sell.peek().getCount(), Matchers.equalTo(90));
+
+    Assert.assertThat(clientBase.getClientBalance("C1").getStocks().get("A"), Matchers.equalTo(90));
+    Assert.assertThat(clientBase.getClientBalance("C1").getAmount(), Matchers.equalTo(BigDecimal.valueOf(150)));
+
+    Assert.assertThat(clientBase.getClientBalance("C2").getStocks().get("A"), Matchers.equalTo(15));
+    Assert.assertThat(clientBase.getClientBalance("C2").getAmount(), Matchers.equalTo(BigDecimal.valueOf(150)));
+  }
+
+  @Test
+  public void addAndProcessSell() {
+    Order o0 = new Order.Builder()
+        .price(BigDecimal.valueOf(5))
+        .stockName("A")
+        .type(Order.Type.BAY)
+        .count(100)
+        .clientName("C1")
+        .build();
+
+    Order o1 = new Order.Builder()
+        .price(BigDecimal.valueOf(10))
+        .stockName("A")
+        .type(Order.Type.BAY)
+        .count(10)
+        .clientName("C1")
+        .build();
+
+    Order o2 = new Order.Builder()
+        .price(BigDecimal.valueOf(5))
+        .stockName("A")
+        .type(Order.Type.SELL)
+        .count(5)
+        .clientName("C2")
+        .build();
+
+    subj.addAndProcess(o0);
+    subj.addAndProcess(o1);
+    subj.addAndProcess(o2);
+
+    Assert.assertThat(subj.sell.isEmpty(), Matchers.is(true));
+    Assert.assertThat(subj.bay.size(), Matchers.equalTo(2));
+    Assert.assertThat(subj.bay.peek().getCount(), Matchers.equalTo(5));
+
+    Assert.assertThat(clientBase.getClientBalance("C1").getStocks().get("A"), Matchers.equalTo(105));
+    Assert.assertThat(clientBase.getClientBalance("C1").getAmount(), Matchers.equalTo(BigDecimal.valueOf(50)));
+
+    Assert.assertThat(clientBase.getClientBalance("C2").getStocks().get("A"), Matchers.equalTo(0));
+    Assert.assertThat(clientBase.getClientBalance("C2").getAmount(), Matchers.equalTo(BigDecimal.valueOf(250)));
+  }
+
+
+  @Test
+  public void addAndProcessBayExcludeSelf() {
+    Order o0 = new Order.Builder()
+        .price(BigDecimal.valueOf(5))
+        .stockName("A")
+        .type(Order.Type.SELL)
+        .count(100)
+        .clientName("C2")
+        .build();
+
+    Order o1 = new Order.Builder()
+        .price(BigDecimal.valueOf(5))
+        .stockName("A")
+        .type(Order.Type.SELL)
+        .count(100)
+        .clientName("C1")
+        .build();
+
+    Order o2 = new Order.Builder()
+        .price(BigDecimal.valueOf(5))
+        .stockName("A")
+        .type(Order.Type.BAY)
+        .count(10)
+        .clientName("C2")
+        .build();
+
+    subj.addAndProcess(o0);
+    subj.addAndProcess(o1);
+    subj.addAndProcess(o2);
+
+    Assert.assertThat(subj.bay.isEmpty(), Matchers.is(true));
+    Assert.assertThat(subj.sell.size(), Matchers.equalTo(2));
+    Assert.assertThat(subj.sell.poll().getCount(), Matchers.equalTo(100));
+    Assert.assertThat(subj.sell.poll().getCount(), Matchers.equalTo(90));
+
+    Assert.assertThat(clientBase.getClientBalance("C1").getStocks().get("A"), Matchers.equalTo(90));
+    Assert.assertThat(clientBase.getClientBalance("C1").getAmount(), Matchers.equalTo(BigDecimal.valueOf(150)));
+
+    Assert.assertThat(clientBase.getClientBalance("C2").getStocks().get("A"), Matchers.equalTo(15));
+    Assert.assertThat(clientBase.getClientBalance("C2").getAmount(), Matchers.equalTo(BigDecimal.valueOf(150)));
+  }
+
+  @Test
+  public void addAndProcessBayBigOrder() {
+    Order o0 = new Order.Builder()
+        .price(BigDecimal.valueOf(5))
+        .stockName("A")
+        .type(Order.Type.SELL)
+        .count(10)
+        .clientName("C1")
+        .build();
+
+    Order o1 = new Order.Builder()
+        .price(BigDecimal.valueOf(5))
+        .stockName("A")
+        .type(Order.Type.SELL)
+        .count(10)
+        .clientName("C1")
+        .build();
+
+    Order o2 = new Order.Builder()
+        .price(BigDecimal.valueOf(5))
+        .stockName("A")
+        .type(Order.Type.BAY)
+        .count(100)
+        .clientName("C2")
+        .build();
+
+    subj.addAndProcess(o0);
+    subj.addAndProcess(o1);
+    subj.addAndProcess(o2);
+
+    Assert.assertThat(subj.bay.size(), Matchers.equalTo(1));
+    Assert.assertThat(subj.bay.peek().getCount(), Matchers.equalTo(80));
+    Assert.assertThat(subj.sell.isEmpty(), Matchers.is(true));
+
+    Assert.assertThat(clientBase.getClientBalance("C1").getStocks().get("A"), Matchers.equalTo(80));
+    Assert.assertThat(clientBase.getClientBalance("C1").getAmount(), Matchers.equalTo(BigDecimal.valueOf(200)));
+
+    Assert.assertThat(clientBase.getClientBalance("C2").getStocks().get("A"), Matchers.equalTo(25));
+    Assert.assertThat(clientBase.getClientBalance("C2").getAmount(), Matchers.equalTo(BigDecimal.valueOf(100)));
+  }
+
+  @Test
+  public void selfOrdersStayInPlace() {
+    Order own1 = order("C1", Order.Type.SELL, 5, 1);
+    Order own2 = order("C1", Order.Type.SELL, 5, 1);
+    Order other1 = order("C2", Order.Type.SELL, 5, 2);
+    Order own3 = order("C1", Order.Type.SELL, 5, 1);
+    Order other2 = order("C2", Order.Type.SELL, 6, 3);
+    Order own4 = order("C1", Order.Type.SELL, 6, 1);
+    for (Order order : new Order[]{own1, own2, other1, own3, other2, own4}) {
+      subj.addAndProcess(order);
+    }
+
+    subj.addAndProcess(order("C1", Order.Type.BAY, 6, 4));
+
+    Assert.assertThat(new ArrayList<>(subj.sell), Matchers.contains(own1, own2, own3, other2, own4));
+    Assert.assertThat(other2.getCount(), Matchers.equalTo(1));
+    Assert.assertThat(subj.bay.isEmpty(), Matchers.is(true));
+    Assert.assertThat(clientBase.getClientBalance("C1").getAmount(), Matchers.equalTo(BigDecimal.valueOf(78)));
+    Assert.assertThat(clientBase.getClientBalance("C2").getStocks().get("A"), Matchers.equalTo(1));
+  }
+
+  private Order order(String client, Order.Type type, long price, int count) {
+    return new Order.Builder().clientName(client).type(type).stockName("A").price(BigDecimal.valueOf(price)).count(count).build();
+  }
+
+  private Order order(String client, Order.Type type, long price, int count, int id) {
+    return new Order.Builder().clientName(client).type(type).stockName("A").price(BigDecimal.valueOf(price)).count(count)
+        .id(id).build();
+  }
+
+  private Order command(String client, Order.Action action, int id) {
+    return new Order.Builder().clientName(client).stockName("A").action(action).id(id).build();
+  }
+
+  private int client(String name) {
+    return clientBase.getClientDictionary().find(name);
+  }
+
+  @Test
+  public void reduceKeepsPriorityAmendLosesIt() {
+    Order o1 = order("C1", Order.Type.SELL, 5, 3, 1);
+    Order o2 = order("C2", Order.Type.SELL, 5, 2, 2);
+    subj.addAndProcess(o1);
+    subj.addAndProcess(o2);
+
+    Assert.assertThat(subj.reduce(client("C1"), 1, 1), Matchers.is(true));
+    Assert.assertThat(subj.reduce(client("C1"), 1, 5), Matchers.is(false));
+    Assert.assertThat(new ArrayList<>(subj.sell), Matchers.contains(o1, o2));
+    Assert.assertThat(o1.getCount(), Matchers.equalTo(1));
+
+    Assert.assertThat(subj.amend(client("C1"), 1, FixedPoint.valueOf(BigDecimal.valueOf(5)), 0, 2), Matchers.is(true));
+    Assert.assertThat(new ArrayList<>(subj.sell), Matchers.contains(o2, o1));
+    Assert.assertThat(o1.getCount(), Matchers.equalTo(2));
+
+    Assert.assertThat(subj.cancel(client("C2"), 2), Matchers.is(true));
+    Assert.assertThat(subj.cancel(client("C2"), 2), Matchers.is(false));
+    Assert.assertThat(new ArrayList<>(subj.sell), Matchers.contains(o1));
+    Assert.assertThat(subj.find(client("C2"), 2), Matchers.nullValue());
+  }
+
+  @Test
+  public void amendCrossesOppositeSide() {
+    subj.addAndProcess(order("C1", Order.Type.SELL, 6, 2, 1));
+    subj.addAndProcess(order("C2", Order.Type.BAY, 4, 2, 2));
+
+    subj.addAndProcess(new Order.Builder().clientName("C1").stockName("A").action(Order.Action.AMEND)
+        .price(BigDecimal.valueOf(4)).count(2).id(1).build());
+
+    Assert.assertThat(subj.sell.isEmpty(), Matchers.is(true));
+    Assert.assertThat(subj.bay.isEmpty(), Matchers.is(true));
+    Assert.assertThat(subj.find(client("C1"), 1), Matchers.nullValue());
+    Assert.assertThat(subj.find(client("C2"), 2), Matchers.nullValue());
+    Assert.assertThat(clientBase.getClientBalance("C2").getStocks().get("A"), Matchers.equalTo(7));
+    Assert.assertThat(clientBase.getClientBalance("C1").getAmount(), Matchers.equalTo(BigDecimal.valueOf(108)));
+  }
+
+  @Test
+  public void commandsApplyOnlyToOwnRestingOrders() {
+    Order own = order("C1", Order.Type.SELL, 5, 3, 7);
+    subj.addAndProcess(own);
+
+    subj.addAndProcess(command("C2", Order.Action.CANCEL, 7));
+    Assert.assertThat(subj.find(client("C1"), 7), Matchers.sameInstance(own));
+
+    subj.addAndProcess(command("C1", Order.Action.CANCEL, 7));
+    Assert.assertThat(subj.find(client("C1"), 7), Matchers.nullValue());
+    Assert.assertThat(subj.sell.isEmpty(), Matchers.is(true));
+
+    subj.addAndProcess(command("C1", Order.Action.CANCEL, 7));
+    Assert.assertThat(subj.sell.isEmpty(), Matchers.is(true));
+  }
+
+  @Test
+  public void sameIdOfDifferentClients() {
+    Order first = order("C1", Order.Type.SELL, 6, 3, 7);
+    Order second = order("C2", Order.Type.SELL, 7, 2, 7);
+    subj.addAndProcess(first);
+    subj.addAndProcess(second);
+
+    Assert.assertThat(subj.find(client("C1"), 7), Matchers.sameInstance(first));
+    Assert.assertThat(subj.find(client("C2"), 7), Matchers.sameInstance(second));
+
+    subj.addAndProcess(command("C2", Order.Action.CANCEL, 7));
+    Assert.assertThat(subj.find(client("C1"), 7), Matchers.sameInstance(first));
+    Assert.assertThat(subj.find(client("C2"), 7), Matchers.nullValue());
+    Assert.assertThat(new ArrayList<>(subj.sell), Matchers.contains(first));
+  }
+
+  @Test
+  public void filledOrderLeavesIndex() {
+    subj.addAndProcess(order("C1", Order.Type.SELL, 5, 3, 1));
+    subj.addAndProcess(order("C2", Order.Type.BAY, 5, 3, 2));
+
+    Assert.assertThat(subj.find(client("C1"), 1), Matchers.nullValue());
+    Assert.assertThat(subj.find(client("C2"), 2), Matchers.nullValue());
+    Assert.assertThat(subj.cancel(client("C1"), 1), Matchers.is(false));
+  }
+
+  @Test
+  public void depthListenerGetsTouchedLevels() {
+    List<String> levels = new ArrayList<>();
+    subj.setDepthListener((stockId, type, price, priceScale, quantity, orders) ->
+        levels.add(type + " " + FixedPoint.toBigDecimal(price, priceScale) + " " + quantity + " " + orders));
+    subj.addAndProcess(order("C1", Order.Type.SELL, 5, 3, 1));
+    subj.addAndProcess(order("C1", Order.Type.SELL, 6, 2, 2));
+    subj.addAndProcess(order("C1", Order.Type.SELL, 6, 2, 3));
+    subj.addAndProcess(order("C2", Order.Type.BAY, 6, 4, 4));
+    subj.reduce(client("C1"), 3, 1);
+    subj.cancel(client("C1"), 3);
+
+    Assert.assertThat(levels, Matchers.contains("SELL 5 3 1", "SELL 6 2 1", "SELL 6 4 2", "SELL 5 0 0", "SELL 6 3 2",
+        "SELL 6 2 2", "SELL 6 1 1"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void duplicateRestingId() {
+    subj.addAndProcess(order("C1", Order.Type.SELL, 5, 3, 1));
+    subj.addAndProcess(order("C1", Order.Type.SELL, 6, 3, 1));
+  }
+
+  @Test
+  public void pooledOrdersAreRecycled() {
+    OrderPool pool = new OrderPool();
+    subj.setOrderPool(pool);
+    int c1 = clientBase.getClientDictionary().find("C1");
+    int c2 = clientBase.getClientDictionary().find("C2");
+
+    subj.addAndProcess(pooledOrder(pool, c1, Order.Type.SELL, 5, 10));
+    subj.addAndProcess(pooledOrder(pool, c2, Order.Type.BAY, 5, 10));
+
+    Assert.assertThat(subj.sell.isEmpty(), Matchers.is(true));
+    Assert.assertThat(subj.bay.isEmpty(), Matchers.is(true));
+    Assert.assertThat(pool.getFreeCount(), Matchers.equalTo(2));
+    Assert.assertThat(pool.getAllocated(), Matchers.equalTo(2L));
+
+    subj.addAndProcess(pooledOrder(pool, c1, Order.Type.SELL, 5, 10));
+    Assert.assertThat(pool.getAllocated(), Matchers.equalTo(2L));
+    Assert.assertThat(subj.sell.peek().getCount(), Matchers.equalTo(10));
+  }
+
+  @Test
+  public void pooledSteadyStateAllocatesNothing() {
+    com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    Assume.assumeTrue(threadBean.isThreadAllocatedMemorySupported() && threadBean.isThreadAllocatedMemoryEnabled());
+
+    clientBase.addClientBalance(new ClientBalance.Builder()
+        .name("C3")
+        .amount(BigDecimal.valueOf(1000000))
+        .stock("A", 1000000)
+        .build());
+    clientBase.addClientBalance(new ClientBalance.Builder()
+        .name("C4")
+        .amount(BigDecimal.valueOf(1000000))
+        .stock("A", 1000000)
+        .build());
+    OrderPool pool = new OrderPool(16);
+    subj.setOrderPool(pool);
+    int c3 = clientBase.getClientDictionary().find("C3");
+    int c4 = clientBase.getClientDictionary().find("C4");
+    subj.addAndProcess(pooledOrder(pool, c4, Order.Type.SELL, 10, 1000000));
+
+    runFlow(pool, c3, c4, 20000);
+    long threadId = Thread.currentThread().getId();
+    long before = threadBean.getThreadAllocatedBytes(threadId);
+    long overhead = threadBean.getThreadAllocatedBytes(threadId) - before;
+    // Деоптимизация JIT во время замера может восстановить устраненные объекты, поэтому берется лучший из замеров
+    long allocated = Long.MAX_VALUE;
+    for (int round = 0; round < 3; round++) {
+      before = threadBean.getThreadAllocatedBytes(threadId);
+      runFlow(pool, c3, c4, 20000);
+      allocated = Math.min(allocated, threadBean.getThreadAllocatedBytes(threadId) - before);
+    }
+
+    Assert.assertThat(allocated, Matchers.lessThanOrEqualTo(overhead));
+    Assert.assertThat(subj.sell.size(), Matchers.equalTo(1));
+  }
+
+  /**
+   * Поток заявок: продажа C3 по новой цене, покупка C4 с пропуском собственной заявки C4 в стакане
+   */
+  private void runFlow(OrderPool pool, int c3, int c4, int iterations) {
+    for (int i = 0; i < iterations; i++) {
+      subj.addAndProcess(pooledOrder(pool, c3, Order.Type.SELL, 9, 3));
+      subj.addAndProcess(pooledOrder(pool, c4, Order.Type.BAY, 10, 3));
+    }
+  }
+
+  private Order pooledOrder(OrderPool pool, int clientId, Order.Type type, long price, int count) {
+    Order order = pool.acquire().init(clientId, clientBase.getClientDictionary().name(clientId), type,
+        0, "A", FixedPoint.valueOf(price), 0, count);
+    order.sequence();
+    return order;
+  }
+}